@@ -0,0 +1,117 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.github.benmanes.caffeine.cache.tracing.AccessTraceWriter;
+
+import site.ycsb.generator.NumberGenerator;
+import site.ycsb.generator.ScrambledZipfianGenerator;
+
+/**
+ * A benchmark that evaluates the overhead of recording an access trace, using the workload of
+ * {@link GetPutBenchmark}. The cache is traced to a temporary file with the sampling rate, where a
+ * rate of zero disables tracing to provide the baseline. The number of accesses that were dropped
+ * due to a concurrent flush is printed when the trial completes.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=AccessTraceBenchmark --rerun
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Group)
+public class AccessTraceBenchmark {
+  private static final int SIZE = (2 << 14);
+  private static final int MASK = SIZE - 1;
+  private static final int ITEMS = SIZE / 3;
+
+  @Param({"0", "0.01", "1"})
+  double samplingRate;
+
+  Cache<Integer, Boolean> cache;
+  AccessTraceWriter writer;
+  Integer[] ints;
+  Path file;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    static final Random random = new Random();
+    int index = random.nextInt();
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(2 * SIZE);
+    if (samplingRate > 0) {
+      file = Files.createTempFile("access", ".trace");
+      writer = AccessTraceWriter.newBuilder(file).samplingRate(samplingRate).build();
+      builder.recordAccesses(writer);
+    }
+    cache = builder.build();
+
+    ints = new Integer[SIZE];
+    NumberGenerator generator = new ScrambledZipfianGenerator(ITEMS);
+    for (int i = 0; i < SIZE; i++) {
+      ints[i] = generator.nextValue().intValue();
+      cache.put(ints[i], Boolean.TRUE);
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void cleanUp() {
+    cache.cleanUp();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    if (writer != null) {
+      writer.close();
+      System.out.printf("%nsamplingRate=%s: traceBytes=%,d, dropped=%,d%n",
+          samplingRate, Files.size(file), writer.droppedCount());
+      Files.delete(file);
+    }
+  }
+
+  @Benchmark @Group("read_only") @GroupThreads(8)
+  public Boolean readOnly(ThreadState threadState) {
+    return cache.getIfPresent(ints[threadState.index++ & MASK]);
+  }
+
+  @Benchmark @Group("readwrite") @GroupThreads(6)
+  public Boolean readwrite_get(ThreadState threadState) {
+    return cache.getIfPresent(ints[threadState.index++ & MASK]);
+  }
+
+  @Benchmark @Group("readwrite") @GroupThreads(2)
+  public void readwrite_put(ThreadState threadState) {
+    cache.put(ints[threadState.index++ & MASK], Boolean.TRUE);
+  }
+}
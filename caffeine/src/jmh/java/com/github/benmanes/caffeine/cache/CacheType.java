@@ -74,6 +74,11 @@ public enum CacheType {
       return new CaffeineCache<>(maximumSize);
     }
   },
+  Caffeine_Sharded {
+    @Override public <K, V> BasicCache<K, V> create(int maximumSize) {
+      return new CaffeineCache<>(maximumSize, Runtime.getRuntime().availableProcessors());
+    }
+  },
   ConcurrentLinkedHashMap {
     @Override public <K, V> BasicCache<K, V> create(int maximumSize) {
       return new ConcurrentMapCache<>(
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import site.ycsb.generator.NumberGenerator;
+import site.ycsb.generator.ScrambledZipfianGenerator;
+
+/**
+ * A benchmark that compares the number of calls made to the backing resource when concurrent
+ * misses are loaded individually versus coalesced into shared bulk loads. The cache holds a small
+ * fraction of the working set so that misses are frequent, and every call to the backend pays a
+ * fixed cost plus a smaller cost per key. The backend calls per second of each iteration are
+ * printed alongside the throughput.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=CoalescingBulkLoadBenchmark --rerun
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+public class CoalescingBulkLoadBenchmark {
+  static final int SIZE = (2 << 14);
+  static final int MASK = SIZE - 1;
+  static final int ITEMS = 10 * SIZE;
+  static final int MAXIMUM_SIZE = SIZE / 8;
+
+  @Param({"0", "16", "64"})
+  int maxBatchSize;
+
+  @Param({"1"})
+  int maxDelayMillis;
+
+  @Param({"10000"})
+  int callTokens;
+
+  @Param({"100"})
+  int keyTokens;
+
+  LoadingCache<Integer, Boolean> cache;
+  LongAdder backendCalls;
+  LongAdder backendKeys;
+  long iterationStart;
+  Integer[] ints;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    static final Random random = new Random();
+    int index = random.nextInt();
+  }
+
+  @Setup
+  public void setup() {
+    backendKeys = new LongAdder();
+    backendCalls = new LongAdder();
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(MAXIMUM_SIZE);
+    if (maxBatchSize > 0) {
+      builder.coalescingBulkLoad(maxBatchSize, Duration.ofMillis(maxDelayMillis));
+    }
+    cache = builder.build(new Backend());
+
+    ints = new Integer[SIZE];
+    NumberGenerator generator = new ScrambledZipfianGenerator(ITEMS);
+    for (int i = 0; i < SIZE; i++) {
+      ints[i] = generator.nextValue().intValue();
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void startIteration() {
+    backendCalls.reset();
+    backendKeys.reset();
+    iterationStart = System.nanoTime();
+  }
+
+  @TearDown(Level.Iteration)
+  public void endIteration() {
+    double seconds = (System.nanoTime() - iterationStart) / (double) TimeUnit.SECONDS.toNanos(1);
+    System.out.printf("%nbackend calls/s=%,.0f, keys per call=%.1f%n",
+        backendCalls.sum() / seconds, backendKeys.sum() / (double) backendCalls.sum());
+  }
+
+  @Benchmark @Threads(16)
+  public Boolean get(ThreadState threadState) {
+    return cache.get(ints[threadState.index++ & MASK]);
+  }
+
+  final class Backend implements CacheLoader<Integer, Boolean> {
+    @Override public Boolean load(Integer key) {
+      backendCalls.increment();
+      backendKeys.increment();
+      Blackhole.consumeCPU(callTokens + keyTokens);
+      return Boolean.TRUE;
+    }
+    @Override public Map<Integer, Boolean> loadAll(Set<? extends Integer> keys) {
+      backendCalls.increment();
+      backendKeys.add(keys.size());
+      Blackhole.consumeCPU(callTokens + ((long) keyTokens * keys.size()));
+      var result = new HashMap<Integer, Boolean>(keys.size());
+      for (Integer key : keys) {
+        result.put(key, Boolean.TRUE);
+      }
+      return result;
+    }
+  }
+}
@@ -27,8 +27,13 @@ import org.openjdk.jmh.annotations.TearDown;
  * A benchmark that evaluates the eviction performance of a cache. The cache is pre-populated for
  * a 100% eviction rate to mimic worst case behavior.
  * <p>
+ * The scaling of the eviction policy under concurrent writers can be studied by varying the number
+ * of threads, e.g. from 1 to 128, and comparing a single policy with a sharded one.
+ * <p>
  * <pre>{@code
  *   ./gradlew jmh -PincludePattern=EvictionBenchmark
+ *   ./gradlew jmh -PincludePattern=EvictionBenchmark -Pthreads=64 \
+ *       -PbenchmarkParameters=cacheType=Caffeine,Caffeine_Sharded
  * }</pre>
  *
  * @author ben.manes@gmail.com (Ben Manes)
@@ -39,6 +44,7 @@ public class EvictionBenchmark {
   @Param({
     "LinkedHashMap_Lru",
     "Caffeine",
+    "Caffeine_Sharded",
     "Ehcache3",
   })
   CacheType cacheType;
@@ -15,7 +15,10 @@
  */
 package com.github.benmanes.caffeine.cache;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -24,8 +27,12 @@ import site.ycsb.generator.NumberGenerator;
 import site.ycsb.generator.ScrambledZipfianGenerator;
 
 /**
+ * A benchmark of the sketch's operations. The aging cost is compared between the blocked reset,
+ * whose loops the JIT compiler vectorizes, and a single fused scalar loop across table sizes.
+ * <p>
  * <pre>{@code
  *   ./gradlew jmh -PincludePattern=FrequencySketchBenchmark
+ *   ./gradlew jmh -PincludePattern=FrequencySketchBenchmark.reset
  * }</pre>
  *
  * @author ben.manes@gmail.com (Ben Manes)
@@ -62,4 +69,40 @@ public class FrequencySketchBenchmark {
   public int frequency() {
     return sketch.frequency(ints[index++ & MASK]);
   }
+
+  @Benchmark
+  public int reset_blocked(ResetState state) {
+    state.sketch.reset();
+    return state.sketch.size;
+  }
+
+  @Benchmark
+  public int reset_fused(ResetState state) {
+    var sketch = state.sketch;
+    int count = 0;
+    for (int i = 0; i < sketch.table.length; i++) {
+      count += Long.bitCount(sketch.table[i] & FrequencySketch.ONE_MASK);
+      sketch.table[i] = (sketch.table[i] >>> 1) & FrequencySketch.RESET_MASK;
+    }
+    sketch.size = (sketch.size - (count >>> 2)) >>> 1;
+    return sketch.size;
+  }
+
+  @State(Scope.Thread)
+  public static class ResetState {
+    @Param({"1024", "65536", "1048576", "16777216", "67108864"})
+    int tableSize;
+
+    FrequencySketch<Integer> sketch;
+
+    @Setup
+    public void setup() {
+      sketch = new FrequencySketch<>();
+      sketch.ensureCapacity(tableSize);
+      for (int i = 0; i < sketch.table.length; i++) {
+        sketch.table[i] = ThreadLocalRandom.current().nextLong();
+      }
+      sketch.size = sketch.sampleSize;
+    }
+  }
 }
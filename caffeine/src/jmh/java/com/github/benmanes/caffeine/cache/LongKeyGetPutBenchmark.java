@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import site.ycsb.generator.NumberGenerator;
+import site.ycsb.generator.ScrambledZipfianGenerator;
+
+/**
+ * A variant of {@link GetPutBenchmark} that compares a {@link LongKeyCache} to a {@link Cache}
+ * keyed by boxed {@link Long} instances. The keys are held as primitives and are boxed on every
+ * operation against the boxed cache, as is typical when the caller's identifiers are primitive.
+ * The allocation rate per operation can be observed by using the GC profiler.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=LongKeyGetPutBenchmark -Pprofilers=gc
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Group)
+public class LongKeyGetPutBenchmark {
+  private static final int SIZE = (2 << 14);
+  private static final int MASK = SIZE - 1;
+  private static final int ITEMS = SIZE / 3;
+
+  @Param({"Cache", "LongKeyCache"})
+  String cacheType;
+
+  LongCache cache;
+  long[] keys;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    static final Random random = new Random();
+    int index = random.nextInt();
+  }
+
+  @Setup
+  public void setup() {
+    keys = new long[SIZE];
+    if (cacheType.equals("Cache")) {
+      cache = new BoxedLongCache(Caffeine.newBuilder().maximumSize(2 * SIZE).build());
+    } else if (cacheType.equals("LongKeyCache")) {
+      cache = new PrimitiveLongCache(Caffeine.newBuilder().maximumSize(2 * SIZE).buildLongKeyed());
+    } else {
+      throw new AssertionError("Unknown cacheType: " + cacheType);
+    }
+
+    // Populate using a realistic access distribution
+    NumberGenerator generator = new ScrambledZipfianGenerator(ITEMS);
+    for (int i = 0; i < SIZE; i++) {
+      keys[i] = generator.nextValue().longValue();
+      cache.put(keys[i], Boolean.TRUE);
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    cache.cleanUp();
+  }
+
+  @Benchmark @Group("read_only") @GroupThreads(8)
+  public Boolean readOnly(ThreadState threadState) {
+    return cache.get(keys[threadState.index++ & MASK]);
+  }
+
+  @Benchmark @Group("write_only") @GroupThreads(8)
+  public void writeOnly(ThreadState threadState) {
+    cache.put(keys[threadState.index++ & MASK], Boolean.TRUE);
+  }
+
+  @Benchmark @Group("readwrite") @GroupThreads(6)
+  public Boolean readwrite_get(ThreadState threadState) {
+    return cache.get(keys[threadState.index++ & MASK]);
+  }
+
+  @Benchmark @Group("readwrite") @GroupThreads(2)
+  public void readwrite_put(ThreadState threadState) {
+    cache.put(keys[threadState.index++ & MASK], Boolean.TRUE);
+  }
+
+  /** A minimal abstraction so that both caches are invoked through the same call site shape. */
+  interface LongCache {
+    Boolean get(long key);
+    void put(long key, Boolean value);
+    void cleanUp();
+  }
+
+  static final class BoxedLongCache implements LongCache {
+    final Cache<Long, Boolean> cache;
+
+    BoxedLongCache(Cache<Long, Boolean> cache) {
+      this.cache = cache;
+    }
+    @Override public Boolean get(long key) {
+      return cache.getIfPresent(key);
+    }
+    @Override public void put(long key, Boolean value) {
+      cache.put(key, value);
+    }
+    @Override public void cleanUp() {
+      cache.cleanUp();
+    }
+  }
+
+  static final class PrimitiveLongCache implements LongCache {
+    final LongKeyCache<Boolean> cache;
+
+    PrimitiveLongCache(LongKeyCache<Boolean> cache) {
+      this.cache = cache;
+    }
+    @Override public Boolean get(long key) {
+      return cache.getIfPresent(key);
+    }
+    @Override public void put(long key, Boolean value) {
+      cache.put(key, value);
+    }
+    @Override public void cleanUp() {
+      cache.cleanUp();
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import site.ycsb.generator.NumberGenerator;
+import site.ycsb.generator.ScrambledZipfianGenerator;
+
+/**
+ * A benchmark that compares a heap-only cache to one that demotes evicted values into an
+ * off-heap tier. The heap cache is sized to hold a fraction of the working set, so that a tier hit
+ * replaces a call to the simulated backend. The hit rates and the heap footprint of the retained
+ * values are printed when the trial completes.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=OffHeapTierBenchmark --rerun
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+@SuppressWarnings("LexicographicalAnnotationAttributeListing")
+public class OffHeapTierBenchmark {
+  static final int SIZE = (2 << 14);
+  static final int MASK = SIZE - 1;
+  static final int ITEMS = SIZE / 2;
+  static final int HEAP_MAXIMUM = ITEMS / 8;
+  static final long TIER_MAXIMUM = 256L << 20;
+  static final ValueCodec<byte[]> codec = new BytesCodec();
+
+  @Param({"heap", "tiered"})
+  String mode;
+
+  @Param({"1024"})
+  int valueSize;
+
+  @Param({"1000"})
+  int backendTokens;
+
+  Function<Integer, byte[]> backend;
+  Cache<Integer, byte[]> cache;
+  Integer[] ints;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    static final Random random = new Random();
+    int index = random.nextInt();
+  }
+
+  @Setup
+  public void setup() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(HEAP_MAXIMUM);
+    if (mode.equals("tiered")) {
+      cache = builder.offHeapTier(TIER_MAXIMUM, codec).recordStats().build();
+    } else if (mode.equals("heap")) {
+      cache = builder.recordStats().build();
+    } else {
+      throw new AssertionError("Unknown mode: " + mode);
+    }
+    backend = key -> {
+      Blackhole.consumeCPU(backendTokens);
+      return new byte[valueSize];
+    };
+
+    ints = new Integer[SIZE];
+    NumberGenerator generator = new ScrambledZipfianGenerator(ITEMS);
+    for (int i = 0; i < SIZE; i++) {
+      ints[i] = generator.nextValue().intValue();
+      cache.get(ints[i], backend);
+    }
+  }
+
+  @TearDown
+  public void report() {
+    var stats = cache.stats();
+    System.out.printf("%n%s: hitRate=%.3f, tierHitRate=%.3f, backendCalls=%,d, "
+        + "heapValueBytes=%,d%n", mode, stats.hitRate(), stats.tierHitRate(), stats.missCount(),
+        cache.estimatedSize() * valueSize);
+  }
+
+  @Benchmark @Threads(8)
+  public byte[] read(ThreadState threadState) {
+    return cache.get(ints[threadState.index++ & MASK], backend);
+  }
+
+  static final class BytesCodec implements ValueCodec<byte[]> {
+    @Override public byte[] encode(byte[] value) {
+      return value;
+    }
+    @Override public byte[] decode(ByteBuffer buffer) {
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return bytes;
+    }
+  }
+}
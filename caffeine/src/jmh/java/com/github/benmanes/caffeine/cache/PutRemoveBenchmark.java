@@ -40,8 +40,13 @@ import site.ycsb.generator.ScrambledZipfianGenerator;
  * relatively rare compared to reads. Thus, this benchmark is only for diagnosing performance
  * concerns and should not be used to compare implementations.
  * <p>
+ * The scaling of the write path can be studied by varying the number of thread groups, e.g. from 1
+ * to 32 groups for 4 to 128 threads, and comparing a single policy with a sharded one.
+ * <p>
  * <pre>{@code
  *   ./gradlew jmh -PincludePattern=PutRemoveBenchmark
+ *   ./gradlew jmh -PincludePattern=PutRemoveBenchmark -Pthreads=32 \
+ *       -PbenchmarkParameters=cacheType=Caffeine,Caffeine_Sharded
  * }</pre>
  *
  * @author ben.manes@gmail.com (Ben Manes)
@@ -54,6 +59,7 @@ public class PutRemoveBenchmark {
 
   @Param({
     "Caffeine",
+    "Caffeine_Sharded",
     "LinkedHashMap_Lru",
     "ConcurrentHashMap",
     "ConcurrentLinkedHashMap",
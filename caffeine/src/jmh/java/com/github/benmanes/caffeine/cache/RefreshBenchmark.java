@@ -0,0 +1,172 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * A benchmark that evaluates the load on the backing resource when every entry in the cache becomes
+ * stale at the same time, such as after a burst of writes. The ticker is advanced beyond the
+ * refresh interval at the start of each iteration, so that the readers trigger a refresh of the
+ * entire cache, and each call to the backend blocks for a fixed latency plus a smaller cost per
+ * key. The backend calls per second and the peak number of concurrent calls of each iteration are
+ * printed, while the sampled read latencies report the tail latency that the readers observe.
+ * <p>
+ * An unlimited refresh concurrency ({@code maxInFlight=0}) reloads every stale entry immediately.
+ * The refresh executor is a cached thread pool so that the reloads may block, which approximates
+ * running them on virtual threads.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=RefreshBenchmark --rerun
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RefreshBenchmark {
+  static final int SIZE = (2 << 14);
+  static final int MASK = SIZE - 1;
+
+  @Param({"0", "8", "64"})
+  int maxInFlight;
+
+  @Param({"1", "64"})
+  int maxBatchSize;
+
+  @Param({"1000"})
+  int callLatencyMicros;
+
+  @Param({"10"})
+  int keyLatencyMicros;
+
+  LoadingCache<Integer, Boolean> cache;
+  ExecutorService refreshExecutor;
+  AtomicInteger concurrentCalls;
+  AtomicInteger peakCalls;
+  LongAdder backendCalls;
+  LongAdder backendKeys;
+  long iterationStart;
+  AtomicLong ticker;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    static final Random random = new Random();
+    int index = random.nextInt();
+  }
+
+  @Setup
+  public void setup() {
+    ticker = new AtomicLong();
+    peakCalls = new AtomicInteger();
+    backendKeys = new LongAdder();
+    backendCalls = new LongAdder();
+    concurrentCalls = new AtomicInteger();
+    refreshExecutor = Executors.newCachedThreadPool();
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .refreshAfterWrite(Duration.ofMinutes(1))
+        .refreshExecutor(refreshExecutor)
+        .ticker(ticker::get)
+        .maximumSize(SIZE);
+    if (maxInFlight > 0) {
+      builder.refreshConcurrency(maxInFlight, maxBatchSize);
+    }
+    cache = builder.build(new Backend());
+    for (int i = 0; i < SIZE; i++) {
+      cache.put(i, Boolean.TRUE);
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void startIteration() {
+    peakCalls.set(0);
+    backendKeys.reset();
+    backendCalls.reset();
+    ticker.addAndGet(TimeUnit.MINUTES.toNanos(2));
+    iterationStart = System.nanoTime();
+  }
+
+  @TearDown(Level.Iteration)
+  public void endIteration() {
+    double seconds = (System.nanoTime() - iterationStart) / (double) TimeUnit.SECONDS.toNanos(1);
+    System.out.printf("%nbackend calls/s=%,.0f, keys per call=%.1f, peak concurrent calls=%,d%n",
+        backendCalls.sum() / seconds, backendKeys.sum() / (double) backendCalls.sum(),
+        peakCalls.get());
+  }
+
+  @TearDown
+  public void tearDown() {
+    refreshExecutor.shutdownNow();
+  }
+
+  @Benchmark @Threads(16)
+  public Boolean get(ThreadState threadState) {
+    return cache.get(threadState.index++ & MASK);
+  }
+
+  final class Backend implements CacheLoader<Integer, Boolean> {
+    @Override public Boolean load(Integer key) {
+      call(1);
+      return Boolean.TRUE;
+    }
+    @Override public Map<Integer, Boolean> reloadAll(
+        Map<? extends Integer, ? extends Boolean> oldValues) {
+      call(oldValues.size());
+      var result = new HashMap<Integer, Boolean>(oldValues.size());
+      for (Integer key : oldValues.keySet()) {
+        result.put(key, Boolean.TRUE);
+      }
+      return result;
+    }
+
+    /** Simulates a blocking call to a remote resource for the given number of keys. */
+    void call(int keys) {
+      int calls = concurrentCalls.incrementAndGet();
+      peakCalls.accumulateAndGet(calls, Math::max);
+      backendCalls.increment();
+      backendKeys.add(keys);
+      try {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(
+            callLatencyMicros + ((long) keyLatencyMicros * keys)));
+      } finally {
+        concurrentCalls.decrementAndGet();
+      }
+    }
+  }
+}
@@ -16,16 +16,28 @@
 package com.github.benmanes.caffeine.cache;
 
 import java.lang.ref.ReferenceQueue;
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 
 /**
+ * A benchmark of the timer wheel's operations. The {@code advance} scenario schedules a large
+ * population of timers and then jumps the clock forward by an hour per invocation, where each
+ * expired timer is rescheduled so that the population remains constant. The deadlines are either
+ * uniformly distributed or skewed towards the near future, and the wheel either cascades eagerly
+ * ({@code batchSize=0}) or lazily with a bounded amount of work per advance. The sampled latencies
+ * report the stall that a single maintenance cycle would observe.
+ * <p>
  * <pre>{@code
  *   ./gradlew jmh -PincludePattern=TimerWheelBenchmark
  * }</pre>
@@ -86,6 +98,49 @@ public class TimerWheelBenchmark {
     return timerWheel.getExpirationDelay();
   }
 
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public long advance(AdvanceState state) {
+    state.timerWheel.advance(state.timerWheel.nanos + AdvanceState.JUMP);
+    return state.timerWheel.nanos;
+  }
+
+  @State(Scope.Benchmark)
+  public static class AdvanceState {
+    static final long JUMP = TimeUnit.HOURS.toNanos(1);
+    static final long SKEWED_MEAN = TimeUnit.MINUTES.toNanos(30);
+
+    @Param({"1000000"})
+    int population;
+
+    @Param({"uniform", "skewed"})
+    String distribution;
+
+    @Param({"0", "1000"})
+    int batchSize;
+
+    TimerWheel<Integer, Integer> timerWheel;
+    Random random;
+
+    @Setup
+    public void setup() {
+      random = new Random(1_000);
+      timerWheel = new TimerWheel<>(new ReschedulingCache(this), batchSize);
+      for (int i = 0; i < population; i++) {
+        timerWheel.schedule(new Timer(nextDeadline()));
+      }
+    }
+
+    /** Returns the time when a timer expires, relative to the wheel's current time. */
+    long nextDeadline() {
+      long duration = distribution.equals("skewed")
+          ? Math.min((long) (-SKEWED_MEAN * Math.log(1 - random.nextDouble())), UPPERBOUND)
+          : (long) (random.nextDouble() * UPPERBOUND);
+      return timerWheel.nanos + 1 + duration;
+    }
+  }
+
   static final class Timer extends Node<Integer, Integer> {
     Node<Integer, Integer> prev;
     Node<Integer, Integer> next;
@@ -139,4 +194,21 @@ public class TimerWheelBenchmark {
       return true;
     }
   }
+
+  /** A cache that resurrects the expired entry with a new deadline, as if it was read. */
+  static final class ReschedulingCache extends BoundedLocalCache<Integer, Integer> {
+    final AdvanceState state;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ReschedulingCache(AdvanceState state) {
+      super((Caffeine) Caffeine.newBuilder(), /* cacheLoader */ null, /* isAsync */ false);
+      this.state = state;
+    }
+
+    @Override
+    boolean evictEntry(Node<Integer, Integer> node, RemovalCause cause, long now) {
+      node.setVariableTime(state.nextDeadline());
+      return false;
+    }
+  }
 }
@@ -29,9 +29,14 @@ public final class CaffeineCache<K, V> implements BasicCache<K, V> {
   private final Map<K, V> map;
 
   public CaffeineCache(int maximumSize) {
+    this(maximumSize, /* shards */ 1);
+  }
+
+  public CaffeineCache(int maximumSize, int shards) {
     cache = Caffeine.newBuilder()
         .initialCapacity(maximumSize)
         .maximumSize(maximumSize)
+        .shards(shards)
         .build();
     map = cache.asMap();
   }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.stats;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * A benchmark of the overhead of recording the statistics, which compares the totals of the
+ * {@link ConcurrentStatsCounter} to the latency histograms of the {@link HistogramStatsCounter}.
+ * The histograms should not allocate when recording, which may be verified by the gc profiler.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=StatsCounterBenchmark -Pprofilers=gc
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+public class StatsCounterBenchmark {
+  private static final int SIZE = (2 << 14);
+  private static final int MASK = SIZE - 1;
+
+  @Param({"concurrent", "histogram"})
+  String counterType;
+
+  StatsCounter counter;
+  long[] latencies;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    int index = ThreadLocalRandom.current().nextInt();
+  }
+
+  @Setup
+  public void setup() {
+    if (counterType.equals("concurrent")) {
+      counter = new ConcurrentStatsCounter();
+    } else if (counterType.equals("histogram")) {
+      counter = new HistogramStatsCounter();
+    } else {
+      throw new IllegalArgumentException("Unknown counter type: " + counterType);
+    }
+
+    // A log-normal-like spread of latencies from hundreds of nanoseconds to tens of milliseconds
+    latencies = new long[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      latencies[i] = (long) Math.exp(5 + (12 * ThreadLocalRandom.current().nextDouble()));
+    }
+  }
+
+  @Benchmark @Threads(1)
+  public void recordLoad_singleThreaded(ThreadState threadState) {
+    counter.recordLoadSuccess(latencies[threadState.index++ & MASK]);
+  }
+
+  @Benchmark @Threads(8)
+  public void recordLoad_multiThreaded(ThreadState threadState) {
+    counter.recordLoadSuccess(latencies[threadState.index++ & MASK]);
+  }
+
+  @Benchmark @Threads(8)
+  public void recordComputeWait_multiThreaded(ThreadState threadState) {
+    counter.recordComputeWait(latencies[threadState.index++ & MASK]);
+  }
+
+  @Benchmark @Threads(8)
+  public void recordHits_multiThreaded() {
+    counter.recordHits(1);
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+
+/**
+ * A {@link FrequencySketch} that confines all of an element's counters to a single 64-byte block,
+ * so that estimating or incrementing its popularity touches one cache line instead of four.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class BlockedFrequencySketch<E> extends FrequencySketch<E> {
+
+  /*
+   * The table is divided into blocks of eight longs (64 bytes) that each hold 128 counters. An
+   * element's hash selects the block and a rehash of it selects one counter in each of the four
+   * pairs of longs within the block [1], so that the four counters are independent of each other
+   * while residing in the same cache line. This trades a slight loss of accuracy, as elements that
+   * share a block are more likely to collide, for avoiding up to three cache misses per operation
+   * once the table no longer fits in the CPU's caches.
+   *
+   * Because the elements that share a block collide more often, the table is sized for at least a
+   * quarter more counters than the non-blocked sketch, and is at least one block. Without this
+   * headroom a loop-like workload whose cache size is just below the table's power-of-two length
+   * lost up to two points of hit rate in the simulator's comparison of the layouts (see its
+   * sweep/blocked-frequency-sketch.conf), whereas with it the largest loss observed was about half
+   * a point. The aging process is unchanged as it operates on the table as a whole and its sample
+   * size is derived from the cache's maximum size.
+   *
+   * [1] Cache-, Hash- and Space-Efficient Bloom Filters (Putze, Sanders, and Singler)
+   */
+
+  static final int BLOCK_LENGTH = 8;
+
+  int blockMask;
+
+  @Override
+  public void ensureCapacity(@NonNegative long maximumSize) {
+    super.ensureCapacity(maximumSize);
+    blockMask = (table.length >>> 3) - 1;
+  }
+
+  @Override
+  int tableLength(int maximum) {
+    int counters = Math.min(maximum + (maximum >>> 2), Integer.MAX_VALUE >>> 1);
+    return Math.max(BLOCK_LENGTH, super.tableLength(counters));
+  }
+
+  @Override
+  @NonNegative
+  int frequencyOfHash(int hashCode) {
+    if (isNotInitialized()) {
+      return 0;
+    }
+
+    int blockHash = spread(hashCode);
+    int counterHash = rehash(blockHash);
+    int block = (blockHash & blockMask) << 3;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int h = counterHash >>> (i << 3);
+      int index = (h >>> 1) & 15;
+      int offset = h & 1;
+      int count = (int) ((table[block + offset + (i << 1)] >>> (index << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  @Override
+  void incrementHash(int hashCode) {
+    if (isNotInitialized()) {
+      return;
+    }
+
+    int blockHash = spread(hashCode);
+    int counterHash = rehash(blockHash);
+    int block = (blockHash & blockMask) << 3;
+
+    // Loop unrolling improves throughput
+    int h0 = counterHash;
+    int h1 = counterHash >>> 8;
+    int h2 = counterHash >>> 16;
+    int h3 = counterHash >>> 24;
+
+    boolean added = incrementAt(block + (h0 & 1), (h0 >>> 1) & 15);
+    added |= incrementAt(block + 2 + (h1 & 1), (h1 >>> 1) & 15);
+    added |= incrementAt(block + 4 + (h2 & 1), (h2 >>> 1) & 15);
+    added |= incrementAt(block + 6 + (h3 & 1), (h3 >>> 1) & 15);
+
+    if (added && (++size == sampleSize)) {
+      reset();
+    }
+  }
+
+  /**
+   * Applies another round of hashing to derive the counter selections within the block. This uses
+   * Murmur3's finalizer so that the counter selections are not correlated with the bits that
+   * selected the block, as otherwise the elements that share a block would tend to share counters.
+   */
+  static int rehash(int x) {
+    x ^= (x >>> 16);
+    x *= 0x85ebca6b;
+    x ^= (x >>> 13);
+    x *= 0xc2b2ae35;
+    x ^= (x >>> 16);
+    return x;
+  }
+}
@@ -45,6 +45,7 @@ import java.lang.ref.WeakReference;
 import java.time.Duration;
 import java.util.AbstractCollection;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -85,6 +86,7 @@ import com.github.benmanes.caffeine.cache.LinkedDeque.PeekingIterator;
 import com.github.benmanes.caffeine.cache.Policy.CacheEntry;
 import com.github.benmanes.caffeine.cache.References.InternalReference;
 import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import com.github.benmanes.caffeine.cache.tracing.AccessTracer;
 import com.google.errorprone.annotations.concurrent.GuardedBy;
 
 /**
@@ -225,20 +227,26 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
 
   final @Nullable RemovalListener<K, V> evictionListener;
   final @Nullable AsyncCacheLoader<K, V> cacheLoader;
+  final @Nullable OffHeapTier<K, V> offHeapTier;
+  final @Nullable RefreshLimiter refreshLimiter;
 
   final MpscGrowableArrayQueue<Runnable> writeBuffer;
   final ConcurrentHashMap<Object, Node<K, V>> data;
   final PerformCleanupTask drainBuffersTask;
   final Consumer<Node<K, V>> accessPolicy;
   final Buffer<Node<K, V>> readBuffer;
+  final AccessTracer accessTracer;
   final NodeFactory<K, V> nodeFactory;
   final ReentrantLock evictionLock;
   final Weigher<K, V> weigher;
   final Executor executor;
 
+  final int expirationBatchSize;
   final boolean isWeighted;
   final boolean isAsync;
 
+  @GuardedBy("evictionLock")
+  @Nullable ArrayList<Object> removalBatch;
   @Nullable Set<K> keySet;
   @Nullable Collection<V> values;
   @Nullable Set<Entry<K, V>> entrySet;
@@ -251,11 +259,15 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     this.cacheLoader = cacheLoader;
     executor = builder.getExecutor();
     isWeighted = builder.isWeighted();
+    accessTracer = builder.getAccessTracer();
+    expirationBatchSize = builder.getExpirationBatchSize();
     evictionLock = new ReentrantLock();
     weigher = builder.getWeigher(isAsync);
     drainBuffersTask = new PerformCleanupTask(this);
     nodeFactory = NodeFactory.newFactory(builder, isAsync);
     evictionListener = builder.getEvictionListener(isAsync);
+    offHeapTier = isAsync ? null : builder.newOffHeapTier();
+    refreshLimiter = (cacheLoader == null) ? null : builder.newRefreshLimiter(cacheLoader);
     data = new ConcurrentHashMap<>(builder.getInitialCapacity());
     readBuffer = evicts() || collectKeys() || collectValues() || expiresAfterAccess()
         ? new BoundedBuffer<>()
@@ -352,6 +364,20 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     return StatsCounter.disabledStatsCounter();
   }
 
+  @Override
+  public AccessTracer accessTracer() {
+    return accessTracer;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int traceWeight(Object key, @Nullable Object value) {
+    if (value == null) {
+      return 0;
+    }
+    return isWeighted ? weigher.weigh((K) key, (V) value) : 1;
+  }
+
   @Override
   public Ticker statsTicker() {
     return Ticker.disabledTicker();
@@ -369,9 +395,15 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
   }
 
   @Override
+  @SuppressWarnings("GuardedByChecker")
   public void notifyRemoval(@Nullable K key, @Nullable V value, RemovalCause cause) {
     if (!hasRemovalListener()) {
       return;
+    } else if (evictionLock.isHeldByCurrentThread() && (removalBatch != null)) {
+      removalBatch.add(key);
+      removalBatch.add(value);
+      removalBatch.add(cause);
+      return;
     }
     Runnable task = () -> {
       try {
@@ -388,17 +420,59 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     }
   }
 
+  /**
+   * Defers the removal notifications that are published while holding the eviction lock until the
+   * batch is flushed, so that they are delivered to the listener by a single task.
+   */
+  @GuardedBy("evictionLock")
+  void startRemovalBatch() {
+    if (hasRemovalListener()) {
+      removalBatch = new ArrayList<>();
+    }
+  }
+
+  /** Notifies the removal listener of the batched removals. */
+  @GuardedBy("evictionLock")
+  @SuppressWarnings("unchecked")
+  void flushRemovalBatch() {
+    var batch = removalBatch;
+    removalBatch = null;
+    if ((batch == null) || batch.isEmpty()) {
+      return;
+    }
+    Runnable task = () -> {
+      for (int i = 0; i < batch.size(); i += 3) {
+        try {
+          removalListener().onRemoval((K) batch.get(i),
+              (V) batch.get(i + 1), (RemovalCause) batch.get(i + 2));
+        } catch (Throwable t) {
+          logger.log(Level.WARNING, "Exception thrown by removal listener", t);
+        }
+      }
+    };
+    try {
+      executor.execute(task);
+    } catch (Throwable t) {
+      logger.log(Level.ERROR, "Exception thrown when submitting removal listener", t);
+      task.run();
+    }
+  }
+
   /* --------------- Eviction Listener Support --------------- */
 
   void notifyEviction(@Nullable K key, @Nullable V value, RemovalCause cause) {
     if (evictionListener == null) {
       return;
     }
+    long startTime = statsTicker().read();
     try {
       evictionListener.onRemoval(key, value, cause);
     } catch (Throwable t) {
       logger.log(Level.WARNING, "Exception thrown by eviction listener", t);
     }
+    if (isRecordingStats()) {
+      statsCounter().recordEvictionCallback(statsTicker().read() - startTime);
+    }
   }
 
   /* --------------- Reference Support --------------- */
@@ -909,6 +983,10 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
   void expireVariableEntries(long now) {
     if (expiresVariable()) {
       timerWheel().advance(now);
+      if (timerWheel().hasPending()) {
+        // Resume expiring the timers in a subsequent maintenance cycle
+        setDrainStatusOpaque(REQUIRED);
+      }
     }
   }
 
@@ -1015,6 +1093,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
         }
 
         notifyEviction(key, value[0], actualCause[0]);
+        if (actualCause[0] == RemovalCause.SIZE) {
+          demoteToTier(key, value[0]);
+        }
         makeDead(n);
       }
       discardRefresh(keyReference);
@@ -1060,6 +1141,79 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     return true;
   }
 
+  /**
+   * Retains the evicted entry's value in the off-heap tier, if enabled. This is performed while
+   * the mapping's hash bin is locked so that it is atomic with respect to other writes of the key.
+   *
+   * @param key the key of the evicted entry
+   * @param value the value of the evicted entry
+   */
+  void demoteToTier(K key, V value) {
+    if (offHeapTier == null) {
+      return;
+    }
+    try {
+      offHeapTier.put(key, value);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown when demoting to the off-heap tier", t);
+    }
+  }
+
+  /**
+   * Returns and removes the value from the off-heap tier, if enabled and present. The caller is
+   * expected to insert the value into the cache while the mapping's hash bin is locked.
+   *
+   * @param key the key of the entry to restore
+   * @param recordStats if the hit should be recorded
+   * @return the restored value or null if not present
+   */
+  @Nullable V removeFromTier(K key, boolean recordStats) {
+    if (offHeapTier == null) {
+      return null;
+    }
+    V value;
+    try {
+      value = offHeapTier.remove(key);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown when restoring from the off-heap tier", t);
+      return null;
+    }
+    if ((value != null) && recordStats) {
+      statsCounter().recordHits(1);
+      statsCounter().recordTierHits(1);
+      traceHit(key, traceWeight(key, value));
+    }
+    return value;
+  }
+
+  /** Discards the value from the off-heap tier, if enabled and present. */
+  void invalidateTier(Object key) {
+    if ((offHeapTier != null) && !offHeapTier.isEmpty()) {
+      offHeapTier.invalidate(key);
+    }
+  }
+
+  /**
+   * Returns the value after promoting it from the off-heap tier into the cache, or null if not
+   * present. An empty tier is skipped without locking the mapping's hash bin, as an eviction
+   * demotes the value before the removal of its entry becomes visible.
+   *
+   * @param key the key of the absent entry
+   * @param now the current time, in nanoseconds
+   * @param recordStats if the hit should be recorded
+   * @return the promoted value or null if not present
+   */
+  @Nullable V promoteFromTier(Object key, long now, boolean recordStats) {
+    if ((offHeapTier == null) || offHeapTier.isEmpty()) {
+      return null;
+    }
+    @SuppressWarnings("unchecked")
+    K castedKey = (K) key;
+    Object keyRef = nodeFactory.newReferenceKey(castedKey, keyReferenceQueue());
+    return doComputeIfAbsent(castedKey, keyRef, k -> null,
+        new long[] { now }, recordStats, /* recordWait */ false);
+  }
+
   /** Adapts the eviction policy to towards the optimal recency / frequency configuration. */
   @GuardedBy("evictionLock")
   void climb() {
@@ -1227,6 +1381,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
   void afterRead(Node<K, V> node, long now, boolean recordHit) {
     if (recordHit) {
       statsCounter().recordHits(1);
+      traceHit(node.getKey(), node.getWeight());
     }
 
     boolean delayable = skipReadBuffer() || (readBuffer.offer(node) != Buffer.FULL);
@@ -1275,7 +1430,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
               CompletableFuture<V> future = (CompletableFuture<V>) oldValue;
               if (Async.isReady(future)) {
                 @SuppressWarnings("NullAway")
-                var refresh = cacheLoader.asyncReload(key, future.join(), executor);
+                var refresh = (refreshLimiter == null)
+                    ? cacheLoader.asyncReload(key, future.join(), executor)
+                    : refreshLimiter.<V>enqueue(key, future.join());
                 refreshFuture[0] = refresh;
               } else {
                 // no-op if load is pending
@@ -1283,7 +1440,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
               }
             } else {
               @SuppressWarnings("NullAway")
-              var refresh = cacheLoader.asyncReload(key, oldValue, executor);
+              var refresh = (refreshLimiter == null)
+                  ? cacheLoader.asyncReload(key, oldValue, executor)
+                  : refreshLimiter.<V>enqueue(key, oldValue);
               refreshFuture[0] = refresh;
             }
             return refreshFuture[0];
@@ -1350,6 +1509,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
           refreshes.remove(keyReference, refreshFuture[0]);
         });
       }
+      if (refreshLimiter != null) {
+        refreshLimiter.drain();
+      }
     }
   }
 
@@ -1954,6 +2116,11 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
 
       // Discard all pending reads
       readBuffer.drainTo(e -> {});
+
+      // Discard all demoted entries
+      if (offHeapTier != null) {
+        offHeapTier.clear();
+      }
     } finally {
       evictionLock.unlock();
     }
@@ -2041,8 +2208,15 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
   public @Nullable V getIfPresent(Object key, boolean recordStats) {
     Node<K, V> node = data.get(nodeFactory.newLookupKey(key));
     if (node == null) {
+      if (offHeapTier != null) {
+        V value = promoteFromTier(key, expirationTicker().read(), recordStats);
+        if (value != null) {
+          return value;
+        }
+      }
       if (recordStats) {
         statsCounter().recordMisses(1);
+        traceMiss(key, /* value */ null, /* loadPenalty */ 0L);
       }
       if (drainStatus() == REQUIRED) {
         scheduleDrainBuffers();
@@ -2055,6 +2229,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     if (hasExpired(node, now) || (collectValues() && (value == null))) {
       if (recordStats) {
         statsCounter().recordMisses(1);
+        traceMiss(key, /* value */ null, /* loadPenalty */ 0L);
       }
       scheduleDrainBuffers();
       return null;
@@ -2106,10 +2281,17 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       V value;
       var entry = iter.next();
       Node<K, V> node = data.get(nodeFactory.newLookupKey(entry.getKey()));
-      if ((node == null) || ((value = node.getValue()) == null) || hasExpired(node, now)) {
+      if ((node == null) && (offHeapTier != null)
+          && ((value = promoteFromTier(entry.getKey(), now, /* recordStats */ false)) != null)) {
+        entry.setValue(value);
+        statsCounter().recordTierHits(1);
+        traceHit(entry.getKey(), traceWeight(entry.getKey(), value));
+      } else if ((node == null) || ((value = node.getValue()) == null) || hasExpired(node, now)) {
         iter.remove();
+        traceMiss(entry.getKey(), /* value */ null, /* loadPenalty */ 0L);
       } else {
         entry.setValue(value);
+        traceHit(entry.getKey(), node.getWeight());
 
         if (!isComputingAsync(node)) {
           @SuppressWarnings("unchecked")
@@ -2170,6 +2352,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
         }
         prior = data.putIfAbsent(node.getKeyReference(), node);
         if (prior == null) {
+          invalidateTier(key);
           afterWrite(new AddTask(node, newWeight));
           return null;
         } else if (onlyIfAbsent) {
@@ -2275,7 +2458,14 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     RemovalCause[] cause = new RemovalCause[1];
     Object lookupKey = nodeFactory.newLookupKey(key);
 
-    data.computeIfPresent(lookupKey, (k, n) -> {
+    data.compute(lookupKey, (k, n) -> {
+      // Discard a demoted entry while the bin is locked so that the eviction or promotion of the
+      // key is serialized with the removal and cannot resurrect it
+      invalidateTier(key);
+      if (n == null) {
+        return null;
+      }
+
       synchronized (n) {
         oldValue[0] = n.getValue();
         if (oldValue[0] == null) {
@@ -2490,12 +2680,15 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       mappingFunction = statsAware(mappingFunction, recordLoad);
     }
     Object keyRef = nodeFactory.newReferenceKey(key, keyReferenceQueue());
-    return doComputeIfAbsent(key, keyRef, mappingFunction, new long[] { now }, recordStats);
+    return doComputeIfAbsent(key, keyRef, mappingFunction,
+        new long[] { now }, recordStats, /* recordWait */ recordStats);
   }
 
   /** Returns the current value from a computeIfAbsent invocation. */
   @Nullable V doComputeIfAbsent(K key, Object keyRef,
-      Function<? super K, ? extends V> mappingFunction, long[/* 1 */] now, boolean recordStats) {
+      Function<? super K, ? extends V> mappingFunction, long[/* 1 */] now,
+      boolean recordStats, boolean recordWait) {
+    long waitStartTime = recordWait ? statsTicker().read() : 0L;
     @SuppressWarnings("unchecked")
     V[] oldValue = (V[]) new Object[1];
     @SuppressWarnings("unchecked")
@@ -2509,9 +2702,12 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     RemovalCause[] cause = new RemovalCause[1];
     Node<K, V> node = data.compute(keyRef, (k, n) -> {
       if (n == null) {
-        newValue[0] = mappingFunction.apply(key);
+        newValue[0] = removeFromTier(key, recordStats);
         if (newValue[0] == null) {
-          return null;
+          newValue[0] = mappingFunction.apply(key);
+          if (newValue[0] == null) {
+            return null;
+          }
         }
         now[0] = expirationTicker().read();
         weight[1] = weigher.weigh(key, newValue[0]);
@@ -2576,6 +2772,10 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
         tryExpireAfterRead(node, key, oldValue[0], expiry(), now[0]);
         setAccessTime(node, now[0]);
       }
+      if (recordWait) {
+        // The entry was absent from the optimistic read and was computed by another thread
+        statsCounter().recordComputeWait(statsTicker().read() - waitStartTime);
+      }
 
       afterRead(node, now[0], /* recordHit */ recordStats);
       return oldValue[0];
@@ -2681,6 +2881,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
         if (!computeIfAbsent) {
           return null;
         }
+        invalidateTier(key);
         newValue[0] = remappingFunction.apply(key, null);
         if (newValue[0] == null) {
           return null;
@@ -2895,31 +3096,40 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
    * @param mappingFunction the mapping function to compute a value
    * @return the computed value
    */
-  @SuppressWarnings("GuardedByChecker")
   <T> T evictionOrder(boolean hottest, Function<V, V> transformer,
       Function<Stream<CacheEntry<K, V>>, T> mappingFunction) {
+    return snapshot(evictionOrder(hottest), transformer, mappingFunction);
+  }
+
+  /**
+   * Returns the entries in the coldest or hottest order, where the relative order of the entries
+   * within each region of the policy is preserved. The traversal must be performed while holding
+   * the eviction lock.
+   *
+   * @param hottest the coldest or hottest iteration order
+   * @return the nodes in the eviction order
+   */
+  @SuppressWarnings("GuardedByChecker")
+  Iterable<Node<K, V>> evictionOrder(boolean hottest) {
     Comparator<Node<K, V>> comparator = Comparator.comparingInt(node -> {
       K key = node.getKey();
       return (key == null) ? 0 : frequencySketch().frequency(key);
     });
-    Iterable<Node<K, V>> iterable;
     if (hottest) {
-      iterable = () -> {
+      return () -> {
         var secondary = PeekingIterator.comparing(
             accessOrderProbationDeque().descendingIterator(),
             accessOrderWindowDeque().descendingIterator(), comparator);
         return PeekingIterator.concat(
             accessOrderProtectedDeque().descendingIterator(), secondary);
       };
-    } else {
-      iterable = () -> {
-        var primary = PeekingIterator.comparing(
-            accessOrderWindowDeque().iterator(), accessOrderProbationDeque().iterator(),
-            comparator.reversed());
-        return PeekingIterator.concat(primary, accessOrderProtectedDeque().iterator());
-      };
     }
-    return snapshot(iterable, transformer, mappingFunction);
+    return () -> {
+      var primary = PeekingIterator.comparing(
+          accessOrderWindowDeque().iterator(), accessOrderProbationDeque().iterator(),
+          comparator.reversed());
+      return PeekingIterator.concat(primary, accessOrderProtectedDeque().iterator());
+    };
   }
 
   /**
@@ -3618,10 +3828,16 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     }
     if (cache.expiresVariable()) {
       proxy.expiry = cache.expiry();
+      proxy.expirationBatchSize = cache.expirationBatchSize;
     }
     if (cache.refreshAfterWrite()) {
       proxy.refreshAfterWriteNanos = cache.refreshAfterWriteNanos();
     }
+    if ((cache.refreshLimiter != null)
+        && (cache.refreshLimiter.maximumInFlight != Integer.MAX_VALUE)) {
+      proxy.refreshMaximumInFlight = cache.refreshLimiter.maximumInFlight;
+      proxy.refreshMaximumBatchSize = cache.refreshLimiter.maximumBatchSize;
+    }
     if (cache.evicts()) {
       if (cache.isWeighted) {
         proxy.weigher = cache.weigher;
@@ -3629,6 +3845,11 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       } else {
         proxy.maximumSize = cache.maximum();
       }
+      proxy.blockedFrequencySketch = (cache.frequencySketch() instanceof BlockedFrequencySketch<?>);
+    }
+    if (cache.offHeapTier != null) {
+      proxy.offHeapMaximumBytes = cache.offHeapTier.maximumBytes;
+      proxy.valueCodec = cache.offHeapTier.codec;
     }
     proxy.cacheLoader = cache.cacheLoader;
     proxy.async = cache.isAsync;
@@ -0,0 +1,547 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.ceilingPowerOfTwo;
+import static com.github.benmanes.caffeine.cache.Caffeine.requireArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * A {@link LongKeyCache} that stores its entries in primitive arrays and evicts using the Window
+ * TinyLfu policy.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <V> the type of mapped values
+ */
+final class BoundedLongKeyCache<V> implements LongKeyCache<V> {
+
+  /*
+   * The entries are stored in parallel arrays indexed by an entry slot, so that an entry does not
+   * require an object header, a boxed key, or a reference per link. The slots are preallocated for
+   * the maximum size, plus one to accept a new entry before evicting, and unused slots are chained
+   * into a free list. The three eviction queues (window, probation, and protected) are intrusive
+   * doubly-linked lists over the prev / next arrays with a sentinel slot per queue.
+   *
+   * The key index is an open-addressed hash table using linear probing that stores the entry slot
+   * plus one, where zero marks an empty bucket. The table is kept at most half full and a removal
+   * uses backward shift deletion so that tombstones do not degrade the probe lengths.
+   *
+   * The policy mirrors BoundedLocalCache with a fixed 1% window and a segmented LRU main space of
+   * which 80% is protected, and uses a FrequencySketch for the admission decision. The adaptive
+   * sizing of the window is not performed.
+   *
+   * The structures are guarded by a StampedLock. A read is performed optimistically by probing the
+   * table without acquiring the lock and validating the stamp afterwards, falling back to the read
+   * lock if a writer intervened. The read is recorded by appending the entry's slot into a lossy
+   * ring buffer that is drained by a writer, or by a reader once it exceeds a threshold, similar to
+   * the read buffer of BoundedLocalCache. If the slot was reused by the time the buffer is drained
+   * then the policy is updated for the replacement entry, which is a benign inaccuracy. A miss
+   * computes the value outside of the lock so that a slow load does not block other callers.
+   */
+
+  /** The maximum number of entries that the cache may hold. */
+  static final int MAXIMUM_CAPACITY = 1 << 29;
+  /** The percent of the maximum weighted capacity dedicated to the main space. */
+  static final double PERCENT_MAIN = 0.99d;
+  /** The percent of the maximum weighted capacity dedicated to the main's protected space. */
+  static final double PERCENT_MAIN_PROTECTED = 0.80d;
+  /** The number of reads that may be buffered before they are discarded. */
+  static final int READ_BUFFER_SIZE = 128;
+  /** Mask value for indexing into the read buffer. */
+  static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+  /** The number of buffered reads that triggers a drain by a reader. */
+  static final int READ_BUFFER_THRESHOLD = READ_BUFFER_SIZE / 4;
+  /** The slot value indicating that an entry was not found. */
+  static final int NONE = -1;
+
+  static final byte FREE = 0;
+  static final byte WINDOW = 1;
+  static final byte PROBATION = 2;
+  static final byte PROTECTED = 3;
+
+  final FrequencySketch<?> sketch;
+  final StatsCounter statsCounter;
+  final Ticker statsTicker;
+  final StampedLock lock;
+
+  final int maximum;
+  final int maxWindow;
+  final int maxProtected;
+  final int windowHead;
+  final int probationHead;
+  final int protectedHead;
+
+  final int tableMask;
+  @GuardedBy("lock")
+  final int[] table;
+
+  @GuardedBy("lock")
+  final long[] keys;
+  @GuardedBy("lock")
+  final Object[] values;
+  @GuardedBy("lock")
+  final byte[] queues;
+  @GuardedBy("lock")
+  final int[] prev;
+  @GuardedBy("lock")
+  final int[] next;
+
+  final AtomicIntegerArray readBuffer;
+  final AtomicLong readBufferWriteCount;
+  volatile long readBufferReadCount;
+
+  @GuardedBy("lock")
+  int freeHead;
+  @GuardedBy("lock")
+  int sizeWindow;
+  @GuardedBy("lock")
+  int sizeProtected;
+  int size;
+
+  BoundedLongKeyCache(Caffeine<?, ?> builder) {
+    long maximumSize = builder.getMaximum();
+    requireArgument(maximumSize <= MAXIMUM_CAPACITY,
+        "maximum size (%s) must not exceed %s", maximumSize, MAXIMUM_CAPACITY);
+    maximum = (int) maximumSize;
+    maxWindow = maximum - (int) (PERCENT_MAIN * maximum);
+    maxProtected = (int) (PERCENT_MAIN_PROTECTED * (maximum - maxWindow));
+
+    int capacity = maximum + 1;
+    windowHead = capacity;
+    probationHead = capacity + 1;
+    protectedHead = capacity + 2;
+    keys = new long[capacity];
+    values = new Object[capacity];
+    queues = new byte[capacity];
+    prev = new int[capacity + 3];
+    next = new int[capacity + 3];
+    table = new int[ceilingPowerOfTwo(2 * capacity)];
+    tableMask = table.length - 1;
+    resetEntries();
+
+    sketch = builder.newFrequencySketch();
+    sketch.ensureCapacity(maximum);
+    readBuffer = new AtomicIntegerArray(READ_BUFFER_SIZE);
+    readBufferWriteCount = new AtomicLong();
+    statsCounter = builder.getStatsCounterSupplier().get();
+    statsTicker = builder.getTicker();
+    lock = new StampedLock();
+  }
+
+  /* --------------- Cache --------------- */
+
+  @Override
+  public @Nullable V getIfPresent(long key) {
+    V value = getIfPresentQuietly(key);
+    if (value == null) {
+      statsCounter.recordMisses(1);
+    } else {
+      statsCounter.recordHits(1);
+    }
+    return value;
+  }
+
+  @Override
+  public @Nullable V get(long key, LongFunction<? extends V> mappingFunction) {
+    requireNonNull(mappingFunction);
+    V value = getIfPresentQuietly(key);
+    if (value != null) {
+      statsCounter.recordHits(1);
+      return value;
+    }
+
+    statsCounter.recordMisses(1);
+    long startTime = statsTicker.read();
+    try {
+      value = mappingFunction.apply(key);
+    } catch (RuntimeException | Error e) {
+      statsCounter.recordLoadFailure(statsTicker.read() - startTime);
+      throw e;
+    }
+    long loadTime = statsTicker.read() - startTime;
+    if (value == null) {
+      statsCounter.recordLoadFailure(loadTime);
+      return null;
+    }
+    statsCounter.recordLoadSuccess(loadTime);
+    return put(key, value, /* onlyIfAbsent */ true);
+  }
+
+  @Override
+  public void put(long key, V value) {
+    put(key, requireNonNull(value), /* onlyIfAbsent */ false);
+  }
+
+  @Override
+  public void invalidate(long key) {
+    long stamp = lock.writeLock();
+    try {
+      int slot = slotOf(key);
+      if (slot != NONE) {
+        removeEntry(slot);
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void invalidateAll() {
+    long stamp = lock.writeLock();
+    try {
+      drainReadBuffer();
+      resetEntries();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public @NonNegative long estimatedSize() {
+    return size;
+  }
+
+  @Override
+  public CacheStats stats() {
+    return statsCounter.snapshot();
+  }
+
+  @Override
+  public void cleanUp() {
+    long stamp = lock.writeLock();
+    try {
+      drainReadBuffer();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Returns the value for the key, if present, and records the access with the policy. This method
+   * does not allocate or block unless it races with a writer.
+   */
+  @SuppressWarnings({"GuardedBy", "unchecked"})
+  @Nullable V getIfPresentQuietly(long key) {
+    long stamp = lock.tryOptimisticRead();
+    int slot = (stamp == 0L) ? NONE : slotOf(key);
+    Object value = (slot == NONE) ? null : values[slot];
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        slot = slotOf(key);
+        value = (slot == NONE) ? null : values[slot];
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    if (value != null) {
+      afterRead(slot);
+    }
+    return (V) value;
+  }
+
+  /**
+   * Adds or replaces the mapping and evicts if the cache exceeds its maximum size.
+   *
+   * @param key the key with which the specified value is to be associated
+   * @param value value to be associated with the specified key
+   * @param onlyIfAbsent a write is performed only if the key is not already associated with a value
+   * @return the value now associated with the key
+   */
+  @SuppressWarnings("unchecked")
+  V put(long key, V value, boolean onlyIfAbsent) {
+    long stamp = lock.writeLock();
+    try {
+      drainReadBuffer();
+
+      int slot = slotOf(key);
+      if (slot != NONE) {
+        onAccess(slot);
+        if (onlyIfAbsent) {
+          return (V) values[slot];
+        }
+        values[slot] = value;
+        return value;
+      }
+
+      slot = freeHead;
+      freeHead = next[slot];
+      keys[slot] = key;
+      values[slot] = value;
+      queues[slot] = WINDOW;
+      linkLast(windowHead, slot);
+      insertIntoTable(key, slot);
+      sketch.incrementHash(Long.hashCode(key));
+      sizeWindow++;
+      size++;
+
+      evict();
+      return value;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /* --------------- Eviction Policy --------------- */
+
+  /**
+   * Evicts from the admission window into the probation space. If the size exceeds the maximum,
+   * then the admission candidate and probation's victim are evaluated and one is evicted.
+   */
+  @GuardedBy("lock")
+  void evict() {
+    while (sizeWindow > maxWindow) {
+      int candidate = next[windowHead];
+      unlink(candidate);
+      queues[candidate] = PROBATION;
+      linkLast(probationHead, candidate);
+      sizeWindow--;
+
+      if (size > maximum) {
+        int victim = next[probationHead];
+        boolean admit = (victim != candidate) && admit(keys[candidate], keys[victim]);
+        evictEntry(admit ? victim : candidate);
+      }
+    }
+    while (size > maximum) {
+      int victim = (next[probationHead] != probationHead) ? next[probationHead]
+          : (next[protectedHead] != protectedHead) ? next[protectedHead] : next[windowHead];
+      evictEntry(victim);
+    }
+  }
+
+  /**
+   * Determines if the candidate should be accepted into the main space, as determined by its
+   * frequency relative to the victim. A small amount of randomness is used to protect against hash
+   * collision attacks, as described in {@link BoundedLocalCache#admit}.
+   */
+  @GuardedBy("lock")
+  boolean admit(long candidateKey, long victimKey) {
+    int victimFreq = sketch.frequencyOfHash(Long.hashCode(victimKey));
+    int candidateFreq = sketch.frequencyOfHash(Long.hashCode(candidateKey));
+    if (candidateFreq > victimFreq) {
+      return true;
+    } else if (candidateFreq <= 5) {
+      return false;
+    }
+    int random = ThreadLocalRandom.current().nextInt();
+    return ((random & 127) == 0);
+  }
+
+  /** Updates the entry's position in the policy and its popularity. */
+  @GuardedBy("lock")
+  void onAccess(int slot) {
+    byte queue = queues[slot];
+    if (queue == FREE) {
+      return;
+    }
+
+    sketch.incrementHash(Long.hashCode(keys[slot]));
+    if (queue == WINDOW) {
+      unlink(slot);
+      linkLast(windowHead, slot);
+    } else if (queue == PROBATION) {
+      unlink(slot);
+      queues[slot] = PROTECTED;
+      linkLast(protectedHead, slot);
+      sizeProtected++;
+
+      if (sizeProtected > maxProtected) {
+        int demote = next[protectedHead];
+        unlink(demote);
+        queues[demote] = PROBATION;
+        linkLast(probationHead, demote);
+        sizeProtected--;
+      }
+    } else {
+      unlink(slot);
+      linkLast(protectedHead, slot);
+    }
+  }
+
+  /** Evicts the entry due to the size constraint. */
+  @GuardedBy("lock")
+  void evictEntry(int slot) {
+    removeEntry(slot);
+    statsCounter.recordEviction(1, RemovalCause.SIZE);
+  }
+
+  /** Removes the entry from the table and the policy, and returns its slot to the free list. */
+  @GuardedBy("lock")
+  void removeEntry(int slot) {
+    if (queues[slot] == WINDOW) {
+      sizeWindow--;
+    } else if (queues[slot] == PROTECTED) {
+      sizeProtected--;
+    }
+    removeFromTable(keys[slot]);
+    unlink(slot);
+
+    queues[slot] = FREE;
+    values[slot] = null;
+    next[slot] = freeHead;
+    freeHead = slot;
+    size--;
+  }
+
+  /** Discards all of the entries and rebuilds the free list. */
+  @GuardedBy("lock")
+  void resetEntries() {
+    Arrays.fill(table, 0);
+    Arrays.fill(values, null);
+    Arrays.fill(queues, FREE);
+    for (int slot = 0; slot < keys.length; slot++) {
+      next[slot] = slot + 1;
+    }
+    next[keys.length - 1] = NONE;
+    freeHead = 0;
+
+    for (int head : new int[] { windowHead, probationHead, protectedHead }) {
+      prev[head] = head;
+      next[head] = head;
+    }
+    sizeWindow = 0;
+    sizeProtected = 0;
+    size = 0;
+  }
+
+  /** Appends the slot to the tail of the queue. */
+  @GuardedBy("lock")
+  void linkLast(int head, int slot) {
+    int tail = prev[head];
+    prev[head] = slot;
+    next[tail] = slot;
+    next[slot] = head;
+    prev[slot] = tail;
+  }
+
+  /** Removes the slot from its queue. */
+  @GuardedBy("lock")
+  void unlink(int slot) {
+    next[prev[slot]] = next[slot];
+    prev[next[slot]] = prev[slot];
+  }
+
+  /* --------------- Read Buffer --------------- */
+
+  /** Records the read and drains the buffer if the threshold has been exceeded. */
+  void afterRead(int slot) {
+    long tail = readBufferWriteCount.get();
+    long pending = tail - readBufferReadCount;
+    if ((pending < READ_BUFFER_SIZE) && readBufferWriteCount.compareAndSet(tail, tail + 1)) {
+      readBuffer.lazySet((int) tail & READ_BUFFER_MASK, slot + 1);
+      pending++;
+    }
+    if (pending >= READ_BUFFER_THRESHOLD) {
+      long stamp = lock.tryWriteLock();
+      if (stamp != 0L) {
+        try {
+          drainReadBuffer();
+        } finally {
+          lock.unlockWrite(stamp);
+        }
+      }
+    }
+  }
+
+  /** Replays the buffered reads against the policy. */
+  @GuardedBy("lock")
+  void drainReadBuffer() {
+    long head = readBufferReadCount;
+    long tail = readBufferWriteCount.get();
+    for (; head != tail; head++) {
+      int index = (int) head & READ_BUFFER_MASK;
+      int slot = readBuffer.get(index);
+      if (slot == 0) {
+        // not yet published by the producer
+        break;
+      }
+      readBuffer.lazySet(index, 0);
+      onAccess(slot - 1);
+    }
+    readBufferReadCount = head;
+  }
+
+  /* --------------- Hash Table --------------- */
+
+  /** Returns the entry's slot or {@link #NONE} if absent. */
+  @GuardedBy("lock")
+  int slotOf(long key) {
+    int index = spread(key) & tableMask;
+    for (int probes = 0; probes <= tableMask; probes++) {
+      int slot = table[index];
+      if (slot == 0) {
+        return NONE;
+      } else if (keys[slot - 1] == key) {
+        return slot - 1;
+      }
+      index = (index + 1) & tableMask;
+    }
+    return NONE;
+  }
+
+  /** Adds the key's slot into the first empty bucket of its probe sequence. */
+  @GuardedBy("lock")
+  void insertIntoTable(long key, int slot) {
+    int index = spread(key) & tableMask;
+    while (table[index] != 0) {
+      index = (index + 1) & tableMask;
+    }
+    table[index] = slot + 1;
+  }
+
+  /** Removes the key from the table, shifting back the entries that follow it in the cluster. */
+  @GuardedBy("lock")
+  void removeFromTable(long key) {
+    int hole = spread(key) & tableMask;
+    while (keys[table[hole] - 1] != key) {
+      hole = (hole + 1) & tableMask;
+    }
+    for (int index = (hole + 1) & tableMask; table[index] != 0; index = (index + 1) & tableMask) {
+      int home = spread(keys[table[index] - 1]) & tableMask;
+      if (((index - home) & tableMask) >= ((index - hole) & tableMask)) {
+        table[hole] = table[index];
+        hole = index;
+      }
+    }
+    table[hole] = 0;
+  }
+
+  /** Applies a supplemental hash function to the key, which defends against sequential keys. */
+  static int spread(long key) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[estimatedSize=" + size + ", maximum=" + maximum + "]";
+  }
+}
@@ -204,6 +204,68 @@ public interface CacheLoader<K extends Object, V extends Object> extends AsyncCa
     }, executor);
   }
 
+  /**
+   * Computes or retrieves the replacement values corresponding to already-cached {@code keys}. This
+   * method is called when the automatic refreshes of stale entries are batched by
+   * {@link Caffeine#refreshConcurrency}, and is otherwise unused.
+   * <p>
+   * A key that is absent from the returned map, or is associated with a {@code null} value, is
+   * treated as if its individual reload returned {@code null}, so that its mapping is removed. If
+   * the returned map contains extra keys not present in {@code oldValues} then they are ignored.
+   * <p>
+   * This method should be overridden when bulk retrieval is significantly more efficient than many
+   * individual lookups. Note that the cache will defer to individual calls to {@link #reload} if
+   * this method is not overridden.
+   * <p>
+   * <b>Warning:</b> loading <b>must not</b> attempt to update any mappings of this cache directly
+   * or block waiting for other cache operations to complete.
+   * <p>
+   * <b>Note:</b> <i>all exceptions thrown by this method will be logged and then swallowed</i>.
+   *
+   * @param oldValues the non-null old values corresponding to the unique, non-null keys that
+   *        should be reloaded
+   * @return the map from each key to its new value
+   * @throws Exception or Error, in which case the mappings are unchanged
+   * @throws InterruptedException if this method is interrupted. {@code InterruptedException} is
+   *         treated like any other {@code Exception} in all respects except that, when it is
+   *         caught, the thread's interrupt status is set
+   */
+  default Map<? extends K, ? extends V> reloadAll(
+      Map<? extends K, ? extends V> oldValues) throws Exception {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Asynchronously computes or retrieves the replacement values corresponding to already-cached
+   * {@code keys}. This method is called when the automatic refreshes of stale entries are batched
+   * by {@link Caffeine#refreshConcurrency}, and is otherwise unused.
+   * <p>
+   * <b>Warning:</b> loading <b>must not</b> attempt to update any mappings of this cache directly
+   * or block waiting for other cache operations to complete.
+   * <p>
+   * <b>Note:</b> <i>all exceptions thrown by this method will be logged and then swallowed</i>.
+   *
+   * @param oldValues the non-null old values corresponding to the unique, non-null keys that
+   *        should be reloaded
+   * @param executor the executor with which the entries are asynchronously loaded
+   * @return a future containing the map from each key to its new value
+   */
+  @Override
+  default CompletableFuture<? extends Map<? extends K, ? extends V>> asyncReloadAll(
+      Map<? extends K, ? extends V> oldValues, Executor executor) {
+    requireNonNull(oldValues);
+    requireNonNull(executor);
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return reloadAll(oldValues);
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new CompletionException(e);
+      }
+    }, executor);
+  }
+
   /**
    * Returns a cache loader that delegates to the supplied mapping function for retrieving the
    * values. Note that {@link #load} will silently discard any additional mappings loaded when
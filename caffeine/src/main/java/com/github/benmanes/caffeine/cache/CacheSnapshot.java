@@ -0,0 +1,490 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.requireArgument;
+import static com.github.benmanes.caffeine.cache.Node.PROBATION;
+import static com.github.benmanes.caffeine.cache.Node.PROTECTED;
+import static com.github.benmanes.caffeine.cache.Node.WINDOW;
+import static java.util.Objects.requireNonNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Static utility methods for persisting the contents of a bounded cache to a file and for restoring
+ * them into a new cache, such as after an application restart. A restored cache begins with the
+ * entries, the popularity estimates, and the eviction and expiration orderings that the cache had
+ * when the snapshot was taken, so that it does not need to warm up by reloading its working set.
+ * <p>
+ * A snapshot is written in the policy's hottest order and is streamed to and from the file, so
+ * that its size is not limited by the available memory. If the restored cache has a smaller maximum
+ * size than the cache that was saved, then the hottest entries are retained. The expiration times
+ * are saved relative to the time the snapshot was taken, and the elapsed wall-clock time until the
+ * restore is counted toward their age.
+ * <p>
+ * Snapshots are supported by caches that were created by {@link Caffeine#build()} or
+ * {@link Caffeine#build(CacheLoader)} with strong keys and that are either bounded by a maximum size
+ * or weight or expire their entries. The eviction policy is locked while a snapshot is taken or
+ * restored, so concurrent writes will be delayed until the operation completes.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class CacheSnapshot {
+  static final int MAGIC = 0xCAFE5AFE;
+  static final int VERSION = 1;
+  static final int BUFFER_SIZE = 1 << 16;
+  static final byte END_OF_ENTRIES = -1;
+
+  static final byte NO_SKETCH = 0;
+  static final byte FREQUENCY_SKETCH = 1;
+  static final byte BLOCKED_FREQUENCY_SKETCH = 2;
+
+  /*
+   * The file consists of a header, the frequency sketch's table, and then a record per entry in
+   * the hottest order, terminated by an end marker:
+   *
+   *   header: magic (int), version (int), saved at epoch millis (long), maximum (long),
+   *           window maximum (long), protected maximum (long), sketch type (byte),
+   *           sketch length (int), sketch size (int)
+   *   sketch: the table's counters (long[sketch length])
+   *   entry:  queue type (byte), access age (long), write age (long), variable remaining (long),
+   *           key length (int), key (byte[]), value length (int), value (byte[])
+   *
+   * The hottest order concatenates the protected region with a merge of the probation and window
+   * regions, where each region is traversed from its most to its least recently used entry. A
+   * restore therefore rebuilds each region's order by adding every entry to the least recently used
+   * end of its region, without replaying the writes through the eviction policy. The write order
+   * that is used by expireAfterWrite is not preserved by this traversal, so those entries are
+   * sorted by their write times once they are restored.
+   */
+
+  private CacheSnapshot() {}
+
+  /**
+   * Writes the entries of the cache to the file, replacing any existing contents.
+   *
+   * @param cache the cache to persist
+   * @param path the file to write the snapshot to
+   * @param keyCodec the codec to encode the keys with
+   * @param valueCodec the codec to encode the values with
+   * @param <K> the type of keys
+   * @param <V> the type of values
+   * @return the number of entries that were written
+   * @throws IllegalArgumentException if the cache does not support snapshots
+   * @throws IOException if an I/O error occurs
+   */
+  public static <K, V> long save(Cache<K, V> cache, Path path,
+      ValueCodec<K> keyCodec, ValueCodec<V> valueCodec) throws IOException {
+    requireNonNull(valueCodec);
+    requireNonNull(keyCodec);
+    requireNonNull(path);
+
+    BoundedLocalCache<K, V> local = boundedLocalCache(cache);
+    try (var channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      var output = new Output(channel);
+      local.evictionLock.lock();
+      try {
+        local.maintenance(/* ignored */ null);
+        long count = write(local, output, keyCodec, valueCodec);
+        output.flush();
+        return count;
+      } finally {
+        local.evictionLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Reads the entries from the snapshot file into the cache. An entry is not restored if the cache
+   * already contains a mapping for its key, if it has expired, or if it would exceed the cache's
+   * maximum size. The cache's removal listener is not notified of the skipped entries.
+   *
+   * @param cache the cache to populate
+   * @param path the file to read the snapshot from
+   * @param keyCodec the codec to decode the keys with
+   * @param valueCodec the codec to decode the values with
+   * @param <K> the type of keys
+   * @param <V> the type of values
+   * @return the number of entries that were restored
+   * @throws IllegalArgumentException if the cache does not support snapshots
+   * @throws IOException if an I/O error occurs or the file is not a valid snapshot
+   */
+  public static <K, V> long restore(Cache<K, V> cache, Path path,
+      ValueCodec<K> keyCodec, ValueCodec<V> valueCodec) throws IOException {
+    requireNonNull(valueCodec);
+    requireNonNull(keyCodec);
+    requireNonNull(path);
+
+    BoundedLocalCache<K, V> local = boundedLocalCache(cache);
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var input = new Input(channel);
+      local.evictionLock.lock();
+      try {
+        local.maintenance(/* ignored */ null);
+        return read(local, input, keyCodec, valueCodec);
+      } finally {
+        local.evictionLock.unlock();
+      }
+    }
+  }
+
+  /** Returns the bounded cache that backs the given cache if it supports snapshots. */
+  static <K, V> BoundedLocalCache<K, V> boundedLocalCache(Cache<K, V> cache) {
+    requireNonNull(cache);
+    LocalCache<K, V> local = (cache instanceof LocalManualCache<?, ?>)
+        ? ((LocalManualCache<K, V>) cache).cache()
+        : null;
+    requireArgument(local instanceof BoundedLocalCache<?, ?>,
+        "snapshots require a bounded or expiring synchronous cache");
+    var bounded = (BoundedLocalCache<K, V>) local;
+    requireArgument(!bounded.isAsync, "snapshots require a synchronous cache");
+    requireArgument(!bounded.collectKeys(), "snapshots can not be combined with weak keys");
+    return bounded;
+  }
+
+  @SuppressWarnings("GuardedByChecker")
+  static <K, V> long write(BoundedLocalCache<K, V> cache, Output output,
+      ValueCodec<K> keyCodec, ValueCodec<V> valueCodec) throws IOException {
+    long now = cache.expirationTicker().read();
+    output.ensure(Long.BYTES * 4 + Integer.BYTES * 4 + Byte.BYTES);
+    output.buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+    if (cache.evicts()) {
+      output.buffer.putLong(cache.maximum()).putLong(cache.windowMaximum())
+          .putLong(cache.mainProtectedMaximum());
+    } else {
+      output.buffer.putLong(-1L).putLong(-1L).putLong(-1L);
+    }
+    writeSketch(cache.evicts() ? cache.frequencySketch() : null, output);
+
+    Iterable<Node<K, V>> nodes;
+    if (cache.evicts()) {
+      nodes = cache.evictionOrder(/* hottest */ true);
+    } else if (cache.expiresAfterAccess()) {
+      nodes = cache.accessOrderWindowDeque()::descendingIterator;
+    } else if (cache.expiresAfterWrite()) {
+      nodes = cache.writeOrderDeque()::descendingIterator;
+    } else {
+      nodes = cache.data.values();
+    }
+
+    long count = 0;
+    for (Node<K, V> node : nodes) {
+      K key = node.getKey();
+      V value = node.getValue();
+      if ((key == null) || (value == null) || !node.isAlive() || cache.hasExpired(node, now)) {
+        continue;
+      }
+      byte[] encodedKey = keyCodec.encode(key);
+      byte[] encodedValue = valueCodec.encode(value);
+
+      output.ensure(Byte.BYTES + 3 * Long.BYTES);
+      output.buffer.put(cache.evicts() ? (byte) node.getQueueType() : WINDOW);
+      output.buffer.putLong(cache.expiresAfterAccess() ? (now - node.getAccessTime()) : 0L);
+      output.buffer.putLong((cache.expiresAfterWrite() || cache.refreshAfterWrite())
+          ? (now - (node.getWriteTime() & ~1L))
+          : 0L);
+      output.buffer.putLong(cache.expiresVariable() ? (node.getVariableTime() - now) : 0L);
+      output.writeBytes(encodedKey);
+      output.writeBytes(encodedValue);
+      count++;
+    }
+    output.ensure(Byte.BYTES);
+    output.buffer.put(END_OF_ENTRIES);
+    return count;
+  }
+
+  static void writeSketch(@Nullable FrequencySketch<?> sketch, Output output) throws IOException {
+    output.ensure(Byte.BYTES + 2 * Integer.BYTES);
+    if ((sketch == null) || sketch.isNotInitialized()) {
+      output.buffer.put(NO_SKETCH).putInt(0).putInt(0);
+      return;
+    }
+    output.buffer.put((sketch instanceof BlockedFrequencySketch<?>)
+        ? BLOCKED_FREQUENCY_SKETCH
+        : FREQUENCY_SKETCH);
+    output.buffer.putInt(sketch.table.length).putInt(sketch.size);
+    for (long counters : sketch.table) {
+      output.ensure(Long.BYTES);
+      output.buffer.putLong(counters);
+    }
+  }
+
+  @SuppressWarnings("GuardedByChecker")
+  static <K, V> long read(BoundedLocalCache<K, V> cache, Input input,
+      ValueCodec<K> keyCodec, ValueCodec<V> valueCodec) throws IOException {
+    input.require(2 * Integer.BYTES);
+    if (input.buffer.getInt() != MAGIC) {
+      throw new StreamCorruptedException("Not a cache snapshot");
+    }
+    int version = input.buffer.getInt();
+    if (version != VERSION) {
+      throw new StreamCorruptedException("Unsupported snapshot version: " + version);
+    }
+    input.require(4 * Long.BYTES);
+    long savedAt = input.buffer.getLong();
+    long maximum = input.buffer.getLong();
+    long windowMaximum = input.buffer.getLong();
+    long protectedMaximum = input.buffer.getLong();
+    if (cache.evicts() && (maximum == cache.maximum())) {
+      // Resume the hill climber's adaption of the region sizes
+      cache.setWindowMaximum(windowMaximum);
+      cache.setMainProtectedMaximum(protectedMaximum);
+    }
+    FrequencySketch<K> sketch = null;
+    if (cache.evicts()) {
+      sketch = cache.frequencySketch();
+      if (sketch.isNotInitialized() && !cache.isWeighted()) {
+        // Initialize as the cache would lazily, as it is about to be populated
+        sketch.ensureCapacity(cache.maximum());
+      }
+    }
+    boolean restoredSketch = readSketch(sketch, input);
+
+    long now = cache.expirationTicker().read();
+    long elapsed = TimeUnit.MILLISECONDS.toNanos(
+        Math.max(0L, System.currentTimeMillis() - savedAt));
+    List<Node<K, V>> writeOrder = cache.expiresAfterWrite() ? new ArrayList<>() : null;
+
+    long count = 0;
+    for (;;) {
+      input.require(Byte.BYTES);
+      byte queueType = input.buffer.get();
+      if (queueType == END_OF_ENTRIES) {
+        break;
+      }
+      input.require(3 * Long.BYTES);
+      long accessAge = input.buffer.getLong();
+      long writeAge = input.buffer.getLong();
+      long variableRemaining = input.buffer.getLong();
+      K key = input.readObject(keyCodec);
+      V value = input.readObject(valueCodec);
+
+      if (cache.data.containsKey(cache.nodeFactory.newLookupKey(key))) {
+        continue;
+      }
+      int weight = cache.weigher.weigh(key, value);
+      if (cache.evicts() && ((cache.weightedSize() + weight) > cache.maximum())) {
+        continue;
+      }
+
+      Node<K, V> node = cache.nodeFactory.newNode(key, cache.keyReferenceQueue(),
+          value, cache.valueReferenceQueue(), weight, now);
+      cache.setAccessTime(node, now - elapsed - accessAge);
+      cache.setWriteTime(node, now - elapsed - writeAge);
+      cache.setVariableTime(node, now - elapsed + variableRemaining);
+      if (cache.hasExpired(node, now)
+          || (cache.data.putIfAbsent(node.getKeyReference(), node) != null)) {
+        continue;
+      }
+
+      if (cache.evicts()) {
+        place(cache, node, queueType, weight);
+        if (!restoredSketch) {
+          cache.frequencySketch().increment(key);
+        }
+      } else if (cache.expiresAfterAccess()) {
+        cache.accessOrderWindowDeque().addFirst(node);
+      }
+      if (writeOrder != null) {
+        writeOrder.add(node);
+      }
+      if (cache.expiresVariable()) {
+        cache.timerWheel().schedule(node);
+      }
+      count++;
+    }
+
+    if (writeOrder != null) {
+      writeOrder.sort(Comparator.comparingLong(Node::getWriteTime));
+      for (Node<K, V> node : writeOrder) {
+        cache.writeOrderDeque().add(node);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Adds the node to the least recently used end of its region, or to the probation region if
+   * its original region is full.
+   */
+  @SuppressWarnings("GuardedByChecker")
+  static <K, V> void place(BoundedLocalCache<K, V> cache,
+      Node<K, V> node, int queueType, int weight) {
+    if ((queueType == WINDOW)
+        && ((cache.windowWeightedSize() + weight) <= cache.windowMaximum())) {
+      cache.setWindowWeightedSize(cache.windowWeightedSize() + weight);
+      cache.accessOrderWindowDeque().addFirst(node);
+      node.makeWindow();
+    } else if ((queueType == PROTECTED)
+        && ((cache.mainProtectedWeightedSize() + weight) <= cache.mainProtectedMaximum())) {
+      cache.setMainProtectedWeightedSize(cache.mainProtectedWeightedSize() + weight);
+      cache.accessOrderProtectedDeque().addFirst(node);
+      node.makeMainProtected();
+    } else {
+      cache.accessOrderProbationDeque().addFirst(node);
+      node.setQueueType(PROBATION);
+    }
+    cache.setWeightedSize(cache.weightedSize() + weight);
+    node.setPolicyWeight(weight);
+  }
+
+  /**
+   * Reads the sketch's counters into the cache's sketch if it has the same layout and capacity, or
+   * otherwise skips them. The cache's sketch is never resized, as that would discard the counters
+   * of a sketch that is in use.
+   *
+   * @return if the counters were restored
+   */
+  static boolean readSketch(@Nullable FrequencySketch<?> sketch, Input input) throws IOException {
+    input.require(Byte.BYTES + 2 * Integer.BYTES);
+    byte type = input.buffer.get();
+    int length = input.buffer.getInt();
+    int size = input.buffer.getInt();
+    if (type == NO_SKETCH) {
+      return false;
+    }
+
+    boolean compatible = false;
+    if (sketch != null) {
+      byte expectedType = (sketch instanceof BlockedFrequencySketch<?>)
+          ? BLOCKED_FREQUENCY_SKETCH
+          : FREQUENCY_SKETCH;
+      compatible = (type == expectedType)
+          && !sketch.isNotInitialized() && (sketch.table.length == length);
+    }
+    for (int i = 0; i < length; i++) {
+      input.require(Long.BYTES);
+      long counters = input.buffer.getLong();
+      if (compatible) {
+        sketch.table[i] = counters;
+      }
+    }
+    if (compatible) {
+      sketch.size = size;
+    }
+    return compatible;
+  }
+
+  /** A buffered writer to the file. */
+  static final class Output {
+    final FileChannel channel;
+    final ByteBuffer buffer;
+
+    Output(FileChannel channel) {
+      this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      this.channel = channel;
+    }
+
+    /** Ensures that the buffer has the capacity to write the number of bytes. */
+    void ensure(int bytes) throws IOException {
+      if (buffer.remaining() < bytes) {
+        flush();
+      }
+    }
+
+    /** Writes the length-prefixed bytes, bypassing the buffer if they do not fit. */
+    void writeBytes(byte[] bytes) throws IOException {
+      ensure(Integer.BYTES);
+      buffer.putInt(bytes.length);
+      if (bytes.length <= buffer.remaining()) {
+        buffer.put(bytes);
+        return;
+      }
+      flush();
+      if (bytes.length <= buffer.remaining()) {
+        buffer.put(bytes);
+      } else {
+        var wrapped = ByteBuffer.wrap(bytes);
+        while (wrapped.hasRemaining()) {
+          channel.write(wrapped);
+        }
+      }
+    }
+
+    /** Writes the buffered bytes to the file. */
+    void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+  }
+
+  /** A buffered reader from the file. */
+  static final class Input {
+    final FileChannel channel;
+    final ByteBuffer buffer;
+
+    Input(FileChannel channel) {
+      this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).limit(0);
+      this.channel = channel;
+    }
+
+    /** Ensures that the buffer contains the number of bytes, which must fit within it. */
+    void require(int bytes) throws IOException {
+      if (buffer.remaining() >= bytes) {
+        return;
+      }
+      buffer.compact();
+      while (buffer.position() < bytes) {
+        if (channel.read(buffer) < 0) {
+          throw new EOFException("Truncated cache snapshot");
+        }
+      }
+      buffer.flip();
+    }
+
+    /** Reads and decodes a length-prefixed object. */
+    <T> T readObject(ValueCodec<T> codec) throws IOException {
+      require(Integer.BYTES);
+      int length = buffer.getInt();
+      if (length < 0) {
+        throw new StreamCorruptedException("Invalid length: " + length);
+      }
+
+      ByteBuffer encoded;
+      if (length <= buffer.capacity()) {
+        require(length);
+        encoded = buffer.slice().limit(length).asReadOnlyBuffer();
+        buffer.position(buffer.position() + length);
+      } else {
+        encoded = ByteBuffer.allocate(length);
+        encoded.put(buffer);
+        while (encoded.hasRemaining()) {
+          if (channel.read(encoded) < 0) {
+            throw new EOFException("Truncated cache snapshot");
+          }
+        }
+        encoded = encoded.flip().asReadOnlyBuffer();
+      }
+      return requireNonNull(codec.decode(encoded));
+    }
+  }
+}
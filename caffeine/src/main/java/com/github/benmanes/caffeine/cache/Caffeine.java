@@ -44,6 +44,7 @@ import com.github.benmanes.caffeine.cache.Async.AsyncWeigher;
 import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
 import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import com.github.benmanes.caffeine.cache.tracing.AccessTracer;
 import com.google.errorprone.annotations.CheckReturnValue;
 import com.google.errorprone.annotations.FormatMethod;
 
@@ -60,6 +61,11 @@ import com.google.errorprone.annotations.FormatMethod;
  *       {@linkplain SoftReference soft} references
  *   <li>writes propagated to an external resource
  *   <li>notification of evicted (or otherwise removed) entries
+ *   <li>evicted values retained off-heap in a serialized form
+ *   <li>primitive {@code long} keys stored without boxing
+ *   <li>coalescing of concurrent loads into shared bulk loads
+ *   <li>partitioning of the eviction policy into independent shards
+ *   <li>limiting and batching of concurrent automatic refreshes
  *   <li>accumulation of cache access statistics
  * </ul>
  * <p>
@@ -155,11 +161,22 @@ public final class Caffeine<K extends Object, V extends Object> {
   long expireAfterWriteNanos = UNSET_INT;
   long expireAfterAccessNanos = UNSET_INT;
   long refreshAfterWriteNanos = UNSET_INT;
+  long offHeapMaximumBytes = UNSET_INT;
 
   @Nullable RemovalListener<? super K, ? super V> evictionListener;
   @Nullable RemovalListener<? super K, ? super V> removalListener;
   @Nullable Supplier<StatsCounter> statsCounterSupplier;
+  @Nullable AccessTracer accessTracer;
   @Nullable Weigher<? super K, ? super V> weigher;
+  @Nullable ValueCodec<?> valueCodec;
+  int coalescingMaxBatchSize = UNSET_INT;
+  long coalescingMaxDelayNanos = UNSET_INT;
+  int shardCount = UNSET_INT;
+  boolean blockedFrequencySketch;
+  int expirationBatchSize = UNSET_INT;
+  int refreshMaximumInFlight = UNSET_INT;
+  int refreshMaximumBatchSize = UNSET_INT;
+  @Nullable Executor refreshExecutor;
   @Nullable Expiry<? super K, ? super V> expiry;
   @Nullable Scheduler scheduler;
   @Nullable Executor executor;
@@ -467,6 +484,216 @@ public final class Caffeine<K extends Object, V extends Object> {
     return isAsync ? (Weigher<K1, V1>) new AsyncWeigher(delegate) : delegate;
   }
 
+  /**
+   * Specifies that entries evicted due to the {@linkplain #maximumSize maximum size} or
+   * {@linkplain #maximumWeight maximum weight} should be demoted into a secondary tier that is
+   * stored outside of the Java heap. The value is serialized by the {@code codec} into direct
+   * memory and, if a subsequent lookup misses in the cache, it is decoded and promoted back into
+   * the cache instead of being loaded. This reduces the heap footprint, and therefore the garbage
+   * collection cost, of retaining a large working set.
+   * <p>
+   * The tier is bounded by the total number of bytes of the encoded values and discards its oldest
+   * entries when space is required. A tier entry is only consulted by lookups, such as
+   * {@link Cache#getIfPresent}, {@link Cache#get}, and {@link LoadingCache#get}, and is discarded
+   * when the mapping is written to or invalidated. It is not visible to the cache's size, its
+   * {@linkplain Cache#asMap() map view}, or to its {@link Policy}. The removal listeners are
+   * notified when an entry is evicted from the cache regardless of whether it was demoted, and
+   * are not notified when the tier discards an entry.
+   * <p>
+   * This feature requires a {@link #maximumSize} or {@link #maximumWeight} and cannot be used in
+   * conjunction with {@link #weakKeys}, {@link #weakValues}, {@link #softValues}, expiration,
+   * refresh, or when building an {@link AsyncCache}.
+   *
+   * @param maximumBytes the maximum total size, in bytes, of the encoded values in the tier
+   * @param codec the codec that converts values to and from their binary form
+   * @param <K1> key type of the cache
+   * @param <V1> value type of the codec
+   * @return the cache builder reference that should be used instead of {@code this} for any
+   *         remaining configuration and cache building
+   * @throws IllegalArgumentException if {@code maximumBytes} is not positive
+   * @throws IllegalStateException if an off-heap tier was already set
+   * @throws NullPointerException if the specified codec is null
+   */
+  public <K1 extends K, V1 extends V> Caffeine<K1, V1> offHeapTier(
+      @NonNegative long maximumBytes, ValueCodec<V1> codec) {
+    requireNonNull(codec);
+    requireState(this.valueCodec == null, "off-heap tier was already set to %s bytes",
+        this.offHeapMaximumBytes);
+    requireArgument(maximumBytes > 0, "maximum bytes must be positive");
+
+    @SuppressWarnings("unchecked")
+    Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
+    self.offHeapMaximumBytes = maximumBytes;
+    self.valueCodec = codec;
+    return self;
+  }
+
+  boolean hasOffHeapTier() {
+    return (valueCodec != null);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Nullable <K1 extends K, V1 extends V> OffHeapTier<K1, V1> newOffHeapTier() {
+    return hasOffHeapTier()
+        ? new OffHeapTier<>(offHeapMaximumBytes, (ValueCodec<V1>) valueCodec)
+        : null;
+  }
+
+  /**
+   * Specifies that cache misses should be coalesced into shared bulk loads. A miss by
+   * {@link LoadingCache#get}, {@link LoadingCache#getAll}, or the equivalent methods of an
+   * {@link AsyncLoadingCache} is added to a pending batch, which is loaded by a single call to
+   * {@link AsyncCacheLoader#asyncLoadAll} when it reaches {@code maxBatchSize} keys or after
+   * {@code maxDelay} has elapsed since its first key was added, whichever occurs first. A key that is
+   * requested while its load is in-flight shares that load's result, so that each key is loaded at
+   * most once at a time regardless of how many callers request it.
+   * <p>
+   * This trades a small amount of latency for fewer and larger calls to the backing resource. If
+   * the loader does not implement a bulk load then each key of a batch is loaded individually, and
+   * only the deduplication of in-flight loads applies. The batches are dispatched using the
+   * configured {@link #scheduler(Scheduler)}, or the system-wide scheduling thread if none has
+   * been specified, and the loads are executed by the configured {@link #executor(Executor)}.
+   * <p>
+   * A refresh is not coalesced and is performed by the loader directly. This feature requires
+   * that the cache is built with a loader.
+   *
+   * @param maxBatchSize the maximum number of keys to load in a single call
+   * @param maxDelay the maximum duration that a miss may wait for its batch to be dispatched
+   * @return this {@code Caffeine} instance (for chaining)
+   * @throws IllegalArgumentException if {@code maxBatchSize} is not positive or {@code maxDelay}
+   *         is negative
+   * @throws IllegalStateException if coalescing was already set
+   */
+  public Caffeine<K, V> coalescingBulkLoad(@NonNegative int maxBatchSize, Duration maxDelay) {
+    long maxDelayNanos = saturatedToNanos(maxDelay);
+    requireState(coalescingMaxBatchSize == UNSET_INT,
+        "coalescing bulk load was already set to a batch size of %s", coalescingMaxBatchSize);
+    requireArgument(maxBatchSize > 0, "max batch size must be positive: %s", maxBatchSize);
+    requireArgument(maxDelayNanos >= 0, "max delay must not be negative: %s", maxDelay);
+    this.coalescingMaxDelayNanos = maxDelayNanos;
+    this.coalescingMaxBatchSize = maxBatchSize;
+    return this;
+  }
+
+  boolean coalescesLoads() {
+    return (coalescingMaxBatchSize != UNSET_INT);
+  }
+
+  /** Returns the loader that coalesces misses into batches, if enabled, or else the loader. */
+  <K1 extends K, V1 extends V> CacheLoader<? super K1, V1> coalesce(
+      CacheLoader<? super K1, V1> loader) {
+    return coalescesLoads() ? newCoalescingLoader(loader) : loader;
+  }
+
+  /** Returns the loader that coalesces misses into batches, if enabled, or else the loader. */
+  <K1 extends K, V1 extends V> AsyncCacheLoader<? super K1, V1> coalesce(
+      AsyncCacheLoader<? super K1, V1> loader) {
+    return coalescesLoads() ? newCoalescingLoader(loader) : loader;
+  }
+
+  <K1 extends K, V1 extends V> CoalescingLoader<K1, V1> newCoalescingLoader(
+      AsyncCacheLoader<? super K1, V1> loader) {
+    Scheduler batchScheduler = (getScheduler() == Scheduler.disabledScheduler())
+        ? Scheduler.systemScheduler()
+        : getScheduler();
+    return new CoalescingLoader<>(requireNonNull(loader), coalescingMaxBatchSize,
+        coalescingMaxDelayNanos, getExecutor(), batchScheduler);
+  }
+
+  /**
+   * Specifies that the cache should be partitioned into independent segments, each with its own
+   * eviction policy, frequency sketch, buffers, and maintenance lock. An entry is assigned to a
+   * segment by the hash of its key and the maximum size or weight is divided evenly between them.
+   * <p>
+   * By default the cache maintains a single policy whose maintenance work is performed under an
+   * exclusive lock. This scales well for read-heavy workloads because reads are recorded in lossy
+   * buffers, but a sustained high rate of writes on a large multi-core machine can saturate the
+   * write buffer and cause writers to block on the lock. Sharding the policy distributes this work
+   * so that it can be performed concurrently. The trade-off is that each shard evicts based only on
+   * the entries that it holds, so the hit rate may be slightly lower than with a single policy, and
+   * the {@link Policy.Eviction#coldest} and {@link Policy.Eviction#hottest} orderings are
+   * approximated by interleaving the shards.
+   * <p>
+   * The number of shards is rounded up to a power of two. This feature requires a maximum size or
+   * weight, cannot be combined with expiration, refresh, or an off-heap tier, and is supported only
+   * by {@link #build()} and {@link #build(CacheLoader)}.
+   *
+   * @param shardCount the number of independent policy segments
+   * @return this {@code Caffeine} instance (for chaining)
+   * @throws IllegalArgumentException if {@code shardCount} is not positive or exceeds 2^16
+   * @throws IllegalStateException if the number of shards was already set
+   */
+  public Caffeine<K, V> shards(@NonNegative int shardCount) {
+    requireState(this.shardCount == UNSET_INT,
+        "shard count was already set to %s", this.shardCount);
+    requireArgument((shardCount > 0) && (shardCount <= (1 << 16)),
+        "shard count must be between 1 and 65536: %s", shardCount);
+    this.shardCount = ceilingPowerOfTwo(shardCount);
+    return this;
+  }
+
+  boolean isSharded() {
+    return (shardCount > 1);
+  }
+
+  /**
+   * Returns a copy of this builder for a single shard, with the given share of the maximum and a
+   * statistics counter that is shared by all of the shards.
+   */
+  @SuppressWarnings("unchecked")
+  <K1 extends K, V1 extends V> Caffeine<K1, V1> newShardBuilder(
+      long shardMaximum, @Nullable StatsCounter statsCounter) {
+    var shard = new Caffeine<K1, V1>();
+    shard.strictParsing = strictParsing;
+    if (isWeighted()) {
+      shard.maximumWeight = shardMaximum;
+    } else {
+      shard.maximumSize = shardMaximum;
+    }
+    if (hasInitialCapacity()) {
+      shard.initialCapacity = Math.max(1, initialCapacity / shardCount);
+    }
+    shard.evictionListener = (RemovalListener<? super K1, ? super V1>) evictionListener;
+    shard.removalListener = (RemovalListener<? super K1, ? super V1>) removalListener;
+    shard.weigher = (Weigher<? super K1, ? super V1>) weigher;
+    shard.statsCounterSupplier = (statsCounter == null) ? null : () -> statsCounter;
+    shard.valueStrength = valueStrength;
+    shard.keyStrength = keyStrength;
+    shard.scheduler = scheduler;
+    shard.executor = executor;
+    shard.blockedFrequencySketch = blockedFrequencySketch;
+    shard.accessTracer = accessTracer;
+    shard.ticker = ticker;
+    return shard;
+  }
+
+  /**
+   * Specifies that the cache's admission policy should use a frequency sketch that places all of an
+   * entry's counters within a single 64-byte block. By default each of an entry's four counters is
+   * located at an independent position in the sketch, so that recording an access or comparing an
+   * admission candidate to its victim may incur a CPU cache miss per counter. When the cache holds
+   * many millions of entries the sketch no longer fits in the CPU's caches and these misses
+   * dominate the cost of the policy's maintenance. The blocked sketch reduces this to a single
+   * cache miss at the expense of a slightly higher error rate in its frequency estimates, which is
+   * offset by giving the sketch at least a quarter more counters, so it may use up to twice the
+   * memory.
+   * <p>
+   * This option only has an effect when the cache is bounded by a maximum size or weight.
+   *
+   * @return this {@code Caffeine} instance (for chaining)
+   * @throws IllegalStateException if the blocked frequency sketch was already set
+   */
+  public Caffeine<K, V> blockedFrequencySketch() {
+    requireState(!blockedFrequencySketch, "blocked frequency sketch was already set");
+    blockedFrequencySketch = true;
+    return this;
+  }
+
+  /** Returns a new frequency sketch for the configured layout. */
+  <E> FrequencySketch<E> newFrequencySketch() {
+    return blockedFrequencySketch ? new BlockedFrequencySketch<>() : new FrequencySketch<>();
+  }
+
   /**
    * Specifies that each key (not value) stored in the cache should be wrapped in a
    * {@link WeakReference} (by default, strong references are used).
@@ -721,6 +948,40 @@ public final class Caffeine<K extends Object, V extends Object> {
     return expiry != null;
   }
 
+  /**
+   * Specifies the maximum number of entries with a variable expiration time that may be evaluated
+   * by a single maintenance cycle. By default, when the clock advances past the point in time at
+   * which a large number of entries expire, such as after a clock jump or when many entries were
+   * created with similar deadlines, all of them are removed, or moved closer to their expiration,
+   * by the maintenance cycle that observes it. This may hold the eviction lock for a long pause when
+   * the cache contains millions of entries. With a batch size the work is spread across multiple
+   * maintenance cycles and the removal listener is notified of each batch's expired entries by a
+   * single task on the {@link #executor}. When a batch leaves work remaining then the next cycle
+   * is run by the {@link #scheduler} if one is configured, or else is triggered by a subsequent
+   * read or write to the cache. Without a scheduler or further activity, the remaining expired
+   * entries are retained until the cache is next used or {@link Cache#cleanUp} is called.
+   * <p>
+   * An entry that has expired is never visible to read or write operations, so this setting only
+   * affects how promptly the expired entries are removed. This feature requires
+   * {@link #expireAfter(Expiry)}.
+   *
+   * @param batchSize the maximum number of entries to evaluate per maintenance cycle
+   * @return this {@code Caffeine} instance (for chaining)
+   * @throws IllegalArgumentException if {@code batchSize} is not positive
+   * @throws IllegalStateException if the expiration batch size was already set
+   */
+  public Caffeine<K, V> expireAfterBatchSize(@NonNegative int batchSize) {
+    requireState(expirationBatchSize == UNSET_INT,
+        "expiration batch size was already set to %s", expirationBatchSize);
+    requireArgument(batchSize > 0, "expiration batch size must be positive: %s", batchSize);
+    this.expirationBatchSize = batchSize;
+    return this;
+  }
+
+  int getExpirationBatchSize() {
+    return (expirationBatchSize == UNSET_INT) ? 0 : expirationBatchSize;
+  }
+
   @SuppressWarnings("unchecked")
   @Nullable Expiry<K, V> getExpiry(boolean isAsync) {
     return isAsync && (expiry != null)
@@ -790,6 +1051,75 @@ public final class Caffeine<K extends Object, V extends Object> {
     return refreshAfterWriteNanos != UNSET_INT;
   }
 
+  /**
+   * Specifies the maximum number of automatic refreshes that may be in-flight at once, and the
+   * maximum number of stale entries that may be reloaded together by a single call to
+   * {@link CacheLoader#reloadAll} or {@link AsyncCacheLoader#asyncReloadAll}. By default every
+   * stale entry that is read is immediately reloaded, so when many entries become stale at the same
+   * time, such as after a deployment or a burst of writes, the backing system may receive a spike of
+   * concurrent reload requests. When this limit is reached the additional stale entries are queued
+   * until a refresh completes, and are then reloaded in batches if the loader overrides one of the
+   * bulk reload methods, or otherwise individually. A stale entry continues to return its current
+   * value while it is queued, and is not queued again if it is read multiple times.
+   * <p>
+   * Explicit refreshes by {@link LoadingCache#refresh} and {@link LoadingCache#refreshAll} are not
+   * limited by this setting.
+   *
+   * @param maximumInFlight the maximum number of reloads that may be in-flight at once
+   * @param maximumBatchSize the maximum number of entries that may be reloaded by a bulk reload
+   * @return this {@code Caffeine} instance (for chaining)
+   * @throws IllegalArgumentException if either argument is not positive
+   * @throws IllegalStateException if the refresh concurrency was already set
+   */
+  public Caffeine<K, V> refreshConcurrency(
+      @NonNegative int maximumInFlight, @NonNegative int maximumBatchSize) {
+    requireState(refreshMaximumInFlight == UNSET_INT,
+        "refresh concurrency was already set to %s", refreshMaximumInFlight);
+    requireArgument(maximumInFlight > 0,
+        "maximum in-flight refreshes must be positive: %s", maximumInFlight);
+    requireArgument(maximumBatchSize > 0,
+        "maximum refresh batch size must be positive: %s", maximumBatchSize);
+    this.refreshMaximumBatchSize = maximumBatchSize;
+    this.refreshMaximumInFlight = maximumInFlight;
+    return this;
+  }
+
+  /**
+   * Specifies the executor to use when running automatic refreshes, instead of the cache's
+   * {@link #executor(Executor)}. This allows reloads that block on a remote system to be isolated
+   * from the cache's maintenance work and from the loads of absent entries. For example, on JDK 21
+   * or above a reload that performs blocking I/O can be run on a virtual thread by supplying
+   * {@code Executors.newVirtualThreadPerTaskExecutor()}, which makes the reload inexpensive to park
+   * while the {@link #refreshConcurrency} limit protects the backing system.
+   *
+   * @param executor the executor to use for asynchronous reloads
+   * @return this {@code Caffeine} instance (for chaining)
+   * @throws NullPointerException if the specified executor is null
+   * @throws IllegalStateException if the refresh executor was already set
+   */
+  public Caffeine<K, V> refreshExecutor(Executor executor) {
+    requireState(this.refreshExecutor == null, "refresh executor was already set to %s",
+        this.refreshExecutor);
+    this.refreshExecutor = requireNonNull(executor);
+    return this;
+  }
+
+  boolean hasRefreshLimit() {
+    return (refreshMaximumInFlight != UNSET_INT);
+  }
+
+  /** Returns a limiter for the automatic refreshes, or null if they are performed immediately. */
+  @Nullable RefreshLimiter newRefreshLimiter(AsyncCacheLoader<?, ?> cacheLoader) {
+    if (!refreshAfterWrite() || (!hasRefreshLimit() && (refreshExecutor == null))) {
+      return null;
+    }
+    Executor reloadExecutor = (refreshExecutor == null) ? getExecutor() : refreshExecutor;
+    return hasRefreshLimit()
+        ? new RefreshLimiter(cacheLoader,
+            refreshMaximumInFlight, refreshMaximumBatchSize, reloadExecutor)
+        : new RefreshLimiter(cacheLoader, Integer.MAX_VALUE, 1, reloadExecutor);
+  }
+
   /**
    * Specifies a nanosecond-precision time source for use in determining when entries should be
    * expired or refreshed. By default, {@link System#nanoTime} is used.
@@ -961,6 +1291,31 @@ public final class Caffeine<K extends Object, V extends Object> {
         : statsCounterSupplier;
   }
 
+  /**
+   * Specifies a tracer that records the cache's accesses, such as to capture a trace of the
+   * production workload that can be replayed by the simulator to evaluate eviction policies and
+   * cache sizes. The tracer observes the lookups that statistics would record as hits and misses,
+   * along with the entry's weight and the time spent loading a missing value, regardless of whether
+   * {@link #recordStats} is enabled. The accesses may be sampled and written to a binary log by
+   * {@link com.github.benmanes.caffeine.cache.tracing.AccessTraceWriter}. Any exception thrown by
+   * the tracer will be suppressed and logged.
+   *
+   * @param accessTracer the tracer that records the accesses to the cache
+   * @return this {@code Caffeine} instance (for chaining)
+   * @throws IllegalStateException if an access tracer was already set
+   * @throws NullPointerException if the specified access tracer is null
+   */
+  public Caffeine<K, V> recordAccesses(AccessTracer accessTracer) {
+    requireState(this.accessTracer == null, "Access tracer was already set to %s",
+        this.accessTracer);
+    this.accessTracer = AccessTracer.guarded(accessTracer);
+    return this;
+  }
+
+  AccessTracer getAccessTracer() {
+    return (accessTracer == null) ? AccessTracer.disabled() : accessTracer;
+  }
+
   boolean isBounded() {
     return (maximumSize != UNSET_INT)
         || (maximumWeight != UNSET_INT)
@@ -990,9 +1345,17 @@ public final class Caffeine<K extends Object, V extends Object> {
   public <K1 extends K, V1 extends V> Cache<K1, V1> build() {
     requireWeightWithWeigher();
     requireNonLoadingCache();
+    requireRefreshWithRefreshPolicy();
+    requireExpiryWithBatchSize();
+    requireNonCoalescingCache();
+    requireOffHeapTierCompatible();
+    requireShardingCompatible();
 
     @SuppressWarnings("unchecked")
     Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
+    if (isSharded()) {
+      return new ShardedLocalCache.ShardedLocalManualCache<>(self);
+    }
     return isBounded()
         ? new BoundedLocalCache.BoundedLocalManualCache<>(self)
         : new UnboundedLocalCache.UnboundedLocalManualCache<>(self);
@@ -1016,12 +1379,58 @@ public final class Caffeine<K extends Object, V extends Object> {
   public <K1 extends K, V1 extends V> LoadingCache<K1, V1> build(
       CacheLoader<? super K1, V1> loader) {
     requireWeightWithWeigher();
+    requireRefreshWithRefreshPolicy();
+    requireExpiryWithBatchSize();
+    requireOffHeapTierCompatible();
+    requireShardingCompatible();
 
     @SuppressWarnings("unchecked")
     Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
+    CacheLoader<? super K1, V1> cacheLoader = self.coalesce(requireNonNull(loader));
+    if (isSharded()) {
+      return new ShardedLocalCache.ShardedLocalLoadingCache<>(self, cacheLoader);
+    }
     return isBounded() || refreshAfterWrite()
-        ? new BoundedLocalCache.BoundedLocalLoadingCache<>(self, loader)
-        : new UnboundedLocalCache.UnboundedLocalLoadingCache<>(self, loader);
+        ? new BoundedLocalCache.BoundedLocalLoadingCache<>(self, cacheLoader)
+        : new UnboundedLocalCache.UnboundedLocalLoadingCache<>(self, cacheLoader);
+  }
+
+  /**
+   * Builds a cache whose keys are primitive {@code long} values and which does not automatically
+   * load values when keys are requested unless a mapping function is provided. The keys are stored
+   * in a primitive table so that a lookup does not box the key.
+   * <p>
+   * This method does not alter the state of this {@code Caffeine} instance, so it can be invoked
+   * again to create multiple independent caches.
+   * <p>
+   * This construction requires {@link #maximumSize(long)} and cannot be combined with a weigher,
+   * expiration, refresh, reference-based eviction, removal or eviction listeners, or an off-heap
+   * tier.
+   *
+   * @param <V1> the value type of the cache
+   * @return a cache having the requested features
+   * @throws IllegalStateException if the configuration is not supported by a long-keyed cache
+   */
+  @CheckReturnValue
+  public <V1 extends V> LongKeyCache<V1> buildLongKeyed() {
+    requireState(maximumSize != UNSET_INT, "long-keyed cache requires maximumSize");
+    requireState((maximumWeight == UNSET_INT) && (weigher == null),
+        "long-keyed cache can not be combined with a weigher");
+    requireState((expireAfterWriteNanos == UNSET_INT) && (expireAfterAccessNanos == UNSET_INT)
+        && (expiry == null) && (refreshAfterWriteNanos == UNSET_INT),
+        "long-keyed cache can not be combined with expiration or refresh");
+    requireState((keyStrength == null) && (valueStrength == null),
+        "long-keyed cache can not be combined with weak keys, weak values, or soft values");
+    requireState((removalListener == null) && (evictionListener == null),
+        "long-keyed cache can not be combined with a removal or eviction listener");
+    requireState(valueCodec == null, "long-keyed cache can not be combined with an off-heap tier");
+    requireNonCoalescingCache();
+    requireRefreshWithRefreshPolicy();
+    requireExpiryWithBatchSize();
+    requireState(!isSharded(), "long-keyed cache can not be combined with shards");
+    requireState(accessTracer == null,
+        "long-keyed cache can not be combined with an access tracer");
+    return new BoundedLongKeyCache<>(this);
   }
 
   /**
@@ -1047,10 +1456,15 @@ public final class Caffeine<K extends Object, V extends Object> {
   @CheckReturnValue
   public <K1 extends K, V1 extends V> AsyncCache<K1, V1> buildAsync() {
     requireState(valueStrength == null, "Weak or soft values can not be combined with AsyncCache");
+    requireState(valueCodec == null, "off-heap tier can not be combined with AsyncCache");
     requireState(isStrongKeys() || (evictionListener == null),
         "Weak keys cannot be combined eviction listener and with AsyncLoadingCache");
     requireWeightWithWeigher();
     requireNonLoadingCache();
+    requireRefreshWithRefreshPolicy();
+    requireExpiryWithBatchSize();
+    requireNonCoalescingCache();
+    requireNonShardedCache();
 
     @SuppressWarnings("unchecked")
     Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
@@ -1106,22 +1520,68 @@ public final class Caffeine<K extends Object, V extends Object> {
       AsyncCacheLoader<? super K1, V1> loader) {
     requireState(valueStrength == null,
         "Weak or soft values can not be combined with AsyncLoadingCache");
+    requireState(valueCodec == null, "off-heap tier can not be combined with AsyncLoadingCache");
     requireState(isStrongKeys() || (evictionListener == null),
         "Weak keys cannot be combined eviction listener and with AsyncLoadingCache");
     requireWeightWithWeigher();
+    requireRefreshWithRefreshPolicy();
+    requireExpiryWithBatchSize();
+    requireNonShardedCache();
     requireNonNull(loader);
 
     @SuppressWarnings("unchecked")
     Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
+    AsyncCacheLoader<? super K1, V1> cacheLoader = self.coalesce(loader);
     return isBounded() || refreshAfterWrite()
-        ? new BoundedLocalCache.BoundedLocalAsyncLoadingCache<K1, V1>(self, loader)
-        : new UnboundedLocalCache.UnboundedLocalAsyncLoadingCache<K1, V1>(self, loader);
+        ? new BoundedLocalCache.BoundedLocalAsyncLoadingCache<K1, V1>(self, cacheLoader)
+        : new UnboundedLocalCache.UnboundedLocalAsyncLoadingCache<K1, V1>(self, cacheLoader);
   }
 
   void requireNonLoadingCache() {
     requireState(refreshAfterWriteNanos == UNSET_INT, "refreshAfterWrite requires a LoadingCache");
   }
 
+  void requireRefreshWithRefreshPolicy() {
+    requireState(refreshAfterWrite() || (!hasRefreshLimit() && (refreshExecutor == null)),
+        "refreshConcurrency and refreshExecutor require refreshAfterWrite");
+  }
+
+  void requireExpiryWithBatchSize() {
+    requireState(expiresVariable() || (expirationBatchSize == UNSET_INT),
+        "expireAfterBatchSize requires expireAfter");
+  }
+
+  void requireNonCoalescingCache() {
+    requireState(!coalescesLoads(), "coalescingBulkLoad requires a LoadingCache");
+  }
+
+  void requireShardingCompatible() {
+    if (!isSharded()) {
+      return;
+    }
+    requireState(evicts(), "shards requires maximumSize or maximumWeight");
+    requireState((expireAfterWriteNanos == UNSET_INT) && (expireAfterAccessNanos == UNSET_INT)
+        && (expiry == null) && (refreshAfterWriteNanos == UNSET_INT),
+        "shards can not be combined with expiration or refresh");
+    requireState(valueCodec == null, "shards can not be combined with an off-heap tier");
+  }
+
+  void requireNonShardedCache() {
+    requireState(!isSharded(), "shards can not be combined with an AsyncCache");
+  }
+
+  void requireOffHeapTierCompatible() {
+    if (valueCodec == null) {
+      return;
+    }
+    requireState(evicts(), "off-heap tier requires maximumSize or maximumWeight");
+    requireState(isStrongKeys() && (valueStrength == null),
+        "off-heap tier can not be combined with weak keys, weak values, or soft values");
+    requireState((expireAfterWriteNanos == UNSET_INT) && (expireAfterAccessNanos == UNSET_INT)
+        && (expiry == null) && (refreshAfterWriteNanos == UNSET_INT),
+        "off-heap tier can not be combined with expiration or refresh");
+  }
+
   void requireWeightWithWeigher() {
     if (weigher == null) {
       requireState(maximumWeight == UNSET_INT, "maximumWeight requires weigher");
@@ -1176,6 +1636,9 @@ public final class Caffeine<K extends Object, V extends Object> {
     if (expiry != null) {
       s.append("expiry, ");
     }
+    if (expirationBatchSize != UNSET_INT) {
+      s.append("expireAfterBatchSize=").append(expirationBatchSize).append(", ");
+    }
     if (refreshAfterWriteNanos != UNSET_INT) {
       s.append("refreshAfterWriteNanos=").append(refreshAfterWriteNanos).append("ns, ");
     }
@@ -1191,6 +1654,29 @@ public final class Caffeine<K extends Object, V extends Object> {
     if (removalListener != null) {
       s.append("removalListener, ");
     }
+    if (valueCodec != null) {
+      s.append("offHeapTier=").append(offHeapMaximumBytes).append("bytes, ");
+    }
+    if (isSharded()) {
+      s.append("shards=").append(shardCount).append(", ");
+    }
+    if (blockedFrequencySketch) {
+      s.append("blockedFrequencySketch, ");
+    }
+    if (hasRefreshLimit()) {
+      s.append("refreshConcurrency=").append(refreshMaximumInFlight).append('/')
+          .append(refreshMaximumBatchSize).append(", ");
+    }
+    if (refreshExecutor != null) {
+      s.append("refreshExecutor, ");
+    }
+    if (coalescesLoads()) {
+      s.append("coalescingBulkLoad=").append(coalescingMaxBatchSize).append('/')
+          .append(coalescingMaxDelayNanos).append("ns, ");
+    }
+    if (accessTracer != null) {
+      s.append("accessTracer, ");
+    }
     if (s.length() > baseLength) {
       s.deleteCharAt(s.length() - 2);
     }
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * A loader that merges the misses from concurrent callers into shared bulk loads. A key that is
+ * requested while its load is in-flight shares the pending result instead of loading it again.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class CoalescingLoader<K, V> implements CacheLoader<K, V>, Serializable {
+  private static final long serialVersionUID = 1;
+
+  /*
+   * A key that misses is registered into the in-flight map with a future that will be completed by
+   * the batch that loads it. If the key is already in-flight then the caller receives the existing
+   * future, which deduplicates both single-key and bulk misses across threads. A newly registered
+   * key is appended to the pending batch, which is dispatched when it reaches the maximum size or
+   * when the maximum delay has elapsed since the batch's first key was added, whichever is first.
+   *
+   * A batch is loaded by a single call to the delegate's asyncLoadAll, or by a call to asyncLoad
+   * per key if the delegate does not support bulk loads so that it still benefits from the
+   * deduplication. A key is removed from the in-flight map before its future is completed, so a
+   * later miss will start a new load rather than observe a stale result.
+   */
+
+  final AsyncCacheLoader<? super K, V> delegate;
+  final long maxDelayNanos;
+  final boolean canBulkLoad;
+  final int maxBatchSize;
+
+  final transient ConcurrentHashMap<K, CompletableFuture<V>> inFlight;
+  final transient Scheduler scheduler;
+  final transient Executor executor;
+
+  @GuardedBy("this")
+  transient Map<K, CompletableFuture<V>> pending;
+  @GuardedBy("this")
+  transient @Nullable Future<?> timer;
+
+  CoalescingLoader(AsyncCacheLoader<? super K, V> delegate, int maxBatchSize,
+      long maxDelayNanos, Executor executor, Scheduler scheduler) {
+    this.canBulkLoad = LocalAsyncLoadingCache.canBulkLoad(delegate);
+    this.scheduler = requireNonNull(scheduler);
+    this.executor = requireNonNull(executor);
+    this.delegate = requireNonNull(delegate);
+    this.inFlight = new ConcurrentHashMap<>();
+    this.pending = new LinkedHashMap<>();
+    this.maxDelayNanos = maxDelayNanos;
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  @Override
+  public @Nullable V load(K key) throws Exception {
+    return join(asyncLoad(key, executor));
+  }
+
+  @Override
+  public Map<K, V> loadAll(Set<? extends K> keys) throws Exception {
+    return join(asyncLoadAll(keys, executor));
+  }
+
+  @Override
+  public CompletableFuture<V> asyncLoad(K key, Executor executor) {
+    return enqueue(Collections.singleton(key)).get(key);
+  }
+
+  @Override
+  public CompletableFuture<Map<K, V>> asyncLoadAll(Set<? extends K> keys, Executor executor) {
+    var futures = enqueue(keys);
+    return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+        .thenApply(ignored -> {
+          var result = new LinkedHashMap<K, V>(futures.size());
+          for (var entry : futures.entrySet()) {
+            V value = entry.getValue().join();
+            if (value != null) {
+              result.put(entry.getKey(), value);
+            }
+          }
+          return result;
+        });
+  }
+
+  @Override
+  public CompletableFuture<? extends V> asyncReload(K key, V oldValue, Executor executor) {
+    try {
+      return delegate.asyncReload(key, oldValue, executor);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    } catch (Exception e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  @Override
+  public CompletableFuture<? extends Map<? extends K, ? extends V>> asyncReloadAll(
+      Map<? extends K, ? extends V> oldValues, Executor executor) {
+    @SuppressWarnings("unchecked")
+    var loader = (AsyncCacheLoader<K, V>) delegate;
+    try {
+      return loader.asyncReloadAll(oldValues, executor);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    } catch (Exception e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  /**
+   * Returns the futures for the keys, registering the keys that are not already in-flight into the
+   * pending batch and dispatching any batches that are ready to be loaded.
+   */
+  Map<K, CompletableFuture<V>> enqueue(Collection<? extends K> keys) {
+    var futures = new LinkedHashMap<K, CompletableFuture<V>>(keys.size());
+    var added = new LinkedHashMap<K, CompletableFuture<V>>(keys.size());
+    for (K key : keys) {
+      var future = new CompletableFuture<V>();
+      var prior = inFlight.putIfAbsent(requireNonNull(key), future);
+      if (prior == null) {
+        added.put(key, future);
+        futures.put(key, future);
+      } else {
+        futures.put(key, prior);
+      }
+    }
+    if (!added.isEmpty()) {
+      for (var batch : addToPending(added)) {
+        dispatch(batch);
+      }
+    }
+    return futures;
+  }
+
+  /** Adds the entries into the pending batch and returns the batches that should be loaded. */
+  synchronized List<Map<K, CompletableFuture<V>>> addToPending(
+      Map<K, CompletableFuture<V>> added) {
+    var ready = new ArrayList<Map<K, CompletableFuture<V>>>(1);
+    for (var entry : added.entrySet()) {
+      pending.put(entry.getKey(), entry.getValue());
+      if (pending.size() >= maxBatchSize) {
+        ready.add(pending);
+        pending = new LinkedHashMap<>();
+      }
+    }
+
+    if (!pending.isEmpty() && (maxDelayNanos == 0)) {
+      ready.add(pending);
+      pending = new LinkedHashMap<>();
+    }
+    if (pending.isEmpty()) {
+      if (timer != null) {
+        timer.cancel(/* mayInterruptIfRunning */ false);
+        timer = null;
+      }
+    } else if (timer == null) {
+      timer = scheduler.schedule(executor, this::flush, maxDelayNanos, TimeUnit.NANOSECONDS);
+    }
+    return ready;
+  }
+
+  /** Dispatches the pending batch after the maximum delay has elapsed. */
+  void flush() {
+    Map<K, CompletableFuture<V>> batch;
+    synchronized (this) {
+      timer = null;
+      if (pending.isEmpty()) {
+        return;
+      }
+      batch = pending;
+      pending = new LinkedHashMap<>();
+    }
+    dispatch(batch);
+  }
+
+  /** Loads the batch and completes the futures of its keys. */
+  @SuppressWarnings("FutureReturnValueIgnored")
+  void dispatch(Map<K, CompletableFuture<V>> batch) {
+    if (!canBulkLoad) {
+      for (var entry : batch.entrySet()) {
+        K key = entry.getKey();
+        try {
+          requireNonNull(delegate.asyncLoad(key, executor)).whenComplete((value, error) ->
+              complete(key, entry.getValue(), value, error));
+        } catch (Throwable t) {
+          handleInterrupt(t);
+          complete(key, entry.getValue(), /* value */ null, t);
+        }
+      }
+      return;
+    }
+
+    try {
+      var keys = Collections.unmodifiableSet(batch.keySet());
+      requireNonNull(delegate.asyncLoadAll(keys, executor)).whenComplete((result, error) -> {
+        for (var entry : batch.entrySet()) {
+          V value = (result == null) ? null : result.get(entry.getKey());
+          complete(entry.getKey(), entry.getValue(), value, error);
+        }
+      });
+    } catch (Throwable t) {
+      handleInterrupt(t);
+      for (var entry : batch.entrySet()) {
+        complete(entry.getKey(), entry.getValue(), /* value */ null, t);
+      }
+    }
+  }
+
+  /** Removes the key from the in-flight loads and then completes its future. */
+  void complete(K key, CompletableFuture<V> future,
+      @Nullable V value, @Nullable Throwable error) {
+    inFlight.remove(key, future);
+    if (error == null) {
+      future.complete(value);
+    } else {
+      future.completeExceptionally(error);
+    }
+  }
+
+  static void handleInterrupt(Throwable t) {
+    if (t instanceof InterruptedException) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Waits for the result, rethrowing the cause of a failure. */
+  static <T> T join(CompletableFuture<T> future) throws Exception {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+}
@@ -104,7 +104,7 @@ abstract class LocalAsyncLoadingCache<K, V>
   }
 
   /** Returns whether the supplied cache loader has bulk load functionality. */
-  boolean canBulkLoad(AsyncCacheLoader<?, ?> loader) {
+  static boolean canBulkLoad(AsyncCacheLoader<?, ?> loader) {
     try {
       Class<?> defaultLoaderClass = AsyncCacheLoader.class;
       if (loader instanceof CacheLoader<?, ?>) {
@@ -25,6 +25,7 @@ import java.util.function.Function;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import com.github.benmanes.caffeine.cache.tracing.AccessTracer;
 
 /**
  * An in-memory cache providing thread safety and atomicity guarantees. This interface provides an
@@ -43,6 +44,33 @@ interface LocalCache<K, V> extends ConcurrentMap<K, V> {
   /** Returns the {@link StatsCounter} used by this cache. */
   StatsCounter statsCounter();
 
+  /** Returns the {@link AccessTracer} used by this cache. */
+  AccessTracer accessTracer();
+
+  /** Returns whether this cache records a trace of its accesses. */
+  default boolean isTracingAccesses() {
+    return (accessTracer() != AccessTracer.disabled());
+  }
+
+  /** Returns the weight of the entry that is reported to the access tracer. */
+  default int traceWeight(Object key, @Nullable Object value) {
+    return (value == null) ? 0 : 1;
+  }
+
+  /** Records the hit with the access tracer if the key is sampled. */
+  default void traceHit(@Nullable Object key, int weight) {
+    if ((key != null) && accessTracer().isSampled(key)) {
+      accessTracer().recordHit(key, weight);
+    }
+  }
+
+  /** Records the miss with the access tracer if the key is sampled. */
+  default void traceMiss(Object key, @Nullable Object value, long loadPenalty) {
+    if (accessTracer().isSampled(key)) {
+      accessTracer().recordMiss(key, traceWeight(key, value), loadPenalty);
+    }
+  }
+
   /** Asynchronously sends a removal notification to the listener. */
   void notifyRemoval(@Nullable K key, @Nullable V value, RemovalCause cause);
 
@@ -152,23 +180,26 @@ interface LocalCache<K, V> extends ConcurrentMap<K, V> {
     }
   }
 
-  /** Decorates the remapping function to record statistics if enabled. */
+  /** Decorates the remapping function to record statistics and trace the access if enabled. */
   default <T, R> Function<? super T, ? extends R> statsAware(
       Function<? super T, ? extends R> mappingFunction, boolean recordLoad) {
-    if (!isRecordingStats()) {
+    if (!isRecordingStats() && !isTracingAccesses()) {
       return mappingFunction;
     }
+    Ticker ticker = isRecordingStats() ? statsTicker() : Ticker.systemTicker();
     return key -> {
       R value;
       statsCounter().recordMisses(1);
-      long startTime = statsTicker().read();
+      long startTime = ticker.read();
       try {
         value = mappingFunction.apply(key);
       } catch (RuntimeException | Error e) {
-        statsCounter().recordLoadFailure(statsTicker().read() - startTime);
+        long loadTime = ticker.read() - startTime;
+        statsCounter().recordLoadFailure(loadTime);
+        traceMiss(key, /* value */ null, loadTime);
         throw e;
       }
-      long loadTime = statsTicker().read() - startTime;
+      long loadTime = ticker.read() - startTime;
       if (recordLoad) {
         if (value == null) {
           statsCounter().recordLoadFailure(loadTime);
@@ -176,6 +207,7 @@ interface LocalCache<K, V> extends ConcurrentMap<K, V> {
           statsCounter().recordLoadSuccess(loadTime);
         }
       }
+      traceMiss(key, value, recordLoad ? loadTime : 0L);
       return value;
     };
   }
@@ -187,28 +219,34 @@ interface LocalCache<K, V> extends ConcurrentMap<K, V> {
         /* recordLoad */ true, /* recordLoadFailure */ true);
   }
 
-  /** Decorates the remapping function to record statistics if enabled. */
+  /** Decorates the remapping function to record statistics and trace the access if enabled. */
   default <T, U, R> BiFunction<? super T, ? super U, ? extends R> statsAware(
       BiFunction<? super T, ? super U, ? extends R> remappingFunction,
       boolean recordMiss, boolean recordLoad, boolean recordLoadFailure) {
-    if (!isRecordingStats()) {
+    if (!isRecordingStats() && !isTracingAccesses()) {
       return remappingFunction;
     }
+    Ticker ticker = isRecordingStats() ? statsTicker() : Ticker.systemTicker();
     return (t, u) -> {
       R result;
-      if ((u == null) && recordMiss) {
+      boolean missed = (u == null) && recordMiss;
+      if (missed) {
         statsCounter().recordMisses(1);
       }
-      long startTime = statsTicker().read();
+      long startTime = ticker.read();
       try {
         result = remappingFunction.apply(t, u);
       } catch (RuntimeException | Error e) {
+        long loadTime = ticker.read() - startTime;
         if (recordLoadFailure) {
-          statsCounter().recordLoadFailure(statsTicker().read() - startTime);
+          statsCounter().recordLoadFailure(loadTime);
+        }
+        if (missed) {
+          traceMiss(t, /* value */ null, loadTime);
         }
         throw e;
       }
-      long loadTime = statsTicker().read() - startTime;
+      long loadTime = ticker.read() - startTime;
       if (recordLoad) {
         if (result == null) {
           statsCounter().recordLoadFailure(loadTime);
@@ -216,6 +254,9 @@ interface LocalCache<K, V> extends ConcurrentMap<K, V> {
           statsCounter().recordLoadSuccess(loadTime);
         }
       }
+      if (missed) {
+        traceMiss(t, result, recordLoad ? loadTime : 0L);
+      }
       return result;
     };
   }
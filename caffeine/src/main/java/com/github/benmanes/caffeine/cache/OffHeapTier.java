@@ -0,0 +1,241 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.requireArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * A secondary tier that retains the serialized form of values evicted from the cache in direct
+ * memory. The tier is bounded by the total number of bytes and discards its oldest entries when
+ * space is required.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class OffHeapTier<K, V> {
+
+  /*
+   * The arena is a log-structured ring of direct buffers (slabs). An entry is appended at the write
+   * cursor as a length-prefixed record and its location is recorded in an on-heap index. When the
+   * current slab cannot fit the record the cursor advances to the next slab in the ring, and all of
+   * the entries that still reside in that slab are discarded before it is overwritten. This FIFO
+   * replacement is coarse, but it avoids fragmentation and a per-entry policy, as the admission
+   * decision was already made by the cache's eviction policy when the entry was demoted.
+   *
+   * The index retains the key and a packed location (slab << 32 | offset) per entry, so only the
+   * value's footprint is moved off of the Java heap. A record that is larger than a slab is not
+   * retained. The slabs are allocated lazily so that an unused tier does not reserve memory, and
+   * the arena is divided into multiple slabs so that advancing the cursor discards only a small
+   * fraction of the retained entries.
+   */
+
+  /** The maximum size of a slab. */
+  static final int MAXIMUM_SLAB_SIZE = 1 << 26; // 64 MiB
+  /** The minimum size of a slab, unless the tier is smaller. */
+  static final int MINIMUM_SLAB_SIZE = 1 << 12; // 4 KiB
+  /** The preferred number of slabs, so that a wrap around discards a small fraction. */
+  static final int PREFERRED_SLAB_COUNT = 16;
+  /** The size of the length prefix of a record. */
+  static final int HEADER_SIZE = Integer.BYTES;
+
+  final ValueCodec<V> codec;
+  final long maximumBytes;
+  final int slabSize;
+
+  @GuardedBy("this")
+  final ByteBuffer[] slabs;
+  @GuardedBy("this")
+  final List<K>[] slabKeys;
+  @GuardedBy("this")
+  final HashMap<Object, Long> index;
+
+  @GuardedBy("this")
+  int slab;
+  @GuardedBy("this")
+  int position;
+
+  /** The bytes occupied by the retained records, which is written while synchronized. */
+  volatile long usedBytes;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  OffHeapTier(@NonNegative long maximumBytes, ValueCodec<V> codec) {
+    requireArgument(maximumBytes > 0, "maximum bytes must be positive");
+    this.slabSize = (int) Math.min(MAXIMUM_SLAB_SIZE, Math.max(
+        maximumBytes / PREFERRED_SLAB_COUNT, Math.min(maximumBytes, MINIMUM_SLAB_SIZE)));
+    this.maximumBytes = maximumBytes;
+    this.codec = requireNonNull(codec);
+    int slabCount = (int) Math.max(1, maximumBytes / slabSize);
+    this.slabs = new ByteBuffer[slabCount];
+    this.slabKeys = new List[slabCount];
+    this.index = new HashMap<>();
+  }
+
+  /** Returns the number of entries retained by the tier. */
+  public synchronized int size() {
+    return index.size();
+  }
+
+  /** Returns the number of bytes occupied by the records that are retained by the tier. */
+  public long usedBytes() {
+    return usedBytes;
+  }
+
+  /**
+   * Returns if the tier does not retain any records. This does not acquire the lock, so a caller
+   * that must observe a concurrent demotion of a key should hold that key's hash bin lock.
+   */
+  public boolean isEmpty() {
+    return (usedBytes == 0);
+  }
+
+  /**
+   * Retains the value in the tier, replacing any previous record for the key. If the encoded value
+   * cannot fit within a slab then any previous record is discarded.
+   *
+   * @param key the key of the evicted entry
+   * @param value the value of the evicted entry
+   * @return if the value was retained
+   */
+  @SuppressWarnings("NonAtomicVolatileUpdate")
+  public boolean put(K key, V value) {
+    byte[] bytes = codec.encode(value);
+    int length = HEADER_SIZE + bytes.length;
+
+    synchronized (this) {
+      discard(key);
+      if (length > slabSize) {
+        return false;
+      } else if ((position + length) > slabSize) {
+        advance();
+      }
+
+      ByteBuffer buffer = slab(slab);
+      buffer.putInt(position, bytes.length);
+      buffer.duplicate().position(position + HEADER_SIZE).put(bytes);
+      index.put(key, location(slab, position));
+      slabKeys[slab].add(key);
+      usedBytes += length;
+      position += length;
+      return true;
+    }
+  }
+
+  /**
+   * Returns and removes the value from the tier, if present.
+   *
+   * @param key the key of the entry to remove
+   * @return the decoded value or null if not present
+   */
+  @SuppressWarnings("NonAtomicVolatileUpdate")
+  public synchronized @Nullable V remove(Object key) {
+    Long location = index.remove(key);
+    if (location == null) {
+      return null;
+    }
+
+    ByteBuffer buffer = slabs[slabOf(location)];
+    int offset = offsetOf(location);
+    int length = buffer.getInt(offset);
+    usedBytes -= (HEADER_SIZE + length);
+
+    ByteBuffer record = buffer.asReadOnlyBuffer();
+    record.position(offset + HEADER_SIZE).limit(offset + HEADER_SIZE + length);
+    return codec.decode(record.slice());
+  }
+
+  /**
+   * Discards the value from the tier, if present.
+   *
+   * @param key the key of the entry to discard
+   */
+  public synchronized void invalidate(Object key) {
+    discard(key);
+  }
+
+  /** Discards all of the entries and releases the slabs. */
+  public synchronized void clear() {
+    for (int i = 0; i < slabs.length; i++) {
+      slabs[i] = null;
+      slabKeys[i] = null;
+    }
+    index.clear();
+    usedBytes = 0;
+    position = 0;
+    slab = 0;
+  }
+
+  /** Removes the record for the key from the index. */
+  @GuardedBy("this")
+  @SuppressWarnings("NonAtomicVolatileUpdate")
+  void discard(Object key) {
+    Long location = index.remove(key);
+    if (location != null) {
+      ByteBuffer buffer = slabs[slabOf(location)];
+      usedBytes -= (HEADER_SIZE + buffer.getInt(offsetOf(location)));
+    }
+  }
+
+  /** Moves the write cursor to the next slab, discarding the records that it contains. */
+  @GuardedBy("this")
+  void advance() {
+    slab = (slab + 1) % slabs.length;
+    position = 0;
+
+    List<K> keys = slabKeys[slab];
+    if (keys == null) {
+      return;
+    }
+    for (K key : keys) {
+      Long location = index.get(key);
+      if ((location != null) && (slabOf(location) == slab)) {
+        discard(key);
+      }
+    }
+    keys.clear();
+  }
+
+  /** Returns the slab at the given index, allocating it if necessary. */
+  @GuardedBy("this")
+  ByteBuffer slab(int i) {
+    if (slabs[i] == null) {
+      slabs[i] = ByteBuffer.allocateDirect(slabSize);
+      slabKeys[i] = new ArrayList<>();
+    }
+    return slabs[i];
+  }
+
+  static long location(int slab, int offset) {
+    return (((long) slab) << 32) | offset;
+  }
+
+  static int slabOf(long location) {
+    return (int) (location >>> 32);
+  }
+
+  static int offsetOf(long location) {
+    return (int) location;
+  }
+}
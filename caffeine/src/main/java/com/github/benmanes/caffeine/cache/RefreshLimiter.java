@@ -0,0 +1,212 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * A limiter that bounds the number of automatic refreshes that are in-flight, queuing the stale
+ * entries that exceed this limit and reloading them in bulk when the loader supports it.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class RefreshLimiter {
+  static final Logger logger = System.getLogger(RefreshLimiter.class.getName());
+
+  /*
+   * A stale entry is appended to the queue with the future that the cache registers as its
+   * in-flight refresh, so the cache's existing deduplication and conflict detection are unchanged.
+   * The queue is drained only after that registration, which is performed within a computation on
+   * the map of in-flight refreshes, so that a reload that completes immediately does not update
+   * that map recursively. A reload is dispatched whenever fewer than the maximum number are
+   * in-flight, taking as many of the queued entries as the batch size allows if the loader can
+   * reload in bulk, or otherwise a single entry. When a reload completes its permit is released and
+   * the queue is drained again by the completing thread, unless another thread is already
+   * draining. In that case the draining thread observes the released permit, which avoids a deep
+   * recursion when the loader completes its futures immediately.
+   */
+
+  final AsyncCacheLoader<Object, Object> cacheLoader;
+  final boolean canBulkReload;
+  final int maximumInFlight;
+  final int maximumBatchSize;
+  final Executor executor;
+
+  @GuardedBy("this")
+  final ArrayDeque<PendingRefresh> queue;
+  @GuardedBy("this")
+  boolean draining;
+  @GuardedBy("this")
+  int inFlight;
+
+  @SuppressWarnings("unchecked")
+  RefreshLimiter(AsyncCacheLoader<?, ?> cacheLoader,
+      int maximumInFlight, int maximumBatchSize, Executor executor) {
+    this.cacheLoader = (AsyncCacheLoader<Object, Object>) requireNonNull(cacheLoader);
+    this.canBulkReload = (maximumBatchSize > 1) && canBulkReload(cacheLoader);
+    this.executor = requireNonNull(executor);
+    this.maximumBatchSize = maximumBatchSize;
+    this.maximumInFlight = maximumInFlight;
+    this.queue = new ArrayDeque<>();
+  }
+
+  /** Returns whether the supplied cache loader has bulk reload functionality. */
+  static boolean canBulkReload(AsyncCacheLoader<?, ?> loader) {
+    if (loader instanceof CoalescingLoader<?, ?>) {
+      return canBulkReload(((CoalescingLoader<?, ?>) loader).delegate);
+    }
+    try {
+      Class<?> defaultLoaderClass = AsyncCacheLoader.class;
+      if (loader instanceof CacheLoader<?, ?>) {
+        defaultLoaderClass = CacheLoader.class;
+
+        Method classReloadAll = loader.getClass().getMethod("reloadAll", Map.class);
+        Method defaultReloadAll = CacheLoader.class.getMethod("reloadAll", Map.class);
+        if (!classReloadAll.equals(defaultReloadAll)) {
+          return true;
+        }
+      }
+
+      Method classAsyncReloadAll = loader.getClass().getMethod(
+          "asyncReloadAll", Map.class, Executor.class);
+      Method defaultAsyncReloadAll = defaultLoaderClass.getMethod(
+          "asyncReloadAll", Map.class, Executor.class);
+      return !classAsyncReloadAll.equals(defaultAsyncReloadAll);
+    } catch (NoSuchMethodException | SecurityException e) {
+      logger.log(Level.WARNING, "Cannot determine if CacheLoader can bulk reload", e);
+      return false;
+    }
+  }
+
+  /**
+   * Returns a future for the reloaded value, which is loaded once a permit is available. The
+   * caller should {@link #drain()} the queue after it has registered the future as the entry's
+   * in-flight refresh, as the future may be completed by the draining thread.
+   *
+   * @param key the key being refreshed
+   * @param oldValue the value to be replaced
+   * @return the future value that the refresh should replace the old value with
+   */
+  @SuppressWarnings("unchecked")
+  <V> CompletableFuture<V> enqueue(Object key, Object oldValue) {
+    var refresh = new PendingRefresh(key, oldValue);
+    synchronized (this) {
+      queue.add(refresh);
+    }
+    return (CompletableFuture<V>) refresh.future;
+  }
+
+  /** Returns the number of refreshes that are waiting for a permit. */
+  synchronized int queued() {
+    return queue.size();
+  }
+
+  /** Dispatches the queued refreshes while permits are available. */
+  void drain() {
+    synchronized (this) {
+      if (draining) {
+        return;
+      }
+      draining = true;
+    }
+    for (;;) {
+      List<PendingRefresh> batch;
+      synchronized (this) {
+        if ((inFlight >= maximumInFlight) || queue.isEmpty()) {
+          draining = false;
+          return;
+        }
+        int size = canBulkReload ? Math.min(queue.size(), maximumBatchSize) : 1;
+        batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          batch.add(queue.poll());
+        }
+        inFlight++;
+      }
+      dispatch(batch);
+    }
+  }
+
+  /** Reloads the batch and completes the futures of its entries, then releases the permit. */
+  @SuppressWarnings("FutureReturnValueIgnored")
+  void dispatch(List<PendingRefresh> batch) {
+    try {
+      if (batch.size() == 1) {
+        var refresh = batch.get(0);
+        requireNonNull(cacheLoader.asyncReload(refresh.key, refresh.oldValue, executor))
+            .whenComplete((value, error) -> complete(batch, /* results */ null, value, error));
+      } else {
+        var oldValues = new LinkedHashMap<Object, Object>(batch.size());
+        for (var refresh : batch) {
+          oldValues.put(refresh.key, refresh.oldValue);
+        }
+        requireNonNull(cacheLoader.asyncReloadAll(oldValues, executor)).whenComplete(
+            (results, error) -> complete(batch, results, /* value */ null, error));
+      }
+    } catch (Throwable t) {
+      if (t instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      complete(batch, /* results */ null, /* value */ null, t);
+    }
+  }
+
+  /** Completes the futures of the batch's entries and dispatches the next queued refreshes. */
+  void complete(List<PendingRefresh> batch, @Nullable Map<?, ?> results,
+      @Nullable Object value, @Nullable Throwable error) {
+    synchronized (this) {
+      inFlight--;
+    }
+    for (var refresh : batch) {
+      if (error != null) {
+        refresh.future.completeExceptionally(error);
+      } else if (results != null) {
+        refresh.future.complete(results.get(refresh.key));
+      } else {
+        refresh.future.complete(value);
+      }
+    }
+    drain();
+  }
+
+  /** A stale entry that is waiting to be reloaded. */
+  static final class PendingRefresh {
+    final CompletableFuture<Object> future;
+    final Object oldValue;
+    final Object key;
+
+    PendingRefresh(Object key, Object oldValue) {
+      this.future = new CompletableFuture<>();
+      this.oldValue = oldValue;
+      this.key = key;
+    }
+  }
+}
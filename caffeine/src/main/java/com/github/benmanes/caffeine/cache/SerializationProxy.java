@@ -18,6 +18,7 @@ package com.github.benmanes.caffeine.cache;
 import static com.github.benmanes.caffeine.cache.Caffeine.UNSET_INT;
 
 import java.io.Serializable;
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -37,15 +38,22 @@ final class SerializationProxy<K, V> implements Serializable {
   boolean weakValues;
   boolean softValues;
   boolean isRecordingStats;
+  boolean blockedFrequencySketch;
   long refreshAfterWriteNanos;
   long expiresAfterWriteNanos;
   long expiresAfterAccessNanos;
   long maximumSize = UNSET_INT;
   long maximumWeight = UNSET_INT;
+  long offHeapMaximumBytes = UNSET_INT;
+  int shardCount = UNSET_INT;
+  int expirationBatchSize = UNSET_INT;
+  int refreshMaximumInFlight = UNSET_INT;
+  int refreshMaximumBatchSize = UNSET_INT;
 
   @Nullable Ticker ticker;
   @Nullable Expiry<?, ?> expiry;
   @Nullable Weigher<?, ?> weigher;
+  @Nullable ValueCodec<?> valueCodec;
   @Nullable AsyncCacheLoader<?, ?> cacheLoader;
   @Nullable RemovalListener<?, ?> removalListener;
   @Nullable RemovalListener<?, ?> evictionListener;
@@ -71,6 +79,9 @@ final class SerializationProxy<K, V> implements Serializable {
     if (expiry != null) {
       builder.expireAfter(expiry);
     }
+    if (expirationBatchSize > 0) {
+      builder.expireAfterBatchSize(expirationBatchSize);
+    }
     if (expiresAfterWriteNanos > 0) {
       builder.expireAfterWrite(expiresAfterWriteNanos, TimeUnit.NANOSECONDS);
     }
@@ -80,6 +91,9 @@ final class SerializationProxy<K, V> implements Serializable {
     if (refreshAfterWriteNanos > 0) {
       builder.refreshAfterWrite(refreshAfterWriteNanos, TimeUnit.NANOSECONDS);
     }
+    if (refreshMaximumInFlight != UNSET_INT) {
+      builder.refreshConcurrency(refreshMaximumInFlight, refreshMaximumBatchSize);
+    }
     if (weakKeys) {
       builder.weakKeys();
     }
@@ -95,11 +109,29 @@ final class SerializationProxy<K, V> implements Serializable {
     if (evictionListener != null) {
       builder.evictionListener(evictionListener);
     }
+    if (valueCodec != null) {
+      @SuppressWarnings("unchecked")
+      var castedCodec = (ValueCodec<Object>) valueCodec;
+      builder.offHeapTier(offHeapMaximumBytes, castedCodec);
+    }
+    if (shardCount > 1) {
+      builder.shards(shardCount);
+    }
+    if (blockedFrequencySketch) {
+      builder.blockedFrequencySketch();
+    }
     return builder;
   }
 
   Object readResolve() {
     Caffeine<Object, Object> builder = recreateCaffeine();
+    var cacheLoader = this.cacheLoader;
+    if (cacheLoader instanceof CoalescingLoader<?, ?>) {
+      var coalescingLoader = (CoalescingLoader<?, ?>) cacheLoader;
+      builder.coalescingBulkLoad(coalescingLoader.maxBatchSize,
+          Duration.ofNanos(coalescingLoader.maxDelayNanos));
+      cacheLoader = coalescingLoader.delegate;
+    }
     if (async) {
       if (cacheLoader == null) {
         return builder.buildAsync();
@@ -0,0 +1,805 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.requireArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.github.benmanes.caffeine.cache.BoundedLocalCache.BoundedLocalLoadingCache;
+import com.github.benmanes.caffeine.cache.BoundedLocalCache.BoundedLocalManualCache;
+import com.github.benmanes.caffeine.cache.BoundedLocalCache.SizeLimiter;
+import com.github.benmanes.caffeine.cache.BoundedLocalCache.WeightLimiter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import com.github.benmanes.caffeine.cache.tracing.AccessTracer;
+
+/**
+ * A bounded cache that is partitioned into independent segments by the hash of the key. Each
+ * segment is a complete {@link BoundedLocalCache} with its own eviction policy, frequency sketch,
+ * buffers, and maintenance lock, so that the policy work caused by a high rate of writes is
+ * performed concurrently rather than serialized behind a single lock.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class ShardedLocalCache<K, V> extends AbstractMap<K, V> implements LocalCache<K, V> {
+
+  /*
+   * The shard is selected by the upper bits of the scrambled hash code so that the keys within a
+   * shard remain well distributed across the lower bits that its hash table uses to select a bin.
+   * A cache that holds weak keys compares by identity and therefore selects by the identity hash.
+   *
+   * The maximum size or weight is divided across the shards, with any remainder assigned to the
+   * lowest indexes, and each shard only evicts based on the entries that it holds. The statistics
+   * counter is shared so that the cache reports its aggregate statistics.
+   */
+
+  static final int SPREAD = 0x9E3779B9;
+
+  final BoundedLocalCache<K, V>[] shards;
+  final boolean isWeighted;
+  final boolean weakKeys;
+  final int shift;
+
+  @Nullable Set<K> keySet;
+  @Nullable Collection<V> values;
+  @Nullable Set<Entry<K, V>> entrySet;
+
+  ShardedLocalCache(BoundedLocalCache<K, V>[] shards, boolean isWeighted, boolean weakKeys) {
+    this.shift = Integer.numberOfLeadingZeros(shards.length) + 1;
+    this.isWeighted = isWeighted;
+    this.weakKeys = weakKeys;
+    this.shards = shards;
+  }
+
+  /** Returns the index of the shard that the key is assigned to. */
+  int indexOf(Object key) {
+    int hash = weakKeys ? System.identityHashCode(key) : key.hashCode();
+    return (hash * SPREAD) >>> shift;
+  }
+
+  /** Returns the shard that the key is assigned to. */
+  BoundedLocalCache<K, V> shardFor(Object key) {
+    return shards[indexOf(key)];
+  }
+
+  /** Returns the maximum of each shard when the total maximum is divided across them. */
+  static long[] divide(long maximum, int shardCount) {
+    long[] maximums = new long[shardCount];
+    long remainder = maximum % shardCount;
+    for (int i = 0; i < shardCount; i++) {
+      maximums[i] = (maximum / shardCount) + ((i < remainder) ? 1 : 0);
+    }
+    return maximums;
+  }
+
+  /** Returns the cache shards constructed from the builder's configuration. */
+  static <K, V> List<BoundedLocalManualCache<K, V>> newShards(
+      Caffeine<K, V> builder, @Nullable CacheLoader<? super K, V> loader) {
+    StatsCounter statsCounter = builder.isRecordingStats()
+        ? builder.getStatsCounterSupplier().get()
+        : null;
+    long[] maximums = divide(builder.getMaximum(), builder.shardCount);
+    var shards = new ArrayList<BoundedLocalManualCache<K, V>>(maximums.length);
+    for (long maximum : maximums) {
+      Caffeine<K, V> shardBuilder = builder.newShardBuilder(maximum, statsCounter);
+      shards.add((loader == null)
+          ? new BoundedLocalManualCache<>(shardBuilder)
+          : new BoundedLocalLoadingCache<>(shardBuilder, loader));
+    }
+    return shards;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static <K, V> ShardedLocalCache<K, V> newShardedCache(
+      Caffeine<K, V> builder, List<? extends BoundedLocalManualCache<K, V>> shards) {
+    var caches = new BoundedLocalCache[shards.size()];
+    for (int i = 0; i < caches.length; i++) {
+      caches[i] = shards.get(i).cache;
+    }
+    return new ShardedLocalCache<>(caches, builder.isWeighted(), !builder.isStrongKeys());
+  }
+
+  /* --------------- Cache --------------- */
+
+  @Override
+  public boolean isAsync() {
+    return false;
+  }
+
+  @Override
+  public boolean isRecordingStats() {
+    return shards[0].isRecordingStats();
+  }
+
+  @Override
+  public StatsCounter statsCounter() {
+    return shards[0].statsCounter();
+  }
+
+  @Override
+  public AccessTracer accessTracer() {
+    return shards[0].accessTracer();
+  }
+
+  @Override
+  public void notifyRemoval(@Nullable K key, @Nullable V value, RemovalCause cause) {
+    ((key == null) ? shards[0] : shardFor(key)).notifyRemoval(key, value, cause);
+  }
+
+  @Override
+  public Executor executor() {
+    return shards[0].executor();
+  }
+
+  @Override
+  public ConcurrentMap<Object, CompletableFuture<?>> refreshes() {
+    var refreshes = new ConcurrentHashMap<Object, CompletableFuture<?>>();
+    for (var shard : shards) {
+      if (shard.refreshes != null) {
+        refreshes.putAll(shard.refreshes);
+      }
+    }
+    return refreshes;
+  }
+
+  @Override
+  public boolean hasWriteTime() {
+    return shards[0].hasWriteTime();
+  }
+
+  @Override
+  public @Nullable Expiry<K, V> expiry() {
+    return shards[0].expiry();
+  }
+
+  @Override
+  public Ticker statsTicker() {
+    return shards[0].statsTicker();
+  }
+
+  @Override
+  public long estimatedSize() {
+    long size = 0;
+    for (var shard : shards) {
+      size += shard.estimatedSize();
+    }
+    return size;
+  }
+
+  @Override
+  public Object referenceKey(K key) {
+    return shardFor(key).referenceKey(key);
+  }
+
+  @Override
+  public @Nullable V getIfPresent(K key, boolean recordStats) {
+    return shardFor(key).getIfPresent(key, recordStats);
+  }
+
+  @Override
+  public @Nullable V getIfPresentQuietly(Object key) {
+    return shardFor(key).getIfPresentQuietly(key);
+  }
+
+  @Override
+  public @Nullable V getIfPresentQuietly(K key, long[/* 1 */] writeTime) {
+    return shardFor(key).getIfPresentQuietly(key, writeTime);
+  }
+
+  @Override
+  public Map<K, V> getAllPresent(Iterable<? extends K> keys) {
+    var keysByShard = new LinkedHashMap<BoundedLocalCache<K, V>, Set<K>>();
+    var result = new LinkedHashMap<K, V>();
+    for (K key : keys) {
+      if (!result.containsKey(key)) {
+        result.put(key, null);
+        keysByShard.computeIfAbsent(shardFor(key), shard -> new LinkedHashSet<>()).add(key);
+      }
+    }
+
+    var found = new ArrayList<Map<K, V>>(keysByShard.size());
+    for (var entry : keysByShard.entrySet()) {
+      found.add(entry.getKey().getAllPresent(entry.getValue()));
+    }
+    for (var iter = result.entrySet().iterator(); iter.hasNext();) {
+      var entry = iter.next();
+      V value = null;
+      for (var present : found) {
+        value = present.get(entry.getKey());
+        if (value != null) {
+          break;
+        }
+      }
+      if (value == null) {
+        iter.remove();
+      } else {
+        entry.setValue(value);
+      }
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  @Override
+  public void invalidateAll(Iterable<?> keys) {
+    for (Object key : keys) {
+      shardFor(key).remove(key);
+    }
+  }
+
+  @Override
+  public void cleanUp() {
+    for (var shard : shards) {
+      shard.cleanUp();
+    }
+  }
+
+  /* --------------- JDK8+ Map extensions --------------- */
+
+  @Override
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    for (var shard : shards) {
+      shard.forEach(action);
+    }
+  }
+
+  @Override
+  public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+    for (var shard : shards) {
+      shard.replaceAll(function);
+    }
+  }
+
+  @Override
+  public @Nullable V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction,
+      boolean recordStats, boolean recordLoad) {
+    return shardFor(key).computeIfAbsent(key, mappingFunction, recordStats, recordLoad);
+  }
+
+  @Override
+  public @Nullable V computeIfPresent(K key,
+      BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    return shardFor(key).computeIfPresent(key, remappingFunction);
+  }
+
+  @Override
+  public @Nullable V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction,
+      @Nullable Expiry<? super K, ? super V> expiry, boolean recordMiss,
+      boolean recordLoad, boolean recordLoadFailure) {
+    return shardFor(key).compute(key, remappingFunction,
+        expiry, recordMiss, recordLoad, recordLoadFailure);
+  }
+
+  @Override
+  public @Nullable V merge(K key, V value,
+      BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+    return shardFor(key).merge(key, value, remappingFunction);
+  }
+
+  /* --------------- Concurrent Map --------------- */
+
+  @Override
+  public boolean isEmpty() {
+    for (var shard : shards) {
+      if (!shard.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int size() {
+    long size = 0;
+    for (var shard : shards) {
+      size += shard.size();
+    }
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void clear() {
+    for (var shard : shards) {
+      shard.clear();
+    }
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return shardFor(key).containsKey(key);
+  }
+
+  @Override
+  public boolean containsValue(Object value) {
+    requireNonNull(value);
+    for (var shard : shards) {
+      if (shard.containsValue(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public @Nullable V get(Object key) {
+    return shardFor(key).get(key);
+  }
+
+  @Override
+  public @Nullable V put(K key, V value) {
+    return shardFor(key).put(key, value);
+  }
+
+  @Override
+  public @Nullable V putIfAbsent(K key, V value) {
+    return shardFor(key).putIfAbsent(key, value);
+  }
+
+  @Override
+  public @Nullable V remove(Object key) {
+    return shardFor(key).remove(key);
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    requireNonNull(key);
+    return (value != null) && shardFor(key).remove(key, value);
+  }
+
+  @Override
+  public @Nullable V replace(K key, V value) {
+    return shardFor(key).replace(key, value);
+  }
+
+  @Override
+  public boolean replace(K key, V oldValue, V newValue) {
+    return shardFor(key).replace(key, oldValue, newValue);
+  }
+
+  @Override
+  public Set<K> keySet() {
+    final Set<K> ks = keySet;
+    return (ks == null) ? (keySet = new KeySetView()) : ks;
+  }
+
+  @Override
+  public Collection<V> values() {
+    final Collection<V> vs = values;
+    return (vs == null) ? (values = new ValuesView()) : vs;
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    final Set<Entry<K, V>> es = entrySet;
+    return (es == null) ? (entrySet = new EntrySetView()) : es;
+  }
+
+  /** An adapter to safely externalize the keys. */
+  final class KeySetView extends AbstractSet<K> {
+    @Override public int size() {
+      return ShardedLocalCache.this.size();
+    }
+    @Override public void clear() {
+      ShardedLocalCache.this.clear();
+    }
+    @Override public boolean contains(Object o) {
+      return containsKey(o);
+    }
+    @Override public boolean remove(Object o) {
+      return (ShardedLocalCache.this.remove(o) != null);
+    }
+    @Override public Iterator<K> iterator() {
+      return new ShardIterator<>(shards, BoundedLocalCache::keySet);
+    }
+  }
+
+  /** An adapter to safely externalize the values. */
+  final class ValuesView extends AbstractCollection<V> {
+    @Override public int size() {
+      return ShardedLocalCache.this.size();
+    }
+    @Override public void clear() {
+      ShardedLocalCache.this.clear();
+    }
+    @Override public boolean contains(Object o) {
+      return containsValue(o);
+    }
+    @Override public Iterator<V> iterator() {
+      return new ShardIterator<>(shards, BoundedLocalCache::values);
+    }
+  }
+
+  /** An adapter to safely externalize the entries. */
+  final class EntrySetView extends AbstractSet<Entry<K, V>> {
+    @Override public int size() {
+      return ShardedLocalCache.this.size();
+    }
+    @Override public void clear() {
+      ShardedLocalCache.this.clear();
+    }
+    @Override public boolean contains(Object o) {
+      if (!(o instanceof Entry<?, ?>)) {
+        return false;
+      }
+      var entry = (Entry<?, ?>) o;
+      Object key = entry.getKey();
+      return (key != null) && shardFor(key).entrySet().contains(entry);
+    }
+    @Override public boolean remove(Object o) {
+      if (!(o instanceof Entry<?, ?>)) {
+        return false;
+      }
+      var entry = (Entry<?, ?>) o;
+      Object key = entry.getKey();
+      return (key != null) && shardFor(key).entrySet().remove(entry);
+    }
+    @Override public Iterator<Entry<K, V>> iterator() {
+      return new ShardIterator<>(shards, BoundedLocalCache::entrySet);
+    }
+  }
+
+  /** An iterator that traverses the view of each shard in turn. */
+  static final class ShardIterator<K, V, E> implements Iterator<E> {
+    final Function<BoundedLocalCache<K, V>, Collection<E>> view;
+    final BoundedLocalCache<K, V>[] shards;
+
+    @Nullable Iterator<E> removal;
+    Iterator<E> current;
+    int index;
+
+    ShardIterator(BoundedLocalCache<K, V>[] shards,
+        Function<BoundedLocalCache<K, V>, Collection<E>> view) {
+      this.current = view.apply(shards[0]).iterator();
+      this.shards = shards;
+      this.view = view;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!current.hasNext()) {
+        if (++index == shards.length) {
+          return false;
+        }
+        current = view.apply(shards[index]).iterator();
+      }
+      return true;
+    }
+
+    @Override
+    public E next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      removal = current;
+      return current.next();
+    }
+
+    @Override
+    public void remove() {
+      if (removal == null) {
+        throw new IllegalStateException();
+      }
+      removal.remove();
+      removal = null;
+    }
+  }
+
+  /** Returns the entries of each shard merged in round-robin order, up to the limit. */
+  static <K, V> Map<K, V> interleave(List<Map<K, V>> maps, int limit) {
+    var iterators = new ArrayList<Iterator<Entry<K, V>>>(maps.size());
+    for (var map : maps) {
+      iterators.add(map.entrySet().iterator());
+    }
+    var result = new LinkedHashMap<K, V>();
+    interleave(iterators, entry -> (result.size() < limit) && (result.put(entry.getKey(),
+        entry.getValue()) == null));
+    return Collections.unmodifiableMap(result);
+  }
+
+  /** Feeds the elements of the iterators in round-robin order until the consumer declines. */
+  static <E> void interleave(List<Iterator<E>> iterators, Predicate<E> sink) {
+    boolean more = true;
+    while (more) {
+      more = false;
+      for (var iterator : iterators) {
+        if (iterator.hasNext()) {
+          if (!sink.test(iterator.next())) {
+            return;
+          }
+          more = true;
+        }
+      }
+    }
+  }
+
+  /* --------------- Manual Cache --------------- */
+
+  static class ShardedLocalManualCache<K, V> implements LocalManualCache<K, V>, Serializable {
+    private static final long serialVersionUID = 1;
+
+    final List<? extends BoundedLocalManualCache<K, V>> shards;
+    final ShardedLocalCache<K, V> cache;
+
+    @Nullable Policy<K, V> policy;
+
+    ShardedLocalManualCache(Caffeine<K, V> builder) {
+      this(builder, newShards(builder, /* loader */ null));
+    }
+
+    ShardedLocalManualCache(Caffeine<K, V> builder,
+        List<? extends BoundedLocalManualCache<K, V>> shards) {
+      this.cache = newShardedCache(builder, shards);
+      this.shards = shards;
+    }
+
+    @Override
+    public ShardedLocalCache<K, V> cache() {
+      return cache;
+    }
+
+    @Override
+    public Policy<K, V> policy() {
+      var p = policy;
+      return (p == null) ? (policy = new ShardedPolicy<>(cache, shards)) : p;
+    }
+
+    @SuppressWarnings("UnusedVariable")
+    private void readObject(ObjectInputStream stream) throws InvalidObjectException {
+      throw new InvalidObjectException("Proxy required");
+    }
+
+    private Object writeReplace() {
+      return makeSerializationProxy(cache);
+    }
+  }
+
+  /** Returns the serialization proxy that recreates the cache with the total maximum. */
+  static <K, V> SerializationProxy<K, V> makeSerializationProxy(ShardedLocalCache<?, ?> cache) {
+    SerializationProxy<K, V> proxy = BoundedLocalCache.makeSerializationProxy(cache.shards[0]);
+    long maximum = 0;
+    for (var shard : cache.shards) {
+      maximum += shard.maximum();
+    }
+    if (cache.isWeighted) {
+      proxy.maximumWeight = maximum;
+    } else {
+      proxy.maximumSize = maximum;
+    }
+    proxy.shardCount = cache.shards.length;
+    return proxy;
+  }
+
+  /* --------------- Loading Cache --------------- */
+
+  static final class ShardedLocalLoadingCache<K, V>
+      extends ShardedLocalManualCache<K, V> implements LocalLoadingCache<K, V> {
+    private static final long serialVersionUID = 1;
+
+    final AsyncCacheLoader<? super K, V> cacheLoader;
+    final Function<K, V> mappingFunction;
+    @Nullable final Function<Set<? extends K>, Map<K, V>> bulkMappingFunction;
+
+    ShardedLocalLoadingCache(Caffeine<K, V> builder, CacheLoader<? super K, V> loader) {
+      super(builder, newShards(builder, requireNonNull(loader)));
+      mappingFunction = LocalLoadingCache.newMappingFunction(loader);
+      bulkMappingFunction = LocalLoadingCache.newBulkMappingFunction(loader);
+      cacheLoader = loader;
+    }
+
+    @Override
+    public AsyncCacheLoader<? super K, V> cacheLoader() {
+      return cacheLoader;
+    }
+
+    @Override
+    public Function<K, V> mappingFunction() {
+      return mappingFunction;
+    }
+
+    @Override
+    public @Nullable Function<Set<? extends K>, Map<K, V>> bulkMappingFunction() {
+      return bulkMappingFunction;
+    }
+
+    @Override
+    public CompletableFuture<V> refresh(K key) {
+      requireNonNull(key);
+      var shard = (BoundedLocalLoadingCache<K, V>) shards.get(cache.indexOf(key));
+      return shard.refresh(key);
+    }
+
+    @SuppressWarnings("UnusedVariable")
+    private void readObject(ObjectInputStream stream) throws InvalidObjectException {
+      throw new InvalidObjectException("Proxy required");
+    }
+
+    private Object writeReplace() {
+      return makeSerializationProxy(cache);
+    }
+  }
+
+  /* --------------- Policy --------------- */
+
+  static final class ShardedPolicy<K, V> implements Policy<K, V> {
+    final List<? extends BoundedLocalManualCache<K, V>> shards;
+    final ShardedLocalCache<K, V> cache;
+
+    @Nullable Optional<Eviction<K, V>> eviction;
+
+    ShardedPolicy(ShardedLocalCache<K, V> cache,
+        List<? extends BoundedLocalManualCache<K, V>> shards) {
+      this.shards = shards;
+      this.cache = cache;
+    }
+
+    Eviction<K, V> evictionOf(BoundedLocalManualCache<K, V> shard) {
+      return shard.policy().eviction().orElseThrow();
+    }
+    Policy<K, V> policyFor(K key) {
+      return shards.get(cache.indexOf(key)).policy();
+    }
+
+    @Override public boolean isRecordingStats() {
+      return cache.isRecordingStats();
+    }
+    @Override public @Nullable V getIfPresentQuietly(K key) {
+      return cache.getIfPresentQuietly(key);
+    }
+    @Override public @Nullable CacheEntry<K, V> getEntryIfPresentQuietly(K key) {
+      return policyFor(key).getEntryIfPresentQuietly(key);
+    }
+    @Override public Map<K, CompletableFuture<V>> refreshes() {
+      var refreshes = new LinkedHashMap<K, CompletableFuture<V>>();
+      for (var shard : shards) {
+        refreshes.putAll(shard.policy().refreshes());
+      }
+      return Collections.unmodifiableMap(refreshes);
+    }
+    @Override public Optional<Eviction<K, V>> eviction() {
+      return (eviction == null) ? (eviction = Optional.of(new ShardedEviction())) : eviction;
+    }
+    @Override public Optional<FixedExpiration<K, V>> expireAfterAccess() {
+      return Optional.empty();
+    }
+    @Override public Optional<FixedExpiration<K, V>> expireAfterWrite() {
+      return Optional.empty();
+    }
+    @Override public Optional<VarExpiration<K, V>> expireVariably() {
+      return Optional.empty();
+    }
+    @Override public Optional<FixedRefresh<K, V>> refreshAfterWrite() {
+      return Optional.empty();
+    }
+
+    final class ShardedEviction implements Eviction<K, V> {
+      @Override public boolean isWeighted() {
+        return cache.isWeighted;
+      }
+      @Override public OptionalInt weightOf(K key) {
+        requireNonNull(key);
+        return policyFor(key).eviction().orElseThrow().weightOf(key);
+      }
+      @Override public OptionalLong weightedSize() {
+        if (!isWeighted()) {
+          return OptionalLong.empty();
+        }
+        long weightedSize = 0;
+        for (var shard : shards) {
+          weightedSize += evictionOf(shard).weightedSize().orElse(0L);
+        }
+        return OptionalLong.of(weightedSize);
+      }
+      @Override public long getMaximum() {
+        long maximum = 0;
+        for (var shard : shards) {
+          maximum += evictionOf(shard).getMaximum();
+        }
+        return maximum;
+      }
+      @Override public void setMaximum(long maximum) {
+        requireArgument(maximum >= 0, "maximum must not be negative");
+        long[] maximums = divide(maximum, shards.size());
+        for (int i = 0; i < maximums.length; i++) {
+          evictionOf(shards.get(i)).setMaximum(maximums[i]);
+        }
+      }
+      @Override public Map<K, V> coldest(int limit) {
+        requireArgument(limit >= 0);
+        var maps = new ArrayList<Map<K, V>>(shards.size());
+        for (var shard : shards) {
+          maps.add(evictionOf(shard).coldest(limit));
+        }
+        return interleave(maps, limit);
+      }
+      @Override public Map<K, V> coldestWeighted(long weightLimit) {
+        return ordered(/* hottest */ false, limiter(weightLimit));
+      }
+      @Override
+      public <T> T coldest(Function<Stream<CacheEntry<K, V>>, T> mappingFunction) {
+        return ordered(/* hottest */ false, mappingFunction);
+      }
+      @Override public Map<K, V> hottest(int limit) {
+        requireArgument(limit >= 0);
+        var maps = new ArrayList<Map<K, V>>(shards.size());
+        for (var shard : shards) {
+          maps.add(evictionOf(shard).hottest(limit));
+        }
+        return interleave(maps, limit);
+      }
+      @Override public Map<K, V> hottestWeighted(long weightLimit) {
+        return ordered(/* hottest */ true, limiter(weightLimit));
+      }
+      @Override
+      public <T> T hottest(Function<Stream<CacheEntry<K, V>>, T> mappingFunction) {
+        return ordered(/* hottest */ true, mappingFunction);
+      }
+
+      /** Returns a snapshot function that is limited by weight, or by count if unweighted. */
+      Function<Stream<CacheEntry<K, V>>, Map<K, V>> limiter(long weightLimit) {
+        return isWeighted()
+            ? new WeightLimiter<>(weightLimit)
+            : new SizeLimiter<>((int) Math.min(weightLimit, cache.size()), weightLimit);
+      }
+
+      /** Applies the mapping function to a stream of each shard's entries in round-robin order. */
+      <T> T ordered(boolean hottest, Function<Stream<CacheEntry<K, V>>, T> mappingFunction) {
+        requireNonNull(mappingFunction);
+        var iterators = new ArrayList<Iterator<CacheEntry<K, V>>>(shards.size());
+        for (var shard : shards) {
+          Function<Stream<CacheEntry<K, V>>, List<CacheEntry<K, V>>> snapshot =
+              stream -> stream.collect(Collectors.toList());
+          var entries = hottest
+              ? evictionOf(shard).hottest(snapshot)
+              : evictionOf(shard).coldest(snapshot);
+          iterators.add(entries.iterator());
+        }
+        var merged = new ArrayList<CacheEntry<K, V>>();
+        interleave(iterators, merged::add);
+        return mappingFunction.apply(merged.stream());
+      }
+    }
+  }
+}
@@ -44,6 +44,14 @@ final class TimerWheel<K, V> implements Iterable<Node<K, V>> {
    * to be added, removed, and expired in O(1) time, where expiration occurs for the entire bucket,
    * and the penalty of cascading is amortized by the rotations.
    *
+   * When a batch size is configured the wheel cascades lazily. As the wheels rotate, each bucket
+   * that is reached is spliced in constant time onto a pending list rather than its timers being
+   * evaluated immediately. The pending timers are then expired or rescheduled into lower buckets at
+   * a bounded number per advance, so that a clock jump or a large wheel turn is spread across
+   * multiple maintenance cycles instead of stalling a single one. The pending timers are the most
+   * likely to expire and are traversed first by the ascending iterator. An entry that has expired
+   * but is still pending is treated as absent by the cache, so this only delays its removal.
+   *
    * [1] Hashed and Hierarchical Timing Wheels
    * http://www.cs.columbia.edu/~nahum/w6998/papers/ton97-timing-wheels.pdf
    */
@@ -67,12 +75,26 @@ final class TimerWheel<K, V> implements Iterable<Node<K, V>> {
 
   final BoundedLocalCache<K, V> cache;
   final Node<K, V>[][] wheel;
+  final Node<K, V> pending;
+  final int batchSize;
 
   long nanos;
 
-  @SuppressWarnings({"rawtypes", "unchecked"})
   TimerWheel(BoundedLocalCache<K, V> cache) {
+    this(cache, cache.expirationBatchSize);
+  }
+
+  /**
+   * Creates a timer wheel for the cache.
+   *
+   * @param cache the cache that owns the timer events
+   * @param batchSize the maximum number of timers to evaluate per advance, or zero if unbounded
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  TimerWheel(BoundedLocalCache<K, V> cache, int batchSize) {
     this.cache = requireNonNull(cache);
+    this.pending = new Sentinel<>();
+    this.batchSize = batchSize;
 
     wheel = new Node[BUCKETS.length][];
     for (int i = 0; i < wheel.length; i++) {
@@ -105,12 +127,19 @@ final class TimerWheel<K, V> implements Iterable<Node<K, V>> {
         if ((currentTicks - previousTicks) <= 0L) {
           break;
         }
-        expire(i, previousTicks, currentTicks);
+        if (batchSize == 0) {
+          expire(i, previousTicks, currentTicks);
+        } else {
+          defer(i, previousTicks, currentTicks);
+        }
       }
     } catch (Throwable t) {
       nanos = previousTimeNanos;
       throw t;
     }
+    if (batchSize != 0) {
+      expirePending();
+    }
   }
 
   /**
@@ -157,6 +186,77 @@ final class TimerWheel<K, V> implements Iterable<Node<K, V>> {
     }
   }
 
+  /**
+   * Moves the timers in the buckets that were reached onto the pending list.
+   *
+   * @param index the wheel being operated on
+   * @param previousTicks the previous number of ticks
+   * @param currentTicks the current number of ticks
+   */
+  void defer(int index, long previousTicks, long currentTicks) {
+    Node<K, V>[] timerWheel = wheel[index];
+    int mask = timerWheel.length - 1;
+
+    int steps = Math.min(1 + Math.abs((int) (currentTicks - previousTicks)), timerWheel.length);
+    int start = (int) (previousTicks & mask);
+    int end = start + steps;
+
+    for (int i = start; i < end; i++) {
+      Node<K, V> sentinel = timerWheel[i & mask];
+      Node<K, V> first = sentinel.getNextInVariableOrder();
+      if (first == sentinel) {
+        continue;
+      }
+      Node<K, V> last = sentinel.getPreviousInVariableOrder();
+      sentinel.setPreviousInVariableOrder(sentinel);
+      sentinel.setNextInVariableOrder(sentinel);
+
+      Node<K, V> tail = pending.getPreviousInVariableOrder();
+      first.setPreviousInVariableOrder(tail);
+      tail.setNextInVariableOrder(first);
+      last.setNextInVariableOrder(pending);
+      pending.setPreviousInVariableOrder(last);
+    }
+  }
+
+  /** Expires or reschedules up to the batch size of the pending timers. */
+  void expirePending() {
+    cache.startRemovalBatch();
+    try {
+      for (int i = 0; i < batchSize; i++) {
+        Node<K, V> node = pending.getNextInVariableOrder();
+        if (node == pending) {
+          return;
+        }
+        Node<K, V> next = node.getNextInVariableOrder();
+        pending.setNextInVariableOrder(next);
+        next.setPreviousInVariableOrder(pending);
+        node.setPreviousInVariableOrder(null);
+        node.setNextInVariableOrder(null);
+
+        try {
+          if (((node.getVariableTime() - nanos) > 0)
+              || !cache.evictEntry(node, RemovalCause.EXPIRED, nanos)) {
+            schedule(node);
+          }
+        } catch (Throwable t) {
+          node.setPreviousInVariableOrder(pending);
+          node.setNextInVariableOrder(next);
+          next.setPreviousInVariableOrder(node);
+          pending.setNextInVariableOrder(node);
+          throw t;
+        }
+      }
+    } finally {
+      cache.flushRemovalBatch();
+    }
+  }
+
+  /** Returns if there are timers whose buckets were reached but have not yet been evaluated. */
+  public boolean hasPending() {
+    return (pending.getNextInVariableOrder() != pending);
+  }
+
   /**
    * Schedules a timer event for the node.
    *
@@ -231,6 +331,9 @@ final class TimerWheel<K, V> implements Iterable<Node<K, V>> {
   /** Returns the duration until the next bucket expires, or {@link Long.MAX_VALUE} if none. */
   @SuppressWarnings("IntLongMath")
   public long getExpirationDelay() {
+    if (hasPending()) {
+      return 0L;
+    }
     for (int i = 0; i < SHIFT.length; i++) {
       Node<K, V>[] timerWheel = wheel[i];
       long ticks = (nanos >>> SHIFT[i]);
@@ -361,19 +464,22 @@ final class TimerWheel<K, V> implements Iterable<Node<K, V>> {
   }
 
   final class AscendingIterator extends Traverser {
-    int wheelIndex;
+    int wheelIndex = -1;
     int steps;
 
     @Override boolean isDone() {
       return (wheelIndex == wheel.length);
     }
     @Override Node<K, V> sentinel() {
-      return wheel[wheelIndex][bucketIndex()];
+      return (wheelIndex < 0) ? pending : wheel[wheelIndex][bucketIndex()];
     }
     @Override Node<K, V> traverse(Node<K, V> node) {
       return node.getNextInVariableOrder();
     }
     @Override @Nullable Node<K, V> goToNextBucket() {
+      if (wheelIndex < 0) {
+        return null;
+      }
       return (++steps < wheel[wheelIndex].length)
           ? wheel[wheelIndex][bucketIndex()]
           : null;
@@ -401,22 +507,25 @@ final class TimerWheel<K, V> implements Iterable<Node<K, V>> {
       wheelIndex = wheel.length - 1;
     }
     @Override boolean isDone() {
-      return (wheelIndex == -1);
+      return (wheelIndex == -2);
     }
     @Override Node<K, V> sentinel() {
-      return wheel[wheelIndex][bucketIndex()];
+      return (wheelIndex < 0) ? pending : wheel[wheelIndex][bucketIndex()];
     }
     @Override @Nullable Node<K, V> goToNextBucket() {
+      if (wheelIndex < 0) {
+        return null;
+      }
       return (++steps < wheel[wheelIndex].length)
           ? wheel[wheelIndex][bucketIndex()]
           : null;
     }
     @Override @Nullable Node<K, V> goToNextWheel() {
-      if (--wheelIndex < 0) {
+      if (--wheelIndex < -1) {
         return null;
       }
       steps = 0;
-      return wheel[wheelIndex][bucketIndex()];
+      return (wheelIndex < 0) ? pending : wheel[wheelIndex][bucketIndex()];
     }
     @Override Node<K, V> traverse(Node<K, V> node) {
       return node.getPreviousInVariableOrder();
@@ -49,6 +49,7 @@ import java.util.function.Predicate;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import com.github.benmanes.caffeine.cache.tracing.AccessTracer;
 
 /**
  * An in-memory cache that has no capabilities for bounding the map. This implementation provides
@@ -63,6 +64,7 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
   @Nullable final RemovalListener<K, V> removalListener;
   final ConcurrentHashMap<K, V> data;
   final StatsCounter statsCounter;
+  final AccessTracer accessTracer;
   final boolean isRecordingStats;
   final Executor executor;
   final boolean isAsync;
@@ -76,6 +78,7 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
   UnboundedLocalCache(Caffeine<? super K, ? super V> builder, boolean isAsync) {
     this.data = new ConcurrentHashMap<>(builder.getInitialCapacity());
     this.statsCounter = builder.getStatsCounterSupplier().get();
+    this.accessTracer = builder.getAccessTracer();
     this.removalListener = builder.getRemovalListener(isAsync);
     this.isRecordingStats = builder.isRecordingStats();
     this.executor = builder.getExecutor();
@@ -122,8 +125,10 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
     if (recordStats) {
       if (value == null) {
         statsCounter.recordMisses(1);
+        traceMiss(key, /* value */ null, /* loadPenalty */ 0L);
       } else {
         statsCounter.recordHits(1);
+        traceHit(key, /* weight */ 1);
       }
     }
     return value;
@@ -157,8 +162,10 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
       Object value = data.get(entry.getKey());
       if (value == null) {
         iter.remove();
+        traceMiss(entry.getKey(), /* value */ null, /* loadPenalty */ 0L);
       } else {
         entry.setValue(value);
+        traceHit(entry.getKey(), /* weight */ 1);
       }
     }
     statsCounter.recordHits(result.size());
@@ -207,6 +214,11 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
     return isRecordingStats;
   }
 
+  @Override
+  public AccessTracer accessTracer() {
+    return accessTracer;
+  }
+
   @Override
   public Executor executor() {
     return executor;
@@ -284,11 +296,13 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
     if (value != null) {
       if (recordStats) {
         statsCounter.recordHits(1);
+        traceHit(key, /* weight */ 1);
       }
       return value;
     }
 
     boolean[] missed = new boolean[1];
+    long waitStartTime = recordStats ? statsTicker().read() : 0L;
     value = data.computeIfAbsent(key, k -> {
       // Do not communicate to CacheWriter on a load
       missed[0] = true;
@@ -298,6 +312,11 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
     });
     if (!missed[0] && recordStats) {
       statsCounter.recordHits(1);
+      traceHit(key, /* weight */ 1);
+      if (value != null) {
+        // The entry was absent from the optimistic read and was computed by another thread
+        statsCounter.recordComputeWait(statsTicker().read() - waitStartTime);
+      }
     }
     return value;
   }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts values to and from a binary form so that they may be retained outside of the Java heap
+ * by an {@linkplain Caffeine#offHeapTier off-heap tier}, or so that the keys and values may be
+ * persisted by a {@link CacheSnapshot}.
+ * <p>
+ * Implementations must be thread-safe and should be stateless. A value that is decoded must be
+ * equivalent to the value that was encoded, as the cache will return the decoded copy in place of
+ * the original instance.
+ *
+ * @param <V> the type of values
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public interface ValueCodec<V extends Object> {
+
+  /**
+   * Returns the binary representation of the value.
+   *
+   * @param value the value to encode
+   * @return the encoded form of the value
+   */
+  byte[] encode(V value);
+
+  /**
+   * Returns the value from its binary representation. The buffer's contents are valid only for the
+   * duration of this call and must not be retained.
+   *
+   * @param buffer a read-only buffer positioned at the start of the encoded value and limited to
+   *        its length
+   * @return the decoded value
+   */
+  V decode(ByteBuffer buffer);
+}
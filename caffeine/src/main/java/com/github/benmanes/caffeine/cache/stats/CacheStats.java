@@ -46,6 +46,9 @@ import com.google.errorprone.annotations.Immutable;
  *       {@code loadSuccessCount} or {@code loadFailureCount} is incremented.
  *   <li>When an entry is evicted from the cache, {@code evictionCount} is incremented and the
  *       weight added to {@code evictionWeight}.
+ *   <li>When a cache lookup encounters a missing cache entry that is restored from the
+ *       {@linkplain com.github.benmanes.caffeine.cache.Caffeine#offHeapTier off-heap tier},
+ *       {@code hitCount} and {@code tierHitCount} are incremented.
  *   <li>No stats are modified when a cache entry is invalidated or manually removed.
  *   <li>No stats are modified by non-computing operations invoked on the
  *       {@linkplain Cache#asMap asMap} view of the cache.
@@ -63,7 +66,7 @@ import com.google.errorprone.annotations.Immutable;
  */
 @Immutable
 public final class CacheStats {
-  private static final CacheStats EMPTY_STATS = CacheStats.of(0L, 0L, 0L, 0L, 0L, 0L, 0L);
+  private static final CacheStats EMPTY_STATS = CacheStats.of(0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L);
 
   private final long hitCount;
   private final long missCount;
@@ -72,13 +75,15 @@ public final class CacheStats {
   private final long totalLoadTime;
   private final long evictionCount;
   private final long evictionWeight;
+  private final long tierHitCount;
 
   private CacheStats(@NonNegative long hitCount, @NonNegative long missCount,
       @NonNegative long loadSuccessCount, @NonNegative long loadFailureCount,
       @NonNegative long totalLoadTime, @NonNegative long evictionCount,
-      @NonNegative long evictionWeight) {
+      @NonNegative long evictionWeight, @NonNegative long tierHitCount) {
     if ((hitCount < 0) || (missCount < 0) || (loadSuccessCount < 0) || (loadFailureCount < 0)
-        || (totalLoadTime < 0) || (evictionCount < 0) || (evictionWeight < 0)) {
+        || (totalLoadTime < 0) || (evictionCount < 0) || (evictionWeight < 0)
+        || (tierHitCount < 0)) {
       throw new IllegalArgumentException();
     }
     this.hitCount = hitCount;
@@ -88,6 +93,7 @@ public final class CacheStats {
     this.totalLoadTime = totalLoadTime;
     this.evictionCount = evictionCount;
     this.evictionWeight = evictionWeight;
+    this.tierHitCount = tierHitCount;
   }
 
   /**
@@ -106,10 +112,31 @@ public final class CacheStats {
       @NonNegative long loadSuccessCount, @NonNegative long loadFailureCount,
       @NonNegative long totalLoadTime, @NonNegative long evictionCount,
       @NonNegative long evictionWeight) {
+    return of(hitCount, missCount, loadSuccessCount, loadFailureCount,
+        totalLoadTime, evictionCount, evictionWeight, /* tierHitCount */ 0L);
+  }
+
+  /**
+   * Returns a {@code CacheStats} representing the specified statistics.
+   *
+   * @param hitCount the number of cache hits
+   * @param missCount the number of cache misses
+   * @param loadSuccessCount the number of successful cache loads
+   * @param loadFailureCount the number of failed cache loads
+   * @param totalLoadTime the total load time (success and failure)
+   * @param evictionCount the number of entries evicted from the cache
+   * @param evictionWeight the sum of weights of entries evicted from the cache
+   * @param tierHitCount the number of cache hits that were served by the off-heap tier
+   * @return a {@code CacheStats} representing the specified statistics
+   */
+  public static CacheStats of(@NonNegative long hitCount, @NonNegative long missCount,
+      @NonNegative long loadSuccessCount, @NonNegative long loadFailureCount,
+      @NonNegative long totalLoadTime, @NonNegative long evictionCount,
+      @NonNegative long evictionWeight, @NonNegative long tierHitCount) {
     // Many parameters of the same type in a row is a bad thing, but this class is not constructed
     // by end users and is too fine-grained for a builder.
-    return new CacheStats(hitCount, missCount, loadSuccessCount,
-        loadFailureCount, totalLoadTime, evictionCount, evictionWeight);
+    return new CacheStats(hitCount, missCount, loadSuccessCount, loadFailureCount,
+        totalLoadTime, evictionCount, evictionWeight, tierHitCount);
   }
 
   /**
@@ -288,6 +315,28 @@ public final class CacheStats {
     return evictionWeight;
   }
 
+  /**
+   * Returns the number of times {@link Cache} lookup methods have returned a value that was
+   * restored from the off-heap tier after having been evicted from the cache. These lookups are
+   * also included in {@link #hitCount}.
+   *
+   * @return the number of times {@link Cache} lookup methods have returned a value from the
+   *         off-heap tier
+   */
+  public @NonNegative long tierHitCount() {
+    return tierHitCount;
+  }
+
+  /**
+   * Returns the ratio of cache hits which were served by the off-heap tier. This is defined as
+   * {@code tierHitCount / hitCount}, or {@code 0.0} when {@code hitCount == 0}.
+   *
+   * @return the ratio of cache hits which were served by the off-heap tier
+   */
+  public @NonNegative double tierHitRate() {
+    return (hitCount == 0) ? 0.0 : (double) tierHitCount / hitCount;
+  }
+
   /**
    * Returns a new {@code CacheStats} representing the difference between this {@code CacheStats}
    * and {@code other}. Negative values, which aren't supported by {@code CacheStats} will be
@@ -305,7 +354,8 @@ public final class CacheStats {
         Math.max(0L, saturatedSubtract(loadFailureCount, other.loadFailureCount)),
         Math.max(0L, saturatedSubtract(totalLoadTime, other.totalLoadTime)),
         Math.max(0L, saturatedSubtract(evictionCount, other.evictionCount)),
-        Math.max(0L, saturatedSubtract(evictionWeight, other.evictionWeight)));
+        Math.max(0L, saturatedSubtract(evictionWeight, other.evictionWeight)),
+        Math.max(0L, saturatedSubtract(tierHitCount, other.tierHitCount)));
   }
 
   /**
@@ -328,7 +378,8 @@ public final class CacheStats {
         saturatedAdd(loadFailureCount, other.loadFailureCount),
         saturatedAdd(totalLoadTime, other.totalLoadTime),
         saturatedAdd(evictionCount, other.evictionCount),
-        saturatedAdd(evictionWeight, other.evictionWeight));
+        saturatedAdd(evictionWeight, other.evictionWeight),
+        saturatedAdd(tierHitCount, other.tierHitCount));
   }
 
   /**
@@ -365,8 +416,8 @@ public final class CacheStats {
 
   @Override
   public int hashCode() {
-    return Objects.hash(hitCount, missCount, loadSuccessCount,
-        loadFailureCount, totalLoadTime, evictionCount, evictionWeight);
+    return Objects.hash(hitCount, missCount, loadSuccessCount, loadFailureCount,
+        totalLoadTime, evictionCount, evictionWeight, tierHitCount);
   }
 
   @Override
@@ -383,7 +434,8 @@ public final class CacheStats {
         && loadFailureCount == other.loadFailureCount
         && totalLoadTime == other.totalLoadTime
         && evictionCount == other.evictionCount
-        && evictionWeight == other.evictionWeight;
+        && evictionWeight == other.evictionWeight
+        && tierHitCount == other.tierHitCount;
   }
 
   @Override
@@ -395,7 +447,8 @@ public final class CacheStats {
         + "loadFailureCount=" + loadFailureCount + ", "
         + "totalLoadTime=" + totalLoadTime + ", "
         + "evictionCount=" + evictionCount + ", "
-        + "evictionWeight=" + evictionWeight
+        + "evictionWeight=" + evictionWeight + ", "
+        + "tierHitCount=" + tierHitCount
         + '}';
   }
 }
@@ -35,6 +35,7 @@ public final class ConcurrentStatsCounter implements StatsCounter {
   private final LongAdder totalLoadTime;
   private final LongAdder evictionCount;
   private final LongAdder evictionWeight;
+  private final LongAdder tierHitCount;
 
   /**
    * Constructs an instance with all counts initialized to zero.
@@ -47,6 +48,7 @@ public final class ConcurrentStatsCounter implements StatsCounter {
     totalLoadTime = new LongAdder();
     evictionCount = new LongAdder();
     evictionWeight = new LongAdder();
+    tierHitCount = new LongAdder();
   }
 
   @Override
@@ -78,6 +80,11 @@ public final class ConcurrentStatsCounter implements StatsCounter {
     evictionWeight.add(weight);
   }
 
+  @Override
+  public void recordTierHits(int count) {
+    tierHitCount.add(count);
+  }
+
   @Override
   public CacheStats snapshot() {
     return CacheStats.of(
@@ -87,7 +94,8 @@ public final class ConcurrentStatsCounter implements StatsCounter {
         negativeToMaxValue(loadFailureCount.sum()),
         negativeToMaxValue(totalLoadTime.sum()),
         negativeToMaxValue(evictionCount.sum()),
-        negativeToMaxValue(evictionWeight.sum()));
+        negativeToMaxValue(evictionWeight.sum()),
+        negativeToMaxValue(tierHitCount.sum()));
   }
 
   /** Returns {@code value}, if non-negative. Otherwise, returns {@link Long#MAX_VALUE}. */
@@ -109,6 +117,7 @@ public final class ConcurrentStatsCounter implements StatsCounter {
     totalLoadTime.add(otherStats.totalLoadTime());
     evictionCount.add(otherStats.evictionCount());
     evictionWeight.add(otherStats.evictionWeight());
+    tierHitCount.add(otherStats.tierHitCount());
   }
 
   @Override
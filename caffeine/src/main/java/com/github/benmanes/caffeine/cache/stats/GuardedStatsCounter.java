@@ -84,6 +84,33 @@ final class GuardedStatsCounter implements StatsCounter {
     }
   }
 
+  @Override
+  public void recordTierHits(int count) {
+    try {
+      delegate.recordTierHits(count);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown by stats counter", t);
+    }
+  }
+
+  @Override
+  public void recordComputeWait(long waitTime) {
+    try {
+      delegate.recordComputeWait(waitTime);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown by stats counter", t);
+    }
+  }
+
+  @Override
+  public void recordEvictionCallback(long callbackTime) {
+    try {
+      delegate.recordEvictionCallback(callbackTime);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown by stats counter", t);
+    }
+  }
+
   @Override
   public CacheStats snapshot() {
     try {
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.stats;
+
+import static java.util.Objects.requireNonNull;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.google.errorprone.annotations.Immutable;
+
+/**
+ * Statistics about the performance of a {@link Cache}, which extends the totals of
+ * {@link CacheStats} with the distributions of the latencies of its operations. The latencies are
+ * recorded by a {@link HistogramStatsCounter} as:
+ * <ul>
+ *   <li>{@code loadLatency}: the time spent loading new values, as a successful or failed load
+ *   <li>{@code computeWaitLatency}: the time a lookup spent waiting for an entry that was being
+ *       computed by another thread
+ *   <li>{@code evictionCallbackLatency}: the time spent in the eviction listener
+ * </ul>
+ * <p>
+ * This is a <em>value-based</em> class; use of identity-sensitive operations (including reference
+ * equality ({@code ==}), identity hash code, or synchronization) on instances of
+ * {@code HistogramStats} may have unpredictable results and should be avoided.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@Immutable
+public final class HistogramStats {
+  private final CacheStats cacheStats;
+  private final LatencyDistribution loadLatency;
+  private final LatencyDistribution computeWaitLatency;
+  private final LatencyDistribution evictionCallbackLatency;
+
+  HistogramStats(CacheStats cacheStats, LatencyDistribution loadLatency,
+      LatencyDistribution computeWaitLatency, LatencyDistribution evictionCallbackLatency) {
+    this.evictionCallbackLatency = requireNonNull(evictionCallbackLatency);
+    this.computeWaitLatency = requireNonNull(computeWaitLatency);
+    this.loadLatency = requireNonNull(loadLatency);
+    this.cacheStats = requireNonNull(cacheStats);
+  }
+
+  /**
+   * Returns the totals of the cache's statistics.
+   *
+   * @return the totals of the cache's statistics
+   */
+  public CacheStats cacheStats() {
+    return cacheStats;
+  }
+
+  /**
+   * Returns the distribution of the time spent loading new values, including the loads that
+   * failed.
+   *
+   * @return the distribution of the load latencies
+   */
+  public LatencyDistribution loadLatency() {
+    return loadLatency;
+  }
+
+  /**
+   * Returns the distribution of the time that lookups spent waiting for an entry that was being
+   * computed by another thread.
+   *
+   * @return the distribution of the compute wait latencies
+   */
+  public LatencyDistribution computeWaitLatency() {
+    return computeWaitLatency;
+  }
+
+  /**
+   * Returns the distribution of the time spent notifying the eviction listener.
+   *
+   * @return the distribution of the eviction callback latencies
+   */
+  public LatencyDistribution evictionCallbackLatency() {
+    return evictionCallbackLatency;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + '{'
+        + "cacheStats=" + cacheStats + ", "
+        + "loadLatency=" + loadLatency + ", "
+        + "computeWaitLatency=" + computeWaitLatency + ", "
+        + "evictionCallbackLatency=" + evictionCallbackLatency
+        + '}';
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.stats;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+/**
+ * A thread-safe {@link StatsCounter} implementation for use by {@link Cache} implementors that, in
+ * addition to the totals, records the distributions of the load, compute wait, and eviction
+ * callback latencies. The latencies are recorded into lock-free, striped, log-linear histograms
+ * without allocating, and their percentiles are available from a {@link #histogramSnapshot()}.
+ * <p>
+ * For example, a cache that records its latency distributions may be built as
+ * <pre>{@code
+ *   var statsCounter = new HistogramStatsCounter();
+ *   Cache<Key, Graph> graphs = Caffeine.newBuilder()
+ *       .maximumSize(10_000)
+ *       .recordStats(() -> statsCounter)
+ *       .build();
+ *   ...
+ *   long p99 = statsCounter.histogramSnapshot().loadLatency().percentile(99.0);
+ * }</pre>
+ *
+ * @see Caffeine#recordStats(java.util.function.Supplier)
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class HistogramStatsCounter implements StatsCounter {
+  private final ConcurrentStatsCounter totals;
+  private final LatencyRecorder loadLatency;
+  private final LatencyRecorder computeWaitLatency;
+  private final LatencyRecorder evictionCallbackLatency;
+
+  /**
+   * Constructs an instance with all counts initialized to zero.
+   */
+  public HistogramStatsCounter() {
+    totals = new ConcurrentStatsCounter();
+    loadLatency = new LatencyRecorder();
+    computeWaitLatency = new LatencyRecorder();
+    evictionCallbackLatency = new LatencyRecorder();
+  }
+
+  @Override
+  public void recordHits(int count) {
+    totals.recordHits(count);
+  }
+
+  @Override
+  public void recordMisses(int count) {
+    totals.recordMisses(count);
+  }
+
+  @Override
+  public void recordLoadSuccess(long loadTime) {
+    totals.recordLoadSuccess(loadTime);
+    loadLatency.record(loadTime);
+  }
+
+  @Override
+  public void recordLoadFailure(long loadTime) {
+    totals.recordLoadFailure(loadTime);
+    loadLatency.record(loadTime);
+  }
+
+  @Override
+  public void recordEviction(int weight, RemovalCause cause) {
+    totals.recordEviction(weight, cause);
+  }
+
+  @Override
+  public void recordTierHits(int count) {
+    totals.recordTierHits(count);
+  }
+
+  @Override
+  public void recordComputeWait(long waitTime) {
+    computeWaitLatency.record(waitTime);
+  }
+
+  @Override
+  public void recordEvictionCallback(long callbackTime) {
+    evictionCallbackLatency.record(callbackTime);
+  }
+
+  @Override
+  public CacheStats snapshot() {
+    return totals.snapshot();
+  }
+
+  /**
+   * Returns a snapshot of this counter's values and latency distributions. Note that this may be
+   * an inconsistent view, as it may be interleaved with update operations.
+   *
+   * @return a snapshot of this counter's values and latency distributions
+   */
+  public HistogramStats histogramSnapshot() {
+    return new HistogramStats(totals.snapshot(), loadLatency.snapshot(),
+        computeWaitLatency.snapshot(), evictionCallbackLatency.snapshot());
+  }
+
+  @Override
+  public String toString() {
+    return histogramSnapshot().toString();
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.stats;
+
+import static java.util.Objects.requireNonNull;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+
+import com.google.errorprone.annotations.Immutable;
+
+/**
+ * A snapshot of the distribution of the durations of a cache operation, as recorded by a
+ * {@link HistogramStatsCounter}. The durations are in nanoseconds and a percentile is reported as
+ * the upper bound of the bucket that it falls into, which has a relative error of at most 6.25%.
+ * <p>
+ * This is a <em>value-based</em> class; use of identity-sensitive operations (including reference
+ * equality ({@code ==}), identity hash code, or synchronization) on instances of
+ * {@code LatencyDistribution} may have unpredictable results and should be avoided.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@Immutable
+@SuppressWarnings("Immutable")
+public final class LatencyDistribution {
+  private static final LatencyDistribution EMPTY =
+      new LatencyDistribution(0L, 0L, 0L, new long[LatencyRecorder.BUCKETS]);
+
+  private final long count;
+  private final long totalTime;
+  private final long maxTime;
+  private final long[] counts;
+
+  LatencyDistribution(@NonNegative long count, @NonNegative long totalTime,
+      @NonNegative long maxTime, long[] counts) {
+    this.counts = requireNonNull(counts);
+    this.totalTime = totalTime;
+    this.maxTime = maxTime;
+    this.count = count;
+  }
+
+  /**
+   * Returns a distribution where no durations have been recorded.
+   *
+   * @return an empty distribution
+   */
+  public static LatencyDistribution empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Returns the number of durations that were recorded.
+   *
+   * @return the number of durations that were recorded
+   */
+  public @NonNegative long count() {
+    return count;
+  }
+
+  /**
+   * Returns the sum of the recorded durations, in nanoseconds.
+   *
+   * @return the sum of the recorded durations
+   */
+  public @NonNegative long totalTime() {
+    return totalTime;
+  }
+
+  /**
+   * Returns the longest recorded duration, in nanoseconds.
+   *
+   * @return the longest recorded duration, or zero if none were recorded
+   */
+  public @NonNegative long maxTime() {
+    return maxTime;
+  }
+
+  /**
+   * Returns the average of the recorded durations, in nanoseconds.
+   *
+   * @return the average duration, or zero if none were recorded
+   */
+  public @NonNegative double mean() {
+    return (count == 0) ? 0.0 : (double) totalTime / count;
+  }
+
+  /**
+   * Returns the duration, in nanoseconds, that the given percentage of the recorded durations are
+   * at or below. For example {@code percentile(99.0)} returns the 99th percentile.
+   *
+   * @param percentile the percentage, in the range of {@code [0.0, 100.0]}
+   * @return the duration at the percentile, or zero if none were recorded
+   * @throws IllegalArgumentException if the percentile is not within the range
+   */
+  public @NonNegative long percentile(double percentile) {
+    if (!((percentile >= 0.0) && (percentile <= 100.0))) {
+      throw new IllegalArgumentException("percentile must be in [0, 100]: " + percentile);
+    }
+    long recorded = 0L;
+    for (long bucketCount : counts) {
+      recorded += bucketCount;
+    }
+    if (recorded == 0L) {
+      return 0L;
+    }
+    long rank = Math.max(1L, (long) Math.ceil((percentile / 100.0) * recorded));
+    long seen = 0L;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return (i == LatencyRecorder.BUCKETS - 1)
+            ? maxTime
+            : Math.min(maxTime, LatencyRecorder.highestEquivalentValue(i));
+      }
+    }
+    return maxTime;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + '{'
+        + "count=" + count + ", "
+        + "mean=" + (long) mean() + ", "
+        + "p50=" + percentile(50.0) + ", "
+        + "p99=" + percentile(99.0) + ", "
+        + "p999=" + percentile(99.9) + ", "
+        + "max=" + maxTime
+        + '}';
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.stats;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A lock-free recorder of the distribution of durations, in nanoseconds, into log-linear buckets.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class LatencyRecorder {
+
+  /*
+   * The buckets are log-linear, where each power of two range is divided into a fixed number of
+   * linear sub-buckets. A value below the number of sub-buckets is recorded exactly, and larger
+   * values are recorded with a relative error of at most 1 / SUB_BUCKETS (6.25%). This is the
+   * same layout as HdrHistogram, but with a coarse fixed precision so that the table remains
+   * small. Durations that exceed the largest power of two are recorded into the last bucket, while
+   * the maximum is tracked exactly.
+   *
+   * The recordings are striped across multiple tables to reduce contention, where a thread is
+   * assigned to a stripe by its id. The tables are laid out in a single array and each is padded
+   * to a multiple of a cache line, so that concurrent writes to different stripes do not falsely
+   * share. A stripe may be used by multiple threads, so its slots are updated atomically. A
+   * snapshot sums the stripes and may observe a recording partially, e.g. its count but not its
+   * bucket, which only results in a slightly inconsistent view.
+   */
+
+  static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  static final int SUB_BUCKET_BITS = 4;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  static final int MAX_EXPONENT = 40;
+  static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  static final int COUNT = 0;
+  static final int TOTAL = 1;
+  static final int MAX = 2;
+  static final int HEADER = 3;
+
+  /** The number of longs in a cache line. */
+  static final int PAD = 8;
+  static final int STRIDE = ceilingMultiple(HEADER + BUCKETS, PAD) + PAD;
+
+  /** The number of stripes, which is a power of two. */
+  static final int STRIPES = Math.min(16,
+      ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors()));
+
+  final long[] table;
+
+  LatencyRecorder() {
+    table = new long[STRIPES * STRIDE];
+  }
+
+  /**
+   * Records the duration.
+   *
+   * @param duration the number of nanoseconds, where a negative value is recorded as zero
+   */
+  void record(long duration) {
+    long value = Math.max(0L, duration);
+    int base = stripe() * STRIDE;
+    LONGS.getAndAdd(table, base + COUNT, 1L);
+    LONGS.getAndAdd(table, base + TOTAL, value);
+    LONGS.getAndAdd(table, base + HEADER + bucketIndex(value), 1L);
+
+    int maxIndex = base + MAX;
+    for (;;) {
+      long max = (long) LONGS.getOpaque(table, maxIndex);
+      if ((value <= max) || LONGS.weakCompareAndSet(table, maxIndex, max, value)) {
+        return;
+      }
+    }
+  }
+
+  /** Returns a snapshot of the recorded distribution. */
+  LatencyDistribution snapshot() {
+    long count = 0L;
+    long total = 0L;
+    long max = 0L;
+    var counts = new long[BUCKETS];
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      int base = stripe * STRIDE;
+      count += (long) LONGS.getVolatile(table, base + COUNT);
+      total += (long) LONGS.getVolatile(table, base + TOTAL);
+      max = Math.max(max, (long) LONGS.getVolatile(table, base + MAX));
+      for (int i = 0; i < BUCKETS; i++) {
+        counts[i] += (long) LONGS.getVolatile(table, base + HEADER + i);
+      }
+    }
+    return new LatencyDistribution(negativeToMaxValue(count),
+        negativeToMaxValue(total), max, counts);
+  }
+
+  /** Returns the index of the stripe that the current thread records into. */
+  static int stripe() {
+    long id = Thread.currentThread().getId();
+    return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (STRIPES - 1);
+  }
+
+  /** Returns the index of the bucket that the non-negative value is recorded into. */
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = (Long.SIZE - 1) - Long.numberOfLeadingZeros(value);
+    if (exponent >= MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return ((shift + 1) << SUB_BUCKET_BITS) + subBucket;
+  }
+
+  /** Returns the largest value that is recorded into the bucket. */
+  static long highestEquivalentValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  /** Returns {@code value}, if non-negative. Otherwise, returns {@link Long#MAX_VALUE}. */
+  static long negativeToMaxValue(long value) {
+    return (value >= 0) ? value : Long.MAX_VALUE;
+  }
+
+  static int ceilingMultiple(int x, int multiple) {
+    return ((x + multiple - 1) / multiple) * multiple;
+  }
+
+  static int ceilingPowerOfTwo(int x) {
+    // From Hacker's Delight, Chapter 3, Harry S. Warren Jr.
+    return 1 << -Integer.numberOfLeadingZeros(x - 1);
+  }
+}
@@ -80,6 +80,31 @@ public interface StatsCounter {
    */
   void recordEviction(@NonNegative int weight, RemovalCause cause);
 
+  /**
+   * Records cache hits that were served by restoring an evicted entry from the off-heap tier. This
+   * should be called in addition to {@link #recordHits}.
+   *
+   * @param count the number of tier hits to record
+   */
+  default void recordTierHits(@NonNegative int count) {}
+
+  /**
+   * Records the time that a cache lookup spent waiting for the entry to be computed by another
+   * thread. This should be called by a thread that blocked on an in-flight load of the same key,
+   * rather than performing the load itself, in addition to {@link #recordHits}.
+   *
+   * @param waitTime the number of nanoseconds the lookup spent waiting for the computation
+   */
+  default void recordComputeWait(@NonNegative long waitTime) {}
+
+  /**
+   * Records the time spent notifying the eviction listener that an entry was evicted. This should
+   * be called after the listener, which is run synchronously, has completed or failed.
+   *
+   * @param callbackTime the number of nanoseconds spent in the eviction listener
+   */
+  default void recordEvictionCallback(@NonNegative long callbackTime) {}
+
   /**
    * Returns a snapshot of this counter's values. Note that this may be an inconsistent view, as it
    * may be interleaved with update operations.
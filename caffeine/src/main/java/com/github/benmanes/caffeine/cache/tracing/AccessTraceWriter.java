@@ -0,0 +1,462 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.tracing;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * An {@link AccessTracer} that appends the sampled accesses to a binary log file, which can be
+ * replayed by the simulator's {@code caffeine} trace format. An access is recorded without blocking
+ * into one of a fixed number of striped buffers, and a full buffer is handed off to the executor
+ * to be appended to the file. A record is dropped rather than delayed if the stripes that its
+ * thread may use are contended, or if the bounded queue of the buffers that are waiting to be
+ * written is full. The number of dropped records is reported by {@link #droppedCount()}.
+ * <p>
+ * The records are appended in the order that they were added to a stripe's buffer, and a buffer
+ * is written in its entirety. The trace does not preserve the global order of the accesses across
+ * threads, as the buffers of different stripes are written as each one fills. A thread's accesses
+ * may also be reordered when contention causes them to be recorded into another stripe.
+ * <p>
+ * The keys are sampled by their hash, so a sampled key has all of its accesses recorded and the
+ * trace retains the reuse pattern of the keys that it contains. The simulator can replay a sampled
+ * trace with a maximum size that is scaled down by the same rate. A key is recorded as a 64-bit
+ * mix of its {@link Object#hashCode()}, so the log does not contain the keys themselves and
+ * distinct keys with the same hash code are indistinguishable.
+ * <p>
+ * The file starts with a header of the magic number, the format's version, and flags that are
+ * {@link #WEIGHTED} if the weights are significant. It is followed by fixed-size records in
+ * big-endian order that contain the key's hash as a long, the weight as an int, a byte that is
+ * {@link #HIT} if the access was a hit, and the load penalty in nanoseconds as a long.
+ *
+ * <pre>{@code
+ *   AccessTraceWriter writer = AccessTraceWriter.newBuilder(Path.of("cache.trace"))
+ *       .samplingRate(0.01)
+ *       .build();
+ *   Cache<Key, Graph> cache = Caffeine.newBuilder()
+ *       .maximumSize(10_000)
+ *       .recordAccesses(writer)
+ *       .build();
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class AccessTraceWriter implements AccessTracer, Closeable {
+  /** The magic number at the start of the file. */
+  public static final int MAGIC = 0xCAFEACCE;
+  /** The version of the file format. */
+  public static final int VERSION = 1;
+  /** The header flag that indicates that the entries are weighted. */
+  public static final int WEIGHTED = 1;
+  /** The record flag that indicates that the access was a hit. */
+  public static final byte HIT = 1;
+  /** The number of bytes in a record. */
+  public static final int RECORD_BYTES = Long.BYTES + Integer.BYTES + Byte.BYTES + Long.BYTES;
+
+  static final Logger logger = System.getLogger(AccessTraceWriter.class.getName());
+  static final double MODULUS = 0x1p63;
+
+  /** Number of CPUS, to place bounds on the number of stripes. */
+  static final int NCPU = Runtime.getRuntime().availableProcessors();
+  /** The number of stripes, which is a power of two so that a thread is assigned by a mask. */
+  static final int STRIPES = 1 << (Integer.SIZE - Integer.numberOfLeadingZeros(4 * NCPU - 1));
+  /** The number of stripes that a record may try to acquire before it is dropped. */
+  static final int ATTEMPTS = 3;
+
+  final ArrayBlockingQueue<ByteBuffer> pending;
+  final ConcurrentLinkedQueue<ByteBuffer> spares;
+  final AtomicBoolean writeScheduled;
+  final ReentrantLock writeLock;
+  final FileChannel channel;
+  final Executor executor;
+  final LongAdder dropped;
+  final Stripe[] stripes;
+  final int bufferBytes;
+  final long threshold;
+
+  @GuardedBy("writeLock")
+  @Nullable IOException failure;
+  @GuardedBy("writeLock")
+  boolean closed;
+
+  volatile boolean recording;
+
+  AccessTraceWriter(Builder builder) throws IOException {
+    this.threshold = (builder.samplingRate == 1.0)
+        ? Long.MAX_VALUE
+        : (long) (builder.samplingRate * MODULUS);
+    this.channel = FileChannel.open(builder.file, CREATE, WRITE, TRUNCATE_EXISTING);
+    this.bufferBytes = builder.bufferRecords * RECORD_BYTES;
+    this.pending = new ArrayBlockingQueue<>(STRIPES);
+    this.spares = new ConcurrentLinkedQueue<>();
+    this.writeScheduled = new AtomicBoolean();
+    this.writeLock = new ReentrantLock();
+    this.executor = builder.executor;
+    this.stripes = new Stripe[STRIPES];
+    this.dropped = new LongAdder();
+    this.recording = true;
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe();
+    }
+
+    var header = ByteBuffer.allocate(3 * Integer.BYTES)
+        .putInt(MAGIC).putInt(VERSION).putInt(builder.weighted ? WEIGHTED : 0);
+    try {
+      header.flip();
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns a new builder for a writer that creates or truncates the file.
+   *
+   * @param file the path to the log file
+   * @return a new builder
+   */
+  public static Builder newBuilder(Path file) {
+    return new Builder(file);
+  }
+
+  @Override
+  public boolean isSampled(Object key) {
+    return recording && ((threshold == Long.MAX_VALUE) || (hash(key) < threshold));
+  }
+
+  @Override
+  public void recordHit(Object key, int weight) {
+    record(key, weight, HIT, /* loadPenalty */ 0L);
+  }
+
+  @Override
+  public void recordMiss(Object key, int weight, long loadPenalty) {
+    record(key, weight, (byte) 0, loadPenalty);
+  }
+
+  /** Adds the access to a stripe's buffer, handing the buffer off to be written if full. */
+  void record(Object key, int weight, byte flags, long loadPenalty) {
+    if (!recording) {
+      return;
+    }
+    var stripe = tryAcquireStripe();
+    if (stripe == null) {
+      dropped.increment();
+      return;
+    }
+    try {
+      var buffer = stripe.buffer;
+      if (buffer == null) {
+        buffer = stripe.buffer = newBuffer();
+      }
+      buffer.putLong(hash(key)).putInt(weight).put(flags).putLong(loadPenalty);
+      if (!buffer.hasRemaining()) {
+        stripe.buffer = handOff(buffer);
+      }
+    } finally {
+      stripe.lazySet(false);
+    }
+  }
+
+  /** Returns an acquired stripe that is assigned to the current thread, or null if contended. */
+  @Nullable Stripe tryAcquireStripe() {
+    long probe = Thread.currentThread().getId() * 0x9e3779b97f4a7c15L;
+    int index = (int) (probe >>> 32);
+    for (int i = 0; i < ATTEMPTS; i++) {
+      var stripe = stripes[(index + i) & (stripes.length - 1)];
+      if (stripe.compareAndSet(false, true)) {
+        return stripe;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Queues the full buffer to be written by the executor and returns an empty buffer to record
+   * into. If the queue is full then the buffer's records are dropped and it is reused.
+   */
+  ByteBuffer handOff(ByteBuffer buffer) {
+    if (!pending.offer(buffer)) {
+      dropped.add(buffer.position() / RECORD_BYTES);
+      buffer.clear();
+      return buffer;
+    }
+    scheduleWrite();
+    var spare = spares.poll();
+    return (spare == null) ? newBuffer() : spare;
+  }
+
+  /**
+   * Schedules the queued buffers to be written by the executor, if not already scheduled. If the
+   * executor rejects the task then the buffers remain queued for the next hand-off to schedule,
+   * so that the recording thread never writes to the file.
+   */
+  void scheduleWrite() {
+    if (!writeScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      executor.execute(this::writePending);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown when submitting the trace write task", t);
+      writeScheduled.set(false);
+    }
+  }
+
+  /** Appends the queued buffers to the file until the queue is observed to be empty. */
+  void writePending() {
+    do {
+      writeLock.lock();
+      try {
+        drainPending();
+      } finally {
+        writeLock.unlock();
+      }
+      writeScheduled.set(false);
+    } while (!pending.isEmpty() && writeScheduled.compareAndSet(false, true));
+  }
+
+  /** Appends the queued buffers to the file in the order that they were handed off. */
+  @GuardedBy("writeLock")
+  void drainPending() {
+    ByteBuffer buffer;
+    while ((buffer = pending.poll()) != null) {
+      write(buffer);
+      spares.add(buffer);
+    }
+  }
+
+  /** Returns the number of accesses that were not recorded due to contention or a full queue. */
+  public long droppedCount() {
+    return dropped.sum();
+  }
+
+  /**
+   * Appends the accesses that are queued or buffered by the stripes to the file.
+   *
+   * @throws IOException if the log could not be written to
+   */
+  public void flush() throws IOException {
+    for (var stripe : stripes) {
+      while (!stripe.compareAndSet(false, true)) {
+        Thread.onSpinWait();
+      }
+      try {
+        writeLock.lock();
+        try {
+          // Writes the stripe's earlier buffers first so that its records remain in order
+          drainPending();
+          var buffer = stripe.buffer;
+          if (buffer != null) {
+            write(buffer);
+          }
+        } finally {
+          writeLock.unlock();
+        }
+      } finally {
+        stripe.set(false);
+      }
+    }
+
+    writeLock.lock();
+    try {
+      if (failure != null) {
+        throw new IOException("Failed to write the access trace", failure);
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Appends the buffered accesses to the file and closes it. Any accesses that are recorded
+   * afterwards are ignored.
+   *
+   * @throws IOException if the log could not be written to or closed
+   */
+  @Override
+  public void close() throws IOException {
+    recording = false;
+    try {
+      flush();
+    } finally {
+      writeLock.lock();
+      try {
+        if (!closed) {
+          closed = true;
+          channel.close();
+        }
+      } finally {
+        writeLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Appends the buffer's contents to the file and clears it. The records are dropped if the file
+   * was closed by a concurrent {@link #close()} or if a previous write failed.
+   */
+  @GuardedBy("writeLock")
+  void write(ByteBuffer buffer) {
+    if (buffer.position() == 0) {
+      return;
+    } else if (closed || (failure != null)) {
+      dropped.add(buffer.position() / RECORD_BYTES);
+      buffer.clear();
+      return;
+    }
+
+    buffer.flip();
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Disabled the access trace due to a write failure", e);
+      recording = false;
+      failure = e;
+    } finally {
+      buffer.clear();
+    }
+  }
+
+  ByteBuffer newBuffer() {
+    return ByteBuffer.allocate(bufferBytes);
+  }
+
+  /** Returns a uniform, non-negative 64-bit hash of the key. */
+  static long hash(Object key) {
+    long hash = key.hashCode() * 0x9e3779b97f4a7c15L;
+    hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+    hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return (hash ^ (hash >>> 33)) >>> 1;
+  }
+
+  /**
+   * A buffer of records that is shared by the threads assigned to it, which is guarded by a flag so
+   * that a contended record tries another stripe instead of blocking. The buffer is allocated when
+   * the stripe is first used.
+   */
+  @SuppressWarnings("serial")
+  static final class Stripe extends AtomicBoolean {
+    @Nullable ByteBuffer buffer;
+  }
+
+  /** A builder of {@link AccessTraceWriter} instances. */
+  public static final class Builder {
+    static final int DEFAULT_BUFFER_RECORDS = 4096;
+
+    final Path file;
+
+    Executor executor = ForkJoinPool.commonPool();
+    double samplingRate = 1.0;
+    int bufferRecords = DEFAULT_BUFFER_RECORDS;
+    boolean weighted;
+
+    Builder(Path file) {
+      this.file = requireNonNull(file);
+    }
+
+    /**
+     * Specifies the fraction of the keys whose accesses are recorded. By default, every access is
+     * recorded.
+     *
+     * @param samplingRate the fraction of the keys to record, in the range (0, 1]
+     * @return this builder (for chaining)
+     * @throws IllegalArgumentException if the rate is not in the range (0, 1]
+     */
+    public Builder samplingRate(double samplingRate) {
+      if (!((samplingRate > 0.0) && (samplingRate <= 1.0))) {
+        throw new IllegalArgumentException("The sampling rate must be in (0, 1]: " + samplingRate);
+      }
+      this.samplingRate = samplingRate;
+      return this;
+    }
+
+    /**
+     * Specifies the number of records that each stripe buffers before appending them to the file.
+     *
+     * @param bufferRecords the number of records per stripe's buffer
+     * @return this builder (for chaining)
+     * @throws IllegalArgumentException if the number of records is not positive
+     */
+    public Builder bufferRecords(int bufferRecords) {
+      if (bufferRecords <= 0) {
+        throw new IllegalArgumentException("The buffer must hold at least one record");
+      }
+      this.bufferRecords = bufferRecords;
+      return this;
+    }
+
+    /**
+     * Specifies the executor to use when appending the full buffers to the file. By default,
+     * {@link ForkJoinPool#commonPool()} is used.
+     *
+     * @param executor the executor to use for writing to the file
+     * @return this builder (for chaining)
+     * @throws NullPointerException if the specified executor is null
+     */
+    public Builder executor(Executor executor) {
+      this.executor = requireNonNull(executor);
+      return this;
+    }
+
+    /**
+     * Specifies that the cache is bounded by weight, so that the simulator replays the trace with
+     * the recorded weights.
+     *
+     * @return this builder (for chaining)
+     */
+    public Builder weighted() {
+      this.weighted = true;
+      return this;
+    }
+
+    /**
+     * Returns a writer that creates or truncates the file and writes the header.
+     *
+     * @return a new writer
+     * @throws IOException if the file could not be opened or written to
+     */
+    public AccessTraceWriter build() throws IOException {
+      return new AccessTraceWriter(this);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.tracing;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+/**
+ * Records the accesses to a cache, such as to capture a trace of a production workload for
+ * evaluating eviction policies in the simulator. The cache calls this tracer for the same lookups
+ * that are recorded as hits and misses by its statistics, so a traced access is one that is
+ * performed by a {@link Cache#getIfPresent} or a {@link Cache#get} style operation.
+ * <p>
+ * A tracer is called on the thread that performs the access and must be thread-safe. As it adds to
+ * the cost of every lookup, an implementation should defer expensive work. The cache only records
+ * an access if {@link #isSampled} selects its key, so that a tracer can avoid computing the entry's
+ * weight or load penalty for the accesses that it discards.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public interface AccessTracer {
+
+  /**
+   * Returns if the accesses to the key should be recorded. An implementation should select all of
+   * the accesses to a key or none of them, so that the sampled trace retains the reuse pattern of
+   * the keys that it contains.
+   *
+   * @param key the key that is being accessed
+   * @return if the access should be recorded
+   */
+  boolean isSampled(Object key);
+
+  /**
+   * Records an access that found the entry present in the cache.
+   *
+   * @param key the key that was accessed
+   * @param weight the weight of the entry
+   */
+  void recordHit(Object key, @NonNegative int weight);
+
+  /**
+   * Records an access that did not find the entry in the cache. If the value was loaded as a result
+   * of the access then the load penalty is the time spent computing it, otherwise it is zero.
+   *
+   * @param key the key that was accessed
+   * @param weight the weight of the loaded entry, or zero if it was not loaded
+   * @param loadPenalty the number of nanoseconds the cache spent computing or retrieving the value
+   */
+  void recordMiss(Object key, @NonNegative int weight, @NonNegative long loadPenalty);
+
+  /**
+   * Returns a tracer that does not record any accesses.
+   *
+   * @return a tracer that does not record any accesses
+   */
+  static AccessTracer disabled() {
+    return DisabledAccessTracer.INSTANCE;
+  }
+
+  /**
+   * Returns a tracer that suppresses and logs any exception thrown by the delegate {@code tracer}.
+   *
+   * @param tracer the tracer to delegate to
+   * @return a tracer that suppresses and logs any exception thrown by the delegate
+   */
+  static AccessTracer guarded(AccessTracer tracer) {
+    return ((tracer instanceof GuardedAccessTracer) || (tracer instanceof DisabledAccessTracer))
+        ? tracer
+        : new GuardedAccessTracer(tracer);
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.tracing;
+
+/**
+ * An {@link AccessTracer} implementation that does not record any accesses.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+enum DisabledAccessTracer implements AccessTracer {
+  INSTANCE;
+
+  @Override
+  public boolean isSampled(Object key) {
+    return false;
+  }
+
+  @Override
+  public void recordHit(Object key, int weight) {}
+
+  @Override
+  public void recordMiss(Object key, int weight, long loadPenalty) {}
+}
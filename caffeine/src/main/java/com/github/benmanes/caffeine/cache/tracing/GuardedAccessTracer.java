@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.tracing;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+
+/**
+ * An {@link AccessTracer} implementation that suppresses and logs any exception thrown by the
+ * delegate <tt>tracer</tt>.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@SuppressWarnings("PMD.AvoidDuplicateLiterals")
+final class GuardedAccessTracer implements AccessTracer {
+  static final Logger logger = System.getLogger(GuardedAccessTracer.class.getName());
+
+  final AccessTracer delegate;
+
+  GuardedAccessTracer(AccessTracer delegate) {
+    this.delegate = requireNonNull(delegate);
+  }
+
+  @Override
+  public boolean isSampled(Object key) {
+    try {
+      return delegate.isSampled(key);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown by access tracer", t);
+      return false;
+    }
+  }
+
+  @Override
+  public void recordHit(Object key, int weight) {
+    try {
+      delegate.recordHit(key, weight);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown by access tracer", t);
+    }
+  }
+
+  @Override
+  public void recordMiss(Object key, int weight, long loadPenalty) {
+    try {
+      delegate.recordMiss(key, weight, loadPenalty);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown by access tracer", t);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return delegate.toString();
+  }
+}
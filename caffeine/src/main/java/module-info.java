@@ -1,6 +1,7 @@
 module com.github.benmanes.caffeine {
   exports com.github.benmanes.caffeine.cache;
   exports com.github.benmanes.caffeine.cache.stats;
+  exports com.github.benmanes.caffeine.cache.tracing;
 
   requires static com.google.errorprone.annotations;
   requires static org.checkerframework.checker.qual;
@@ -55,6 +55,7 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.mockito.Mockito;
@@ -89,6 +90,7 @@ import com.github.valfirst.slf4jtest.TestLoggerFactory;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Range;
+import com.google.common.testing.FakeTicker;
 import com.google.common.testing.GcFinalization;
 import com.google.common.util.concurrent.Uninterruptibles;
 
@@ -1289,6 +1291,59 @@ public final class BoundedLocalCacheTest {
         Range.closed(expectedDelay - TimerWheel.SPANS[0], expectedDelay));
   }
 
+  @Test
+  public void expireVariable_batched() {
+    var tasks = new AtomicInteger();
+    var notifications = new AtomicInteger();
+    var ticker = new FakeTicker();
+    Cache<Int, Int> cache = Caffeine.newBuilder()
+        .removalListener((Int key, Int value, RemovalCause cause) -> {
+          assertThat(cause).isEqualTo(EXPIRED);
+          notifications.incrementAndGet();
+        })
+        .expireAfter(new Expiry<Int, Int>() {
+          @Override public long expireAfterCreate(Int key, Int value, long currentTime) {
+            return TimeUnit.MINUTES.toNanos(1);
+          }
+          @Override public long expireAfterUpdate(Int key, Int value,
+              long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+          @Override public long expireAfterRead(Int key, Int value,
+              long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .executor(task -> {
+          tasks.incrementAndGet();
+          task.run();
+        })
+        .expireAfterBatchSize(10)
+        .ticker(ticker::read)
+        .build();
+    var map = asBoundedLocalCache(cache);
+    for (int i = 0; i < 25; i++) {
+      cache.put(Int.valueOf(i), Int.valueOf(-i));
+    }
+    cache.cleanUp();
+    tasks.set(0);
+
+    ticker.advance(Duration.ofMinutes(2));
+    cache.cleanUp();
+    assertThat(map.data).hasSize(15);
+    assertThat(map.timerWheel().hasPending()).isTrue();
+    assertThat(map.drainStatus()).isEqualTo(REQUIRED);
+    assertThat(notifications.get()).isEqualTo(10);
+    assertThat(tasks.get()).isEqualTo(1);
+
+    cache.cleanUp();
+    cache.cleanUp();
+    assertThat(map.data).isEmpty();
+    assertThat(map.timerWheel().hasPending()).isFalse();
+    assertThat(notifications.get()).isEqualTo(25);
+    assertThat(tasks.get()).isEqualTo(3);
+  }
+
   /* --------------- Refresh --------------- */
 
   @Test(dataProvider = "caches", groups = "isolated")
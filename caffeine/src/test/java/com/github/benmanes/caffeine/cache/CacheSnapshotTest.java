@@ -0,0 +1,309 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.testing.FakeTicker;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class CacheSnapshotTest {
+  static final ValueCodec<Integer> INT_CODEC = new ValueCodec<>() {
+    @Override public byte[] encode(Integer value) {
+      return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+    }
+    @Override public Integer decode(ByteBuffer buffer) {
+      return buffer.getInt();
+    }
+  };
+  static final ValueCodec<String> STRING_CODEC = new ValueCodec<>() {
+    @Override public byte[] encode(String value) {
+      return value.getBytes(UTF_8);
+    }
+    @Override public String decode(ByteBuffer buffer) {
+      return UTF_8.decode(buffer).toString();
+    }
+  };
+
+  Path path;
+
+  @BeforeMethod
+  public void before() throws IOException {
+    path = Files.createTempFile("snapshot", ".bin");
+  }
+
+  @AfterMethod
+  public void after() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+  @Test
+  public void roundTrip() throws IOException {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(1_000).executor(Runnable::run).build();
+    for (int i = 0; i < 500; i++) {
+      cache.put(i, -i);
+    }
+    assertThat(CacheSnapshot.save(cache, path, INT_CODEC, INT_CODEC)).isEqualTo(500);
+
+    Cache<Integer, Integer> restored = Caffeine.newBuilder()
+        .maximumSize(1_000).executor(Runnable::run).build();
+    assertThat(CacheSnapshot.restore(restored, path, INT_CODEC, INT_CODEC)).isEqualTo(500);
+    assertThat(restored.asMap()).isEqualTo(cache.asMap());
+  }
+
+  @Test
+  public void restore_placement() throws IOException {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(100).executor(Runnable::run).build();
+    for (int i = 0; i < 200; i++) {
+      cache.put(i, -i);
+      for (int j = 0; j < (i % 5); j++) {
+        cache.getIfPresent(i);
+      }
+    }
+    cache.cleanUp();
+    CacheSnapshot.save(cache, path, INT_CODEC, INT_CODEC);
+
+    Cache<Integer, Integer> restored = Caffeine.newBuilder()
+        .maximumSize(100).executor(Runnable::run).build();
+    CacheSnapshot.restore(restored, path, INT_CODEC, INT_CODEC);
+
+    var expected = bounded(cache);
+    var actual = bounded(restored);
+    assertThat(keys(actual.accessOrderWindowDeque()))
+        .containsExactlyElementsIn(keys(expected.accessOrderWindowDeque())).inOrder();
+    assertThat(keys(actual.accessOrderProbationDeque()))
+        .containsExactlyElementsIn(keys(expected.accessOrderProbationDeque())).inOrder();
+    assertThat(keys(actual.accessOrderProtectedDeque()))
+        .containsExactlyElementsIn(keys(expected.accessOrderProtectedDeque())).inOrder();
+    assertThat(actual.windowWeightedSize()).isEqualTo(expected.windowWeightedSize());
+    assertThat(actual.mainProtectedWeightedSize()).isEqualTo(expected.mainProtectedWeightedSize());
+    assertThat(actual.frequencySketch().table).isEqualTo(expected.frequencySketch().table);
+  }
+
+  @Test
+  public void restore_smallerCache() throws IOException {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(1_000).executor(Runnable::run).build();
+    for (int i = 0; i < 1_000; i++) {
+      cache.put(i, -i);
+    }
+    var hottest = cache.policy().eviction().orElseThrow().hottest(10).keySet();
+    CacheSnapshot.save(cache, path, INT_CODEC, INT_CODEC);
+
+    Cache<Integer, Integer> restored = Caffeine.newBuilder()
+        .maximumSize(10).executor(Runnable::run).build();
+    assertThat(CacheSnapshot.restore(restored, path, INT_CODEC, INT_CODEC)).isEqualTo(10);
+    assertThat(restored.asMap().keySet()).containsExactlyElementsIn(hottest);
+  }
+
+  @Test
+  public void restore_sketchMismatch() throws IOException {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(1_000).executor(Runnable::run).build();
+    for (int i = 0; i < 1_000; i++) {
+      cache.put(i, -i);
+    }
+    CacheSnapshot.save(cache, path, INT_CODEC, INT_CODEC);
+
+    Cache<Integer, Integer> restored = Caffeine.newBuilder()
+        .maximumSize(10).executor(Runnable::run).build();
+    for (int i = 0; i < 10; i++) {
+      restored.put(i, -i);
+      restored.getIfPresent(i);
+    }
+    restored.cleanUp();
+    var sketch = bounded(restored).frequencySketch();
+    long[] table = sketch.table.clone();
+    int frequency = sketch.frequency(0);
+
+    assertThat(CacheSnapshot.restore(restored, path, INT_CODEC, INT_CODEC)).isEqualTo(0);
+    assertThat(sketch.table).isEqualTo(table);
+    assertThat(sketch.frequency(0)).isEqualTo(frequency);
+  }
+
+  @Test
+  public void restore_skipsPresent() throws IOException {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(10).build();
+    cache.putAll(Map.of(1, -1, 2, -2));
+    CacheSnapshot.save(cache, path, INT_CODEC, INT_CODEC);
+
+    Cache<Integer, Integer> restored = Caffeine.newBuilder().maximumSize(10).build();
+    restored.put(1, 1);
+    assertThat(CacheSnapshot.restore(restored, path, INT_CODEC, INT_CODEC)).isEqualTo(1);
+    assertThat(restored.asMap()).containsExactly(1, 1, 2, -2);
+  }
+
+  @Test
+  public void restore_expiration() throws IOException {
+    var ticker = new FakeTicker();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofMinutes(20))
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build();
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, -i);
+      ticker.advance(Duration.ofMinutes(1));
+    }
+    CacheSnapshot.save(cache, path, INT_CODEC, INT_CODEC);
+
+    var restoredTicker = new FakeTicker().advance(Duration.ofDays(1));
+    Cache<Integer, Integer> restored = Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofMinutes(20))
+        .executor(Runnable::run)
+        .ticker(restoredTicker::read)
+        .build();
+    CacheSnapshot.restore(restored, path, INT_CODEC, INT_CODEC);
+
+    var expiration = restored.policy().expireAfterWrite().orElseThrow();
+    assertThat(expiration.oldest(10).keySet())
+        .containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9).inOrder();
+    assertThat(expiration.ageOf(0).orElseThrow()).isAtLeast(Duration.ofMinutes(10));
+
+    restoredTicker.advance(Duration.ofMinutes(15));
+    restored.cleanUp();
+    assertThat(restored.asMap().keySet()).containsExactly(6, 7, 8, 9);
+  }
+
+  @Test
+  public void restore_variableExpiration() throws IOException {
+    var ticker = new FakeTicker();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .expireAfter(new KeyMinutesExpiry())
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build();
+    for (int i = 1; i <= 10; i++) {
+      cache.put(i, -i);
+    }
+    CacheSnapshot.save(cache, path, INT_CODEC, INT_CODEC);
+
+    var restoredTicker = new FakeTicker();
+    Cache<Integer, Integer> restored = Caffeine.newBuilder()
+        .expireAfter(new KeyMinutesExpiry())
+        .executor(Runnable::run)
+        .ticker(restoredTicker::read)
+        .build();
+    assertThat(CacheSnapshot.restore(restored, path, INT_CODEC, INT_CODEC)).isEqualTo(10);
+
+    restoredTicker.advance(Duration.ofSeconds(330));
+    restored.cleanUp();
+    assertThat(restored.asMap().keySet()).containsExactly(6, 7, 8, 9, 10);
+  }
+
+  @Test
+  public void restore_largeValues() throws IOException {
+    var value = Strings.repeat("a", 3 * CacheSnapshot.BUFFER_SIZE);
+    Cache<String, String> cache = Caffeine.newBuilder().maximumSize(100).build();
+    for (int i = 0; i < 10; i++) {
+      cache.put(Integer.toString(i), i + value);
+    }
+    CacheSnapshot.save(cache, path, STRING_CODEC, STRING_CODEC);
+
+    Cache<String, String> restored = Caffeine.newBuilder().maximumSize(100).build();
+    assertThat(CacheSnapshot.restore(restored, path, STRING_CODEC, STRING_CODEC)).isEqualTo(10);
+    assertThat(restored.asMap()).isEqualTo(cache.asMap());
+  }
+
+  @Test
+  public void restore_weighted() throws IOException {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumWeight(100).weigher((Integer key, Integer value) -> key)
+        .executor(Runnable::run).build();
+    for (int i = 1; i <= 10; i++) {
+      cache.put(i, -i);
+    }
+    CacheSnapshot.save(cache, path, INT_CODEC, INT_CODEC);
+
+    Cache<Integer, Integer> restored = Caffeine.newBuilder()
+        .maximumWeight(100).weigher((Integer key, Integer value) -> key)
+        .executor(Runnable::run).build();
+    CacheSnapshot.restore(restored, path, INT_CODEC, INT_CODEC);
+    var eviction = restored.policy().eviction().orElseThrow();
+    assertThat(eviction.weightedSize().getAsLong()).isEqualTo(
+        cache.policy().eviction().orElseThrow().weightedSize().getAsLong());
+  }
+
+  @Test(expectedExceptions = StreamCorruptedException.class)
+  public void restore_notSnapshot() throws IOException {
+    Files.write(path, new byte[64]);
+    CacheSnapshot.restore(Caffeine.newBuilder().maximumSize(10).build(),
+        path, INT_CODEC, INT_CODEC);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void save_unbounded() throws IOException {
+    CacheSnapshot.save(Caffeine.newBuilder().build(), path, INT_CODEC, INT_CODEC);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void save_weakKeys() throws IOException {
+    CacheSnapshot.save(Caffeine.newBuilder().maximumSize(10).weakKeys().build(),
+        path, INT_CODEC, INT_CODEC);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void save_async() throws IOException {
+    AsyncCache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(10).buildAsync();
+    CacheSnapshot.save(cache.synchronous(), path, INT_CODEC, INT_CODEC);
+  }
+
+  /** Expires an entry after the number of minutes equal to its key. */
+  static final class KeyMinutesExpiry implements Expiry<Integer, Integer> {
+    @Override public long expireAfterCreate(Integer key, Integer value, long currentTime) {
+      return TimeUnit.MINUTES.toNanos(key);
+    }
+    @Override public long expireAfterUpdate(Integer key, Integer value,
+        long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+    @Override public long expireAfterRead(Integer key, Integer value,
+        long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+
+  static BoundedLocalCache<Integer, Integer> bounded(Cache<Integer, Integer> cache) {
+    return (BoundedLocalCache<Integer, Integer>) ((LocalManualCache<?, ?>) cache).cache();
+  }
+
+  static List<Integer> keys(Iterable<Node<Integer, Integer>> nodes) {
+    var keys = new ArrayList<Integer>();
+    nodes.forEach(node -> keys.add(node.getKey()));
+    return keys;
+  }
+}
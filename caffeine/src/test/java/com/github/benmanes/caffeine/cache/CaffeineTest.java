@@ -32,6 +32,7 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import com.github.benmanes.caffeine.cache.tracing.AccessTracer;
 import com.google.common.testing.FakeTicker;
 import com.google.common.testing.NullPointerTester;
 
@@ -43,6 +44,7 @@ import com.google.common.testing.NullPointerTester;
 @SuppressWarnings({"PreferJavaTimeOverload", "CheckReturnValue"})
 public final class CaffeineTest {
   @Mock StatsCounter statsCounter;
+  @Mock AccessTracer accessTracer;
   @Mock Expiry<Object, Object> expiry;
   @Mock CacheLoader<Object, Object> loader;
 
@@ -504,6 +506,31 @@ public final class CaffeineTest {
     builder.build();
   }
 
+  /* --------------- expireAfterBatchSize --------------- */
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void expireAfterBatchSize_zero() {
+    Caffeine.newBuilder().expireAfterBatchSize(0);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void expireAfterBatchSize_twice() {
+    Caffeine.newBuilder().expireAfterBatchSize(1).expireAfterBatchSize(1);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void expireAfterBatchSize_noExpiry() {
+    Caffeine.newBuilder().expireAfterBatchSize(1).build();
+  }
+
+  @Test
+  public void expireAfterBatchSize() {
+    var builder = Caffeine.newBuilder().expireAfter(expiry).expireAfterBatchSize(100);
+    assertThat(builder.getExpirationBatchSize()).isEqualTo(100);
+    var cache = (BoundedLocalCache<?, ?>) ((LocalManualCache<?, ?>) builder.build()).cache();
+    assertThat(cache.timerWheel().batchSize).isEqualTo(100);
+  }
+
   /* --------------- refreshAfterWrite --------------- */
 
   @Test(expectedExceptions = IllegalArgumentException.class)
@@ -709,6 +736,32 @@ public final class CaffeineTest {
     builder.build();
   }
 
+  /* --------------- recordAccesses --------------- */
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void recordAccesses_null() {
+    Caffeine.newBuilder().recordAccesses(null);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void recordAccesses_twice() {
+    Caffeine.newBuilder().recordAccesses(accessTracer).recordAccesses(accessTracer);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void recordAccesses_longKeyed() {
+    Caffeine.newBuilder().maximumSize(10).recordAccesses(accessTracer).buildLongKeyed();
+  }
+
+  @Test
+  public void recordAccesses() {
+    var builder = Caffeine.newBuilder().recordAccesses(accessTracer);
+    builder.getAccessTracer().recordHit(1, 1);
+    verify(accessTracer).recordHit(1, 1);
+    assertThat(builder.toString()).contains("accessTracer");
+    builder.build();
+  }
+
   /* --------------- removalListener --------------- */
 
   @Test(expectedExceptions = NullPointerException.class)
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.testing.ConcurrentTestHarness;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class CoalescingLoaderTest {
+
+  @Test
+  public void get_coalesces() {
+    var backend = new CountingLoader();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .coalescingBulkLoad(10, Duration.ofMinutes(1))
+        .build(backend);
+
+    // each thread misses on a distinct key first, so the batch fills without waiting on the delay
+    var offsets = new AtomicInteger();
+    ConcurrentTestHarness.timeTasks(10, () -> {
+      int offset = offsets.getAndIncrement();
+      for (int i = 0; i < 10; i++) {
+        int key = (offset + i) % 10;
+        assertThat(cache.get(key)).isEqualTo(-key);
+      }
+    });
+    assertThat(backend.calls.get()).isEqualTo(1);
+    assertThat(backend.keys.get()).isEqualTo(10);
+    assertThat(backend.singleCalls.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void get_maxBatchSize() {
+    var backend = new CountingLoader();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .coalescingBulkLoad(5, Duration.ofMinutes(1))
+        .executor(Runnable::run)
+        .build(backend);
+
+    var keys = IntStream.range(0, 20).boxed().collect(Collectors.toList());
+    assertThat(cache.getAll(keys)).hasSize(20);
+    assertThat(backend.calls.get()).isEqualTo(4);
+    assertThat(backend.maxBatch.get()).isEqualTo(5);
+  }
+
+  @Test
+  public void getAll_absent() {
+    var backend = new CountingLoader();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .coalescingBulkLoad(10, Duration.ZERO)
+        .build(backend);
+
+    var result = cache.getAll(List.of(1, 2, CountingLoader.ABSENT));
+    assertThat(result).containsExactly(1, -1, 2, -2);
+    assertThat(cache.get(CountingLoader.ABSENT)).isNull();
+  }
+
+  @Test
+  public void enqueue_deduplicatesInFlight() {
+    var backend = new CountingLoader();
+    var loader = new CoalescingLoader<Integer, Integer>(backend, 1_000,
+        Long.MAX_VALUE, Runnable::run, Scheduler.disabledScheduler());
+    var keys = IntStream.range(0, 100).boxed().collect(Collectors.toSet());
+
+    var first = loader.asyncLoadAll(keys, Runnable::run);
+    var second = loader.asyncLoadAll(keys, Runnable::run);
+    var single = loader.asyncLoad(50, Runnable::run);
+    assertThat(loader.inFlight).hasSize(100);
+    assertThat(loader.pending).hasSize(100);
+    assertThat(first.isDone()).isFalse();
+
+    loader.flush();
+    assertThat(first.join()).hasSize(100);
+    assertThat(second.join()).isEqualTo(first.join());
+    assertThat(single.join()).isEqualTo(-50);
+    assertThat(backend.calls.get()).isEqualTo(1);
+    assertThat(backend.keys.get()).isEqualTo(100);
+    assertThat(loader.inFlight).isEmpty();
+  }
+
+  @Test
+  public void get_failure() {
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .coalescingBulkLoad(10, Duration.ZERO)
+        .build(new CacheLoader<Integer, Integer>() {
+          @Override public Integer load(Integer key) {
+            throw new AssertionError();
+          }
+          @Override public Map<Integer, Integer> loadAll(Set<? extends Integer> keys) {
+            throw new IllegalStateException();
+          }
+        });
+    try {
+      cache.get(1);
+      Assert.fail();
+    } catch (IllegalStateException expected) {
+      assertThat(cache.getIfPresent(1)).isNull();
+    }
+  }
+
+  @Test
+  public void get_withoutBulkLoad() {
+    var calls = new AtomicInteger();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .coalescingBulkLoad(10, Duration.ZERO)
+        .build(key -> {
+          calls.incrementAndGet();
+          return -key;
+        });
+    assertThat(cache.getAll(List.of(1, 2, 3))).containsExactly(1, -1, 2, -2, 3, -3);
+    assertThat(calls.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void async_coalesces() {
+    var backend = new CountingLoader();
+    AsyncLoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .coalescingBulkLoad(11, Duration.ofMinutes(1))
+        .buildAsync(backend);
+
+    var futures = new ArrayList<CompletableFuture<Integer>>();
+    for (int i = 0; i < 10; i++) {
+      futures.add(cache.get(i));
+    }
+    futures.add(cache.getAll(List.of(8, 9, 10)).thenApply(map -> map.get(10)));
+    assertThat(futures.stream().map(CompletableFuture::join).collect(Collectors.toList()))
+        .containsExactly(0, -1, -2, -3, -4, -5, -6, -7, -8, -9, -10).inOrder();
+    assertThat(backend.calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void async_failure() {
+    AsyncLoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .coalescingBulkLoad(10, Duration.ZERO)
+        .buildAsync(new AsyncCacheLoader<Integer, Integer>() {
+          @Override public CompletableFuture<Integer> asyncLoad(
+              Integer key, Executor executor) {
+            throw new AssertionError();
+          }
+          @Override public CompletableFuture<Map<Integer, Integer>> asyncLoadAll(
+              Set<? extends Integer> keys, Executor executor) {
+            return CompletableFuture.failedFuture(new IllegalStateException());
+          }
+        });
+    try {
+      cache.get(1).join();
+      Assert.fail();
+    } catch (CompletionException e) {
+      assertThat(e).hasCauseThat().isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void coalescingBulkLoad_zeroBatch() {
+    Caffeine.newBuilder().coalescingBulkLoad(0, Duration.ZERO);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void coalescingBulkLoad_negativeDelay() {
+    Caffeine.newBuilder().coalescingBulkLoad(1, Duration.ofMillis(-1));
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void coalescingBulkLoad_twice() {
+    Caffeine.newBuilder()
+        .coalescingBulkLoad(1, Duration.ZERO)
+        .coalescingBulkLoad(1, Duration.ZERO);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void build_withoutLoader() {
+    Caffeine.newBuilder().coalescingBulkLoad(1, Duration.ZERO).build();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void buildAsync_withoutLoader() {
+    Caffeine.newBuilder().coalescingBulkLoad(1, Duration.ZERO).buildAsync();
+  }
+
+  static final class CountingLoader implements CacheLoader<Integer, Integer> {
+    static final int ABSENT = Integer.MIN_VALUE;
+
+    final AtomicInteger singleCalls = new AtomicInteger();
+    final AtomicInteger maxBatch = new AtomicInteger();
+    final AtomicInteger calls = new AtomicInteger();
+    final AtomicInteger keys = new AtomicInteger();
+
+    @Override public Integer load(Integer key) {
+      singleCalls.incrementAndGet();
+      return (key == ABSENT) ? null : -key;
+    }
+    @Override public Map<Integer, Integer> loadAll(Set<? extends Integer> keys) {
+      calls.incrementAndGet();
+      this.keys.addAndGet(keys.size());
+      maxBatch.accumulateAndGet(keys.size(), Math::max);
+      var result = new HashMap<Integer, Integer>();
+      for (Integer key : keys) {
+        if (key != ABSENT) {
+          result.put(key, -key);
+        }
+      }
+      return result;
+    }
+  }
+}
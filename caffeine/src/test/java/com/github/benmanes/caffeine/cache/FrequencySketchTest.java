@@ -40,7 +40,7 @@ public final class FrequencySketchTest {
     sketch.ensureCapacity(-1);
   }
 
-  @Test(dataProvider = "sketch")
+  @Test(dataProvider = "flatSketch")
   public void ensureCapacity_smaller(FrequencySketch<Integer> sketch) {
     int size = sketch.table.length;
     sketch.ensureCapacity(size / 2);
@@ -49,7 +49,7 @@ public final class FrequencySketchTest {
     assertThat(sketch.sampleSize).isEqualTo(10 * size);
   }
 
-  @Test(dataProvider = "sketch")
+  @Test(dataProvider = "flatSketch")
   public void ensureCapacity_larger(FrequencySketch<Integer> sketch) {
     int size = sketch.table.length;
     sketch.ensureCapacity(2 * size);
@@ -64,6 +64,24 @@ public final class FrequencySketchTest {
     assertThat(sketch.frequency(item)).isEqualTo(1);
   }
 
+  @Test
+  public void blocked_ensureCapacity_headroom() {
+    var sketch = new BlockedFrequencySketch<Integer>();
+    sketch.ensureCapacity(512);
+    assertThat(sketch.table).hasLength(1024);
+    assertThat(sketch.tableMask).isEqualTo(1023);
+    assertThat(sketch.blockMask).isEqualTo(127);
+    assertThat(sketch.sampleSize).isEqualTo(10 * 512);
+
+    sketch.ensureCapacity(800);
+    assertThat(sketch.table).hasLength(1024);
+
+    sketch.ensureCapacity(1024);
+    assertThat(sketch.table).hasLength(2048);
+    assertThat(sketch.blockMask).isEqualTo(255);
+    assertThat(sketch.sampleSize).isEqualTo(10 * 1024);
+  }
+
   @Test(dataProvider = "sketch")
   public void increment_max(FrequencySketch<Integer> sketch) {
     for (int i = 0; i < 20; i++) {
@@ -111,8 +129,41 @@ public final class FrequencySketchTest {
   }
 
   @Test
-  public void heavyHitters() {
-    FrequencySketch<Double> sketch = makeSketch(512);
+  public void reset_blocks() {
+    var sketch = new FrequencySketch<Integer>();
+    sketch.ensureCapacity(3 * FrequencySketch.RESET_BLOCK);
+    var random = ThreadLocalRandom.current();
+    long[] expected = new long[sketch.table.length];
+    int odd = 0;
+    for (int i = 0; i < sketch.table.length; i++) {
+      sketch.table[i] = random.nextLong();
+      for (int j = 0; j < 16; j++) {
+        long counter = (sketch.table[i] >>> (j << 2)) & 0xfL;
+        expected[i] |= (counter >>> 1) << (j << 2);
+        odd += (int) (counter & 1L);
+      }
+    }
+    sketch.size = sketch.sampleSize - 1;
+    int size = sketch.size;
+
+    sketch.reset();
+    assertThat(sketch.table).isEqualTo(expected);
+    assertThat(sketch.size).isEqualTo((size - (odd >>> 2)) >>> 1);
+  }
+
+  @Test
+  public void blocked_minimumLength() {
+    var sketch = new BlockedFrequencySketch<Integer>();
+    sketch.ensureCapacity(1);
+    assertThat(sketch.table).hasLength(BlockedFrequencySketch.BLOCK_LENGTH);
+    assertThat(sketch.blockMask).isEqualTo(0);
+
+    sketch.increment(item);
+    assertThat(sketch.frequency(item)).isEqualTo(1);
+  }
+
+  @Test(dataProvider = "sketch")
+  public void heavyHitters(FrequencySketch<Double> sketch) {
     for (int i = 100; i < 100_000; i++) {
       sketch.increment((double) i);
     }
@@ -142,6 +193,13 @@ public final class FrequencySketchTest {
 
   @DataProvider(name = "sketch")
   public Object[][] providesSketch() {
+    var blocked = new BlockedFrequencySketch<>();
+    blocked.ensureCapacity(512);
+    return new Object[][] {{ makeSketch(512) }, { blocked }};
+  }
+
+  @DataProvider(name = "flatSketch")
+  public Object[][] providesFlatSketch() {
     return new Object[][] {{ makeSketch(512) }};
   }
 
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.LongStream;
+
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.testing.ConcurrentTestHarness;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class LongKeyCacheTest {
+
+  @Test
+  public void getIfPresent_absent() {
+    LongKeyCache<String> cache = Caffeine.newBuilder().maximumSize(10).buildLongKeyed();
+    assertThat(cache.getIfPresent(1L)).isNull();
+  }
+
+  @Test
+  public void put_getIfPresent() {
+    LongKeyCache<String> cache = Caffeine.newBuilder().maximumSize(10).buildLongKeyed();
+    cache.put(1L, "a");
+    cache.put(Long.MIN_VALUE, "b");
+    assertThat(cache.getIfPresent(1L)).isEqualTo("a");
+    assertThat(cache.getIfPresent(Long.MIN_VALUE)).isEqualTo("b");
+    assertThat(cache.estimatedSize()).isEqualTo(2);
+  }
+
+  @Test
+  public void put_replace() {
+    LongKeyCache<String> cache = Caffeine.newBuilder().maximumSize(10).buildLongKeyed();
+    cache.put(1L, "a");
+    cache.put(1L, "b");
+    assertThat(cache.getIfPresent(1L)).isEqualTo("b");
+    assertThat(cache.estimatedSize()).isEqualTo(1);
+  }
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void put_nullValue() {
+    LongKeyCache<String> cache = Caffeine.newBuilder().maximumSize(10).buildLongKeyed();
+    cache.put(1L, null);
+  }
+
+  @Test
+  public void get_computes() {
+    LongKeyCache<String> cache = Caffeine.newBuilder()
+        .maximumSize(10).recordStats().buildLongKeyed();
+    assertThat(cache.get(1L, Long::toString)).isEqualTo("1");
+    assertThat(cache.get(1L, key -> "x")).isEqualTo("1");
+    assertThat(cache.stats().hitCount()).isEqualTo(1);
+    assertThat(cache.stats().missCount()).isEqualTo(1);
+    assertThat(cache.stats().loadSuccessCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void get_null() {
+    LongKeyCache<String> cache = Caffeine.newBuilder()
+        .maximumSize(10).recordStats().buildLongKeyed();
+    assertThat(cache.get(1L, key -> null)).isNull();
+    assertThat(cache.estimatedSize()).isEqualTo(0);
+    assertThat(cache.stats().loadFailureCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void invalidate() {
+    LongKeyCache<String> cache = Caffeine.newBuilder().maximumSize(100).buildLongKeyed();
+    LongStream.range(0, 100).forEach(key -> cache.put(key, Long.toString(key)));
+    LongStream.range(0, 100).filter(key -> (key % 2) == 0).forEach(cache::invalidate);
+
+    assertThat(cache.estimatedSize()).isEqualTo(50);
+    LongStream.range(0, 100).forEach(key -> {
+      String expected = ((key % 2) == 0) ? null : Long.toString(key);
+      assertThat(cache.getIfPresent(key)).isEqualTo(expected);
+    });
+  }
+
+  @Test
+  public void invalidateAll() {
+    LongKeyCache<String> cache = Caffeine.newBuilder().maximumSize(100).buildLongKeyed();
+    LongStream.range(0, 100).forEach(key -> cache.put(key, Long.toString(key)));
+    cache.invalidateAll();
+
+    assertThat(cache.estimatedSize()).isEqualTo(0);
+    LongStream.range(0, 100).forEach(key -> assertThat(cache.getIfPresent(key)).isNull());
+  }
+
+  @Test
+  public void evict_maximumSize() {
+    LongKeyCache<String> cache = Caffeine.newBuilder()
+        .maximumSize(100).recordStats().buildLongKeyed();
+    LongStream.range(0, 1_000).forEach(key -> cache.put(key, Long.toString(key)));
+    assertThat(cache.estimatedSize()).isEqualTo(100);
+    assertThat(cache.stats().evictionCount()).isEqualTo(900);
+  }
+
+  @Test
+  public void evict_zero() {
+    LongKeyCache<String> cache = Caffeine.newBuilder().maximumSize(0).buildLongKeyed();
+    cache.put(1L, "a");
+    assertThat(cache.estimatedSize()).isEqualTo(0);
+    assertThat(cache.getIfPresent(1L)).isNull();
+  }
+
+  @Test
+  public void evict_retainsFrequent() {
+    LongKeyCache<String> cache = Caffeine.newBuilder().maximumSize(100).buildLongKeyed();
+    LongStream.range(0, 100).forEach(key -> cache.put(key, Long.toString(key)));
+    for (int i = 0; i < 10; i++) {
+      LongStream.range(0, 50).forEach(cache::getIfPresent);
+      cache.cleanUp();
+    }
+
+    // a scan of new keys should not displace the frequently used entries
+    LongStream.range(1_000, 2_000).forEach(key -> cache.put(key, Long.toString(key)));
+    LongStream.range(0, 50).forEach(key -> assertThat(cache.getIfPresent(key)).isNotNull());
+  }
+
+  @Test
+  public void table_removeShiftsCluster() {
+    var cache = (BoundedLongKeyCache<String>) Caffeine.newBuilder()
+        .maximumSize(1_000).<String>buildLongKeyed();
+    var random = new Random(1);
+    for (int i = 0; i < 100_000; i++) {
+      long key = random.nextInt(2_000);
+      if (random.nextBoolean()) {
+        cache.put(key, Long.toString(key));
+      } else {
+        cache.invalidate(key);
+      }
+    }
+
+    int occupied = 0;
+    for (int slot : cache.table) {
+      if (slot != 0) {
+        assertThat(cache.slotOf(cache.keys[slot - 1])).isEqualTo(slot - 1);
+        occupied++;
+      }
+    }
+    assertThat(occupied).isEqualTo(cache.size);
+  }
+
+  @Test
+  public void concurrent() {
+    LongKeyCache<String> cache = Caffeine.newBuilder().maximumSize(100).buildLongKeyed();
+    var failures = ConcurrentHashMap.<Long>newKeySet();
+    ConcurrentTestHarness.timeTasks(8, () -> {
+      var random = new Random();
+      for (int i = 0; i < 10_000; i++) {
+        long key = random.nextInt(1_000);
+        String value = cache.get(key, Long::toString);
+        if (!Long.toString(key).equals(value)) {
+          failures.add(key);
+        }
+      }
+    });
+    assertThat(failures).isEmpty();
+    assertThat(cache.estimatedSize()).isAtMost(100);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void build_unbounded() {
+    Caffeine.newBuilder().buildLongKeyed();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void build_weigher() {
+    Caffeine.newBuilder().maximumWeight(10).weigher((k, v) -> 1).buildLongKeyed();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void build_expiration() {
+    Caffeine.newBuilder().maximumSize(10)
+        .expireAfterAccess(Duration.ofMinutes(1)).buildLongKeyed();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void build_listener() {
+    Caffeine.newBuilder().maximumSize(10).removalListener((k, v, c) -> {}).buildLongKeyed();
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.BoundedLocalCacheTest.asBoundedLocalCache;
+import static com.github.benmanes.caffeine.testing.Awaits.await;
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.lang.Thread.State;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.testing.ConcurrentTestHarness;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class OffHeapTierTest {
+  static final ValueCodec<String> CODEC = new StringCodec();
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void construct_zero() {
+    new OffHeapTier<>(0, CODEC);
+  }
+
+  @Test
+  public void construct_slabs() {
+    var small = new OffHeapTier<Integer, String>(100, CODEC);
+    assertThat(small.slabs).hasLength(1);
+    assertThat(small.slabSize).isEqualTo(100);
+
+    var large = new OffHeapTier<Integer, String>(1 << 20, CODEC);
+    assertThat(large.slabs).hasLength(OffHeapTier.PREFERRED_SLAB_COUNT);
+    assertThat(large.slabs[0]).isNull();
+  }
+
+  @Test
+  public void putAndRemove() {
+    var tier = new OffHeapTier<Integer, String>(1 << 16, CODEC);
+    assertThat(tier.put(1, "a")).isTrue();
+    assertThat(tier.size()).isEqualTo(1);
+    assertThat(tier.usedBytes()).isEqualTo(OffHeapTier.HEADER_SIZE + 1);
+
+    assertThat(tier.remove(1)).isEqualTo("a");
+    assertThat(tier.remove(1)).isNull();
+    assertThat(tier.size()).isEqualTo(0);
+    assertThat(tier.usedBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void put_replace() {
+    var tier = new OffHeapTier<Integer, String>(1 << 16, CODEC);
+    tier.put(1, "a");
+    tier.put(1, "bc");
+    assertThat(tier.size()).isEqualTo(1);
+    assertThat(tier.usedBytes()).isEqualTo(OffHeapTier.HEADER_SIZE + 2);
+    assertThat(tier.remove(1)).isEqualTo("bc");
+  }
+
+  @Test
+  public void put_tooLarge() {
+    var tier = new OffHeapTier<Integer, String>(100, CODEC);
+    tier.put(1, "a");
+    assertThat(tier.put(1, "a".repeat(100))).isFalse();
+    assertThat(tier.remove(1)).isNull();
+  }
+
+  @Test
+  public void put_wrapAround() {
+    var tier = new OffHeapTier<Integer, String>(1 << 16, CODEC);
+    int count = 10 * (tier.slabs.length * tier.slabSize) / (OffHeapTier.HEADER_SIZE + 4);
+    for (int i = 0; i < count; i++) {
+      tier.put(i, String.format("%04d", i % 10_000));
+    }
+    assertThat(tier.usedBytes()).isAtMost(1 << 16);
+    assertThat(tier.remove(0)).isNull();
+    assertThat(tier.remove(count - 1)).isEqualTo(String.format("%04d", (count - 1) % 10_000));
+  }
+
+  @Test
+  public void invalidate() {
+    var tier = new OffHeapTier<Integer, String>(1 << 16, CODEC);
+    tier.put(1, "a");
+    tier.invalidate(1);
+    assertThat(tier.remove(1)).isNull();
+    assertThat(tier.usedBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void clear() {
+    var tier = new OffHeapTier<Integer, String>(1 << 16, CODEC);
+    tier.put(1, "a");
+    tier.clear();
+    assertThat(tier.size()).isEqualTo(0);
+    assertThat(tier.slabs[0]).isNull();
+  }
+
+  @Test
+  public void cache_demoteAndPromote() {
+    Cache<Integer, String> cache = Caffeine.newBuilder()
+        .offHeapTier(1 << 20, CODEC)
+        .executor(Runnable::run)
+        .maximumSize(10)
+        .recordStats()
+        .build();
+    IntStream.range(0, 100).forEach(i -> cache.put(i, Integer.toString(i)));
+    cache.cleanUp();
+
+    int evicted = IntStream.range(0, 100)
+        .filter(i -> !cache.asMap().containsKey(i))
+        .findFirst().orElseThrow();
+    assertThat(cache.getIfPresent(evicted)).isEqualTo(Integer.toString(evicted));
+    assertThat(cache.asMap()).containsKey(evicted);
+    assertThat(cache.stats().hitCount()).isEqualTo(1);
+    assertThat(cache.stats().tierHitCount()).isEqualTo(1);
+    assertThat(cache.stats().missCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void cache_promoteOnLoad() {
+    LoadingCache<Integer, String> cache = Caffeine.newBuilder()
+        .offHeapTier(1 << 20, CODEC)
+        .executor(Runnable::run)
+        .maximumSize(10)
+        .recordStats()
+        .build(key -> "loaded");
+    IntStream.range(0, 100).forEach(i -> cache.put(i, Integer.toString(i)));
+    cache.cleanUp();
+
+    int evicted = IntStream.range(0, 100)
+        .filter(i -> !cache.asMap().containsKey(i))
+        .findFirst().orElseThrow();
+    assertThat(cache.get(evicted)).isEqualTo(Integer.toString(evicted));
+    assertThat(cache.stats().tierHitCount()).isEqualTo(1);
+    assertThat(cache.stats().loadCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void cache_invalidate() {
+    Cache<Integer, String> cache = Caffeine.newBuilder()
+        .offHeapTier(1 << 20, CODEC)
+        .executor(Runnable::run)
+        .maximumSize(10)
+        .build();
+    IntStream.range(0, 100).forEach(i -> cache.put(i, Integer.toString(i)));
+    cache.cleanUp();
+
+    IntStream.range(0, 100).forEach(cache::invalidate);
+    IntStream.range(0, 100).forEach(i -> assertThat(cache.getIfPresent(i)).isNull());
+  }
+
+  @Test
+  public void cache_invalidateAll() {
+    Cache<Integer, String> cache = Caffeine.newBuilder()
+        .offHeapTier(1 << 20, CODEC)
+        .executor(Runnable::run)
+        .maximumSize(10)
+        .build();
+    IntStream.range(0, 100).forEach(i -> cache.put(i, Integer.toString(i)));
+    cache.invalidateAll();
+
+    IntStream.range(0, 100).forEach(i -> assertThat(cache.getIfPresent(i)).isNull());
+  }
+
+  @Test
+  public void cache_putDiscardsDemoted() {
+    Cache<Integer, String> cache = Caffeine.newBuilder()
+        .offHeapTier(1 << 20, CODEC)
+        .executor(Runnable::run)
+        .maximumSize(10)
+        .build();
+    IntStream.range(0, 100).forEach(i -> cache.put(i, Integer.toString(i)));
+    cache.cleanUp();
+
+    int evicted = IntStream.range(0, 100)
+        .filter(i -> !cache.asMap().containsKey(i))
+        .findFirst().orElseThrow();
+    cache.put(evicted, "updated");
+    cache.asMap().remove(evicted, "updated");
+    assertThat(cache.getIfPresent(evicted)).isNull();
+  }
+
+  @Test
+  public void cache_removeDuringDemotion() {
+    var remover = new AtomicReference<Thread>();
+    var demoting = new AtomicBoolean();
+    var codec = new ValueCodec<String>() {
+      @Override public byte[] encode(String value) {
+        demoting.set(true);
+        var threadState = EnumSet.of(State.BLOCKED, State.WAITING);
+        await().until(() -> (remover.get() != null)
+            && threadState.contains(remover.get().getState()));
+        return CODEC.encode(value);
+      }
+      @Override public String decode(ByteBuffer buffer) {
+        return CODEC.decode(buffer);
+      }
+    };
+    Cache<Integer, String> cache = Caffeine.newBuilder()
+        .offHeapTier(1 << 20, codec)
+        .executor(Runnable::run)
+        .maximumSize(10)
+        .build();
+    var localCache = asBoundedLocalCache(cache);
+    cache.put(1, "a");
+
+    var removed = new AtomicBoolean();
+    ConcurrentTestHarness.execute(() -> {
+      await().untilTrue(demoting);
+      remover.set(Thread.currentThread());
+      cache.invalidate(1);
+      removed.set(true);
+    });
+
+    var node = localCache.data.values().iterator().next();
+    localCache.evictEntry(node, RemovalCause.SIZE, 0L);
+    await().untilTrue(removed);
+
+    assertThat(cache.getIfPresent(1)).isNull();
+    assertThat(localCache.offHeapTier.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void cache_missOnEmptyTier() {
+    Cache<Integer, String> cache = Caffeine.newBuilder()
+        .offHeapTier(1 << 20, CODEC)
+        .executor(Runnable::run)
+        .maximumSize(10)
+        .build();
+
+    var computing = new AtomicBoolean();
+    var missed = new AtomicBoolean();
+    ConcurrentTestHarness.execute(() -> {
+      await().untilTrue(computing);
+      assertThat(cache.getIfPresent(1)).isNull();
+      missed.set(true);
+    });
+
+    cache.asMap().compute(1, (key, value) -> {
+      computing.set(true);
+      await().untilTrue(missed);
+      return "a";
+    });
+    assertThat(cache.getIfPresent(1)).isEqualTo("a");
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void build_unbounded() {
+    Caffeine.newBuilder().offHeapTier(1 << 20, CODEC).build();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void build_expiration() {
+    Caffeine.newBuilder()
+        .offHeapTier(1 << 20, CODEC)
+        .expireAfterWrite(Duration.ofMinutes(1))
+        .maximumSize(10)
+        .build();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void build_async() {
+    Caffeine.newBuilder().offHeapTier(1 << 20, CODEC).maximumSize(10).buildAsync();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void offHeapTier_twice() {
+    Caffeine.newBuilder().offHeapTier(1 << 20, CODEC).offHeapTier(1 << 20, CODEC);
+  }
+
+  static final class StringCodec implements ValueCodec<String> {
+    @Override public byte[] encode(String value) {
+      return value.getBytes(UTF_8);
+    }
+    @Override public String decode(ByteBuffer buffer) {
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return new String(bytes, UTF_8);
+    }
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.google.common.testing.FakeTicker;
+import com.google.common.testing.SerializableTester;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class RefreshLimiterTest {
+
+  @Test
+  public void reload_boundedInFlight() {
+    var loader = new ManualLoader();
+    var limiter = new RefreshLimiter(loader, 2, 10, Runnable::run);
+    var futures = new ArrayList<CompletableFuture<Integer>>();
+    for (int i = 0; i < 5; i++) {
+      futures.add(limiter.enqueue(i, i));
+    }
+    limiter.drain();
+    assertThat(loader.reloads).hasSize(2);
+    assertThat(limiter.queued()).isEqualTo(3);
+
+    loader.reloads.get(0).complete(-1);
+    assertThat(futures.get(0).join()).isEqualTo(-1);
+    assertThat(loader.reloads).hasSize(3);
+    assertThat(limiter.queued()).isEqualTo(2);
+
+    List.copyOf(loader.reloads).forEach(future -> future.complete(0));
+    assertThat(loader.reloads).hasSize(5);
+    List.copyOf(loader.reloads).forEach(future -> future.complete(0));
+    assertThat(futures.stream().allMatch(CompletableFuture::isDone)).isTrue();
+    assertThat(limiter.queued()).isEqualTo(0);
+    assertThat(limiter.inFlight).isEqualTo(0);
+  }
+
+  @Test
+  public void reload_batched() {
+    var loader = new BulkManualLoader();
+    var limiter = new RefreshLimiter(loader, 1, 3, Runnable::run);
+    assertThat(limiter.canBulkReload).isTrue();
+
+    var first = limiter.<Integer>enqueue(0, 0);
+    limiter.drain();
+    assertThat(loader.reloads).hasSize(1);
+
+    var futures = new ArrayList<CompletableFuture<Integer>>();
+    for (int i = 1; i <= 4; i++) {
+      futures.add(limiter.enqueue(i, i));
+    }
+    limiter.drain();
+    assertThat(loader.bulkReloads).isEmpty();
+
+    loader.reloads.get(0).complete(0);
+    assertThat(first.join()).isEqualTo(0);
+    assertThat(loader.bulkKeys).containsExactly(List.of(1, 2, 3));
+
+    // a key that is absent from the results is reloaded as null
+    loader.bulkReloads.get(0).complete(Map.of(1, -1, 2, -2));
+    assertThat(futures.get(0).join()).isEqualTo(-1);
+    assertThat(futures.get(1).join()).isEqualTo(-2);
+    assertThat(futures.get(2).join()).isNull();
+
+    // the remaining key is reloaded individually
+    assertThat(loader.reloads).hasSize(2);
+    loader.reloads.get(1).complete(-4);
+    assertThat(futures.get(3).join()).isEqualTo(-4);
+  }
+
+  @Test
+  public void reload_failure() {
+    var failure = new IllegalStateException();
+    AsyncCacheLoader<Integer, Integer> loader = (key, executor) -> {
+      throw failure;
+    };
+    var limiter = new RefreshLimiter(loader, 1, 1, Runnable::run);
+    var futures = new ArrayList<CompletableFuture<Integer>>();
+    for (int i = 0; i < 3; i++) {
+      futures.add(limiter.enqueue(i, i));
+    }
+    limiter.drain();
+
+    for (var future : futures) {
+      assertThat(future.isCompletedExceptionally()).isTrue();
+    }
+    assertThat(limiter.inFlight).isEqualTo(0);
+  }
+
+  @Test
+  public void canBulkReload() {
+    CacheLoader<Integer, Integer> single = key -> key;
+    CacheLoader<Integer, Integer> bulk = new CacheLoader<>() {
+      @Override public Integer load(Integer key) {
+        return key;
+      }
+      @Override public Map<Integer, Integer> reloadAll(
+          Map<? extends Integer, ? extends Integer> oldValues) {
+        return Map.of();
+      }
+    };
+    assertThat(RefreshLimiter.canBulkReload(single)).isFalse();
+    assertThat(RefreshLimiter.canBulkReload(bulk)).isTrue();
+    assertThat(RefreshLimiter.canBulkReload(new ManualLoader())).isFalse();
+    assertThat(RefreshLimiter.canBulkReload(new BulkManualLoader())).isTrue();
+  }
+
+  @Test
+  public void refresh_limited() {
+    var reloads = new AtomicInteger();
+    var bulkReloads = new AtomicInteger();
+    var tasks = new ArrayDeque<Runnable>();
+    var ticker = new FakeTicker();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfterWrite(Duration.ofMinutes(1))
+        .refreshConcurrency(1, 10)
+        .refreshExecutor(tasks::add)
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build(new CacheLoader<>() {
+          @Override public Integer load(Integer key) {
+            return key;
+          }
+          @Override public Integer reload(Integer key, Integer oldValue) {
+            reloads.incrementAndGet();
+            return -key;
+          }
+          @Override public Map<Integer, Integer> reloadAll(
+              Map<? extends Integer, ? extends Integer> oldValues) {
+            bulkReloads.incrementAndGet();
+            var results = new HashMap<Integer, Integer>();
+            oldValues.forEach((key, value) -> results.put(key, -key));
+            return results;
+          }
+        });
+    for (int i = 0; i < 10; i++) {
+      cache.get(i);
+    }
+
+    ticker.advance(Duration.ofMinutes(2));
+    for (int i = 0; i < 10; i++) {
+      assertThat(cache.get(i)).isEqualTo(i);
+    }
+    assertThat(cache.policy().refreshes()).hasSize(10);
+    assertThat(tasks).hasSize(1);
+
+    while (!tasks.isEmpty()) {
+      tasks.poll().run();
+    }
+    for (int i = 0; i < 10; i++) {
+      assertThat(cache.getIfPresent(i)).isEqualTo(-i);
+    }
+    assertThat(cache.policy().refreshes()).isEmpty();
+    assertThat(bulkReloads.get()).isEqualTo(1);
+    assertThat(reloads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void refreshExecutor() {
+    var executed = new AtomicInteger();
+    Executor executor = task -> {
+      executed.incrementAndGet();
+      task.run();
+    };
+    var ticker = new FakeTicker();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfterWrite(Duration.ofMinutes(1))
+        .refreshExecutor(executor)
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build(key -> -key);
+    cache.put(1, 1);
+
+    ticker.advance(Duration.ofMinutes(2));
+    assertThat(cache.get(1)).isEqualTo(1);
+    assertThat(cache.getIfPresent(1)).isEqualTo(-1);
+    assertThat(executed.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void serialize() {
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfterWrite(Duration.ofMinutes(1))
+        .refreshConcurrency(4, 16)
+        .build(key -> key);
+    var copy = SerializableTester.reserialize(cache);
+
+    var limiter = ((BoundedLocalCache<?, ?>) ((LocalLoadingCache<?, ?>) copy).cache())
+        .refreshLimiter;
+    assertThat(limiter.maximumInFlight).isEqualTo(4);
+    assertThat(limiter.maximumBatchSize).isEqualTo(16);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void refreshConcurrency_zeroInFlight() {
+    Caffeine.newBuilder().refreshConcurrency(0, 1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void refreshConcurrency_zeroBatchSize() {
+    Caffeine.newBuilder().refreshConcurrency(1, 0);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void refreshConcurrency_twice() {
+    Caffeine.newBuilder().refreshConcurrency(1, 1).refreshConcurrency(1, 1);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void refreshExecutor_twice() {
+    Caffeine.newBuilder().refreshExecutor(Runnable::run).refreshExecutor(Runnable::run);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void build_noRefresh() {
+    Caffeine.newBuilder().refreshConcurrency(1, 1).build(key -> key);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void buildAsync_noRefresh() {
+    Caffeine.newBuilder().refreshExecutor(Runnable::run).buildAsync(key -> key);
+  }
+
+  /** A loader whose reloads are completed by the test. */
+  static class ManualLoader implements AsyncCacheLoader<Integer, Integer> {
+    final List<CompletableFuture<Integer>> reloads = new ArrayList<>();
+
+    @Override
+    public CompletableFuture<Integer> asyncLoad(Integer key, Executor executor) {
+      return CompletableFuture.completedFuture(key);
+    }
+
+    @Override
+    public CompletableFuture<Integer> asyncReload(
+        Integer key, Integer oldValue, Executor executor) {
+      var future = new CompletableFuture<Integer>();
+      reloads.add(future);
+      return future;
+    }
+  }
+
+  /** A loader whose individual and bulk reloads are completed by the test. */
+  static final class BulkManualLoader extends ManualLoader {
+    final List<CompletableFuture<Map<Integer, Integer>>> bulkReloads = new ArrayList<>();
+    final List<List<Integer>> bulkKeys = new ArrayList<>();
+
+    @Override
+    public CompletableFuture<Map<Integer, Integer>> asyncReloadAll(
+        Map<? extends Integer, ? extends Integer> oldValues, Executor executor) {
+      var future = new CompletableFuture<Map<Integer, Integer>>();
+      bulkKeys.add(new ArrayList<>(oldValues.keySet()));
+      bulkReloads.add(future);
+      return future;
+    }
+  }
+}
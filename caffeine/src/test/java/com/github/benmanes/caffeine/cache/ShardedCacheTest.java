@@ -0,0 +1,246 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.testing.ConcurrentTestHarness;
+import com.google.common.testing.SerializableTester;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class ShardedCacheTest {
+
+  @Test
+  public void shards_roundedToPowerOfTwo() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(100).shards(3).build();
+    assertThat(sharded(cache).shards).hasLength(4);
+  }
+
+  @Test
+  public void shards_one() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(100).shards(1).build();
+    assertThat(((LocalManualCache<?, ?>) cache).cache()).isInstanceOf(BoundedLocalCache.class);
+  }
+
+  @Test
+  public void maximum_divided() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(10).shards(4).build();
+    long[] maximums = new long[4];
+    for (int i = 0; i < maximums.length; i++) {
+      maximums[i] = sharded(cache).shards[i].maximum();
+    }
+    assertThat(maximums).asList().containsExactly(3L, 3L, 2L, 2L).inOrder();
+    assertThat(cache.policy().eviction().orElseThrow().getMaximum()).isEqualTo(10);
+  }
+
+  @Test
+  public void setMaximum_divided() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(10).shards(4).executor(Runnable::run).build();
+    populate(cache, 100);
+
+    cache.policy().eviction().orElseThrow().setMaximum(5);
+    assertThat(cache.policy().eviction().orElseThrow().getMaximum()).isEqualTo(5);
+    assertThat(cache.estimatedSize()).isAtMost(5);
+  }
+
+  @Test
+  public void put_evicts() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(100).shards(8).executor(Runnable::run).build();
+    populate(cache, 10_000);
+
+    cache.cleanUp();
+    assertThat(cache.estimatedSize()).isAtMost(100);
+    assertThat(cache.asMap().size()).isEqualTo(cache.estimatedSize());
+  }
+
+  @Test
+  public void put_weighted() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumWeight(1_000).weigher((Integer k, Integer v) -> v)
+        .shards(4).executor(Runnable::run).build();
+    for (int i = 0; i < 1_000; i++) {
+      cache.put(i, 5);
+    }
+
+    cache.cleanUp();
+    var eviction = cache.policy().eviction().orElseThrow();
+    assertThat(eviction.isWeighted()).isTrue();
+    assertThat(eviction.weightedSize().getAsLong()).isAtMost(1_000);
+    assertThat(eviction.weightOf(cache.asMap().keySet().iterator().next()).getAsInt())
+        .isEqualTo(5);
+  }
+
+  @Test
+  public void operations() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(1_000).shards(4).build();
+    var map = cache.asMap();
+    populate(cache, 100);
+
+    assertThat(cache.getIfPresent(1)).isEqualTo(-1);
+    assertThat(cache.get(200, key -> -key)).isEqualTo(-200);
+    assertThat(cache.getAllPresent(IntStream.of(3, 2, 1, 500).boxed()
+        .collect(Collectors.toList()))).containsExactly(3, -3, 2, -2, 1, -1).inOrder();
+
+    assertThat(map.putIfAbsent(1, 1)).isEqualTo(-1);
+    assertThat(map.replace(1, 1)).isEqualTo(-1);
+    assertThat(map.remove(1, 1)).isTrue();
+    assertThat(map.compute(2, (k, v) -> v + 1)).isEqualTo(-1);
+    assertThat(map.merge(3, 3, Integer::sum)).isEqualTo(0);
+    assertThat(map.containsValue(-4)).isTrue();
+
+    cache.invalidate(4);
+    assertThat(map.containsKey(4)).isFalse();
+    assertThat(map).hasSize(99);
+    assertThat(map.keySet()).hasSize(99);
+    assertThat(map.values()).hasSize(99);
+    assertThat(map.entrySet()).contains(Map.entry(5, -5));
+
+    map.keySet().removeIf(key -> key < 50);
+    assertThat(map).hasSize(51);
+
+    cache.invalidateAll();
+    assertThat(map).isEmpty();
+  }
+
+  @Test
+  public void stats_shared() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(1_000).shards(4).recordStats().build();
+    for (int i = 0; i < 100; i++) {
+      cache.get(i, key -> -key);
+      cache.getIfPresent(i);
+    }
+
+    var stats = cache.stats();
+    assertThat(stats.hitCount()).isEqualTo(100);
+    assertThat(stats.missCount()).isEqualTo(100);
+    assertThat(stats.loadSuccessCount()).isEqualTo(100);
+  }
+
+  @Test
+  public void loading() {
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(1_000).shards(4).executor(Runnable::run).build(key -> -key);
+
+    assertThat(cache.get(1)).isEqualTo(-1);
+    assertThat(cache.getAll(IntStream.range(0, 10).boxed().collect(Collectors.toList())))
+        .hasSize(10);
+
+    cache.put(20, 20);
+    assertThat(cache.refresh(20).join()).isEqualTo(-20);
+    assertThat(cache.getIfPresent(20)).isEqualTo(-20);
+    assertThat(cache.policy().refreshes()).isEmpty();
+  }
+
+  @Test
+  public void hottest_coldest() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(1_000).shards(4).executor(Runnable::run).build();
+    populate(cache, 100);
+
+    var eviction = cache.policy().eviction().orElseThrow();
+    assertThat(eviction.coldest(10)).hasSize(10);
+    assertThat(eviction.hottest(10)).hasSize(10);
+    assertThat(eviction.coldest(1_000)).hasSize(100);
+    assertThat(eviction.hottestWeighted(20)).hasSize(20);
+    assertThat(eviction.coldestWeighted(20)).hasSize(20);
+    assertThat(eviction.coldestWeighted(1_000)).hasSize(100);
+    long count = eviction.hottest(stream -> stream.count());
+    assertThat(count).isEqualTo(100);
+  }
+
+  @Test
+  public void serialize() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(10).shards(4).build();
+    var copy = SerializableTester.reserialize(cache);
+
+    assertThat(sharded(copy).shards).hasLength(4);
+    assertThat(copy.policy().eviction().orElseThrow().getMaximum()).isEqualTo(10);
+  }
+
+  @Test
+  public void concurrent() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(500).shards(16).build();
+    ConcurrentTestHarness.timeTasks(16, () -> {
+      var random = ThreadLocalRandom.current();
+      for (int i = 0; i < 10_000; i++) {
+        int key = random.nextInt(5_000);
+        if (random.nextBoolean()) {
+          cache.put(key, -key);
+        } else {
+          cache.invalidate(key);
+        }
+      }
+    });
+
+    cache.cleanUp();
+    assertThat(cache.estimatedSize()).isAtMost(500);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void shards_zero() {
+    Caffeine.newBuilder().shards(0);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void shards_twice() {
+    Caffeine.newBuilder().shards(2).shards(2);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void build_unbounded() {
+    Caffeine.newBuilder().shards(2).build();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void build_expiration() {
+    Caffeine.newBuilder().maximumSize(10).expireAfterAccess(Duration.ofMinutes(1))
+        .shards(2).build();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void buildAsync() {
+    Caffeine.newBuilder().maximumSize(10).shards(2).buildAsync();
+  }
+
+  static void populate(Cache<Integer, Integer> cache, int count) {
+    for (int i = 0; i < count; i++) {
+      cache.put(i, -i);
+    }
+  }
+
+  static ShardedLocalCache<?, ?> sharded(Cache<?, ?> cache) {
+    return (ShardedLocalCache<?, ?>) ((LocalManualCache<?, ?>) cache).cache();
+  }
+}
@@ -370,6 +370,67 @@ public final class TimerWheelTest {
     assertThat(captor.getValue().getPreviousInVariableOrder()).isNotNull();
   }
 
+  @Test(dataProvider = "clock")
+  public void advance_batched(long clock) {
+    when(cache.evictEntry(captor.capture(), any(), anyLong())).thenReturn(true);
+    timerWheel = new TimerWheel<>(cache, 10);
+    timerWheel.nanos = clock;
+    for (int i = 1; i <= 25; i++) {
+      timerWheel.schedule(new Timer(clock + TimeUnit.SECONDS.toNanos(i)));
+    }
+    timerWheel.schedule(new Timer(clock + TimeUnit.HOURS.toNanos(1)));
+
+    timerWheel.advance(clock + TimeUnit.MINUTES.toNanos(1));
+    verify(cache, times(10)).evictEntry(any(), any(), anyLong());
+    assertThat(timerWheel.hasPending()).isTrue();
+    assertThat(timerWheel.getExpirationDelay()).isEqualTo(0);
+    assertThat(Streams.stream(timerWheel.iterator()).count()).isEqualTo(16);
+    assertThat(Streams.stream(timerWheel.descendingIterator()).count()).isEqualTo(16);
+
+    timerWheel.advance(clock + TimeUnit.MINUTES.toNanos(1));
+    timerWheel.advance(clock + TimeUnit.MINUTES.toNanos(1));
+    verify(cache, times(25)).evictEntry(any(), any(), anyLong());
+    assertThat(timerWheel.hasPending()).isFalse();
+    assertThat(timerWheel.getExpirationDelay()).isGreaterThan(0);
+    for (var node : captor.getAllValues()) {
+      assertThat(node.getVariableTime() - timerWheel.nanos).isAtMost(0L);
+    }
+  }
+
+  @Test(dataProvider = "clock")
+  public void advance_batched_reschedule(long clock) {
+    timerWheel = new TimerWheel<>(cache, 10);
+    timerWheel.nanos = clock;
+
+    // a bucket that is reached may hold timers that have not yet expired
+    var timer = new Timer(clock + SPANS[1] + SPANS[0]);
+    timerWheel.schedule(timer);
+    timerWheel.advance(clock + SPANS[1]);
+
+    verify(cache, times(0)).evictEntry(any(), any(), anyLong());
+    assertThat(timerWheel.hasPending()).isFalse();
+    assertThat(timer.getNextInVariableOrder()).isNotNull();
+    assertThat(Streams.stream(timerWheel.iterator()).count()).isEqualTo(1);
+  }
+
+  @Test
+  public void advance_batched_exception() {
+    Mockito.doThrow(new IllegalStateException())
+        .when(cache).evictEntry(captor.capture(), any(), anyLong());
+    timerWheel = new TimerWheel<>(cache, 10);
+    var timer = new Timer(timerWheel.nanos + SPANS[1]);
+
+    timerWheel.nanos = 0L;
+    timerWheel.schedule(timer);
+    try {
+      timerWheel.advance(Long.MAX_VALUE);
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      assertThat(timerWheel.hasPending()).isTrue();
+      assertThat(timerWheel.pending.getNextInVariableOrder()).isSameInstanceAs(timer);
+    }
+  }
+
   @Test(dataProvider = "cascade")
   public void cascade(long clock, long duration, long timeout, int span) {
     timerWheel.nanos = clock;
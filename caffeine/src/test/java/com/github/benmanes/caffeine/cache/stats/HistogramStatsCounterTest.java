@@ -0,0 +1,219 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.stats;
+
+import static com.github.benmanes.caffeine.testing.Awaits.await;
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.testing.ConcurrentTestHarness;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class HistogramStatsCounterTest {
+
+  @Test
+  public void totals() {
+    var counter = new HistogramStatsCounter();
+    counter.recordHits(1);
+    counter.recordMisses(1);
+    counter.recordEviction(10, RemovalCause.SIZE);
+    counter.recordLoadSuccess(1);
+    counter.recordLoadFailure(1);
+    counter.recordTierHits(1);
+    var expected = CacheStats.of(1, 1, 1, 1, 2, 1, 10, 1);
+    assertThat(counter.snapshot()).isEqualTo(expected);
+    assertThat(counter.histogramSnapshot().cacheStats()).isEqualTo(expected);
+  }
+
+  @Test
+  public void latencies() {
+    var counter = new HistogramStatsCounter();
+    for (int i = 1; i <= 100; i++) {
+      counter.recordLoadSuccess(TimeUnit.MICROSECONDS.toNanos(i));
+    }
+    counter.recordLoadFailure(TimeUnit.SECONDS.toNanos(1));
+    counter.recordComputeWait(5);
+    counter.recordEvictionCallback(7);
+
+    var stats = counter.histogramSnapshot();
+    var load = stats.loadLatency();
+    assertThat(load.count()).isEqualTo(101);
+    assertThat(load.maxTime()).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+    assertThat(load.totalTime()).isEqualTo(TimeUnit.MICROSECONDS.toNanos(5050) + load.maxTime());
+    assertThat(load.mean()).isWithin(0.1).of(load.totalTime() / 101.0);
+    assertThat(load.percentile(100.0)).isEqualTo(load.maxTime());
+    assertThat((double) load.percentile(50.0))
+        .isWithin(0.0625 * TimeUnit.MICROSECONDS.toNanos(51))
+        .of(TimeUnit.MICROSECONDS.toNanos(51));
+    assertThat((double) load.percentile(99.0))
+        .isWithin(0.0625 * TimeUnit.MICROSECONDS.toNanos(100))
+        .of(TimeUnit.MICROSECONDS.toNanos(100));
+
+    assertThat(stats.computeWaitLatency().count()).isEqualTo(1);
+    assertThat(stats.computeWaitLatency().percentile(50.0)).isEqualTo(5);
+    assertThat(stats.evictionCallbackLatency().count()).isEqualTo(1);
+    assertThat(stats.evictionCallbackLatency().percentile(50.0)).isEqualTo(7);
+    assertThat(counter.toString()).isEqualTo(stats.toString());
+  }
+
+  @Test
+  public void latencies_empty() {
+    var latency = new HistogramStatsCounter().histogramSnapshot().loadLatency();
+    assertThat(latency.count()).isEqualTo(0);
+    assertThat(latency.mean()).isEqualTo(0.0);
+    assertThat(latency.percentile(99.0)).isEqualTo(0);
+    assertThat(LatencyDistribution.empty().percentile(50.0)).isEqualTo(0);
+  }
+
+  @Test
+  public void latencies_negative() {
+    var counter = new HistogramStatsCounter();
+    counter.recordComputeWait(-1);
+    assertThat(counter.histogramSnapshot().computeWaitLatency().maxTime()).isEqualTo(0);
+  }
+
+  @Test
+  public void latencies_overflow() {
+    var counter = new HistogramStatsCounter();
+    counter.recordLoadSuccess(Long.MAX_VALUE);
+    counter.recordLoadSuccess(Long.MAX_VALUE);
+    var load = counter.histogramSnapshot().loadLatency();
+    assertThat(load.totalTime()).isEqualTo(Long.MAX_VALUE);
+    assertThat(load.percentile(50.0)).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test(dataProvider = "invalidPercentiles", expectedExceptions = IllegalArgumentException.class)
+  public void percentile_invalid(double percentile) {
+    LatencyDistribution.empty().percentile(percentile);
+  }
+
+  @DataProvider(name = "invalidPercentiles")
+  public Object[][] providesInvalidPercentiles() {
+    return new Object[][] { { -1.0 }, { 100.1 }, { Double.NaN } };
+  }
+
+  @Test
+  public void bucketIndex() {
+    for (int i = 0; i < LatencyRecorder.SUB_BUCKETS; i++) {
+      assertThat(LatencyRecorder.bucketIndex(i)).isEqualTo(i);
+    }
+    for (int i = 1; i < LatencyRecorder.BUCKETS; i++) {
+      long lowest = LatencyRecorder.highestEquivalentValue(i - 1) + 1;
+      long highest = LatencyRecorder.highestEquivalentValue(i);
+      assertThat(LatencyRecorder.bucketIndex(lowest)).isEqualTo(i);
+      assertThat(LatencyRecorder.bucketIndex(highest)).isEqualTo(i);
+      assertThat((double) (highest - lowest)).isAtMost(lowest / 16.0);
+    }
+    assertThat(LatencyRecorder.bucketIndex(Long.MAX_VALUE)).isEqualTo(LatencyRecorder.BUCKETS - 1);
+  }
+
+  @Test
+  public void concurrent() {
+    var counter = new HistogramStatsCounter();
+    ConcurrentTestHarness.timeTasks(5, () -> {
+      for (int i = 0; i < 1_000; i++) {
+        counter.recordLoadSuccess(i);
+        counter.recordComputeWait(i);
+      }
+    });
+    var stats = counter.histogramSnapshot();
+    assertThat(stats.loadLatency().count()).isEqualTo(5_000);
+    assertThat(stats.loadLatency().totalTime()).isEqualTo(5 * 499_500);
+    assertThat(stats.computeWaitLatency().count()).isEqualTo(5_000);
+    assertThat(stats.computeWaitLatency().maxTime()).isEqualTo(999);
+  }
+
+  @Test
+  public void guarded() {
+    var counter = new HistogramStatsCounter();
+    var guarded = StatsCounter.guardedStatsCounter(counter);
+    guarded.recordComputeWait(1);
+    guarded.recordEvictionCallback(1);
+    assertThat(counter.histogramSnapshot().computeWaitLatency().count()).isEqualTo(1);
+    assertThat(counter.histogramSnapshot().evictionCallbackLatency().count()).isEqualTo(1);
+  }
+
+  @Test
+  public void cache_evictionCallback() {
+    var counter = new HistogramStatsCounter();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .evictionListener((Integer key, Integer value, RemovalCause cause) -> {})
+        .recordStats(() -> counter)
+        .executor(Runnable::run)
+        .maximumSize(10)
+        .build();
+    for (int i = 0; i < 20; i++) {
+      cache.put(i, i);
+    }
+    cache.cleanUp();
+    var stats = counter.histogramSnapshot();
+    assertThat(stats.cacheStats().evictionCount()).isEqualTo(10);
+    assertThat(stats.evictionCallbackLatency().count()).isEqualTo(10);
+  }
+
+  @Test(dataProvider = "builders")
+  public void cache_computeWait(Caffeine<Object, Object> builder) throws Exception {
+    var counter = new HistogramStatsCounter();
+    Cache<Integer, Integer> cache = builder.recordStats(() -> counter).build();
+
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var loader = CompletableFuture.supplyAsync(() -> cache.get(1, key -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      return -key;
+    }));
+    started.await();
+    var waited = new AtomicReference<Integer>();
+    var waiter = new Thread(() -> waited.set(cache.get(1, key -> key)));
+    waiter.start();
+    await().until(() -> waiter.getState() == Thread.State.BLOCKED);
+    release.countDown();
+    waiter.join();
+
+    assertThat(loader.get()).isEqualTo(-1);
+    assertThat(waited.get()).isEqualTo(-1);
+
+    var stats = counter.histogramSnapshot();
+    assertThat(stats.loadLatency().count()).isEqualTo(1);
+    assertThat(stats.computeWaitLatency().count()).isEqualTo(1);
+    assertThat(stats.computeWaitLatency().maxTime()).isGreaterThan(0);
+  }
+
+  @DataProvider(name = "builders")
+  public Object[][] providesBuilders() {
+    return new Object[][] {
+      { Caffeine.newBuilder() },
+      { Caffeine.newBuilder().maximumSize(100) },
+    };
+  }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.tracing;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.testing.ConcurrentTestHarness;
+import com.google.common.collect.Range;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class AccessTraceWriterTest {
+  Path file;
+
+  @BeforeMethod
+  public void before() throws IOException {
+    file = Files.createTempFile("access", ".trace");
+  }
+
+  @AfterMethod
+  public void after() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void samplingRate_zero() {
+    AccessTraceWriter.newBuilder(file).samplingRate(0.0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void samplingRate_aboveOne() {
+    AccessTraceWriter.newBuilder(file).samplingRate(1.5);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void bufferRecords_zero() {
+    AccessTraceWriter.newBuilder(file).bufferRecords(0);
+  }
+
+  @Test
+  public void header() throws IOException {
+    AccessTraceWriter.newBuilder(file).weighted().build().close();
+    try (var input = new DataInputStream(Files.newInputStream(file))) {
+      assertThat(input.readInt()).isEqualTo(AccessTraceWriter.MAGIC);
+      assertThat(input.readInt()).isEqualTo(AccessTraceWriter.VERSION);
+      assertThat(input.readInt()).isEqualTo(AccessTraceWriter.WEIGHTED);
+      assertThat(input.read()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void hitsAndMisses() throws IOException {
+    var writer = AccessTraceWriter.newBuilder(file).build();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(100).recordAccesses(writer).build();
+    cache.get(1, key -> -key);
+    cache.getIfPresent(1);
+    cache.getIfPresent(2);
+    cache.getAllPresent(List.of(1, 2));
+    writer.close();
+
+    List<Record> records = read();
+    assertThat(records).containsExactly(
+        new Record(1, 1, false), new Record(1, 1, true), new Record(2, 0, false),
+        new Record(1, 1, true), new Record(2, 0, false)).inOrder();
+    assertThat(records.get(2).loadPenalty).isEqualTo(0);
+  }
+
+  @Test
+  public void unbounded() throws IOException {
+    var writer = AccessTraceWriter.newBuilder(file).build();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().recordAccesses(writer).build();
+    cache.get(1, key -> -key);
+    cache.get(1, key -> -key);
+    cache.getIfPresent(2);
+    writer.close();
+
+    assertThat(read()).containsExactly(new Record(1, 1, false),
+        new Record(1, 1, true), new Record(2, 0, false)).inOrder();
+  }
+
+  @Test
+  public void weighted() throws IOException {
+    var writer = AccessTraceWriter.newBuilder(file).weighted().build();
+    var cache = Caffeine.newBuilder()
+        .weigher((Integer key, Integer value) -> value)
+        .recordAccesses(writer)
+        .maximumWeight(100)
+        .build();
+    cache.get(1, key -> 10);
+    cache.getIfPresent(1);
+    writer.close();
+
+    assertThat(read()).containsExactly(
+        new Record(1, 10, false), new Record(1, 10, true)).inOrder();
+  }
+
+  @Test
+  public void loadPenalty() throws IOException {
+    var writer = AccessTraceWriter.newBuilder(file).build();
+    var cache = Caffeine.newBuilder().maximumSize(100).recordAccesses(writer).build();
+    cache.get(1, key -> {
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return key;
+    });
+    writer.close();
+
+    assertThat(read().get(0).loadPenalty).isAtLeast(1_000_000L);
+  }
+
+  @Test
+  public void sampled() throws IOException {
+    var writer = AccessTraceWriter.newBuilder(file).samplingRate(0.25).build();
+    var cache = Caffeine.newBuilder().maximumSize(100).recordAccesses(writer).build();
+    for (int i = 0; i < 10_000; i++) {
+      cache.getIfPresent(i);
+      cache.getIfPresent(i);
+    }
+    writer.close();
+
+    var records = read();
+    assertThat(records.size()).isIn(Range.closed(4_000, 6_000));
+    for (int i = 0; i < records.size(); i += 2) {
+      assertThat(records.get(i).key).isEqualTo(records.get(i + 1).key);
+    }
+  }
+
+  @Test
+  public void concurrent() throws IOException {
+    int accesses = 10_000;
+    int threads = 4;
+    var writer = AccessTraceWriter.newBuilder(file).bufferRecords(64).build();
+    var cache = Caffeine.newBuilder().maximumSize(100).recordAccesses(writer).build();
+    var next = new AtomicInteger();
+    ConcurrentTestHarness.timeTasks(threads, () -> {
+      int start = next.getAndIncrement() * accesses;
+      for (int i = start; i < start + accesses; i++) {
+        cache.getIfPresent(i);
+      }
+    });
+    writer.close();
+
+    assertThat(read().size() + writer.droppedCount()).isEqualTo(threads * accesses);
+  }
+
+  @Test
+  public void concurrent_sameThreadWriter() throws IOException {
+    int accesses = 10_000;
+    int threads = 4;
+    var writer = AccessTraceWriter.newBuilder(file)
+        .executor(Runnable::run).bufferRecords(64).build();
+    var cache = Caffeine.newBuilder().maximumSize(100).recordAccesses(writer).build();
+    var next = new AtomicInteger();
+    ConcurrentTestHarness.timeTasks(threads, () -> {
+      int start = next.getAndIncrement() * accesses;
+      for (int i = start; i < start + accesses; i++) {
+        cache.getIfPresent(i);
+      }
+    });
+    writer.close();
+
+    assertThat(read().size() + writer.droppedCount()).isEqualTo(threads * accesses);
+  }
+
+  @Test
+  public void queueFull_drops() throws IOException {
+    int dropped = 3;
+    var writer = AccessTraceWriter.newBuilder(file)
+        .executor(task -> {}).bufferRecords(1).build();
+    var cache = Caffeine.newBuilder().maximumSize(100).recordAccesses(writer).build();
+    for (int i = 0; i < AccessTraceWriter.STRIPES + dropped; i++) {
+      cache.getIfPresent(i);
+    }
+    assertThat(writer.droppedCount()).isEqualTo(dropped);
+
+    writer.close();
+    assertThat(read()).hasSize(AccessTraceWriter.STRIPES);
+  }
+
+  @Test
+  public void executor_rejected() throws IOException {
+    int accesses = 3;
+    var writer = AccessTraceWriter.newBuilder(file).bufferRecords(1).executor(task -> {
+      throw new RejectedExecutionException();
+    }).build();
+    var cache = Caffeine.newBuilder().maximumSize(100).recordAccesses(writer).build();
+    for (int i = 0; i < accesses; i++) {
+      cache.getIfPresent(i);
+    }
+    assertThat(Files.size(file)).isEqualTo(3 * Integer.BYTES);
+
+    writer.close();
+    assertThat(writer.droppedCount()).isEqualTo(0);
+    assertThat(read()).hasSize(accesses);
+  }
+
+  @Test
+  public void close_racingRecord() throws IOException {
+    var writer = AccessTraceWriter.newBuilder(file)
+        .executor(Runnable::run).bufferRecords(1).build();
+    writer.close();
+
+    writer.recording = true;
+    writer.recordHit(1, 1);
+    writer.flush();
+
+    assertThat(writer.droppedCount()).isEqualTo(1);
+    assertThat(read()).isEmpty();
+  }
+
+  @Test
+  public void close_ignoresAccesses() throws IOException {
+    var writer = AccessTraceWriter.newBuilder(file).build();
+    var cache = Caffeine.newBuilder().maximumSize(100).recordAccesses(writer).build();
+    writer.close();
+    writer.close();
+
+    cache.getIfPresent(1);
+    assertThat(writer.isSampled(1)).isFalse();
+    assertThat(read()).isEmpty();
+  }
+
+  @Test
+  public void guarded() {
+    AccessTracer tracer = new AccessTracer() {
+      @Override public boolean isSampled(Object key) {
+        return true;
+      }
+      @Override public void recordHit(Object key, int weight) {
+        throw new IllegalStateException();
+      }
+      @Override public void recordMiss(Object key, int weight, long loadPenalty) {
+        throw new IllegalStateException();
+      }
+    };
+    var cache = Caffeine.newBuilder().recordAccesses(tracer).build();
+    assertThat(cache.get(1, key -> key)).isEqualTo(1);
+    assertThat(cache.getIfPresent(1)).isEqualTo(1);
+  }
+
+  private List<Record> read() throws IOException {
+    var records = new ArrayList<Record>();
+    try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      assertThat(input.readInt()).isEqualTo(AccessTraceWriter.MAGIC);
+      assertThat(input.readInt()).isEqualTo(AccessTraceWriter.VERSION);
+      input.readInt();
+      while (input.available() > 0) {
+        long key = input.readLong();
+        int weight = input.readInt();
+        boolean hit = (input.readByte() == AccessTraceWriter.HIT);
+        long loadPenalty = input.readLong();
+        records.add(new Record(key, weight, hit, loadPenalty));
+      }
+    }
+    return records;
+  }
+
+  static final class Record {
+    final long key;
+    final int weight;
+    final boolean hit;
+    final long loadPenalty;
+
+    Record(Object key, int weight, boolean hit) {
+      this(AccessTraceWriter.hash(key), weight, hit, 0L);
+    }
+    Record(long key, int weight, boolean hit, long loadPenalty) {
+      this.loadPenalty = loadPenalty;
+      this.weight = weight;
+      this.hit = hit;
+      this.key = key;
+    }
+    @Override public boolean equals(Object o) {
+      if (!(o instanceof Record)) {
+        return false;
+      }
+      var record = (Record) o;
+      return (key == record.key) && (weight == record.weight) && (hit == record.hit);
+    }
+    @Override public int hashCode() {
+      return Long.hashCode(key);
+    }
+    @Override public String toString() {
+      return String.format("{key=%d, weight=%d, hit=%b, loadPenalty=%d}",
+          key, weight, hit, loadPenalty);
+    }
+  }
+}
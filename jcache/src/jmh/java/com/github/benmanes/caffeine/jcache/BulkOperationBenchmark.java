@@ -0,0 +1,103 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+/**
+ * A benchmark that evaluates the cost of the {@link CacheProxy} bulk operations for different
+ * batch sizes. The cache uses an expiry policy so that the per-entry cost includes the evaluation
+ * of the entry's expiration time.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew :jcache:jmh -PincludePattern=BulkOperationBenchmark --rerun
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+public class BulkOperationBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  int batchSize;
+
+  CacheProxy<Integer, Integer> cache;
+  CacheManager cacheManager;
+  Map<Integer, Integer> entries;
+  Set<Integer> keys;
+
+  @Setup
+  public void setup() {
+    var provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+    cacheManager = provider.getCacheManager(
+        provider.getDefaultURI(), provider.getDefaultClassLoader());
+
+    var configuration = new CaffeineConfiguration<Integer, Integer>();
+    configuration.setExpiryPolicyFactory(() -> new CreatedExpiryPolicy(
+        new Duration(TimeUnit.MINUTES, 1)));
+    cache = (CacheProxy<Integer, Integer>) cacheManager.createCache("benchmark", configuration);
+
+    entries = new HashMap<>();
+    for (int i = 0; i < batchSize; i++) {
+      entries.put(i, -i);
+    }
+    keys = entries.keySet();
+  }
+
+  @Setup(Level.Invocation)
+  public void populate() {
+    cache.putAll(entries);
+  }
+
+  @TearDown
+  public void tearDown() {
+    cacheManager.destroyCache("benchmark");
+  }
+
+  @Benchmark
+  public Map<Integer, Integer> getAll() {
+    return cache.getAll(keys);
+  }
+
+  @Benchmark
+  public void putAll() {
+    cache.putAll(entries);
+  }
+
+  @Benchmark
+  public void removeAll() {
+    cache.removeAll(keys);
+  }
+}
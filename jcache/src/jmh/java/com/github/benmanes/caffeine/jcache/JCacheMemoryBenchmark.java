@@ -0,0 +1,150 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache;
+
+import static java.util.function.Function.identity;
+
+import java.io.PrintStream;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+
+import org.github.jamm.MemoryMeter;
+import org.github.jamm.MemoryMeter.Guess;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.google.common.math.LongMath;
+import com.jakewharton.fliptables.FlipTable;
+
+/**
+ * A non-JMH benchmark to compare the memory overhead and the expired entry reclamation time of the
+ * JCache expiration modes. The lazy mode evaluates the {@link javax.cache.expiry.ExpiryPolicy} by
+ * the proxy and stores the expiration time on the entry, whereas the native mode evaluates the
+ * policy by Caffeine's variable expiration. Note that the measurements estimate based on the
+ * current JVM configuration, e.g. 64-bit with compressed references if the benchmark is executed
+ * with a heap under 32GB.
+ * <p>
+ * This benchmark requires a JavaAgent to evaluate the object sizes and can be executed using
+ * <tt>gradle -q :jcache:memoryOverhead</tt>.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class JCacheMemoryBenchmark {
+  // The number of entries added to minimize skew due to non-entry factors
+  static final int FUZZY_SIZE = 25_000;
+  // The pre-computed entries to store into the cache when computing the per-entry overhead
+  static final Map<Integer, Integer> workingSet = IntStream.range(0, FUZZY_SIZE)
+      .boxed().collect(Collectors.toMap(identity(), i -> -i));
+
+  final MemoryMeter meter = new MemoryMeter()
+      .withGuessing(Guess.FALLBACK_BEST)
+      .ignoreKnownSingletons();
+  final AtomicLong nanos = new AtomicLong();
+  final PrintStream out = System.out;
+  final CacheManager cacheManager;
+
+  JCacheMemoryBenchmark() {
+    var provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+    cacheManager = provider.getCacheManager(
+        provider.getDefaultURI(), provider.getDefaultClassLoader());
+  }
+
+  public void run() {
+    if (!MemoryMeter.hasInstrumentation()) {
+      out.println("WARNING: Java agent not installed - guessing instead");
+    }
+    out.println();
+    String result = FlipTable.of(
+        new String[] { "Expiry", "Baseline", "Per Entry", "Reclamation" },
+        new String[][] {
+          evaluate("Eternal", configuration()),
+          evaluate("Lazy", expiring(/* nativeExpiry */ false)),
+          evaluate("Native", expiring(/* nativeExpiry */ true)),
+        });
+    out.println(result);
+    cacheManager.close();
+  }
+
+  private CaffeineConfiguration<Integer, Integer> configuration() {
+    var configuration = new CaffeineConfiguration<Integer, Integer>();
+    // Avoid counting ForkJoinPool in estimates
+    configuration.setExecutorFactory(() -> Runnable::run);
+    configuration.setTickerFactory(() -> nanos::get);
+    return configuration;
+  }
+
+  private CaffeineConfiguration<Integer, Integer> expiring(boolean nativeExpiry) {
+    var configuration = configuration();
+    configuration.setExpiryPolicyFactory(() -> new CreatedExpiryPolicy(Duration.ONE_MINUTE));
+    configuration.setNativeExpiryEnabled(nativeExpiry);
+    return configuration;
+  }
+
+  private String[] evaluate(String label, CaffeineConfiguration<Integer, Integer> configuration) {
+    nanos.set(0L);
+    var cache = (CacheProxy<Integer, Integer>) cacheManager.createCache(label, configuration);
+    try {
+      Map<Integer, Expirable<Integer>> map = cache.cache.asMap();
+      long base = meter.measureDeep(map);
+      cache.putAll(workingSet);
+
+      long populated = meter.measureDeep(map);
+      long entryOverhead = 2 * FUZZY_SIZE * meter.measureDeep(workingSet.keySet().iterator().next());
+      long perEntry = LongMath.divide(populated - entryOverhead - base,
+          FUZZY_SIZE, RoundingMode.HALF_EVEN);
+      perEntry += ((perEntry & 1) == 0) ? 0 : 1;
+      long aligned = ((perEntry % 8) == 0) ? perEntry : ((1 + perEntry / 8) * 8);
+      return new String[] {
+          label,
+          String.format("%,d bytes", base),
+          String.format("%,d bytes (%,d aligned)", perEntry, aligned),
+          reclamation(cache),
+      };
+    } finally {
+      cacheManager.destroyCache(label);
+    }
+  }
+
+  /** Returns the time to discard the expired entries, or n/a if the entries do not expire. */
+  private String reclamation(CacheProxy<Integer, Integer> cache) {
+    nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+    long start = System.nanoTime();
+    cache.cache.cleanUp();
+    long elapsed = System.nanoTime() - start;
+
+    long remaining = cache.cache.estimatedSize();
+    if (remaining == FUZZY_SIZE) {
+      return "n/a";
+    } else if (remaining != 0) {
+      return String.format("%,d entries retained", remaining);
+    }
+    return String.format("%,d us (%,d ns/entry)",
+        TimeUnit.NANOSECONDS.toMicros(elapsed), elapsed / FUZZY_SIZE);
+  }
+
+  public static void main(String[] args) {
+    new JCacheMemoryBenchmark().run();
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Random;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.copy.Codec;
+import com.github.benmanes.caffeine.jcache.copy.CodecCopier;
+import com.github.benmanes.caffeine.jcache.copy.JavaSerializationCopier;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+/**
+ * A benchmark that evaluates the cost of the store-by-value modes on the {@link CacheProxy} read
+ * and write operations. The value is a small mutable object that is stored by reference, copied
+ * by Java serialization, or held in its encoded form by a {@link CodecCopier}.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew :jcache:jmh -PincludePattern=StoreByValueBenchmark --rerun
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+public class StoreByValueBenchmark {
+  private static final int SIZE = (2 << 10);
+  private static final int MASK = SIZE - 1;
+
+  @Param({"IDENTITY", "JAVA_SERIALIZATION", "CODEC"})
+  CopyMode mode;
+
+  CacheProxy<Integer, Order> cache;
+  CacheManager cacheManager;
+  Order[] orders;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    static final Random random = new Random();
+    int index = random.nextInt();
+  }
+
+  @Setup
+  public void setup() {
+    var provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+    cacheManager = provider.getCacheManager(
+        provider.getDefaultURI(), provider.getDefaultClassLoader());
+    cache = (CacheProxy<Integer, Order>) cacheManager.createCache(
+        "benchmark", mode.configuration());
+
+    orders = new Order[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      orders[i] = new Order(i, "customer-" + i, new int[] { i, 2 * i, 3 * i, 4 * i });
+      cache.put(i, orders[i]);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    cacheManager.destroyCache("benchmark");
+  }
+
+  @Benchmark
+  public Order get(ThreadState threadState) {
+    return cache.get(threadState.index++ & MASK);
+  }
+
+  @Benchmark
+  public void put(ThreadState threadState) {
+    int index = threadState.index++ & MASK;
+    cache.put(index, orders[index]);
+  }
+
+  public enum CopyMode {
+    IDENTITY {
+      @Override CaffeineConfiguration<Integer, Order> configuration() {
+        return new CaffeineConfiguration<>();
+      }
+    },
+    JAVA_SERIALIZATION {
+      @Override CaffeineConfiguration<Integer, Order> configuration() {
+        var configuration = new CaffeineConfiguration<Integer, Order>();
+        configuration.setCopierFactory(JavaSerializationCopier::new);
+        configuration.setStoreByValue(true);
+        return configuration;
+      }
+    },
+    CODEC {
+      @Override CaffeineConfiguration<Integer, Order> configuration() {
+        var configuration = new CaffeineConfiguration<Integer, Order>();
+        configuration.setCopierFactory(OrderCopier::new);
+        configuration.setStoreByValue(true);
+        return configuration;
+      }
+    };
+
+    abstract CaffeineConfiguration<Integer, Order> configuration();
+  }
+
+  /** A mutable value that is copied when stored by value. */
+  public static final class Order implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    long id;
+    String customer;
+    int[] quantities;
+
+    Order(long id, String customer, int[] quantities) {
+      this.quantities = quantities;
+      this.customer = customer;
+      this.id = id;
+    }
+  }
+
+  /** A copier that encodes the orders by using their known schema. */
+  public static final class OrderCopier extends CodecCopier {
+    public OrderCopier() {
+      super(Map.of(Order.class, new OrderCodec()));
+    }
+  }
+
+  static final class OrderCodec implements Codec<Order> {
+    @Override public byte[] encode(Order order) {
+      var bytes = new ByteArrayOutputStream();
+      try (var output = new DataOutputStream(bytes)) {
+        output.writeLong(order.id);
+        output.writeUTF(order.customer);
+        output.writeInt(order.quantities.length);
+        for (int quantity : order.quantities) {
+          output.writeInt(quantity);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return bytes.toByteArray();
+    }
+    @Override public Order decode(byte[] data, ClassLoader classLoader) {
+      try (var input = new DataInputStream(new ByteArrayInputStream(data))) {
+        long id = input.readLong();
+        String customer = input.readUTF();
+        int[] quantities = new int[input.readInt()];
+        for (int i = 0; i < quantities.length; i++) {
+          quantities[i] = input.readInt();
+        }
+        return new Order(id, customer, quantities);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
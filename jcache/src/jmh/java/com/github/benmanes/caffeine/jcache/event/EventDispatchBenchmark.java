@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache.event;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+/**
+ * A benchmark that evaluates the throughput of an asynchronous listener when its events are
+ * delivered individually or coalesced into batches by the {@link EventDispatcher}. Each invocation
+ * publishes a run of creation events and waits until the listener has consumed all of them, so
+ * the score is the number of events that the listener is notified of per unit of time.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew :jcache:jmh -PincludePattern=EventDispatchBenchmark --rerun
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+public class EventDispatchBenchmark {
+  private static final int EVENTS = 1_024;
+
+  @Param({"1", "16", "256"})
+  int maximumBatchSize;
+
+  EventDispatcher<Integer, Integer> dispatcher;
+  CountingListener listener;
+  CacheManager cacheManager;
+  Cache<Integer, Integer> cache;
+  long published;
+
+  @Setup
+  public void setup() {
+    var provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+    cacheManager = provider.getCacheManager(
+        provider.getDefaultURI(), provider.getDefaultClassLoader());
+    cache = cacheManager.createCache("benchmark", new CaffeineConfiguration<>());
+
+    listener = new CountingListener();
+    dispatcher = new EventDispatcher<>(ForkJoinPool.commonPool(), maximumBatchSize, 0L);
+    dispatcher.register(new MutableCacheEntryListenerConfiguration<>(
+        () -> listener, null, false, /* synchronous */ false));
+  }
+
+  @TearDown
+  public void tearDown() {
+    cacheManager.destroyCache("benchmark");
+  }
+
+  @Benchmark @OperationsPerInvocation(EVENTS)
+  public void publish() {
+    for (int i = 0; i < EVENTS; i++) {
+      dispatcher.publishCreated(cache, i, i);
+    }
+    published += EVENTS;
+    while (listener.count.sum() < published) {
+      Thread.yield();
+    }
+  }
+
+  /** A listener that counts the events that it is notified of. */
+  static final class CountingListener implements CacheEntryCreatedListener<Integer, Integer> {
+    final LongAdder count = new LongAdder();
+
+    @Override
+    public void onCreated(Iterable<CacheEntryEvent<? extends Integer, ? extends Integer>> events) {
+      for (var event : events) {
+        count.increment();
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache.management;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * A benchmark of the contention when recording the JCache statistics of a get operation, which
+ * compares the striped totals that are used for the averages to also recording the latency
+ * histograms for the percentiles. The histograms should not allocate when recording, which may be
+ * verified by the gc profiler.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew :jcache:jmh -PincludePattern=StatisticsBenchmark -Pprofilers=gc
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+public class StatisticsBenchmark {
+  private static final int SIZE = (2 << 14);
+  private static final int MASK = SIZE - 1;
+
+  @Param({"disabled", "averages", "percentiles"})
+  String statisticsType;
+
+  JCacheStatisticsMXBean statistics;
+  long[] latencies;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    int index = ThreadLocalRandom.current().nextInt();
+  }
+
+  @Setup
+  public void setup() {
+    if (statisticsType.equals("disabled")) {
+      statistics = new JCacheStatisticsMXBean();
+    } else if (statisticsType.equals("averages")) {
+      statistics = new JCacheStatisticsMXBean();
+      statistics.enable(true);
+    } else if (statisticsType.equals("percentiles")) {
+      statistics = new JCacheStatisticsMXBean(/* percentiles */ true);
+      statistics.enable(true);
+    } else {
+      throw new IllegalArgumentException("Unknown statistics type: " + statisticsType);
+    }
+
+    // A log-normal-like spread of latencies from tens of nanoseconds to a millisecond
+    latencies = new long[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      latencies[i] = (long) Math.exp(3 + (11 * ThreadLocalRandom.current().nextDouble()));
+    }
+  }
+
+  @Benchmark @Threads(1)
+  public void recordGet_1(ThreadState threadState) {
+    recordGet(threadState);
+  }
+
+  @Benchmark @Threads(4)
+  public void recordGet_4(ThreadState threadState) {
+    recordGet(threadState);
+  }
+
+  @Benchmark @Threads(16)
+  public void recordGet_16(ThreadState threadState) {
+    recordGet(threadState);
+  }
+
+  @Benchmark @Threads(64)
+  public void recordGet_64(ThreadState threadState) {
+    recordGet(threadState);
+  }
+
+  private void recordGet(ThreadState threadState) {
+    statistics.recordHits(1L);
+    statistics.recordGetTime(latencies[threadState.index++ & MASK]);
+  }
+}
@@ -17,14 +17,20 @@ package com.github.benmanes.caffeine.jcache;
 
 import static java.util.Objects.requireNonNull;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
 import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import javax.cache.CacheManager;
 import javax.cache.configuration.CompleteConfiguration;
 import javax.cache.configuration.Configuration;
 import javax.cache.configuration.Factory;
+import javax.cache.expiry.Duration;
 import javax.cache.expiry.EternalExpiryPolicy;
 import javax.cache.expiry.ExpiryPolicy;
 import javax.cache.integration.CacheLoader;
@@ -50,6 +56,7 @@ import com.typesafe.config.Config;
  * @author ben.manes@gmail.com (Ben Manes)
  */
 final class CacheFactory {
+  private static final Logger logger = System.getLogger(CacheFactory.class.getName());
 
   private CacheFactory() {}
 
@@ -138,17 +145,21 @@ final class CacheFactory {
     final Caffeine<Object, Object> caffeine;
     final CaffeineConfiguration<K, V> config;
 
+    ExpiryPolicy lazyExpiryPolicy;
+
     Builder(CacheManager cacheManager, String cacheName, CaffeineConfiguration<K, V> config) {
       this.config = config;
       this.cacheName = cacheName;
       this.cacheManager = cacheManager;
       this.caffeine = Caffeine.newBuilder();
-      this.statistics = new JCacheStatisticsMXBean();
+      this.statistics = new JCacheStatisticsMXBean(config.isPercentileStatisticsEnabled());
       this.ticker = config.getTickerFactory().create();
       this.executor = config.getExecutorFactory().create();
       this.scheduler = config.getSchedulerFactory().create();
       this.expiryPolicy = config.getExpiryPolicyFactory().create();
-      this.dispatcher = new EventDispatcher<>(executor);
+      this.lazyExpiryPolicy = expiryPolicy;
+      this.dispatcher = new EventDispatcher<>(executor,
+          config.getEventBatchMaximumSize(), config.getEventBatchMaximumLatency());
 
       caffeine.ticker(ticker);
       caffeine.executor(executor);
@@ -204,16 +215,16 @@ final class CacheFactory {
       Optional<CacheLoader<K, V>> cacheLoader =
           Optional.ofNullable(config.getCacheLoaderFactory()).map(Factory::create);
       return new CacheProxy<>(cacheName, executor, cacheManager, config, caffeine.build(),
-          dispatcher, cacheLoader, expiryPolicy, ticker, statistics);
+          dispatcher, cacheLoader, lazyExpiryPolicy, ticker, statistics);
     }
 
     /** Creates a cache that reads through on a cache miss. */
     private CacheProxy<K, V> newLoadingCacheProxy() {
       CacheLoader<K, V> cacheLoader = config.getCacheLoaderFactory().create();
       JCacheLoaderAdapter<K, V> adapter = new JCacheLoaderAdapter<>(
-          cacheLoader, dispatcher, expiryPolicy, ticker, statistics);
+          cacheLoader, dispatcher, lazyExpiryPolicy, ticker, statistics);
       CacheProxy<K, V> cache = new LoadingCacheProxy<>(cacheName, executor, cacheManager, config,
-          caffeine.build(adapter), dispatcher, cacheLoader, expiryPolicy, ticker, statistics);
+          caffeine.build(adapter), dispatcher, cacheLoader, lazyExpiryPolicy, ticker, statistics);
       adapter.setCache(cache);
       return cache;
     }
@@ -268,11 +279,20 @@ final class CacheFactory {
       return true;
     }
 
+    /**
+     * Configures the expiry policy and returns if set. If native then the policy is evaluated by
+     * the cache and the proxy sees eternal entries, otherwise the proxy evaluates the policy and
+     * the cache follows the expiration time held by the entry.
+     */
     private boolean configureJCacheExpiry() {
       if (expiryPolicy instanceof EternalExpiryPolicy) {
         return false;
+      } else if (config.isNativeExpiryEnabled()) {
+        caffeine.expireAfter(new ExpiryPolicyToExpiry<>(expiryPolicy));
+        lazyExpiryPolicy = new NativeExpiryPolicy(expiryPolicy);
+      } else {
+        caffeine.expireAfter(new ExpirableToExpiry<>(ticker));
       }
-      caffeine.expireAfter(new ExpirableToExpiry<>(ticker));
       return true;
     }
 
@@ -329,4 +349,90 @@ final class CacheFactory {
       return TimeUnit.MILLISECONDS.toNanos(expirable.getExpireTimeMS()) - ticker.read();
     }
   }
+
+  /**
+   * An adapter that evaluates the JCache expiry policy natively by Caffeine's timer wheel. The
+   * creation duration is evaluated once by the proxy, which must decide whether to store the entry,
+   * and is carried as the new entry's expiration time. The entry is then marked as mapped and
+   * eternal, so that the proxy skips its lazy expiration checks. The proxy performs its conditional
+   * operations as computations that may retain the entry, which the cache treats as an update. As
+   * the proxy creates a new entry for every write, an entry that was already mapped is unchanged
+   * and retains its expiration time.
+   */
+  private static final class ExpiryPolicyToExpiry<K, V> implements Expiry<K, Expirable<V>> {
+    private final ExpiryPolicy expiry;
+
+    public ExpiryPolicyToExpiry(ExpiryPolicy expiry) {
+      this.expiry = requireNonNull(expiry);
+    }
+    @Override public long expireAfterCreate(K key, Expirable<V> expirable, long currentTime) {
+      long expireTimeMS = expirable.getExpireTimeMS();
+      map(expirable);
+      if ((expireTimeMS == Long.MAX_VALUE) || (expireTimeMS == Long.MIN_VALUE)) {
+        return Long.MAX_VALUE;
+      }
+      return TimeUnit.MILLISECONDS.toNanos(expireTimeMS) - currentTime;
+    }
+    @Override public long expireAfterUpdate(K key, Expirable<V> expirable,
+        long currentTime, long currentDuration) {
+      if (expirable.isMapped()) {
+        return currentDuration;
+      }
+      map(expirable);
+      return toNanos(expiry::getExpiryForUpdate, currentDuration);
+    }
+    @Override public long expireAfterRead(K key, Expirable<V> expirable,
+        long currentTime, long currentDuration) {
+      return toNanos(expiry::getExpiryForAccess, currentDuration);
+    }
+    @SuppressWarnings("CatchingUnchecked")
+    private long toNanos(Supplier<Duration> supplier, long currentDuration) {
+      try {
+        Duration duration = supplier.get();
+        if (duration == null) {
+          return currentDuration;
+        } else if (duration.isEternal()) {
+          return Long.MAX_VALUE;
+        }
+        return duration.getTimeUnit().toNanos(duration.getDurationAmount());
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "Failed to get the policy's expiration time", e);
+        return currentDuration;
+      }
+    }
+    /** Marks the entry as mapped and eternal to the proxy, as the cache now tracks its expiration. */
+    private static void map(Expirable<?> expirable) {
+      expirable.setExpireTimeMS(Long.MAX_VALUE);
+      expirable.setMapped();
+    }
+  }
+
+  /**
+   * The expiry policy of a proxy whose entries expire natively. The creation duration is passed
+   * through, so that the proxy does not store an entry with a zero duration and the cache adopts
+   * the entry's expiration time without evaluating the policy again. The update and access
+   * durations are evaluated only by the cache, and the configured policy is closed with the cache.
+   */
+  private static final class NativeExpiryPolicy implements ExpiryPolicy, Closeable {
+    private final ExpiryPolicy expiry;
+
+    public NativeExpiryPolicy(ExpiryPolicy expiry) {
+      this.expiry = requireNonNull(expiry);
+    }
+    @Override public Duration getExpiryForCreation() {
+      Duration duration = expiry.getExpiryForCreation();
+      return (duration == null) ? Duration.ETERNAL : duration;
+    }
+    @Override public @Nullable Duration getExpiryForUpdate() {
+      return null;
+    }
+    @Override public @Nullable Duration getExpiryForAccess() {
+      return null;
+    }
+    @Override public void close() throws IOException {
+      if (expiry instanceof Closeable) {
+        ((Closeable) expiry).close();
+      }
+    }
+  }
 }
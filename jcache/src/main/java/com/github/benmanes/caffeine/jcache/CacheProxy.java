@@ -63,6 +63,8 @@ import org.checkerframework.checker.nullness.qual.PolyNull;
 
 import com.github.benmanes.caffeine.cache.Ticker;
 import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.copy.Codec;
+import com.github.benmanes.caffeine.jcache.copy.CodecCopier;
 import com.github.benmanes.caffeine.jcache.copy.Copier;
 import com.github.benmanes.caffeine.jcache.event.EventDispatcher;
 import com.github.benmanes.caffeine.jcache.event.Registration;
@@ -86,6 +88,7 @@ public class CacheProxy<K, V> implements Cache<K, V> {
   private final CaffeineConfiguration<K, V> configuration;
   private final CacheManager cacheManager;
   private final CacheWriter<K, V> writer;
+  private final @Nullable CodecCopier codecCopier;
   private final JCacheMXBean cacheMXBean;
   private final Copier copier;
   private final String name;
@@ -120,6 +123,7 @@ public class CacheProxy<K, V> implements Cache<K, V> {
     copier = configuration.isStoreByValue()
         ? configuration.getCopierFactory().create()
         : Copier.identity();
+    codecCopier = (copier instanceof CodecCopier) ? (CodecCopier) copier : null;
     writer = configuration.hasCacheWriter()
         ? configuration.getCacheWriter()
         : DisabledCacheWriter.get();
@@ -137,7 +141,7 @@ public class CacheProxy<K, V> implements Cache<K, V> {
     if (!expirable.isEternal() && expirable.hasExpired(currentTimeMillis())) {
       cache.asMap().computeIfPresent(key, (k, e) -> {
         if (e == expirable) {
-          dispatcher.publishExpired(this, key, expirable.get());
+          dispatcher.publishExpired(this, key, expirable);
           statistics.recordEvictions(1);
           return null;
         }
@@ -166,7 +170,7 @@ public class CacheProxy<K, V> implements Cache<K, V> {
       if (expirable.hasExpired(millis)) {
         cache.asMap().computeIfPresent(key, (k, e) -> {
           if (e == expirable) {
-            dispatcher.publishExpired(this, key, expirable.get());
+            dispatcher.publishExpired(this, key, expirable);
             statistics.recordEvictions(1);
             return null;
           }
@@ -224,7 +228,7 @@ public class CacheProxy<K, V> implements Cache<K, V> {
       if (entry.getValue().hasExpired(millis[0])) {
         cache.asMap().computeIfPresent(entry.getKey(), (k, expirable) -> {
           if (expirable == entry.getValue()) {
-            dispatcher.publishExpired(this, entry.getKey(), entry.getValue().get());
+            dispatcher.publishExpired(this, entry.getKey(), entry.getValue());
             expired[0]++;
             return null;
           }
@@ -327,12 +331,12 @@ public class CacheProxy<K, V> implements Cache<K, V> {
     long start = statsEnabled ? ticker.read() : 0L;
 
     int[] puts = { 0 };
-    V val = putNoCopyOrAwait(key, value, true, puts);
+    Expirable<V> replaced = putNoCopyOrAwait(key, value, true, puts);
     dispatcher.awaitSynchronous();
-    V copy = copyOf(val);
+    V copy = copyValue(replaced);
 
     if (statsEnabled) {
-      if (val == null) {
+      if (replaced == null) {
         statistics.recordMisses(1L);
       } else {
         statistics.recordHits(1L);
@@ -352,40 +356,79 @@ public class CacheProxy<K, V> implements Cache<K, V> {
    * @param value value to be associated with the specified key
    * @param publishToWriter if the writer should be notified
    * @param puts the accumulator for additions and updates
-   * @return the old value
+   * @return the old entry
    */
-  protected V putNoCopyOrAwait(K key, V value, boolean publishToWriter, int[] puts) {
+  protected @Nullable Expirable<V> putNoCopyOrAwait(K key, V value,
+      boolean publishToWriter, int[] puts) {
+    var batch = new WriteBatch();
+    Expirable<V> replaced = putNoCopyOrAwait(key, value, publishToWriter, batch);
+    batch.recordEvictions();
+    puts[0] += batch.puts;
+    return replaced;
+  }
+
+  /**
+   * Associates the mappings in the cache without store-by-value copying nor waiting for synchronous
+   * listeners to complete. The time is read and the expiry policy is evaluated at most once for all
+   * of the entries, and the expired entries are recorded as evictions in aggregate.
+   *
+   * @param map the mappings to be stored in the cache
+   * @return the number of additions and updates
+   */
+  protected int putAllNoCopyOrAwait(Map<? extends K, ? extends V> map) {
+    var batch = new WriteBatch();
+    for (var entry : map.entrySet()) {
+      putNoCopyOrAwait(entry.getKey(), entry.getValue(), /* publishToWriter */ false, batch);
+    }
+    batch.recordEvictions();
+    return batch.puts;
+  }
+
+  /**
+   * Associates the specified value with the specified key in the cache as part of a batch of
+   * writes.
+   *
+   * @param key key with which the specified value is to be associated
+   * @param value value to be associated with the specified key
+   * @param publishToWriter if the writer should be notified
+   * @param batch the shared state of the writes
+   * @return the old entry
+   */
+  private @Nullable Expirable<V> putNoCopyOrAwait(K key, V value,
+      boolean publishToWriter, WriteBatch batch) {
     requireNonNull(key);
     requireNonNull(value);
 
-    @SuppressWarnings("unchecked")
-    V[] replaced = (V[]) new Object[1];
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Expirable<V>[] replaced = new Expirable[1];
+    Expirable<V> created = newExpirable(value, /* expireTimeMS */ 0L);
     cache.asMap().compute(copyOf(key), (k, expirable) -> {
-      V newValue = copyOf(value);
       if (publishToWriter && configuration.isWriteThrough()) {
         publishToCacheWriter(writer::write, () -> new EntryProxy<>(key, value));
       }
       if ((expirable != null) && !expirable.isEternal()
-          && expirable.hasExpired(currentTimeMillis())) {
-        dispatcher.publishExpired(this, key, expirable.get());
-        statistics.recordEvictions(1L);
+          && expirable.hasExpired(batch.currentTimeMillis())) {
+        dispatcher.publishExpired(this, key, expirable);
+        batch.expired++;
         expirable = null;
       }
-      long expireTimeMS = getWriteExpireTimeMS((expirable == null));
+      long expireTimeMS = batch.getWriteExpireTimeMS((expirable == null));
       if ((expirable != null) && (expireTimeMS == Long.MIN_VALUE)) {
         expireTimeMS = expirable.getExpireTimeMS();
       }
       if (expireTimeMS == 0) {
-        replaced[0] = (expirable == null) ? null : expirable.get();
+        replaced[0] = expirable;
         return null;
-      } else if (expirable == null) {
-        dispatcher.publishCreated(this, key, newValue);
+      }
+      created.setExpireTimeMS(expireTimeMS);
+      if (expirable == null) {
+        dispatcher.publishCreated(this, key, created);
       } else {
-        replaced[0] = expirable.get();
-        dispatcher.publishUpdated(this, key, expirable.get(), newValue);
+        replaced[0] = expirable;
+        dispatcher.publishUpdated(this, key, expirable, created);
       }
-      puts[0]++;
-      return new Expirable<>(newValue, expireTimeMS);
+      batch.puts++;
+      return created;
     });
     return replaced[0];
   }
@@ -400,15 +443,12 @@ public class CacheProxy<K, V> implements Cache<K, V> {
       requireNonNull(entry.getKey());
       requireNonNull(entry.getValue());
     }
-    int[] puts = { 0 };
     CacheWriterException e = writeAllToCacheWriter(map);
-    for (var entry : map.entrySet()) {
-      putNoCopyOrAwait(entry.getKey(), entry.getValue(), /* publishToWriter */ false, puts);
-    }
+    int puts = putAllNoCopyOrAwait(map);
     dispatcher.awaitSynchronous();
 
     if (statsEnabled) {
-      statistics.recordPuts(puts[0]);
+      statistics.recordPuts(puts);
       statistics.recordPutTime(ticker.read() - start);
     }
     if (e != null) {
@@ -452,7 +492,7 @@ public class CacheProxy<K, V> implements Cache<K, V> {
     cache.asMap().compute(copyOf(key), (k, expirable) -> {
       if ((expirable != null) && !expirable.isEternal()
           && expirable.hasExpired(currentTimeMillis())) {
-        dispatcher.publishExpired(this, key, expirable.get());
+        dispatcher.publishExpired(this, key, expirable);
         statistics.recordEvictions(1L);
         expirable = null;
       }
@@ -468,9 +508,9 @@ public class CacheProxy<K, V> implements Cache<K, V> {
       if (publishToWriter) {
         publishToCacheWriter(writer::write, () -> new EntryProxy<>(key, value));
       }
-      V copy = copyOf(value);
-      dispatcher.publishCreated(this, key, copy);
-      return new Expirable<>(copy, expireTimeMS);
+      Expirable<V> created = newExpirable(value, expireTimeMS);
+      dispatcher.publishCreated(this, key, created);
+      return created;
     });
     return absent[0];
   }
@@ -483,13 +523,13 @@ public class CacheProxy<K, V> implements Cache<K, V> {
     long start = statsEnabled ? ticker.read() : 0L;
 
     publishToCacheWriter(writer::delete, () -> key);
-    V value = removeNoCopyOrAwait(key);
+    Expirable<V> removed = removeNoCopyOrAwait(key);
     dispatcher.awaitSynchronous();
 
     if (statsEnabled) {
       statistics.recordRemoveTime(ticker.read() - start);
     }
-    if (value != null) {
+    if (removed != null) {
       statistics.recordRemovals(1L);
       return true;
     }
@@ -501,20 +541,54 @@ public class CacheProxy<K, V> implements Cache<K, V> {
    * listeners to complete.
    *
    * @param key key whose mapping is to be removed from the cache
-   * @return the old value
+   * @return the old entry
    */
-  private V removeNoCopyOrAwait(K key) {
-    @SuppressWarnings("unchecked")
-    V[] removed = (V[]) new Object[1];
+  private @Nullable Expirable<V> removeNoCopyOrAwait(K key) {
+    var batch = new WriteBatch();
+    Expirable<V> removed = removeNoCopyOrAwait(key, batch);
+    batch.recordEvictions();
+    return removed;
+  }
+
+  /**
+   * Removes the mappings from the cache without store-by-value copying nor waiting for synchronous
+   * listeners to complete. The time is read at most once for all of the entries, and the expired
+   * entries are recorded as evictions in aggregate.
+   *
+   * @param keys the keys whose mappings are to be removed from the cache
+   * @return the number of mappings that were removed
+   */
+  private int removeAllNoCopyOrAwait(Set<? extends K> keys) {
+    var batch = new WriteBatch();
+    int removed = 0;
+    for (K key : keys) {
+      if (removeNoCopyOrAwait(key, batch) != null) {
+        removed++;
+      }
+    }
+    batch.recordEvictions();
+    return removed;
+  }
+
+  /**
+   * Removes the mapping from the cache as part of a batch of writes.
+   *
+   * @param key key whose mapping is to be removed from the cache
+   * @param batch the shared state of the writes
+   * @return the old entry
+   */
+  private @Nullable Expirable<V> removeNoCopyOrAwait(K key, WriteBatch batch) {
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Expirable<V>[] removed = new Expirable[1];
     cache.asMap().computeIfPresent(key, (k, expirable) -> {
-      if (!expirable.isEternal() && expirable.hasExpired(currentTimeMillis())) {
-        dispatcher.publishExpired(this, key, expirable.get());
-        statistics.recordEvictions(1L);
+      if (!expirable.isEternal() && expirable.hasExpired(batch.currentTimeMillis())) {
+        dispatcher.publishExpired(this, key, expirable);
+        batch.expired++;
         return null;
       }
 
-      dispatcher.publishRemoved(this, key, expirable.get());
-      removed[0] = expirable.get();
+      dispatcher.publishRemoved(this, key, expirable);
+      removed[0] = expirable;
       return null;
     });
     return removed[0];
@@ -535,13 +609,14 @@ public class CacheProxy<K, V> implements Cache<K, V> {
           ? 0L
           : nanosToMillis((start == 0L) ? ticker.read() : start);
       if (expirable.hasExpired(millis)) {
-        dispatcher.publishExpired(this, key, expirable.get());
+        dispatcher.publishExpired(this, key, expirable);
         statistics.recordEvictions(1L);
         return null;
       }
-      if (oldValue.equals(expirable.get())) {
+      V current = expirable.get();
+      if (oldValue.equals(current)) {
         publishToCacheWriter(writer::delete, () -> key);
-        dispatcher.publishRemoved(this, key, expirable.get());
+        dispatcher.publishRemoved(this, key, current);
         removed[0] = true;
         return null;
       }
@@ -569,12 +644,12 @@ public class CacheProxy<K, V> implements Cache<K, V> {
     long start = statsEnabled ? ticker.read() : 0L;
 
     publishToCacheWriter(writer::delete, () -> key);
-    V value = removeNoCopyOrAwait(key);
+    Expirable<V> removed = removeNoCopyOrAwait(key);
     dispatcher.awaitSynchronous();
-    V copy = copyOf(value);
+    V copy = copyValue(removed);
 
     if (statsEnabled) {
-      if (value == null) {
+      if (removed == null) {
         statistics.recordMisses(1L);
       } else {
         statistics.recordHits(1L);
@@ -603,21 +678,22 @@ public class CacheProxy<K, V> implements Cache<K, V> {
           ? 0L
           : nanosToMillis((start == 0L) ? ticker.read() : start);
       if (expirable.hasExpired(millis)) {
-        dispatcher.publishExpired(this, key, expirable.get());
+        dispatcher.publishExpired(this, key, expirable);
         statistics.recordEvictions(1L);
         return null;
       }
 
       found[0] = true;
       Expirable<V> result;
-      if (oldValue.equals(expirable.get())) {
-        publishToCacheWriter(writer::write, () -> new EntryProxy<>(key, expirable.get()));
-        dispatcher.publishUpdated(this, key, expirable.get(), copyOf(newValue));
+      V current = expirable.get();
+      if (oldValue.equals(current)) {
+        publishToCacheWriter(writer::write, () -> new EntryProxy<>(key, current));
         long expireTimeMS = getWriteExpireTimeMS(/* created */ false);
         if (expireTimeMS == Long.MIN_VALUE) {
           expireTimeMS = expirable.getExpireTimeMS();
         }
-        result = new Expirable<>(newValue, expireTimeMS);
+        result = newExpirable(newValue, expireTimeMS);
+        dispatcher.publishUpdated(this, key, current, result);
         replaced[0] = true;
       } else {
         result = expirable;
@@ -645,9 +721,9 @@ public class CacheProxy<K, V> implements Cache<K, V> {
     boolean statsEnabled = statistics.isEnabled();
     long start = statsEnabled ? ticker.read() : 0L;
 
-    V oldValue = replaceNoCopyOrAwait(key, value);
+    Expirable<V> replaced = replaceNoCopyOrAwait(key, value);
     dispatcher.awaitSynchronous();
-    if (oldValue == null) {
+    if (replaced == null) {
       statistics.recordMisses(1L);
       return false;
     }
@@ -666,12 +742,12 @@ public class CacheProxy<K, V> implements Cache<K, V> {
     boolean statsEnabled = statistics.isEnabled();
     long start = statsEnabled ? ticker.read() : 0L;
 
-    V oldValue = replaceNoCopyOrAwait(key, value);
+    Expirable<V> replaced = replaceNoCopyOrAwait(key, value);
     dispatcher.awaitSynchronous();
-    V copy = copyOf(oldValue);
+    V copy = copyValue(replaced);
 
     if (statsEnabled) {
-      if (oldValue == null) {
+      if (replaced == null) {
         statistics.recordMisses(1L);
       } else {
         statistics.recordHits(1L);
@@ -691,16 +767,16 @@ public class CacheProxy<K, V> implements Cache<K, V> {
    *
    * @param key key with which the specified value is associated
    * @param value value to be associated with the specified key
-   * @return the old value
+   * @return the old entry
    */
-  private V replaceNoCopyOrAwait(K key, V value) {
+  private @Nullable Expirable<V> replaceNoCopyOrAwait(K key, V value) {
     requireNonNull(value);
-    V copy = copyOf(value);
-    @SuppressWarnings("unchecked")
-    V[] replaced = (V[]) new Object[1];
+    Expirable<V> result = newExpirable(value, /* expireTimeMS */ 0L);
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Expirable<V>[] replaced = new Expirable[1];
     cache.asMap().computeIfPresent(key, (k, expirable) -> {
       if (!expirable.isEternal() && expirable.hasExpired(currentTimeMillis())) {
-        dispatcher.publishExpired(this, key, expirable.get());
+        dispatcher.publishExpired(this, key, expirable);
         statistics.recordEvictions(1L);
         return null;
       }
@@ -710,9 +786,10 @@ public class CacheProxy<K, V> implements Cache<K, V> {
       if (expireTimeMS == Long.MIN_VALUE) {
         expireTimeMS = expirable.getExpireTimeMS();
       }
-      dispatcher.publishUpdated(this, key, expirable.get(), copy);
-      replaced[0] = expirable.get();
-      return new Expirable<>(copy, expireTimeMS);
+      result.setExpireTimeMS(expireTimeMS);
+      dispatcher.publishUpdated(this, key, expirable, result);
+      replaced[0] = expirable;
+      return result;
     });
     return replaced[0];
   }
@@ -726,10 +803,7 @@ public class CacheProxy<K, V> implements Cache<K, V> {
 
     Set<K> keysToRemove = new HashSet<>(keys);
     CacheWriterException e = deleteAllToCacheWriter(keysToRemove);
-    long removed = keysToRemove.stream()
-        .map(this::removeNoCopyOrAwait)
-        .filter(Objects::nonNull)
-        .count();
+    int removed = removeAllNoCopyOrAwait(keysToRemove);
     dispatcher.awaitSynchronous();
 
     if (statsEnabled) {
@@ -825,7 +899,7 @@ public class CacheProxy<K, V> implements Cache<K, V> {
           currentTimeMS = currentTimeMillis();
         }
         if (expirable.hasExpired(currentTimeMS)) {
-          dispatcher.publishExpired(this, entry.getKey(), expirable.get());
+          dispatcher.publishExpired(this, entry.getKey(), expirable);
           statistics.recordEvictions(1);
           return null;
         }
@@ -840,23 +914,23 @@ public class CacheProxy<K, V> implements Cache<K, V> {
       case LOADED:
         statistics.recordPuts(1L);
         dispatcher.publishCreated(this, entry.getKey(), entry.getValue());
-        return new Expirable<>(entry.getValue(), getWriteExpireTimeMS(/* created */ true));
+        return newExpirable(entry.getValue(), getWriteExpireTimeMS(/* created */ true));
       case UPDATED: {
         statistics.recordPuts(1L);
         publishToCacheWriter(writer::write, () -> entry);
         requireNonNull(expirable, "Expected a previous value but was null");
-        dispatcher.publishUpdated(this, entry.getKey(), expirable.get(), entry.getValue());
+        dispatcher.publishUpdated(this, entry.getKey(), expirable, entry.getValue());
         long expireTimeMS = getWriteExpireTimeMS(/* created */ false);
         if (expireTimeMS == Long.MIN_VALUE) {
           expireTimeMS = expirable.getExpireTimeMS();
         }
-        return new Expirable<>(entry.getValue(), expireTimeMS);
+        return newExpirable(entry.getValue(), expireTimeMS);
       }
       case DELETED:
         statistics.recordRemovals(1L);
         publishToCacheWriter(writer::delete, entry::getKey);
         if (expirable != null) {
-          dispatcher.publishRemoved(this, entry.getKey(), expirable.get());
+          dispatcher.publishRemoved(this, entry.getKey(), expirable);
         }
         return null;
     }
@@ -1115,6 +1189,8 @@ public class CacheProxy<K, V> implements Cache<K, V> {
   protected final @PolyNull V copyValue(@PolyNull Expirable<V> expirable) {
     if (expirable == null) {
       return null;
+    } else if (expirable.isEncoded()) {
+      return expirable.get();
     }
     V copy = copier.copy(expirable.get(), cacheManager.getClassLoader());
     return requireNonNull(copy);
@@ -1130,7 +1206,27 @@ public class CacheProxy<K, V> implements Cache<K, V> {
     ClassLoader classLoader = cacheManager.getClassLoader();
     return map.entrySet().stream().collect(toMap(
         entry -> copier.copy(entry.getKey(), classLoader),
-        entry -> copier.copy(entry.getValue().get(), classLoader)));
+        entry -> copyValue(entry.getValue())));
+  }
+
+  /**
+   * Returns the entry to store the value in, which holds a copy of the value if value-based caching
+   * is enabled. If the copier supports it, then the value is held in its encoded form so that a
+   * read decodes a new instance instead of copying the stored one.
+   *
+   * @param value the value to be stored
+   * @param expireTimeMS the time, in milliseconds, when the value will expire
+   * @return the entry to be stored in the cache
+   */
+  protected final Expirable<V> newExpirable(V value, long expireTimeMS) {
+    if (codecCopier != null) {
+      Codec<V> codec = codecCopier.codecFor(value);
+      if (codec != null) {
+        var encoded = new EncodedValue<V>(codec.encode(value), codec, cacheManager.getClassLoader());
+        return new Expirable<>(encoded, expireTimeMS);
+      }
+    }
+    return new Expirable<>(copyOf(value), expireTimeMS);
   }
 
   /** @return the current time in milliseconds */
@@ -1184,6 +1280,11 @@ public class CacheProxy<K, V> implements Cache<K, V> {
    */
   @SuppressWarnings("CatchingUnchecked")
   protected final long getWriteExpireTimeMS(boolean created) {
+    return getWriteExpireTimeMS(created, /* batch */ null);
+  }
+
+  /** Returns the time when the entry will expire, using the batch's current time if present. */
+  private long getWriteExpireTimeMS(boolean created, @Nullable WriteBatch batch) {
     try {
       Duration duration = created ? expiry.getExpiryForCreation() : expiry.getExpiryForUpdate();
       if (duration == null) {
@@ -1193,13 +1294,62 @@ public class CacheProxy<K, V> implements Cache<K, V> {
       } else if (duration.isEternal()) {
         return Long.MAX_VALUE;
       }
-      return duration.getAdjustedTime(currentTimeMillis());
+      long currentTimeMS = (batch == null) ? currentTimeMillis() : batch.currentTimeMillis();
+      return duration.getAdjustedTime(currentTimeMS);
     } catch (Exception e) {
       logger.log(Level.WARNING, "Failed to get the policy's expiration time", e);
       return Long.MIN_VALUE;
     }
   }
 
+  /**
+   * The shared state of the writes that are performed by an operation. The time is read and the
+   * expiry policy is evaluated at most once, rather than per entry, and the outcomes are
+   * accumulated so that the statistics are recorded in aggregate.
+   */
+  final class WriteBatch {
+    long createdExpireTimeMS;
+    long updatedExpireTimeMS;
+    boolean hasCreatedExpireTime;
+    boolean hasUpdatedExpireTime;
+    boolean hasCurrentTime;
+    long currentTimeMS;
+    int expired;
+    int puts;
+
+    /** Returns the current time in milliseconds, which is read on the first call. */
+    long currentTimeMillis() {
+      if (!hasCurrentTime) {
+        currentTimeMS = CacheProxy.this.currentTimeMillis();
+        hasCurrentTime = true;
+      }
+      return currentTimeMS;
+    }
+
+    /** Records the entries that were found to have expired. */
+    void recordEvictions() {
+      if (expired > 0) {
+        statistics.recordEvictions(expired);
+      }
+    }
+
+    /** Returns the time when the entry will expire, which is evaluated on the first call. */
+    long getWriteExpireTimeMS(boolean created) {
+      if (created) {
+        if (!hasCreatedExpireTime) {
+          createdExpireTimeMS = CacheProxy.this.getWriteExpireTimeMS(/* created */ true, this);
+          hasCreatedExpireTime = true;
+        }
+        return createdExpireTimeMS;
+      }
+      if (!hasUpdatedExpireTime) {
+        updatedExpireTimeMS = CacheProxy.this.getWriteExpireTimeMS(/* created */ false, this);
+        hasUpdatedExpireTime = true;
+      }
+      return updatedExpireTimeMS;
+    }
+  }
+
   /** An iterator to safely expose the cache entries. */
   final class EntryIterator implements Iterator<Cache.Entry<K, V>> {
     final Iterator<Map.Entry<K, Expirable<V>>> delegate = cache.asMap().entrySet().iterator();
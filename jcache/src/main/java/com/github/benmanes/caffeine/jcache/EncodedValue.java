@@ -0,0 +1,43 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache;
+
+import static java.util.Objects.requireNonNull;
+
+import com.github.benmanes.caffeine.jcache.copy.Codec;
+
+/**
+ * A value that is held in its encoded form. Each retrieval decodes a new instance, so the value is
+ * copied by the read rather than by a separate serialization roundtrip.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class EncodedValue<V> {
+  private final ClassLoader classLoader;
+  private final Codec<V> codec;
+  private final byte[] data;
+
+  EncodedValue(byte[] data, Codec<V> codec, ClassLoader classLoader) {
+    this.classLoader = requireNonNull(classLoader);
+    this.codec = requireNonNull(codec);
+    this.data = requireNonNull(data);
+  }
+
+  /** Returns a new instance of the value that is decoded from its encoded form. */
+  V decode() {
+    return requireNonNull(codec.decode(data, classLoader));
+  }
+}
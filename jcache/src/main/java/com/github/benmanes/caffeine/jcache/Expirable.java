@@ -18,23 +18,39 @@ package com.github.benmanes.caffeine.jcache;
 import static java.util.Objects.requireNonNull;
 
 /**
- * A value with an expiration timestamp.
+ * A value with an expiration timestamp. The value may be held in its encoded form when the cache
+ * stores by value, in which case each retrieval decodes a new instance.
  *
  * @author ben.manes@gmail.com (Ben Manes)
  */
 public final class Expirable<V> {
-  private final V value;
+  private final Object value;
 
   private volatile long expireTimeMS;
+  private volatile boolean mapped;
 
   public Expirable(V value, long expireTimeMS) {
     this.value = requireNonNull(value);
     this.expireTimeMS = expireTimeMS;
   }
 
-  /** Returns the value. */
+  /** Creates an expirable whose value is held in its encoded form. */
+  Expirable(EncodedValue<V> value, long expireTimeMS) {
+    this.value = requireNonNull(value);
+    this.expireTimeMS = expireTimeMS;
+  }
+
+  /** Returns the value, decoding a new instance if it is held in its encoded form. */
+  @SuppressWarnings("unchecked")
   public V get() {
-    return value;
+    return (value instanceof EncodedValue<?>)
+        ? ((EncodedValue<V>) value).decode()
+        : (V) value;
+  }
+
+  /** Returns if the value is held in its encoded form, so that each retrieval is a copy. */
+  boolean isEncoded() {
+    return (value instanceof EncodedValue<?>);
   }
 
   /** Returns the time, in milliseconds, when the value will expire. */
@@ -47,6 +63,19 @@ public final class Expirable<V> {
     this.expireTimeMS = expireTimeMS;
   }
 
+  /**
+   * Returns if the entry was mapped by a cache that evaluates the expiry policy natively, so that
+   * a later write that retains this instance is not an update.
+   */
+  boolean isMapped() {
+    return mapped;
+  }
+
+  /** Specifies that the entry was mapped by a cache that evaluates the expiry policy natively. */
+  void setMapped() {
+    this.mapped = true;
+  }
+
   /** Returns if the value has expired and is eligible for eviction. */
   public boolean hasExpired(long currentTimeMS) {
     return (currentTimeMS - expireTimeMS) >= 0;
@@ -60,6 +89,6 @@ public final class Expirable<V> {
   @Override
   public String toString() {
     return String.format("%s{value=%s, expireTimeMS=%,d}",
-        getClass().getSimpleName(), value, expireTimeMS);
+        getClass().getSimpleName(), get(), expireTimeMS);
   }
 }
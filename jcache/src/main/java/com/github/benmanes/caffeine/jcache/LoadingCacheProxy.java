@@ -87,7 +87,7 @@ public final class LoadingCacheProxy<K, V> extends CacheProxy<K, V> {
         var expired = expirable;
         cache.asMap().computeIfPresent(key, (k, e) -> {
           if (e == expired) {
-            dispatcher.publishExpired(this, key, expired.get());
+            dispatcher.publishExpired(this, key, expired);
             statistics.recordEvictions(1);
             return null;
           }
@@ -72,7 +72,11 @@ public final class CaffeineConfiguration<K, V> implements CompleteConfiguration<
   private @Nullable Long expireAfterWriteNanos;
   private @Nullable Long maximumWeight;
   private @Nullable Long maximumSize;
+  private long eventBatchMaximumLatencyNanos;
+  private int eventBatchMaximumSize;
+  private boolean percentileStatistics;
   private boolean nativeStatistics;
+  private boolean nativeExpiry;
 
   public CaffeineConfiguration() {
     delegate = new MutableConfiguration<>();
@@ -81,6 +85,7 @@ public final class CaffeineConfiguration<K, V> implements CompleteConfiguration<
     tickerFactory = SYSTEM_TICKER;
     executorFactory = COMMON_POOL;
     copierFactory = JAVA_COPIER;
+    eventBatchMaximumSize = 1;
   }
 
   public CaffeineConfiguration(CompleteConfiguration<K, V> configuration) {
@@ -90,7 +95,9 @@ public final class CaffeineConfiguration<K, V> implements CompleteConfiguration<
       refreshAfterWriteNanos = config.refreshAfterWriteNanos;
       expireAfterAccessNanos = config.expireAfterAccessNanos;
       expireAfterWriteNanos = config.expireAfterWriteNanos;
+      percentileStatistics = config.percentileStatistics;
       nativeStatistics = config.nativeStatistics;
+      nativeExpiry = config.nativeExpiry;
       schedulerFactory = config.schedulerFactory;
       executorFactory = config.executorFactory;
       expiryFactory = config.expiryFactory;
@@ -99,11 +106,14 @@ public final class CaffeineConfiguration<K, V> implements CompleteConfiguration<
       weigherFactory = config.weigherFactory;
       maximumWeight = config.maximumWeight;
       maximumSize = config.maximumSize;
+      eventBatchMaximumSize = config.eventBatchMaximumSize;
+      eventBatchMaximumLatencyNanos = config.eventBatchMaximumLatencyNanos;
     } else {
       schedulerFactory = DISABLED_SCHEDULER;
       tickerFactory = SYSTEM_TICKER;
       executorFactory = COMMON_POOL;
       copierFactory = JAVA_COPIER;
+      eventBatchMaximumSize = 1;
     }
   }
 
@@ -234,6 +244,101 @@ public final class CaffeineConfiguration<K, V> implements CompleteConfiguration<
     this.nativeStatistics = enabled;
   }
 
+  /**
+   * Checks whether the JCache statistics record the distribution of the operation times, so that
+   * their percentiles are externalized via JMX. This setting has no effect unless the statistics
+   * are enabled.
+   * <p>
+   * The default value is <code>false</code>.
+   *
+   * @return true if the percentiles of the operation times are recorded
+   */
+  public boolean isPercentileStatisticsEnabled() {
+    return percentileStatistics;
+  }
+
+  /**
+   * Sets whether the JCache statistics record the distribution of the operation times.
+   *
+   * @param enabled true to record the percentiles of the operation times, false to disable.
+   */
+  public void setPercentileStatisticsEnabled(boolean enabled) {
+    this.percentileStatistics = enabled;
+  }
+
+  /**
+   * Checks whether the {@link ExpiryPolicy} is evaluated natively by Caffeine. If enabled then the
+   * policy's durations are applied by Caffeine's variable expiration, so that the expired entries
+   * are discarded by the cache rather than checked lazily on every operation. This setting is
+   * ignored if the eager expiration is configured.
+   * <p>
+   * The default value is <code>false</code>.
+   *
+   * @return true if the expiry policy is evaluated natively
+   */
+  public boolean isNativeExpiryEnabled() {
+    return nativeExpiry;
+  }
+
+  /**
+   * Sets whether the {@link ExpiryPolicy} is evaluated natively by Caffeine.
+   *
+   * @param enabled true to evaluate the expiry policy natively, false to evaluate it lazily.
+   */
+  public void setNativeExpiryEnabled(boolean enabled) {
+    this.nativeExpiry = enabled;
+  }
+
+  /**
+   * Returns the maximum number of events that are delivered together to an asynchronous listener.
+   * <p>
+   * The default value is <code>1</code>, meaning that each event is delivered individually.
+   *
+   * @return the maximum number of events in a batch
+   */
+  public int getEventBatchMaximumSize() {
+    return eventBatchMaximumSize;
+  }
+
+  /**
+   * Sets the maximum number of events that are delivered together to an asynchronous listener.
+   * Synchronous listeners are always notified of each event individually.
+   *
+   * @param maximumSize the maximum number of events in a batch
+   */
+  public void setEventBatchMaximumSize(int maximumSize) {
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("The maximum batch size must be positive");
+    }
+    this.eventBatchMaximumSize = maximumSize;
+  }
+
+  /**
+   * Returns the maximum time in nanoseconds that an event waits for its batch to fill before it is
+   * delivered to an asynchronous listener.
+   * <p>
+   * The default value is <code>0</code>, meaning that a batch only accumulates the events that are
+   * published while the listener is busy.
+   *
+   * @return the duration in nanoseconds
+   */
+  public long getEventBatchMaximumLatency() {
+    return eventBatchMaximumLatencyNanos;
+  }
+
+  /**
+   * Sets the maximum time in nanoseconds that an event waits for its batch to fill before it is
+   * delivered to an asynchronous listener.
+   *
+   * @param maximumLatencyNanos the duration in nanoseconds
+   */
+  public void setEventBatchMaximumLatency(long maximumLatencyNanos) {
+    if (maximumLatencyNanos < 0) {
+      throw new IllegalArgumentException("The maximum batch latency must be non-negative");
+    }
+    this.eventBatchMaximumLatencyNanos = maximumLatencyNanos;
+  }
+
   @Override
   public boolean isStatisticsEnabled() {
     return delegate.isStatisticsEnabled();
@@ -492,6 +597,10 @@ public final class CaffeineConfiguration<K, V> implements CompleteConfiguration<
         && Objects.equals(weigherFactory, config.weigherFactory)
         && Objects.equals(maximumWeight, config.maximumWeight)
         && Objects.equals(maximumSize, config.maximumSize)
+        && (percentileStatistics == config.percentileStatistics)
+        && (nativeExpiry == config.nativeExpiry)
+        && (eventBatchMaximumSize == config.eventBatchMaximumSize)
+        && (eventBatchMaximumLatencyNanos == config.eventBatchMaximumLatencyNanos)
         && delegate.equals(config.delegate);
   }
 
@@ -154,6 +154,7 @@ public final class TypesafeConfigurator {
       addExecutor();
       addScheduler();
       addListeners();
+      addEventBatching();
       addReadThrough();
       addWriteThrough();
       addMonitoring();
@@ -220,6 +221,17 @@ public final class TypesafeConfigurator {
       }
     }
 
+    /** Adds the settings for coalescing the events to the asynchronous listeners. */
+    private void addEventBatching() {
+      if (isSet("event-batching.maximum-size")) {
+        configuration.setEventBatchMaximumSize(merged.getInt("event-batching.maximum-size"));
+      }
+      if (isSet("event-batching.maximum-latency")) {
+        configuration.setEventBatchMaximumLatency(
+            merged.getDuration("event-batching.maximum-latency", NANOSECONDS));
+      }
+    }
+
     /** Adds the read through settings. */
     private void addReadThrough() {
       configuration.setReadThrough(merged.getBoolean("read-through.enabled"));
@@ -242,6 +254,8 @@ public final class TypesafeConfigurator {
     private void addMonitoring() {
       configuration.setNativeStatisticsEnabled(merged.getBoolean("monitoring.native-statistics"));
       configuration.setStatisticsEnabled(merged.getBoolean("monitoring.statistics"));
+      configuration.setPercentileStatisticsEnabled(
+          merged.getBoolean("monitoring.percentile-statistics"));
       configuration.setManagementEnabled(merged.getBoolean("monitoring.management"));
     }
 
@@ -276,6 +290,10 @@ public final class TypesafeConfigurator {
 
     /** Adds the Caffeine eager expiration settings. */
     public void addEagerExpiration() {
+      if (isSet("policy.eager-expiration.native")) {
+        configuration.setNativeExpiryEnabled(
+            merged.getBoolean("policy.eager-expiration.native"));
+      }
       if (isSet("policy.eager-expiration.after-write")) {
         long nanos = merged.getDuration("policy.eager-expiration.after-write", NANOSECONDS);
         configuration.setExpireAfterWrite(OptionalLong.of(nanos));
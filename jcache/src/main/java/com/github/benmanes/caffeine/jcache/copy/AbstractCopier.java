@@ -112,6 +112,17 @@ public abstract class AbstractCopier<A> implements Copier {
     return deepCopyStrategies.containsKey(clazz);
   }
 
+  /**
+   * Returns if the class is copied by serializing and deserializing the object, rather than by a
+   * faster strategy for a known type.
+   *
+   * @param clazz the class of the object being copied
+   * @return if the class is copied by performing a serialization roundtrip
+   */
+  protected boolean requiresRoundtrip(Class<?> clazz) {
+    return !isImmutable(clazz) && !canDeeplyCopy(clazz) && !isArrayOfImmutableTypes(clazz);
+  }
+
   /** @return if the class represents an array of immutable values. */
   private boolean isArrayOfImmutableTypes(Class<?> clazz) {
     if (!clazz.isArray()) {
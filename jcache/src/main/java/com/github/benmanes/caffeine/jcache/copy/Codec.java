@@ -0,0 +1,45 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache.copy;
+
+/**
+ * A binary encoding of a type, such as one that is generated from a Protocol Buffers, Avro, or
+ * FlatBuffers schema or is registered with a serialization library like Kryo. A codec is usually
+ * much faster and more compact than Java serialization, as the structure of the data is known in
+ * advance rather than being described within the encoded form.
+ *
+ * @param <T> the type of object being encoded
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public interface Codec<T> {
+
+  /**
+   * Returns the binary representation of the object.
+   *
+   * @param object the object to encode
+   * @return the encoded bytes
+   */
+  byte[] encode(T object);
+
+  /**
+   * Returns a new instance that is decoded from the binary representation.
+   *
+   * @param data the encoded bytes
+   * @param classLoader the classloader to instantiate with
+   * @return the decoded object
+   */
+  T decode(byte[] data, ClassLoader classLoader);
+}
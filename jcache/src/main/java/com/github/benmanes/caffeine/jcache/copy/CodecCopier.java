@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache.copy;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A strategy that uses the {@link Codec} registered for the object's class if a fast path approach
+ * is not applicable, and Java serialization if a codec is not registered. A codec is selected by
+ * the exact class of the object, so a subclass requires its own registration.
+ * <p>
+ * A cache that uses this strategy holds the values in their encoded form rather than as copies.
+ * A value is therefore encoded once when written and decoded once when read, instead of being
+ * copied by a full serialization roundtrip on both operations. The types that have a fast path
+ * approach, such as the known immutable types, are held as instances.
+ * <p>
+ * This strategy is typically configured by a subclass that registers the application's codecs in
+ * its default constructor.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public class CodecCopier extends JavaSerializationCopier {
+  private final Map<Class<?>, Codec<?>> codecs;
+  private final Codec<Object> serialization;
+
+  public CodecCopier(Map<Class<?>, Codec<?>> codecs) {
+    this(codecs, javaImmutableClasses(), javaDeepCopyStrategies());
+  }
+
+  public CodecCopier(Map<Class<?>, Codec<?>> codecs, Set<Class<?>> immutableClasses,
+      Map<Class<?>, Function<Object, Object>> deepCopyStrategies) {
+    super(immutableClasses, deepCopyStrategies);
+    this.serialization = new SerializationCodec();
+    this.codecs = Map.copyOf(codecs);
+  }
+
+  /**
+   * Returns the codec that the object is copied with, or null if the object is copied by a fast
+   * path approach.
+   *
+   * @param object the object to be copied
+   * @param <T> the type of object being copied
+   * @return the codec for the object's class, or null if it is not copied by a roundtrip
+   */
+  public <T> @Nullable Codec<T> codecFor(T object) {
+    requireNonNull(object);
+    return requiresRoundtrip(object.getClass()) ? lookup(object) : null;
+  }
+
+  @Override
+  protected <T> T roundtrip(T object, ClassLoader classLoader) {
+    Codec<T> codec = lookup(object);
+    return codec.decode(codec.encode(object), classLoader);
+  }
+
+  /** @return the codec registered for the object's class, else one that uses Java serialization */
+  @SuppressWarnings("unchecked")
+  private <T> Codec<T> lookup(T object) {
+    return (Codec<T>) codecs.getOrDefault(object.getClass(), serialization);
+  }
+
+  /** A codec that uses Java serialization. */
+  private final class SerializationCodec implements Codec<Object> {
+    @Override public byte[] encode(Object object) {
+      return serialize(object);
+    }
+    @Override public Object decode(byte[] data, ClassLoader classLoader) {
+      return deserialize(data, classLoader);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache.event;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A buffer of the events that are pending delivery to an asynchronous listener. The events are
+ * delivered in the order that they were published by a drain that is appended to the listener's
+ * dispatch queue, so that a listener is never executed in parallel and receives the events of a
+ * key in order.
+ * <p>
+ * A drain is scheduled when the buffer becomes non-empty, after the maximum latency has elapsed,
+ * and immediately whenever the buffer grows to a multiple of the maximum batch size. The pending
+ * count may exceed the maximum while a drain is in progress, so a full batch is flushed promptly
+ * rather than waiting for the delayed drain. A drain delivers all of the
+ * pending events in chunks of up to the maximum batch size, so an overlapping drain may find that
+ * there is nothing left to deliver.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class EventBatch<K, V> {
+  final Queue<JCacheEntryEvent<K, V>> events;
+  final @Nullable Executor delayedExecutor;
+  final Runnable scheduleDrain;
+  final AtomicInteger pending;
+  final int maximumSize;
+
+  /**
+   * Creates a buffer of the listener's pending events.
+   *
+   * @param maximumSize the maximum number of events delivered in one call to the listener
+   * @param delayedExecutor the executor that delays the drain, or null if not delayed
+   * @param scheduleDrain the action that appends a drain to the listener's dispatch queue
+   */
+  EventBatch(int maximumSize, @Nullable Executor delayedExecutor, Runnable scheduleDrain) {
+    this.scheduleDrain = requireNonNull(scheduleDrain);
+    this.events = new ConcurrentLinkedQueue<>();
+    this.delayedExecutor = delayedExecutor;
+    this.pending = new AtomicInteger();
+    this.maximumSize = maximumSize;
+  }
+
+  /** Adds the event to the buffer and schedules a drain if one is required. */
+  public void add(JCacheEntryEvent<K, V> event) {
+    events.add(event);
+    int size = pending.incrementAndGet();
+    if ((size % maximumSize) == 0) {
+      scheduleDrain.run();
+    } else if (size == 1) {
+      if (delayedExecutor == null) {
+        scheduleDrain.run();
+      } else {
+        delayedExecutor.execute(scheduleDrain);
+      }
+    }
+  }
+
+  /** Delivers the pending events to the listener in batches of up to the maximum size. */
+  public void drain(EventTypeAwareListener<K, V> listener) {
+    List<JCacheEntryEvent<K, V>> batch = new ArrayList<>();
+    for (;;) {
+      JCacheEntryEvent<K, V> event = events.poll();
+      if (event == null) {
+        break;
+      }
+      pending.decrementAndGet();
+      batch.add(event);
+      if (batch.size() == maximumSize) {
+        listener.dispatch(batch);
+        batch = new ArrayList<>();
+      }
+    }
+    if (!batch.isEmpty()) {
+      listener.dispatch(batch);
+    }
+  }
+}
@@ -16,6 +16,7 @@
 package com.github.benmanes.caffeine.jcache.event;
 
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
@@ -37,14 +38,22 @@ import javax.cache.event.EventType;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import com.github.benmanes.caffeine.jcache.Expirable;
+
 /**
  * A dispatcher that publishes cache events to listeners for asynchronous execution.
  * <p>
  * A {@link CacheEntryListener} is required to receive events in the order of the actions being
  * performed on the associated key. This implementation supports this through an actor-like model
  * by using a dispatch queue per listener. A listener is never executed in parallel on different
- * events, but may be executed sequentially on different threads. Batch processing of the dispatch
- * queue is not presently supported.
+ * events, but may be executed sequentially on different threads.
+ * <p>
+ * The events to an asynchronous listener may be coalesced so that the listener is notified once
+ * with a batch of events, rather than once per event, which reduces the number of tasks that are
+ * submitted to the executor. A batch is delivered when it reaches the maximum size or when the
+ * maximum latency has elapsed since its first event was published. The events remain in the order
+ * that they were published, and consecutive events of the same type are delivered together in a
+ * single call to the listener.
  * <p>
  * Some listeners may be configured as <tt>synchronous</tt>, meaning that the publishing thread
  * should wait until the listener has processed the event. The calling thread should publish within
@@ -59,11 +68,35 @@ public final class EventDispatcher<K, V> {
       ThreadLocal.withInitial(ArrayList::new);
 
   final Executor executor;
+  final int maximumBatchSize;
+  final @Nullable Executor delayedExecutor;
+  final Map<Registration<K, V>, EventBatch<K, V>> batches;
   final Map<Registration<K, V>, CompletableFuture<Void>> dispatchQueues;
 
   public EventDispatcher(Executor executor) {
+    this(executor, /* maximumBatchSize */ 1, /* maximumBatchLatencyNanos */ 0L);
+  }
+
+  /**
+   * Creates a dispatcher that coalesces the events to an asynchronous listener into batches.
+   *
+   * @param executor the executor that the listeners are notified on
+   * @param maximumBatchSize the maximum number of events delivered in one call to a listener
+   * @param maximumBatchLatencyNanos the maximum time that an event waits for its batch to fill
+   */
+  public EventDispatcher(Executor executor, int maximumBatchSize, long maximumBatchLatencyNanos) {
+    if (maximumBatchSize < 1) {
+      throw new IllegalArgumentException("maximumBatchSize must be positive");
+    } else if (maximumBatchLatencyNanos < 0) {
+      throw new IllegalArgumentException("maximumBatchLatencyNanos must be non-negative");
+    }
+    this.delayedExecutor = ((maximumBatchSize == 1) || (maximumBatchLatencyNanos == 0L))
+        ? null
+        : CompletableFuture.delayedExecutor(maximumBatchLatencyNanos, NANOSECONDS, executor);
     this.dispatchQueues = new ConcurrentHashMap<>();
     this.executor = requireNonNull(executor);
+    this.maximumBatchSize = maximumBatchSize;
+    this.batches = new ConcurrentHashMap<>();
   }
 
   /** Returns the cache entry listener registrations. */
@@ -91,7 +124,11 @@ public final class EventDispatcher<K, V> {
     }
 
     var registration = new Registration<K, V>(configuration, filter, listener);
-    dispatchQueues.putIfAbsent(registration, CompletableFuture.completedFuture(null));
+    if ((dispatchQueues.putIfAbsent(registration, CompletableFuture.completedFuture(null)) == null)
+        && !registration.isSynchronous() && (maximumBatchSize > 1)) {
+      batches.put(registration, new EventBatch<>(maximumBatchSize,
+          delayedExecutor, () -> scheduleDrain(registration)));
+    }
   }
 
   /**
@@ -103,6 +140,8 @@ public final class EventDispatcher<K, V> {
     requireNonNull(configuration);
     dispatchQueues.keySet().removeIf(registration ->
         configuration.equals(registration.getConfiguration()));
+    batches.keySet().removeIf(registration ->
+        configuration.equals(registration.getConfiguration()));
   }
 
   /**
@@ -114,7 +153,20 @@ public final class EventDispatcher<K, V> {
    */
   public void publishCreated(Cache<K, V> cache, K key, V value) {
     publish(cache, EventType.CREATED, key, /* hasOldValue */ false,
-        /* oldValue */ null, /* newValue */ value, /* quiet */ false);
+        /* oldValue */ null, null, /* newValue */ value, null, /* quiet */ false);
+  }
+
+  /**
+   * Publishes a creation event for the entry to the interested listeners. The value is retrieved
+   * from the entry only if a listener is interested in the event.
+   *
+   * @param cache the cache where the entry was created
+   * @param key the entry's key
+   * @param expirable the entry holding the value
+   */
+  public void publishCreated(Cache<K, V> cache, K key, Expirable<V> expirable) {
+    publish(cache, EventType.CREATED, key, /* hasOldValue */ false,
+        /* oldValue */ null, null, /* newValue */ null, expirable, /* quiet */ false);
   }
 
   /**
@@ -127,7 +179,50 @@ public final class EventDispatcher<K, V> {
    */
   public void publishUpdated(Cache<K, V> cache, K key, V oldValue, V newValue) {
     publish(cache, EventType.UPDATED, key, /* hasOldValue */ true,
-        oldValue, newValue, /* quiet */ false);
+        oldValue, null, newValue, null, /* quiet */ false);
+  }
+
+  /**
+   * Publishes an update event for the entry to the interested listeners. The values are retrieved
+   * from the entries only if a listener is interested in the event.
+   *
+   * @param cache the cache where the entry was updated
+   * @param key the entry's key
+   * @param oldExpirable the entry holding the old value
+   * @param newExpirable the entry holding the new value
+   */
+  public void publishUpdated(Cache<K, V> cache, K key,
+      Expirable<V> oldExpirable, Expirable<V> newExpirable) {
+    publish(cache, EventType.UPDATED, key, /* hasOldValue */ true,
+        null, oldExpirable, null, newExpirable, /* quiet */ false);
+  }
+
+  /**
+   * Publishes an update event for the entry to the interested listeners. The new value is retrieved
+   * from the entry only if a listener is interested in the event.
+   *
+   * @param cache the cache where the entry was updated
+   * @param key the entry's key
+   * @param oldValue the entry's old value
+   * @param newExpirable the entry holding the new value
+   */
+  public void publishUpdated(Cache<K, V> cache, K key, V oldValue, Expirable<V> newExpirable) {
+    publish(cache, EventType.UPDATED, key, /* hasOldValue */ true,
+        oldValue, null, null, newExpirable, /* quiet */ false);
+  }
+
+  /**
+   * Publishes an update event for the entry to the interested listeners. The old value is retrieved
+   * from the entry only if a listener is interested in the event.
+   *
+   * @param cache the cache where the entry was updated
+   * @param key the entry's key
+   * @param oldExpirable the entry holding the old value
+   * @param newValue the entry's new value
+   */
+  public void publishUpdated(Cache<K, V> cache, K key, Expirable<V> oldExpirable, V newValue) {
+    publish(cache, EventType.UPDATED, key, /* hasOldValue */ true,
+        null, oldExpirable, newValue, null, /* quiet */ false);
   }
 
   /**
@@ -139,7 +234,20 @@ public final class EventDispatcher<K, V> {
    */
   public void publishRemoved(Cache<K, V> cache, K key, V value) {
     publish(cache, EventType.REMOVED, key, /* hasOldValue */ true,
-        /* oldValue */ value, /* newValue */ value, /* quiet */ false);
+        /* oldValue */ value, null, /* newValue */ value, null, /* quiet */ false);
+  }
+
+  /**
+   * Publishes a removal event for the entry to the interested listeners. The value is
+   * retrieved from the entry only if a listener is interested in the event.
+   *
+   * @param cache the cache where the entry was removed
+   * @param key the entry's key
+   * @param expirable the entry holding the value
+   */
+  public void publishRemoved(Cache<K, V> cache, K key, Expirable<V> expirable) {
+    publish(cache, EventType.REMOVED, key, /* hasOldValue */ true,
+        null, expirable, null, expirable, /* quiet */ false);
   }
 
   /**
@@ -152,7 +260,21 @@ public final class EventDispatcher<K, V> {
    */
   public void publishRemovedQuietly(Cache<K, V> cache, K key, V value) {
     publish(cache, EventType.REMOVED, key, /* hasOldValue */ true,
-        /* oldValue */ value, /* newValue */ value, /* quiet */ true);
+        /* oldValue */ value, null, /* newValue */ value, null, /* quiet */ true);
+  }
+
+  /**
+   * Publishes a removal event for the entry to the interested listeners. The value is
+   * retrieved from the entry only if a listener is interested in the event. This method does not
+   * register the synchronous listener's future with {@link #awaitSynchronous()}.
+   *
+   * @param cache the cache where the entry was removed
+   * @param key the entry's key
+   * @param expirable the entry holding the value
+   */
+  public void publishRemovedQuietly(Cache<K, V> cache, K key, Expirable<V> expirable) {
+    publish(cache, EventType.REMOVED, key, /* hasOldValue */ true,
+        null, expirable, null, expirable, /* quiet */ true);
   }
 
   /**
@@ -164,7 +286,20 @@ public final class EventDispatcher<K, V> {
    */
   public void publishExpired(Cache<K, V> cache, K key, V value) {
     publish(cache, EventType.EXPIRED, key, /* hasOldValue */ true,
-        /* oldValue */ value, /* newValue */ value, /* quiet */ false);
+        /* oldValue */ value, null, /* newValue */ value, null, /* quiet */ false);
+  }
+
+  /**
+   * Publishes an expiration event for the entry to the interested listeners. The value is
+   * retrieved from the entry only if a listener is interested in the event.
+   *
+   * @param cache the cache where the entry expired
+   * @param key the entry's key
+   * @param expirable the entry holding the value
+   */
+  public void publishExpired(Cache<K, V> cache, K key, Expirable<V> expirable) {
+    publish(cache, EventType.EXPIRED, key, /* hasOldValue */ true,
+        null, expirable, null, expirable, /* quiet */ false);
   }
 
   /**
@@ -177,7 +312,21 @@ public final class EventDispatcher<K, V> {
    */
   public void publishExpiredQuietly(Cache<K, V> cache, K key, V value) {
     publish(cache, EventType.EXPIRED, key, /* hasOldValue */ true,
-        /* oldValue */ value, /* newValue */ value, /* quiet */ true);
+        /* oldValue */ value, null, /* newValue */ value, null, /* quiet */ true);
+  }
+
+  /**
+   * Publishes an expiration event for the entry to the interested listeners. The value is
+   * retrieved from the entry only if a listener is interested in the event. This method does not
+   * register the synchronous listener's future with {@link #awaitSynchronous()}.
+   *
+   * @param cache the cache where the entry expired
+   * @param key the entry's key
+   * @param expirable the entry holding the value
+   */
+  public void publishExpiredQuietly(Cache<K, V> cache, K key, Expirable<V> expirable) {
+    publish(cache, EventType.EXPIRED, key, /* hasOldValue */ true,
+        null, expirable, null, expirable, /* quiet */ true);
   }
 
   /**
@@ -206,9 +355,14 @@ public final class EventDispatcher<K, V> {
     pending.get().clear();
   }
 
-  /** Broadcasts the event to the interested listener's dispatch queues. */
-  private void publish(Cache<K, V> cache, EventType eventType, K key,
-      boolean hasOldValue, @Nullable V oldValue, @Nullable V newValue, boolean quiet) {
+  /**
+   * Broadcasts the event to the interested listener's dispatch queues. A value that is supplied by
+   * its entry is retrieved only once an interested listener is found, as an encoded value is
+   * decoded by each retrieval.
+   */
+  private void publish(Cache<K, V> cache, EventType eventType, K key, boolean hasOldValue,
+      @Nullable V oldValue, @Nullable Expirable<V> oldExpirable,
+      @Nullable V newValue, @Nullable Expirable<V> newExpirable, boolean quiet) {
     if (dispatchQueues.isEmpty()) {
       return;
     }
@@ -219,12 +373,21 @@ public final class EventDispatcher<K, V> {
         continue;
       }
       if (event == null) {
-        event = new JCacheEntryEvent<>(cache, eventType, key, hasOldValue, oldValue, newValue);
+        V old = (oldExpirable == null) ? oldValue : oldExpirable.get();
+        V value = (newExpirable == null) ? newValue
+            : (newExpirable == oldExpirable) ? old : newExpirable.get();
+        event = new JCacheEntryEvent<>(cache, eventType, key, hasOldValue, old, value);
       }
       if (!registration.getCacheEntryFilter().evaluate(event)) {
         continue;
       }
 
+      var batch = batches.get(registration);
+      if (batch != null) {
+        batch.add(event);
+        continue;
+      }
+
       JCacheEntryEvent<K, V> e = event;
       var future = dispatchQueues.computeIfPresent(registration, (k, queue) -> {
         Runnable action = () -> registration.getCacheEntryListener().dispatch(e);
@@ -235,4 +398,15 @@ public final class EventDispatcher<K, V> {
       }
     }
   }
+
+  /** Appends a task to the listener's dispatch queue that delivers its pending batch of events. */
+  private void scheduleDrain(Registration<K, V> registration) {
+    var batch = batches.get(registration);
+    if (batch != null) {
+      dispatchQueues.computeIfPresent(registration, (k, queue) -> {
+        Runnable action = () -> batch.drain(registration.getCacheEntryListener());
+        return queue.thenRunAsync(action, executor);
+      });
+    }
+  }
 }
@@ -21,7 +21,10 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.util.Collections;
+import java.util.List;
 
+import javax.cache.Cache;
 import javax.cache.event.CacheEntryCreatedListener;
 import javax.cache.event.CacheEntryEvent;
 import javax.cache.event.CacheEntryExpiredListener;
@@ -63,27 +66,50 @@ final class EventTypeAwareListener<K, V> implements CacheEntryCreatedListener<K,
   }
 
   /** Processes the event and logs if an exception is thrown. */
-  @SuppressWarnings({"PMD.SwitchStmtsShouldHaveDefault", "CatchingUnchecked"})
   public void dispatch(JCacheEntryEvent<K, V> event) {
+    dispatch(event.getSource(), event.getEventType(), event);
+  }
+
+  /**
+   * Processes the events in order and logs if an exception is thrown. The consecutive events of the
+   * same type are delivered to the listener together.
+   */
+  public void dispatch(List<JCacheEntryEvent<K, V>> events) {
+    int start = 0;
+    for (int i = 1; i <= events.size(); i++) {
+      EventType eventType = events.get(start).getEventType();
+      if ((i == events.size()) || (events.get(i).getEventType() != eventType)) {
+        List<CacheEntryEvent<? extends K, ? extends V>> batch =
+            Collections.unmodifiableList(events.subList(start, i));
+        dispatch(events.get(start).getSource(), eventType, batch);
+        start = i;
+      }
+    }
+  }
+
+  /** Processes the events of the given type and logs if an exception is thrown. */
+  @SuppressWarnings({"PMD.SwitchStmtsShouldHaveDefault", "CatchingUnchecked"})
+  private void dispatch(Cache<K, V> source, EventType eventType,
+      Iterable<CacheEntryEvent<? extends K, ? extends V>> events) {
     try {
-      if (event.getSource().isClosed()) {
+      if (source.isClosed()) {
         return;
       }
-      switch (event.getEventType()) {
+      switch (eventType) {
         case CREATED:
-          onCreated(event);
+          onCreated(events);
           return;
         case UPDATED:
-          onUpdated(event);
+          onUpdated(events);
           return;
         case REMOVED:
-          onRemoved(event);
+          onRemoved(events);
           return;
         case EXPIRED:
-          onExpired(event);
+          onExpired(events);
           return;
       }
-      throw new IllegalStateException("Unknown event type: " + event.getEventType());
+      throw new IllegalStateException("Unknown event type: " + eventType);
     } catch (Exception e) {
       logger.log(Level.WARNING, "", e);
     } catch (Throwable t) {
@@ -58,11 +58,10 @@ public final class JCacheEvictionListener<K, V> implements RemovalListener<K, Ex
   @SuppressWarnings("NullAway")
   public void onRemoval(K key, @Nullable Expirable<V> expirable, RemovalCause cause) {
     if (expirable != null) {
-      V value = expirable.get();
       if (cause == RemovalCause.EXPIRED) {
-        dispatcher.publishExpiredQuietly(cache, key, value);
+        dispatcher.publishExpiredQuietly(cache, key, expirable);
       } else {
-        dispatcher.publishRemovedQuietly(cache, key, value);
+        dispatcher.publishRemovedQuietly(cache, key, expirable);
       }
       statistics.recordEvictions(1L);
     }
@@ -109,7 +109,7 @@ public final class JCacheLoaderAdapter<K, V>
           .collect(Collectors.toMap(Map.Entry::getKey,
               entry -> new Expirable<>(entry.getValue(), expireTimeMS())));
       for (var entry : result.entrySet()) {
-        dispatcher.publishCreated(cache, entry.getKey(), entry.getValue().get());
+        dispatcher.publishCreated(cache, entry.getKey(), entry.getValue());
       }
 
       if (statsEnabled) {
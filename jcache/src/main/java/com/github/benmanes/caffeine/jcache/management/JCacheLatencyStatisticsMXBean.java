@@ -0,0 +1,54 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache.management;
+
+import javax.cache.management.CacheStatisticsMXBean;
+
+/**
+ * The Caffeine JCache statistics, extended with the percentiles of the operation times. The times
+ * are in microseconds, like the averages, and are zero if the distribution is not recorded.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public interface JCacheLatencyStatisticsMXBean extends CacheStatisticsMXBean {
+
+  /** @return the median time to execute get operations, in microseconds */
+  float getGetTime50thPercentile();
+
+  /** @return the 99th percentile time to execute get operations, in microseconds */
+  float getGetTime99thPercentile();
+
+  /** @return the 99.9th percentile time to execute get operations, in microseconds */
+  float getGetTime999thPercentile();
+
+  /** @return the median time to execute put operations, in microseconds */
+  float getPutTime50thPercentile();
+
+  /** @return the 99th percentile time to execute put operations, in microseconds */
+  float getPutTime99thPercentile();
+
+  /** @return the 99.9th percentile time to execute put operations, in microseconds */
+  float getPutTime999thPercentile();
+
+  /** @return the median time to execute remove operations, in microseconds */
+  float getRemoveTime50thPercentile();
+
+  /** @return the 99th percentile time to execute remove operations, in microseconds */
+  float getRemoveTime99thPercentile();
+
+  /** @return the 99.9th percentile time to execute remove operations, in microseconds */
+  float getRemoveTime999thPercentile();
+}
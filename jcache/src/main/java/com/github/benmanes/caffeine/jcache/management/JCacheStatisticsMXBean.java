@@ -18,16 +18,16 @@ package com.github.benmanes.caffeine.jcache.management;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
 
-import javax.cache.management.CacheStatisticsMXBean;
-
 import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
- * Caffeine JCache statistics.
+ * Caffeine JCache statistics. The counters are striped to reduce contention and, if enabled, the
+ * operation times are recorded into histograms so that their percentiles can be reported.
  *
  * @author ben.manes@gmail.com (Ben Manes)
  */
-public final class JCacheStatisticsMXBean implements CacheStatisticsMXBean {
+public final class JCacheStatisticsMXBean implements JCacheLatencyStatisticsMXBean {
   private final LongAdder puts = new LongAdder();
   private final LongAdder hits = new LongAdder();
   private final LongAdder misses = new LongAdder();
@@ -36,9 +36,27 @@ public final class JCacheStatisticsMXBean implements CacheStatisticsMXBean {
   private final LongAdder putTimeNanos = new LongAdder();
   private final LongAdder getTimeNanos = new LongAdder();
   private final LongAdder removeTimeNanos = new LongAdder();
+  private final @Nullable LatencyHistogram removeTimes;
+  private final @Nullable LatencyHistogram getTimes;
+  private final @Nullable LatencyHistogram putTimes;
 
   private volatile boolean enabled;
 
+  public JCacheStatisticsMXBean() {
+    this(/* percentiles */ false);
+  }
+
+  /**
+   * Creates the statistics, optionally recording the distribution of the operation times.
+   *
+   * @param percentiles whether to record the percentiles of the operation times
+   */
+  public JCacheStatisticsMXBean(boolean percentiles) {
+    removeTimes = percentiles ? new LatencyHistogram() : null;
+    getTimes = percentiles ? new LatencyHistogram() : null;
+    putTimes = percentiles ? new LatencyHistogram() : null;
+  }
+
   /** @return if statistic collection is enabled. */
   public boolean isEnabled() {
     return enabled;
@@ -63,6 +81,15 @@ public final class JCacheStatisticsMXBean implements CacheStatisticsMXBean {
     getTimeNanos.reset();
     putTimeNanos.reset();
     removeTimeNanos.reset();
+    if (getTimes != null) {
+      getTimes.reset();
+    }
+    if (putTimes != null) {
+      putTimes.reset();
+    }
+    if (removeTimes != null) {
+      removeTimes.reset();
+    }
   }
 
   @Override
@@ -175,11 +202,31 @@ public final class JCacheStatisticsMXBean implements CacheStatisticsMXBean {
    * @param durationNanos the amount of time in nanoseconds
    */
   public void recordGetTime(long durationNanos) {
-    if (enabled && (durationNanos != 0)) {
-      getTimeNanos.add(durationNanos);
+    if (enabled) {
+      if (durationNanos != 0) {
+        getTimeNanos.add(durationNanos);
+      }
+      if (getTimes != null) {
+        getTimes.record(durationNanos);
+      }
     }
   }
 
+  @Override
+  public float getGetTime50thPercentile() {
+    return percentile(getTimes, 50.0);
+  }
+
+  @Override
+  public float getGetTime99thPercentile() {
+    return percentile(getTimes, 99.0);
+  }
+
+  @Override
+  public float getGetTime999thPercentile() {
+    return percentile(getTimes, 99.9);
+  }
+
   @Override
   public float getAveragePutTime() {
     return average(getCachePuts(), putTimeNanos.sum());
@@ -191,11 +238,31 @@ public final class JCacheStatisticsMXBean implements CacheStatisticsMXBean {
    * @param durationNanos the amount of time in nanoseconds
    */
   public void recordPutTime(long durationNanos) {
-    if (enabled && (durationNanos != 0)) {
-      putTimeNanos.add(durationNanos);
+    if (enabled) {
+      if (durationNanos != 0) {
+        putTimeNanos.add(durationNanos);
+      }
+      if (putTimes != null) {
+        putTimes.record(durationNanos);
+      }
     }
   }
 
+  @Override
+  public float getPutTime50thPercentile() {
+    return percentile(putTimes, 50.0);
+  }
+
+  @Override
+  public float getPutTime99thPercentile() {
+    return percentile(putTimes, 99.0);
+  }
+
+  @Override
+  public float getPutTime999thPercentile() {
+    return percentile(putTimes, 99.9);
+  }
+
   @Override
   public float getAverageRemoveTime() {
     return average(getCacheRemovals(), removeTimeNanos.sum());
@@ -207,11 +274,31 @@ public final class JCacheStatisticsMXBean implements CacheStatisticsMXBean {
    * @param durationNanos the amount of time in nanoseconds
    */
   public void recordRemoveTime(long durationNanos) {
-    if (enabled && (durationNanos != 0)) {
-      removeTimeNanos.add(durationNanos);
+    if (enabled) {
+      if (durationNanos != 0) {
+        removeTimeNanos.add(durationNanos);
+      }
+      if (removeTimes != null) {
+        removeTimes.record(durationNanos);
+      }
     }
   }
 
+  @Override
+  public float getRemoveTime50thPercentile() {
+    return percentile(removeTimes, 50.0);
+  }
+
+  @Override
+  public float getRemoveTime99thPercentile() {
+    return percentile(removeTimes, 99.0);
+  }
+
+  @Override
+  public float getRemoveTime999thPercentile() {
+    return percentile(removeTimes, 99.9);
+  }
+
   private static float average(long requestCount, long opsTimeNanos) {
     if ((requestCount == 0) || (opsTimeNanos == 0)) {
       return 0;
@@ -219,4 +306,12 @@ public final class JCacheStatisticsMXBean implements CacheStatisticsMXBean {
     long opsTimeMicro = TimeUnit.NANOSECONDS.toMicros(opsTimeNanos);
     return (float) opsTimeMicro / requestCount;
   }
+
+  private static float percentile(@Nullable LatencyHistogram histogram, double percentile) {
+    if (histogram == null) {
+      return 0;
+    }
+    long opsTimeNanos = histogram.percentile(percentile);
+    return (float) opsTimeNanos / TimeUnit.MICROSECONDS.toNanos(1);
+  }
 }
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache.management;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+
+/**
+ * A lock-free histogram of the durations, in nanoseconds, that are recorded into log-linear
+ * buckets. A percentile is reported as the upper bound of the bucket that it falls into, which has
+ * a relative error of at most 6.25%.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class LatencyHistogram {
+
+  /*
+   * The buckets are log-linear, where each power of two range is divided into a fixed number of
+   * linear sub-buckets. A value below the number of sub-buckets is recorded exactly, and larger
+   * values are recorded with a relative error of at most 1 / SUB_BUCKETS. Durations that exceed
+   * the largest power of two are recorded into the last bucket, while the maximum is tracked
+   * exactly.
+   *
+   * The recordings are striped across multiple tables to reduce contention, where a thread is
+   * assigned to a stripe by its id. A stripe's table is allocated when it is first recorded into,
+   * so an uncontended histogram retains a single table. The table's counters start after a cache
+   * line of padding so that they do not falsely share with a neighboring allocation. A stripe may
+   * be used by multiple threads, so its slots are updated atomically. A percentile sums the stripes
+   * and may observe a recording partially, which only results in a slightly inconsistent view.
+   */
+
+  static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  static final int SUB_BUCKET_BITS = 4;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  static final int MAX_EXPONENT = 40;
+  static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  /** The number of longs in a cache line. */
+  static final int PAD = 8;
+  static final int MAX = PAD;
+  static final int HEADER = PAD + 1;
+  static final int LENGTH = HEADER + BUCKETS;
+
+  /** The number of stripes, which is a power of two. */
+  static final int STRIPES = Math.min(16,
+      ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors()));
+
+  final AtomicReferenceArray<long[]> stripes;
+
+  LatencyHistogram() {
+    stripes = new AtomicReferenceArray<>(STRIPES);
+  }
+
+  /**
+   * Records the duration.
+   *
+   * @param duration the number of nanoseconds, where a negative value is recorded as zero
+   */
+  void record(long duration) {
+    long value = Math.max(0L, duration);
+    long[] table = table(stripe());
+    LONGS.getAndAdd(table, HEADER + bucketIndex(value), 1L);
+    for (;;) {
+      long max = (long) LONGS.getOpaque(table, MAX);
+      if ((value <= max) || LONGS.weakCompareAndSet(table, MAX, max, value)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the duration, in nanoseconds, that the given percentage of the recorded durations are
+   * at or below.
+   *
+   * @param percentile the percentage, in the range of {@code [0.0, 100.0]}
+   * @return the duration at the percentile, or zero if none were recorded
+   */
+  @NonNegative long percentile(double percentile) {
+    long max = 0L;
+    long recorded = 0L;
+    var counts = new long[BUCKETS];
+    for (int i = 0; i < STRIPES; i++) {
+      long[] table = stripes.get(i);
+      if (table == null) {
+        continue;
+      }
+      max = Math.max(max, (long) LONGS.getVolatile(table, MAX));
+      for (int j = 0; j < BUCKETS; j++) {
+        long count = (long) LONGS.getVolatile(table, HEADER + j);
+        recorded += count;
+        counts[j] += count;
+      }
+    }
+    if (recorded == 0L) {
+      return 0L;
+    }
+    long rank = Math.max(1L, (long) Math.ceil((percentile / 100.0) * recorded));
+    long seen = 0L;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return (i == BUCKETS - 1) ? max : Math.min(max, highestEquivalentValue(i));
+      }
+    }
+    return max;
+  }
+
+  /** Discards the recorded durations. */
+  void reset() {
+    for (int i = 0; i < STRIPES; i++) {
+      stripes.set(i, null);
+    }
+  }
+
+  /**
+   * Returns the table of the stripe, allocating it if absent. A concurrent {@link #reset()} may
+   * discard the table, in which case the recording into it is lost.
+   */
+  private long[] table(int index) {
+    for (;;) {
+      long[] table = stripes.get(index);
+      if (table != null) {
+        return table;
+      }
+      table = new long[LENGTH];
+      if (stripes.compareAndSet(index, null, table)) {
+        return table;
+      }
+    }
+  }
+
+  /** Returns the index of the stripe that the current thread records into. */
+  static int stripe() {
+    long id = Thread.currentThread().getId();
+    return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (STRIPES - 1);
+  }
+
+  /** Returns the index of the bucket that the non-negative value is recorded into. */
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = (Long.SIZE - 1) - Long.numberOfLeadingZeros(value);
+    if (exponent >= MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return ((shift + 1) << SUB_BUCKET_BITS) + subBucket;
+  }
+
+  /** Returns the largest value that is recorded into the bucket. */
+  static long highestEquivalentValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  static int ceilingPowerOfTwo(int x) {
+    // From Hacker's Delight, Chapter 3, Harry S. Warren Jr.
+    return 1 << -Integer.numberOfLeadingZeros(x - 1);
+  }
+}
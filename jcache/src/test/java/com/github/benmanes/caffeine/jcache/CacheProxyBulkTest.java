@@ -0,0 +1,154 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.ExpiryPolicy;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * The test cases that ensure that the bulk operations evaluate the expiry policy once for all of
+ * their entries and record the statistics in aggregate.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@Test(singleThreaded = true)
+public final class CacheProxyBulkTest extends AbstractJCacheTest {
+  final CountingExpiryPolicy expiry = new CountingExpiryPolicy();
+
+  @Override
+  protected CaffeineConfiguration<Integer, Integer> getConfiguration() {
+    var configuration = new CaffeineConfiguration<Integer, Integer>();
+    configuration.setExpiryPolicyFactory(() -> expiry);
+    configuration.setTickerFactory(() -> ticker::read);
+    configuration.setExecutorFactory(MoreExecutors::directExecutor);
+    configuration.setStatisticsEnabled(true);
+    return configuration;
+  }
+
+  @BeforeMethod
+  public void reset() {
+    expiry.reset();
+  }
+
+  @Test
+  public void writeBatch_readsTimeOnce() {
+    var batch = jcache.new WriteBatch();
+    long currentTimeMS = batch.currentTimeMillis();
+    long expireTimeMS = batch.getWriteExpireTimeMS(/* created */ true);
+    advanceHalfExpiry();
+
+    assertThat(currentTimeMS).isEqualTo(START_TIME_MS);
+    assertThat(batch.currentTimeMillis()).isEqualTo(currentTimeMS);
+    assertThat(batch.getWriteExpireTimeMS(/* created */ false))
+        .isEqualTo(currentTimeMS + EXPIRY_DURATION);
+    assertThat(expireTimeMS).isEqualTo(currentTimeMS + EXPIRY_DURATION);
+  }
+
+  @Test
+  public void putAll_absent() {
+    jcache.putAll(entries);
+
+    assertThat(expiry.creations.get()).isEqualTo(1);
+    assertThat(expiry.updates.get()).isEqualTo(0);
+    assertThat(jcache.statistics.getCachePuts()).isEqualTo(entries.size());
+    for (Integer key : keys) {
+      Expirable<Integer> expirable = getExpirable(jcache, key);
+      assertThat(expirable.getExpireTimeMS()).isEqualTo(currentTimeMillis() + EXPIRY_DURATION);
+    }
+  }
+
+  @Test
+  public void putAll_present() {
+    jcache.put(KEY_1, VALUE_1);
+    expiry.reset();
+    advanceHalfExpiry();
+
+    jcache.putAll(entries);
+    assertThat(expiry.creations.get()).isEqualTo(1);
+    assertThat(expiry.updates.get()).isEqualTo(1);
+    for (Integer key : keys) {
+      Expirable<Integer> expirable = getExpirable(jcache, key);
+      assertThat(expirable.getExpireTimeMS()).isEqualTo(currentTimeMillis() + EXPIRY_DURATION);
+    }
+  }
+
+  @Test
+  public void putAll_expired() {
+    jcache.putAll(entries);
+    advancePastExpiry();
+
+    jcache.putAll(entries);
+    assertThat(jcache.statistics.getCacheEvictions()).isEqualTo(entries.size());
+    assertThat(jcache.statistics.getCachePuts()).isEqualTo(2 * entries.size());
+  }
+
+  @Test
+  public void removeAll_present() {
+    jcache.putAll(entries);
+
+    jcache.removeAll(keys);
+    assertThat(jcache.statistics.getCacheRemovals()).isEqualTo(keys.size());
+    assertThat(jcache.statistics.getCacheEvictions()).isEqualTo(0);
+    assertThat(jcache.cache.asMap()).isEmpty();
+  }
+
+  @Test
+  public void removeAll_expired() {
+    jcache.putAll(entries);
+    advancePastExpiry();
+
+    jcache.removeAll(keys);
+    assertThat(jcache.statistics.getCacheRemovals()).isEqualTo(0);
+    assertThat(jcache.statistics.getCacheEvictions()).isEqualTo(keys.size());
+    assertThat(jcache.cache.asMap()).isEmpty();
+  }
+
+  /** An expiry policy that counts the number of times that it is evaluated. */
+  static final class CountingExpiryPolicy implements ExpiryPolicy {
+    final AtomicInteger creations = new AtomicInteger();
+    final AtomicInteger updates = new AtomicInteger();
+
+    @Override
+    public Duration getExpiryForCreation() {
+      creations.incrementAndGet();
+      return new Duration(TimeUnit.MILLISECONDS, EXPIRY_DURATION);
+    }
+    @Override
+    public Duration getExpiryForUpdate() {
+      updates.incrementAndGet();
+      return new Duration(TimeUnit.MILLISECONDS, EXPIRY_DURATION);
+    }
+    @Override
+    public Duration getExpiryForAccess() {
+      return null;
+    }
+    void reset() {
+      creations.set(0);
+      updates.set(0);
+    }
+  }
+}
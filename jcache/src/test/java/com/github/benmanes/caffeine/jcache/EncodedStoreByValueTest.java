@@ -0,0 +1,229 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryUpdatedListener;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.copy.CodecCopier;
+import com.github.benmanes.caffeine.jcache.copy.CodecCopierTest.Point;
+import com.github.benmanes.caffeine.jcache.copy.CodecCopierTest.PointCodec;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+/**
+ * The tests that the store-by-value mode holds the values in their encoded form when configured
+ * with a {@link CodecCopier}.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@Test(singleThreaded = true)
+public final class EncodedStoreByValueTest {
+  CacheProxy<Integer, Object> jcache;
+  CacheManager cacheManager;
+  PointCodec codec;
+
+  @BeforeClass(alwaysRun = true)
+  public void beforeClass() {
+    var provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+    cacheManager = provider.getCacheManager(
+        provider.getDefaultURI(), provider.getDefaultClassLoader());
+  }
+
+  @BeforeMethod(alwaysRun = true)
+  public void before() {
+    var pointCodec = new PointCodec();
+    var configuration = new CaffeineConfiguration<Integer, Object>();
+    configuration.setCopierFactory(() -> new CodecCopier(Map.of(Point.class, pointCodec)));
+    configuration.setStoreByValue(true);
+
+    jcache = (CacheProxy<Integer, Object>) cacheManager.createCache("jcache", configuration);
+    codec = pointCodec;
+  }
+
+  @AfterMethod(alwaysRun = true)
+  public void after() {
+    cacheManager.destroyCache("jcache");
+  }
+
+  @Test
+  public void put_encodesOnce() {
+    var point = new Point(1, 2);
+    jcache.put(1, point);
+    point.x = 3;
+
+    assertThat(jcache.cache.getIfPresent(1).isEncoded()).isTrue();
+    assertThat(codec.encodes.get()).isEqualTo(1);
+    assertThat(codec.decodes.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void get_decodesOnce() {
+    var point = new Point(1, 2);
+    jcache.put(1, point);
+
+    var first = jcache.get(1);
+    var second = jcache.get(1);
+    assertThat(first).isEqualTo(point);
+    assertThat(second).isEqualTo(point);
+    assertThat(first).isNotSameInstanceAs(second);
+    assertThat(codec.encodes.get()).isEqualTo(1);
+    assertThat(codec.decodes.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void getAll() {
+    jcache.put(1, new Point(1, 2));
+    jcache.put(2, new Point(3, 4));
+
+    assertThat(jcache.getAll(Set.of(1, 2))).containsExactly(
+        1, new Point(1, 2), 2, new Point(3, 4));
+    assertThat(codec.decodes.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void immutable_notEncoded() {
+    jcache.put(1, "test");
+    assertThat(jcache.cache.getIfPresent(1).isEncoded()).isFalse();
+    assertThat(jcache.get(1)).isEqualTo("test");
+  }
+
+  @Test
+  public void unregistered_javaSerialization() {
+    var list = new ArrayList<>(List.of(1, 2, 3));
+    jcache.put(1, list);
+    list.clear();
+
+    assertThat(jcache.cache.getIfPresent(1).isEncoded()).isTrue();
+    assertThat(jcache.get(1)).isEqualTo(List.of(1, 2, 3));
+  }
+
+  @Test
+  public void getAndPut() {
+    jcache.put(1, new Point(1, 2));
+    assertThat(jcache.getAndPut(1, new Point(3, 4))).isEqualTo(new Point(1, 2));
+    assertThat(jcache.get(1)).isEqualTo(new Point(3, 4));
+  }
+
+  @Test
+  public void putIfAbsent() {
+    assertThat(jcache.putIfAbsent(1, new Point(1, 2))).isTrue();
+    assertThat(jcache.putIfAbsent(1, new Point(3, 4))).isFalse();
+    assertThat(jcache.get(1)).isEqualTo(new Point(1, 2));
+  }
+
+  @Test
+  public void replace() {
+    jcache.put(1, new Point(1, 2));
+    assertThat(jcache.replace(1, new Point(0, 0), new Point(5, 6))).isFalse();
+    assertThat(jcache.replace(1, new Point(1, 2), new Point(3, 4))).isTrue();
+    assertThat(jcache.getAndReplace(1, new Point(5, 6))).isEqualTo(new Point(3, 4));
+    assertThat(jcache.cache.getIfPresent(1).isEncoded()).isTrue();
+    assertThat(jcache.get(1)).isEqualTo(new Point(5, 6));
+  }
+
+  @Test
+  public void remove() {
+    jcache.put(1, new Point(1, 2));
+    jcache.put(2, new Point(3, 4));
+    assertThat(jcache.remove(1, new Point(0, 0))).isFalse();
+    assertThat(jcache.remove(1, new Point(1, 2))).isTrue();
+    assertThat(jcache.getAndRemove(2)).isEqualTo(new Point(3, 4));
+    assertThat(jcache.cache.asMap()).isEmpty();
+  }
+
+  @Test
+  public void remove_decodesOnce() {
+    jcache.put(1, new Point(1, 2));
+    assertThat(jcache.remove(1, new Point(1, 2))).isTrue();
+    assertThat(codec.decodes.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void invoke() {
+    jcache.put(1, new Point(1, 2));
+    Object result = jcache.invoke(1, (entry, args) -> {
+      var point = (Point) entry.getValue();
+      point.x = 3;
+      entry.setValue(point);
+      return point;
+    });
+
+    assertThat(result).isEqualTo(new Point(3, 2));
+    assertThat(jcache.cache.getIfPresent(1).isEncoded()).isTrue();
+    assertThat(jcache.get(1)).isEqualTo(new Point(3, 2));
+  }
+
+  @Test
+  public void iterator() {
+    jcache.put(1, new Point(1, 2));
+    var entry = jcache.iterator().next();
+    assertThat(entry.getValue()).isEqualTo(new Point(1, 2));
+  }
+
+  @Test
+  public void listener() {
+    var created = new ArrayList<Object>();
+    CacheEntryCreatedListener<Integer, Object> listener = events -> {
+      for (CacheEntryEvent<?, ?> event : events) {
+        created.add(event.getValue());
+      }
+    };
+    jcache.registerCacheEntryListener(new MutableCacheEntryListenerConfiguration<>(
+        () -> listener, /* filterFactory */ null, /* isOldValueRequired */ false,
+        /* isSynchronous */ true));
+
+    jcache.put(1, new Point(1, 2));
+    assertThat(created).containsExactly(new Point(1, 2));
+  }
+
+  @Test
+  public void listener_registeredLater() {
+    jcache.put(1, new Point(1, 2));
+    assertThat(codec.decodes.get()).isEqualTo(0);
+
+    var updated = new ArrayList<Object>();
+    CacheEntryUpdatedListener<Integer, Object> listener = events -> {
+      for (CacheEntryEvent<?, ?> event : events) {
+        updated.add(event.getOldValue());
+        updated.add(event.getValue());
+      }
+    };
+    jcache.registerCacheEntryListener(new MutableCacheEntryListenerConfiguration<>(
+        () -> listener, /* filterFactory */ null, /* isOldValueRequired */ true,
+        /* isSynchronous */ true));
+
+    assertThat(jcache.replace(1, new Point(1, 2), new Point(3, 4))).isTrue();
+    assertThat(updated).containsExactly(new Point(1, 2), new Point(3, 4)).inOrder();
+    assertThat(codec.decodes.get()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.expiry.AccessedExpiryPolicy;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.ExpiryPolicy;
+import javax.cache.expiry.ModifiedExpiryPolicy;
+
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * The test cases that ensure that the expiry policy is evaluated by the cache when native
+ * expiration is enabled, so that the entries are held as eternal by the proxy.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@Test(singleThreaded = true)
+public final class JCacheNativeExpiryTest extends AbstractJCacheTest {
+
+  @Override
+  protected CaffeineConfiguration<Integer, Integer> getConfiguration() {
+    var configuration = new CaffeineConfiguration<Integer, Integer>();
+    configuration.setExpiryPolicyFactory(() -> new AccessedExpiryPolicy(
+        new Duration(TimeUnit.MILLISECONDS, EXPIRY_DURATION)));
+    configuration.setExecutorFactory(MoreExecutors::directExecutor);
+    configuration.setTickerFactory(() -> ticker::read);
+    configuration.setNativeExpiryEnabled(true);
+    configuration.setStatisticsEnabled(true);
+    return configuration;
+  }
+
+  @Test
+  public void put() {
+    jcache.put(KEY_1, VALUE_1);
+
+    assertThat(getExpirable(jcache, KEY_1).isEternal()).isTrue();
+    assertThat(jcache.cache.policy().expireVariably().orElseThrow()
+        .getExpiresAfter(KEY_1, TimeUnit.MILLISECONDS).orElseThrow()).isEqualTo(EXPIRY_DURATION);
+  }
+
+  @Test
+  public void get_present() {
+    jcache.put(KEY_1, VALUE_1);
+    advanceHalfExpiry();
+
+    assertThat(jcache.get(KEY_1)).isEqualTo(VALUE_1);
+    advanceHalfExpiry();
+
+    assertThat(jcache.get(KEY_1)).isEqualTo(VALUE_1);
+  }
+
+  @Test
+  public void get_expired() {
+    jcache.put(KEY_1, VALUE_1);
+    advancePastExpiry();
+
+    assertThat(jcache.get(KEY_1)).isNull();
+    jcache.cache.cleanUp();
+
+    assertThat(jcache.cache.asMap()).doesNotContainKey(KEY_1);
+    assertThat(jcache.statistics.getCacheEvictions()).isEqualTo(1L);
+  }
+
+  @Test
+  public void getAll_expired() {
+    jcache.putAll(entries);
+    advancePastExpiry();
+
+    assertThat(jcache.getAll(keys)).isEmpty();
+    jcache.cache.cleanUp();
+
+    assertThat(jcache.cache.asMap()).isEmpty();
+    assertThat(jcache.statistics.getCacheEvictions()).isEqualTo(entries.size());
+  }
+
+  @Test
+  public void get_loading_expired() {
+    jcacheLoading.put(KEY_1, VALUE_1);
+    advancePastExpiry();
+
+    assertThat(jcacheLoading.get(KEY_1)).isEqualTo(KEY_1);
+    assertThat(getExpirable(jcacheLoading, KEY_1).isEternal()).isTrue();
+  }
+
+  @Test
+  public void modified_unchanged() {
+    var cache = newCache("modified", new ModifiedExpiryPolicy(
+        new Duration(TimeUnit.MILLISECONDS, EXPIRY_DURATION)));
+    try {
+      cache.put(KEY_1, VALUE_1);
+      advanceHalfExpiry();
+
+      assertThat(cache.putIfAbsent(KEY_1, VALUE_2)).isFalse();
+      assertThat(cache.replace(KEY_1, VALUE_2, VALUE_3)).isFalse();
+      assertThat(cache.remove(KEY_1, VALUE_2)).isFalse();
+      Integer value = cache.invoke(KEY_1, (entry, args) -> entry.getValue());
+      assertThat(value).isEqualTo(VALUE_1);
+      assertThat(cache.cache.policy().expireVariably().orElseThrow()
+          .getExpiresAfter(KEY_1, TimeUnit.MILLISECONDS).orElseThrow())
+          .isEqualTo(EXPIRY_DURATION / 2);
+
+      advanceHalfExpiry();
+      assertThat(cache.get(KEY_1)).isNull();
+    } finally {
+      cacheManager.destroyCache("modified");
+    }
+  }
+
+  @Test
+  public void modified_updated() {
+    var cache = newCache("modified", new ModifiedExpiryPolicy(
+        new Duration(TimeUnit.MILLISECONDS, EXPIRY_DURATION)));
+    try {
+      cache.put(KEY_1, VALUE_1);
+      advanceHalfExpiry();
+
+      assertThat(cache.replace(KEY_1, VALUE_1, VALUE_2)).isTrue();
+      advanceHalfExpiry();
+      assertThat(cache.get(KEY_1)).isEqualTo(VALUE_2);
+    } finally {
+      cacheManager.destroyCache("modified");
+    }
+  }
+
+  @Test
+  public void created_zero() {
+    var cache = newCache("zero", new CreatedExpiryPolicy(Duration.ZERO));
+    try {
+      var created = new ArrayList<Integer>();
+      CacheEntryCreatedListener<Integer, Integer> listener = events ->
+          events.forEach(event -> created.add(event.getKey()));
+      cache.registerCacheEntryListener(new MutableCacheEntryListenerConfiguration<>(
+          () -> listener, /* filterFactory */ null, /* isOldValueRequired */ false,
+          /* isSynchronous */ true));
+
+      cache.put(KEY_1, VALUE_1);
+      cache.putIfAbsent(KEY_2, VALUE_2);
+      assertThat(cache.getAndPut(KEY_3, VALUE_3)).isNull();
+
+      assertThat(cache.cache.asMap()).isEmpty();
+      assertThat(created).isEmpty();
+    } finally {
+      cacheManager.destroyCache("zero");
+    }
+  }
+
+  @Test
+  public void created_evaluatedOnce() {
+    var evaluations = new AtomicInteger();
+    var created = new CreatedExpiryPolicy(new Duration(TimeUnit.MILLISECONDS, EXPIRY_DURATION));
+    var cache = newCache("created", new ExpiryPolicy() {
+      @Override public Duration getExpiryForCreation() {
+        evaluations.incrementAndGet();
+        return created.getExpiryForCreation();
+      }
+      @Override public Duration getExpiryForAccess() {
+        return created.getExpiryForAccess();
+      }
+      @Override public Duration getExpiryForUpdate() {
+        return created.getExpiryForUpdate();
+      }
+    });
+    try {
+      cache.put(KEY_1, VALUE_1);
+
+      assertThat(evaluations.get()).isEqualTo(1);
+      assertThat(getExpirable(cache, KEY_1).isEternal()).isTrue();
+      assertThat(cache.cache.policy().expireVariably().orElseThrow()
+          .getExpiresAfter(KEY_1, TimeUnit.MILLISECONDS).orElseThrow()).isEqualTo(EXPIRY_DURATION);
+    } finally {
+      cacheManager.destroyCache("created");
+    }
+  }
+
+  private CacheProxy<Integer, Integer> newCache(String name, ExpiryPolicy expiryPolicy) {
+    var configuration = getConfiguration();
+    configuration.setExpiryPolicyFactory(() -> expiryPolicy);
+    return (CacheProxy<Integer, Integer>) cacheManager.createCache(name, configuration);
+  }
+}
@@ -56,6 +56,8 @@ public final class TypesafeConfigurationTest {
     assertThat(defaults.getValueType()).isEqualTo(Object.class);
     assertThat(defaults.getExecutorFactory().create()).isEqualTo(ForkJoinPool.commonPool());
     assertThat(defaults.getMaximumSize()).hasValue(500);
+    assertThat(defaults.getEventBatchMaximumSize()).isEqualTo(1);
+    assertThat(defaults.getEventBatchMaximumLatency()).isEqualTo(0L);
   }
 
   @Test
@@ -96,6 +98,7 @@ public final class TypesafeConfigurationTest {
   static void checkTestCache(CaffeineConfiguration<?, ?> config) {
     checkStoreByValue(config);
     checkListener(config);
+    checkEventBatching(config);
 
     assertThat(config.getKeyType()).isEqualTo(Object.class);
     assertThat(config.getValueType()).isEqualTo(Object.class);
@@ -128,6 +131,11 @@ public final class TypesafeConfigurationTest {
     assertThat(listener.isOldValueRequired()).isTrue();
   }
 
+  static void checkEventBatching(CaffeineConfiguration<?, ?> config) {
+    assertThat(config.getEventBatchMaximumSize()).isEqualTo(100);
+    assertThat(config.getEventBatchMaximumLatency()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(10));
+  }
+
   static void checkLazyExpiration(CaffeineConfiguration<?, ?> config) {
     ExpiryPolicy expiry = config.getExpiryPolicyFactory().create();
     assertThat(expiry.getExpiryForCreation()).isEqualTo(Duration.ONE_MINUTE);
@@ -138,6 +146,8 @@ public final class TypesafeConfigurationTest {
   static void checkEagerExpiration(CaffeineConfiguration<?, ?> config) {
     assertThat(config.getExpireAfterWrite()).hasValue(TimeUnit.MINUTES.toNanos(1));
     assertThat(config.getExpireAfterAccess()).hasValue(TimeUnit.MINUTES.toNanos(5));
+    assertThat(config.isNativeExpiryEnabled()).isFalse();
+    assertThat(config.isPercentileStatisticsEnabled()).isFalse();
   }
 
   static void checkRefresh(CaffeineConfiguration<?, ?> config) {
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.jcache.copy;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class CodecCopierTest {
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void constructor_null() {
+    new CodecCopier(null);
+  }
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void codecFor_null() {
+    new CodecCopier(Map.of()).codecFor(null);
+  }
+
+  @Test
+  public void codecFor_fastPath() {
+    var copier = new CodecCopier(Map.of(String.class, new PointCodec()));
+    assertThat(copier.codecFor("test")).isNull();
+    assertThat(copier.codecFor(new int[] { 1, 2 })).isNull();
+  }
+
+  @Test
+  public void codecFor_registered() {
+    var codec = new PointCodec();
+    var copier = new CodecCopier(Map.of(Point.class, codec));
+    assertThat(copier.codecFor(new Point(1, 2))).isSameInstanceAs(codec);
+  }
+
+  @Test
+  public void codecFor_serialization() {
+    var copier = new CodecCopier(Map.of(Point.class, new PointCodec()));
+    var list = new ArrayList<>(List.of(1, 2, 3));
+    Codec<ArrayList<Integer>> codec = copier.codecFor(list);
+    assertThat(codec).isNotNull();
+
+    var copy = codec.decode(codec.encode(list), Thread.currentThread().getContextClassLoader());
+    assertThat(copy).containsExactlyElementsIn(list).inOrder();
+    assertThat(copy).isNotSameInstanceAs(list);
+  }
+
+  @Test
+  public void copy_registered() {
+    var codec = new PointCodec();
+    var copier = new CodecCopier(Map.of(Point.class, codec));
+    var point = new Point(1, 2);
+
+    var copy = copier.copy(point, Thread.currentThread().getContextClassLoader());
+    assertThat(copy).isEqualTo(point);
+    assertThat(copy).isNotSameInstanceAs(point);
+    assertThat(codec.encodes.get()).isEqualTo(1);
+    assertThat(codec.decodes.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void copy_subclass() {
+    var codec = new PointCodec();
+    var copier = new CodecCopier(Map.of(Object.class, codec));
+    var list = new ArrayList<>(List.of(1, 2, 3));
+
+    var copy = copier.copy(list, Thread.currentThread().getContextClassLoader());
+    assertThat(copy).containsExactlyElementsIn(list).inOrder();
+    assertThat(codec.encodes.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void copy_immutable() {
+    var codec = new PointCodec();
+    var copier = new CodecCopier(Map.of(String.class, codec));
+    String text = "test";
+
+    assertThat(copier.copy(text, Thread.currentThread().getContextClassLoader()))
+        .isSameInstanceAs(text);
+    assertThat(codec.encodes.get()).isEqualTo(0);
+  }
+
+  public static final class Point {
+    public int x;
+    public int y;
+
+    public Point(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+    @Override public boolean equals(Object o) {
+      if (!(o instanceof Point)) {
+        return false;
+      }
+      var point = (Point) o;
+      return (x == point.x) && (y == point.y);
+    }
+    @Override public int hashCode() {
+      return Objects.hash(x, y);
+    }
+    @Override public String toString() {
+      return String.format("(%d, %d)", x, y);
+    }
+  }
+
+  public static final class PointCodec implements Codec<Point> {
+    public final AtomicInteger encodes = new AtomicInteger();
+    public final AtomicInteger decodes = new AtomicInteger();
+
+    @Override public byte[] encode(Point point) {
+      encodes.incrementAndGet();
+      return ByteBuffer.allocate(2 * Integer.BYTES).putInt(point.x).putInt(point.y).array();
+    }
+    @Override public Point decode(byte[] data, ClassLoader classLoader) {
+      decodes.incrementAndGet();
+      var buffer = ByteBuffer.wrap(data);
+      return new Point(buffer.getInt(), buffer.getInt());
+    }
+  }
+}
@@ -17,26 +17,37 @@ package com.github.benmanes.caffeine.jcache.event;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.cache.Cache;
 import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
 import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
 import javax.cache.event.CacheEntryEventFilter;
 import javax.cache.event.CacheEntryExpiredListener;
 import javax.cache.event.CacheEntryRemovedListener;
 import javax.cache.event.CacheEntryUpdatedListener;
+import javax.cache.event.EventType;
 
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.Iterables;
+
 /**
  * @author ben.manes@gmail.com (Ben Manes)
  */
@@ -70,6 +81,28 @@ public final class EventDispatcherTest {
     assertThat(dispatcher.dispatchQueues.keySet()).isEmpty();
   }
 
+  @Test
+  public void register_batched() {
+    var batching = new EventDispatcher<Integer, Integer>(Runnable::run, 10, 0L);
+    batching.register(new MutableCacheEntryListenerConfiguration<>(
+        () -> createdListener, null, false, /* synchronous */ false));
+    batching.register(new MutableCacheEntryListenerConfiguration<>(
+        () -> updatedListener, null, false, /* synchronous */ true));
+    assertThat(batching.dispatchQueues).hasSize(2);
+    assertThat(batching.batches).hasSize(1);
+    assertThat(Iterables.getOnlyElement(batching.batches.keySet()).isSynchronous()).isFalse();
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void batched_invalidSize() {
+    new EventDispatcher<Integer, Integer>(Runnable::run, 0, 0L);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void batched_invalidLatency() {
+    new EventDispatcher<Integer, Integer>(Runnable::run, 10, -1L);
+  }
+
   @Test
   public void deregister() {
     var configuration = new MutableCacheEntryListenerConfiguration<>(
@@ -79,6 +112,17 @@ public final class EventDispatcherTest {
     assertThat(dispatcher.dispatchQueues.keySet()).isEmpty();
   }
 
+  @Test
+  public void deregister_batched() {
+    var batching = new EventDispatcher<Integer, Integer>(Runnable::run, 10, 0L);
+    var configuration = new MutableCacheEntryListenerConfiguration<>(
+        () -> createdListener, null, false, false);
+    batching.register(configuration);
+    batching.deregister(configuration);
+    assertThat(batching.dispatchQueues).isEmpty();
+    assertThat(batching.batches).isEmpty();
+  }
+
   @Test
   public void publishCreated() {
     registerAll();
@@ -119,6 +163,65 @@ public final class EventDispatcherTest {
     dispatcher.publishExpired(cache, 1, 2);
   }
 
+  @Test
+  public void publish_batched() {
+    var tasks = new ArrayDeque<Runnable>();
+    var listener = new RecordingListener();
+    var batching = new EventDispatcher<Integer, Integer>(tasks::add, 3, 0L);
+    batching.register(new MutableCacheEntryListenerConfiguration<>(
+        () -> listener, null, false, /* synchronous */ false));
+
+    for (int i = 0; i < 5; i++) {
+      batching.publishCreated(cache, i, i);
+    }
+    batching.publishUpdated(cache, 1, 1, 2);
+    batching.publishCreated(cache, 5, 5);
+    assertThat(EventDispatcher.pending.get()).isEmpty();
+    assertThat(listener.batches).isEmpty();
+
+    while (!tasks.isEmpty()) {
+      tasks.poll().run();
+    }
+    assertThat(listener.batches).containsExactly(
+        List.of("CREATED:0", "CREATED:1", "CREATED:2"),
+        List.of("CREATED:3", "CREATED:4"),
+        List.of("UPDATED:1"),
+        List.of("CREATED:5")).inOrder();
+    assertThat(batching.batches.values().iterator().next().pending.get()).isEqualTo(0);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void publish_batched_latency() {
+    var batching = new EventDispatcher<Integer, Integer>(Runnable::run, 100,
+        TimeUnit.MILLISECONDS.toNanos(10));
+    batching.register(new MutableCacheEntryListenerConfiguration<>(
+        () -> createdListener, null, false, /* synchronous */ false));
+
+    batching.publishCreated(cache, 1, 1);
+    batching.publishCreated(cache, 2, 2);
+    ArgumentCaptor<Iterable<CacheEntryEvent<? extends Integer, ? extends Integer>>> captor =
+        ArgumentCaptor.forClass(Iterable.class);
+    verify(createdListener, timeout(5_000)).onCreated(captor.capture());
+    assertThat(captor.getValue()).hasSize(2);
+  }
+
+  @Test
+  public void publish_batched_exceedsMaximum() {
+    var drains = new AtomicInteger();
+    var delayed = new ArrayList<Runnable>();
+    var batch = new EventBatch<Integer, Integer>(3, delayed::add, drains::incrementAndGet);
+
+    // A concurrent publisher observes the maximum, so this thread sees the count pass it
+    batch.add(new JCacheEntryEvent<>(cache, EventType.CREATED, 0, false, null, 0));
+    batch.pending.incrementAndGet();
+    for (int i = 1; i < 6; i++) {
+      batch.add(new JCacheEntryEvent<>(cache, EventType.CREATED, i, false, null, i));
+    }
+    assertThat(delayed).hasSize(1);
+    assertThat(drains.get()).isEqualTo(2);
+  }
+
   @Test
   public void awaitSynchronous() {
     EventDispatcher.pending.get().add(CompletableFuture.completedFuture(null));
@@ -142,6 +245,28 @@ public final class EventDispatcherTest {
     assertThat(EventDispatcher.pending.get()).isEmpty();
   }
 
+  /** A listener that records the events of each notification. */
+  static final class RecordingListener implements CacheEntryCreatedListener<Integer, Integer>,
+      CacheEntryUpdatedListener<Integer, Integer> {
+    final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void onCreated(Iterable<CacheEntryEvent<? extends Integer, ? extends Integer>> events) {
+      record(events);
+    }
+    @Override
+    public void onUpdated(Iterable<CacheEntryEvent<? extends Integer, ? extends Integer>> events) {
+      record(events);
+    }
+    private void record(Iterable<CacheEntryEvent<? extends Integer, ? extends Integer>> events) {
+      var batch = new ArrayList<String>();
+      for (var event : events) {
+        batch.add(event.getEventType() + ":" + event.getKey());
+      }
+      batches.add(batch);
+    }
+  }
+
   /**
    * Registers (4 listeners) * (2 synchronous modes) * (3 filter modes) = 24 configurations. For
    * simplicity, an event is published and ignored if the listener is of the wrong type. For a
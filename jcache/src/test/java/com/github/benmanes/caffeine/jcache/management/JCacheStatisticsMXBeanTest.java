@@ -17,6 +17,13 @@ package com.github.benmanes.caffeine.jcache.management;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.testng.annotations.Test;
 
 /**
@@ -46,4 +53,95 @@ public final class JCacheStatisticsMXBeanTest {
     assertThat(stats.getAveragePutTime()).isEqualTo(0F);
     assertThat(stats.getAverageRemoveTime()).isEqualTo(0F);
   }
+
+  @Test
+  public void percentiles_disabled() {
+    JCacheStatisticsMXBean stats = new JCacheStatisticsMXBean();
+    stats.enable(true);
+    stats.recordHits(1);
+    stats.recordGetTime(TimeUnit.MICROSECONDS.toNanos(100));
+
+    assertThat(stats.getAverageGetTime()).isEqualTo(100F);
+    assertThat(stats.getGetTime50thPercentile()).isEqualTo(0F);
+    assertThat(stats.getGetTime99thPercentile()).isEqualTo(0F);
+    assertThat(stats.getGetTime999thPercentile()).isEqualTo(0F);
+  }
+
+  @Test
+  public void percentiles() {
+    JCacheStatisticsMXBean stats = new JCacheStatisticsMXBean(/* percentiles */ true);
+    stats.enable(true);
+    for (int i = 1; i <= 1_000; i++) {
+      stats.recordGetTime(TimeUnit.MICROSECONDS.toNanos(i));
+      stats.recordPutTime(TimeUnit.MICROSECONDS.toNanos(2 * i));
+      stats.recordRemoveTime(TimeUnit.MICROSECONDS.toNanos(3 * i));
+    }
+
+    assertThat(stats.getGetTime50thPercentile()).isWithin(0.0625F * 500).of(500F);
+    assertThat(stats.getGetTime99thPercentile()).isWithin(0.0625F * 990).of(990F);
+    assertThat(stats.getGetTime999thPercentile()).isWithin(0.0625F * 999).of(999F);
+    assertThat(stats.getPutTime50thPercentile()).isWithin(0.0625F * 1_000).of(1_000F);
+    assertThat(stats.getPutTime99thPercentile()).isWithin(0.0625F * 1_980).of(1_980F);
+    assertThat(stats.getPutTime999thPercentile()).isWithin(0.0625F * 1_998).of(1_998F);
+    assertThat(stats.getRemoveTime50thPercentile()).isWithin(0.0625F * 1_500).of(1_500F);
+    assertThat(stats.getRemoveTime99thPercentile()).isWithin(0.0625F * 2_970).of(2_970F);
+    assertThat(stats.getRemoveTime999thPercentile()).isWithin(0.0625F * 2_997).of(2_997F);
+
+    stats.clear();
+    assertThat(stats.getGetTime50thPercentile()).isEqualTo(0F);
+    assertThat(stats.getPutTime99thPercentile()).isEqualTo(0F);
+    assertThat(stats.getRemoveTime999thPercentile()).isEqualTo(0F);
+  }
+
+  @Test
+  public void percentiles_notEnabled() {
+    JCacheStatisticsMXBean stats = new JCacheStatisticsMXBean(/* percentiles */ true);
+    stats.recordGetTime(TimeUnit.MICROSECONDS.toNanos(100));
+    assertThat(stats.getGetTime50thPercentile()).isEqualTo(0F);
+  }
+
+  @Test
+  public void percentiles_maximum() {
+    JCacheStatisticsMXBean stats = new JCacheStatisticsMXBean(/* percentiles */ true);
+    stats.enable(true);
+    stats.recordGetTime(1L);
+    stats.recordGetTime(Long.MAX_VALUE);
+
+    assertThat(stats.getGetTime50thPercentile()).isEqualTo(0.001F);
+    assertThat(stats.getGetTime999thPercentile()).isEqualTo(Long.MAX_VALUE / 1_000F);
+  }
+
+  @Test
+  public void percentiles_jmx() throws Exception {
+    JCacheStatisticsMXBean stats = new JCacheStatisticsMXBean(/* percentiles */ true);
+    stats.enable(true);
+    stats.recordPutTime(TimeUnit.MICROSECONDS.toNanos(8));
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    var name = new ObjectName("com.github.benmanes.caffeine.jcache:type=PercentilesTest");
+    server.registerMBean(stats, name);
+    try {
+      assertThat(server.getAttribute(name, "PutTime99thPercentile")).isEqualTo(8F);
+      assertThat(server.getAttribute(name, "AveragePutTime")).isEqualTo(0F);
+    } finally {
+      server.unregisterMBean(name);
+    }
+  }
+
+  @Test
+  public void percentiles_concurrentClear() {
+    JCacheStatisticsMXBean stats = new JCacheStatisticsMXBean(/* percentiles */ true);
+    stats.enable(true);
+
+    var recorder = CompletableFuture.runAsync(() -> {
+      for (int i = 0; i < 100_000; i++) {
+        stats.recordGetTime(i);
+      }
+    });
+    while (!recorder.isDone()) {
+      stats.clear();
+      Thread.yield();
+    }
+    recorder.join();
+  }
 }
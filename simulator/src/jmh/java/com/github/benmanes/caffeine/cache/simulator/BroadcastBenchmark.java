@@ -0,0 +1,159 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEventBatch;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
+import com.github.benmanes.caffeine.cache.simulator.policy.PolicyActor;
+import com.github.benmanes.caffeine.cache.simulator.policy.Registry;
+import com.github.benmanes.caffeine.cache.simulator.report.IntervalReporter;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * A benchmark of the events per second that are broadcast to 1, 10, and 50 policies by the
+ * {@link RingSimulator}'s lock-free ring buffer, compared to a bounded queue per policy. The queues
+ * have the mailbox's capacity and a thread per policy, which is the fan-out that the actor engine
+ * performs without the cost of its dispatcher. Each policy is an LRU so that the broadcast's cost
+ * is not hidden by an expensive policy.
+ *
+ * <pre>{@code
+ *   ./gradlew :simulator:jmh -PincludePattern=BroadcastBenchmark
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class BroadcastBenchmark {
+  static final int EVENTS = 2_000_000;
+  static final int KEYS = 1 << 16;
+  static final int MAILBOX_CAPACITY = 10;
+  static final int BATCH_SIZE = 1000;
+  static final int RING_SIZE = 16;
+
+  @Param({"ring", "queue"})
+  String engine;
+
+  @Param({"1", "10", "50"})
+  int policies;
+
+  ExecutorService executor;
+  List<Policy> simulated;
+  AccessEvent[] events;
+  BasicSettings settings;
+
+  @Setup
+  public void setup() {
+    var random = new SplittableRandom(1_000_003);
+    events = new AccessEvent[EVENTS];
+    for (int i = 0; i < EVENTS; i++) {
+      events[i] = AccessEvent.forKey(random.nextInt(KEYS));
+    }
+    executor = Executors.newFixedThreadPool(policies);
+    settings = new BasicSettings(ConfigFactory.load().getConfig("caffeine.simulator"));
+  }
+
+  @Setup(Level.Invocation)
+  public void createPolicies() {
+    var registry = new Registry(settings, Set.of());
+    simulated = new ArrayList<>(policies);
+    for (int i = 0; i < policies; i++) {
+      simulated.addAll(registry.policy("linked.Lru"));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    MoreExecutors.shutdownAndAwaitTermination(executor, Duration.ofMinutes(1));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EVENTS)
+  public long broadcast() throws Exception {
+    return engine.equals("ring")
+        ? RingSimulator.replay(Arrays.stream(events), simulated,
+            RING_SIZE, BATCH_SIZE, executor, IntervalReporter.disabled())
+        : queues();
+  }
+
+  /** Replays the events through a bounded queue per policy, like a bounded mailbox. */
+  private long queues() throws InterruptedException, ExecutionException {
+    var pool = new AccessEventBatch.Pool(BATCH_SIZE, (MAILBOX_CAPACITY + 1) * policies);
+    var mailboxes = new ArrayList<BlockingQueue<AccessEventBatch>>(policies);
+    var results = new ArrayList<Future<?>>(policies);
+    var poison = pool.acquire();
+    for (Policy policy : simulated) {
+      var mailbox = new ArrayBlockingQueue<AccessEventBatch>(MAILBOX_CAPACITY);
+      mailboxes.add(mailbox);
+      results.add(executor.submit(() -> {
+        for (;;) {
+          var batch = mailbox.take();
+          if (batch == poison) {
+            policy.finished();
+            return null;
+          }
+          PolicyActor.record(policy, batch);
+          batch.release();
+        }
+      }));
+    }
+
+    var batch = pool.acquire();
+    for (AccessEvent event : events) {
+      batch.add(event);
+      if (batch.isFull()) {
+        batch.retain(policies);
+        for (var mailbox : mailboxes) {
+          mailbox.put(batch);
+        }
+        batch = pool.acquire();
+      }
+    }
+    for (var mailbox : mailboxes) {
+      mailbox.put(poison);
+    }
+    for (var result : results) {
+      result.get();
+    }
+    return events.length;
+  }
+}
@@ -19,19 +19,25 @@ import static java.util.stream.Collectors.toList;
 import static org.openjdk.jmh.annotations.Scope.Benchmark;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Stream;
 
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.infra.Blackhole;
 
 import com.github.benmanes.caffeine.cache.simulator.parser.TraceFormat;
 import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEventBatch;
 import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
+import com.github.benmanes.caffeine.cache.simulator.policy.PolicyActor;
 import com.github.benmanes.caffeine.cache.simulator.policy.Registry;
 import com.google.common.collect.ImmutableSet;
 import com.typesafe.config.ConfigFactory;
@@ -41,6 +47,12 @@ import com.typesafe.config.ConfigFactory;
  * be comparative, but rather simulate the benefits of a higher hit rate if the implementation costs
  * are not excessive.
  * <p>
+ * The {@code batched} benchmark compares how the simulator delivers the events to a policy, either
+ * as {@link AccessEvent} objects in newly allocated lists or as columnar batches that are reused
+ * from a pool, and reports the events per second as a secondary result. The difference is most
+ * pronounced for key only policies, which consume a columnar batch without allocating, and can be
+ * observed by running with the gc profiler.
+ * <p>
  * See JMHSample_38_PerInvokeSetup for background on the per-iteration setup.
  *
  * @author ben.manes@gmail.com (Ben Manes)
@@ -53,8 +65,12 @@ public class TraceBenchmark {
   @Param({"0", "1000"})
   int missPenalty;
 
+  @Param({"objects", "columnar"})
+  String batchType;
+
   AccessEvent[] events;
   Registry registry;
+  int batchSize;
 
   @Setup
   public void setup() throws IOException {
@@ -62,6 +78,7 @@ public class TraceBenchmark {
         ConfigFactory.load().getConfig("caffeine.simulator"));
     events = readEventStream(settings).toArray(AccessEvent[]::new);
     registry = new Registry(settings, ImmutableSet.of());
+    batchSize = settings.batchSize();
   }
 
   @Benchmark
@@ -74,6 +91,62 @@ public class TraceBenchmark {
     return policy;
   }
 
+  @Benchmark
+  public Policy batched(EventCounters counters) {
+    Policy policy = makePolicy();
+    if (batchType.equals("objects")) {
+      var batch = new ArrayList<AccessEvent>(batchSize);
+      for (AccessEvent event : events) {
+        batch.add(event);
+        if (batch.size() == batchSize) {
+          recordObjects(policy, batch);
+          batch = new ArrayList<>(batchSize);
+        }
+      }
+      recordObjects(policy, batch);
+    } else if (batchType.equals("columnar")) {
+      var pool = new AccessEventBatch.Pool(batchSize, /* maximumIdle */ 1);
+      var batch = pool.acquire();
+      for (AccessEvent event : events) {
+        batch.add(event);
+        if (batch.isFull()) {
+          recordColumnar(policy, batch);
+          batch = pool.acquire();
+        }
+      }
+      recordColumnar(policy, batch);
+    } else {
+      throw new IllegalArgumentException("Unknown batch type: " + batchType);
+    }
+    counters.events += events.length;
+    return policy;
+  }
+
+  /** Records the events as the simulator did prior to the columnar batches. */
+  private static void recordObjects(Policy policy, List<AccessEvent> batch) {
+    for (AccessEvent event : batch) {
+      long priorMisses = policy.stats().missCount();
+      long priorHits = policy.stats().hitCount();
+      policy.record(event);
+
+      if (policy.stats().hitCount() > priorHits) {
+        policy.stats().recordHitPenalty(event.hitPenalty());
+        policy.stats().recordSavedPenalty(event.missPenalty() - event.hitPenalty());
+      } else if (policy.stats().missCount() > priorMisses) {
+        policy.stats().recordMissPenalty(event.missPenalty());
+      }
+    }
+  }
+
+  private static void recordColumnar(Policy policy, AccessEventBatch batch) {
+    batch.retain(1);
+    try {
+      PolicyActor.record(policy, batch);
+    } finally {
+      batch.release();
+    }
+  }
+
   public Policy makePolicy() {
     Set<Policy> policies = registry.policy(policyName);
     if (policies.size() > 1) {
@@ -91,4 +164,15 @@ public class TraceBenchmark {
     TraceFormat format = settings.trace().traceFiles().format();
     return format.readFiles(filePaths).events();
   }
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class EventCounters {
+    public long events;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      events = 0;
+    }
+  }
 }
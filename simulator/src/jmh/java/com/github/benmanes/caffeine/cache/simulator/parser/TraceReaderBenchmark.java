@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator.parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
+
+/**
+ * A benchmark that compares the time to replay a trace in the {@link TraceFormat#INDEXED} format,
+ * which is memory mapped and decoded in parallel, to streaming it through the readers of other
+ * formats. The same synthetic trace is rewritten into each format before the measurements.
+ *
+ * <pre>{@code
+ *   ./gradlew :simulator:jmh -PincludePattern=TraceReaderBenchmark
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+public class TraceReaderBenchmark {
+  static final int EVENTS = 5_000_000;
+  static final int KEYS = 1 << 20;
+
+  @Param({"lirs", "cloud_physics", "indexed"})
+  String format;
+
+  TraceReader reader;
+  Path file;
+
+  @Setup
+  public void setup() throws IOException {
+    var outputFormat = OutputFormat.valueOf(format.toUpperCase(Locale.US));
+    file = Files.createTempFile("trace", "." + format);
+    try (var output = Files.newOutputStream(file);
+         var writer = outputFormat.writer(output)) {
+      var random = new SplittableRandom(1_000_003);
+      writer.writeHeader();
+      for (int i = 0; i < EVENTS; i++) {
+        writer.writeEvent(i, AccessEvent.forKey(random.nextInt(KEYS)));
+      }
+      writer.writeFooter();
+    }
+    reader = TraceFormat.named(format).readFiles(List.of(file.toString()));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public void replay(Blackhole blackhole) {
+    try (var events = reader.events()) {
+      events.forEach(blackhole::consume);
+    }
+  }
+}
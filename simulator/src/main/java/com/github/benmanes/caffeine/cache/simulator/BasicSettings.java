@@ -15,17 +15,20 @@
  */
 package com.github.benmanes.caffeine.cache.simulator;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Locale.US;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toSet;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Set;
 
 import com.github.benmanes.caffeine.cache.simulator.admission.Admission;
 import com.github.benmanes.caffeine.cache.simulator.membership.FilterType;
 import com.github.benmanes.caffeine.cache.simulator.parser.TraceFormat;
+import com.github.benmanes.caffeine.cache.simulator.report.IntervalReporter.IntervalFormat;
 import com.github.benmanes.caffeine.cache.simulator.report.ReportFormat;
 import com.google.common.base.CaseFormat;
 import com.typesafe.config.Config;
@@ -84,6 +87,10 @@ public class BasicSettings {
     return new TraceSettings();
   }
 
+  public EngineSettings engine() {
+    return new EngineSettings();
+  }
+
   /** Returns the config resolved at the simulator's path. */
   public Config config() {
     return config;
@@ -102,6 +109,28 @@ public class BasicSettings {
     public String output() {
       return config().getString("report.output").trim();
     }
+    public IntervalSettings interval() {
+      return new IntervalSettings();
+    }
+
+    public final class IntervalSettings {
+      public boolean isEnabled() {
+        return (events() > 0) || !duration().isZero();
+      }
+      public long events() {
+        return config().getLong("report.interval.events");
+      }
+      public Duration duration() {
+        return config().getDuration("report.interval.duration");
+      }
+      public IntervalFormat format() {
+        return IntervalFormat.valueOf(
+            config().getString("report.interval.format").toUpperCase(US));
+      }
+      public String output() {
+        return config().getString("report.interval.output").trim();
+      }
+    }
   }
 
   public final class MembershipSettings {
@@ -139,6 +168,9 @@ public class BasicSettings {
       public double countersMultiplier() {
         return config().getDouble("tiny-lfu.count-min-4.counters-multiplier");
       }
+      public boolean blocked() {
+        return config().getBoolean("tiny-lfu.count-min-4.blocked");
+      }
       public IncrementalSettings incremental() {
         return new IncrementalSettings();
       }
@@ -171,6 +203,15 @@ public class BasicSettings {
     }
   }
 
+  public final class EngineSettings {
+    public int ringSize() {
+      int ringSize = config().getInt("engine.ring-size");
+      checkArgument((ringSize > 0) && ((ringSize & (ringSize - 1)) == 0),
+          "engine.ring-size must be a power of two");
+      return ringSize;
+    }
+  }
+
   public final class TraceSettings {
     public long skip() {
       return config().getLong("trace.skip");
@@ -192,6 +233,30 @@ public class BasicSettings {
       checkState(isSynthetic());
       return new SyntheticSettings();
     }
+    public SamplingSettings sampling() {
+      return new SamplingSettings();
+    }
+  }
+
+  public final class SamplingSettings {
+    public boolean isEnabled() {
+      return !config().getString("trace.sampling.mode").equals("none");
+    }
+    public boolean isFixedRate() {
+      return config().getString("trace.sampling.mode").equals("fixed-rate");
+    }
+    public boolean isFixedSize() {
+      return config().getString("trace.sampling.mode").equals("fixed-size");
+    }
+    public double rate() {
+      return config().getDouble("trace.sampling.rate");
+    }
+    public int maximumKeys() {
+      return config().getInt("trace.sampling.maximum-keys");
+    }
+    public boolean validate() {
+      return config().getBoolean("trace.sampling.validate");
+    }
   }
 
   public final class TraceFilesSettings {
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A bounded, lock-free ring buffer where a single producer publishes elements that are observed by
+ * every consumer, in the style of the LMAX Disruptor. The producer and each consumer track their
+ * own sequence, so an element is never copied or dequeued and the consumers do not contend with
+ * each other. The producer waits for the slowest consumer when the ring is full, which applies the
+ * back-pressure that a bounded mailbox would.
+ * <p>
+ * A waiting thread spins briefly, then yields, and then parks for short periods, as the producer
+ * and consumers are expected to be busy for the duration of a simulation.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class BroadcastRing<E> {
+  /** The distance between sequences so that each is on its own pair of cache lines. */
+  static final int STRIDE = 16;
+  /** The index of the producer's sequence. */
+  static final int CURSOR = 0;
+
+  static final int SPINS = 1 << 10;
+  static final int YIELDS = SPINS + (1 << 6);
+  static final long PARK_NANOS = 10_000;
+
+  final AtomicReferenceArray<E> buffer;
+  final AtomicLongArray sequences;
+  final int consumers;
+  final int mask;
+
+  volatile boolean closed;
+
+  /** The producer's next sequence to publish to. */
+  long next;
+  /** The producer's last observed sequence of the slowest consumer. */
+  long gatingSequence;
+
+  /**
+   * Creates a ring buffer.
+   *
+   * @param capacity the number of elements that the ring holds, which must be a power of two
+   * @param consumers the number of consumers that observe every element
+   */
+  BroadcastRing(int capacity, int consumers) {
+    checkArgument((capacity > 0) && ((capacity & (capacity - 1)) == 0),
+        "The capacity must be a power of two: %s", capacity);
+    checkArgument(consumers > 0, "There must be at least one consumer");
+    this.sequences = new AtomicLongArray((consumers + 1) * STRIDE);
+    this.buffer = new AtomicReferenceArray<>(capacity);
+    this.consumers = consumers;
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * Publishes the element once every consumer has taken the one that it overwrites. The consumers
+   * are only observed while the ring is full, so after every consumer abandons the ring up to its
+   * capacity of elements may still be published before this is detected.
+   *
+   * @param e the element to publish
+   * @return false if the element was not published because every consumer abandoned the ring
+   */
+  public boolean publish(E e) {
+    requireNonNull(e);
+    long wrapPoint = next - buffer.length();
+    for (int attempt = 0; gatingSequence <= wrapPoint; attempt++) {
+      gatingSequence = minimumSequence();
+      if (gatingSequence <= wrapPoint) {
+        idle(attempt);
+      }
+    }
+    if (gatingSequence == Long.MAX_VALUE) {
+      return false;
+    }
+    buffer.setRelease(index(next), e);
+    next++;
+    sequences.setRelease(CURSOR, next);
+    return true;
+  }
+
+  /** Indicates that no more elements will be published. */
+  public void close() {
+    closed = true;
+  }
+
+  /**
+   * Returns the consumer's next element, waiting until it is published, or null if the ring was
+   * closed and every element was taken. This method may only be called by the consumer's thread.
+   */
+  public @Nullable E take(int consumer) {
+    int offset = offsetOf(consumer);
+    long sequence = sequences.getPlain(offset);
+    for (int attempt = 0; sequences.getAcquire(CURSOR) <= sequence; attempt++) {
+      if (closed) {
+        if (sequences.getAcquire(CURSOR) <= sequence) {
+          return null;
+        }
+        break;
+      }
+      idle(attempt);
+    }
+    E e = buffer.getAcquire(index(sequence));
+    sequences.setRelease(offset, sequence + 1);
+    return e;
+  }
+
+  /** Removes the consumer from gating the producer, such as when it failed. */
+  public void abandon(int consumer) {
+    sequences.setRelease(offsetOf(consumer), Long.MAX_VALUE);
+  }
+
+  /** Returns the sequence of the slowest consumer. */
+  long minimumSequence() {
+    long minimum = Long.MAX_VALUE;
+    for (int i = 0; i < consumers; i++) {
+      minimum = Math.min(minimum, sequences.getAcquire(offsetOf(i)));
+    }
+    return minimum;
+  }
+
+  int index(long sequence) {
+    return (int) (sequence & mask);
+  }
+
+  int offsetOf(int consumer) {
+    return (consumer + 1) * STRIDE;
+  }
+
+  /** Waits before the next attempt by spinning, yielding, or parking as the attempts increase. */
+  static void idle(int attempt) {
+    if (attempt < SPINS) {
+      Thread.onSpinWait();
+    } else if (attempt < YIELDS) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.mutable.MutableBoolean;
+import org.apache.commons.lang3.mutable.MutableLong;
+import org.apache.commons.lang3.mutable.MutableObject;
+
+import com.github.benmanes.caffeine.cache.simulator.parser.TraceReader;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEventBatch;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
+import com.github.benmanes.caffeine.cache.simulator.policy.PolicyActor;
+import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
+import com.github.benmanes.caffeine.cache.simulator.report.IntervalReporter;
+import com.github.benmanes.caffeine.cache.simulator.report.IntervalReporter.PolicyInterval;
+import com.github.benmanes.caffeine.cache.simulator.report.Reporter;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * A simulator that broadcasts the recorded cache events to each policy through a
+ * {@link BroadcastRing}, as an alternative to the actor-based {@link Simulator}. The trace reader's
+ * thread publishes the batches of events into the ring and each policy runs on its own thread that
+ * consumes every batch, so the slowest policy determines the rate at which the trace is read. This
+ * avoids the per-message overhead of the actors' mailboxes and dispatcher, which dominates when
+ * many cheap policies are simulated together. If every policy fails then the trace stops being
+ * read once the ring has filled, and the first failure is rethrown.
+ * <p>
+ * This engine is experimental and is not selectable by the configuration, as it has not yet been
+ * shown to outperform the actors on a multi-core host. It may be evaluated by running
+ * <pre>{@code
+ *   ./gradlew :simulator:ringSimulate
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class RingSimulator {
+  private final BasicSettings settings;
+
+  public RingSimulator(BasicSettings settings) {
+    this.settings = settings;
+  }
+
+  public static void main(String[] args) throws IOException {
+    Logger.getLogger("").setLevel(Level.WARNING);
+    var config = ConfigFactory.load().getConfig("caffeine.simulator");
+    new RingSimulator(new BasicSettings(config)).run();
+  }
+
+  /** Simulates the policies and prints the report. */
+  public void run() throws IOException {
+    TraceReader traceReader = Simulator.makeTraceReader(settings);
+    Reporter reporter = settings.report().format()
+        .create(settings.config(), traceReader.characteristics());
+    List<Policy> policies = List.copyOf(Simulator.makePolicies(settings, traceReader));
+    if (policies.isEmpty()) {
+      System.err.println("No active policies in the current configuration");
+      return;
+    }
+
+    var stopwatch = Stopwatch.createStarted();
+    var executor = Executors.newFixedThreadPool(policies.size(),
+        new ThreadFactoryBuilder().setNameFormat("policy-%d").setDaemon(true).build());
+    try (Stream<AccessEvent> events = Simulator.events(settings, traceReader);
+        var intervalReporter = new IntervalReporter(
+            settings.config(), traceReader.characteristics())) {
+      long count = replay(events, policies, settings.engine().ringSize(),
+          settings.batchSize(), executor, intervalReporter);
+      policies.forEach(policy -> reporter.add(policy.stats()));
+      reporter.print();
+      double seconds = Math.max(1, stopwatch.elapsed().toNanos()) / 1e9;
+      System.out.printf("Executed %,d events in %s (%,.0f events/s)%n",
+          count, stopwatch, count / seconds);
+    } finally {
+      MoreExecutors.shutdownAndAwaitTermination(executor, Duration.ofMinutes(1));
+    }
+  }
+
+  /**
+   * Replays the events to the policies, each on its own thread of the executor, and returns the
+   * number of events once every policy has finished.
+   *
+   * @param events the access events to replay
+   * @param policies the policies to simulate
+   * @param ringSize the number of batches that the ring holds, which must be a power of two
+   * @param batchSize the number of events per batch
+   * @param executor the executor that has a thread available for each policy
+   * @param intervalReporter the reporter of each policy's statistics during the replay
+   * @return the number of events that were replayed
+   */
+  static long replay(Stream<AccessEvent> events, List<Policy> policies,
+      int ringSize, int batchSize, ExecutorService executor, IntervalReporter intervalReporter) {
+    var ring = new BroadcastRing<AccessEventBatch>(ringSize, policies.size());
+    var results = new ArrayList<Future<PolicyStats>>(policies.size());
+    for (int i = 0; i < policies.size(); i++) {
+      int consumer = i;
+      Policy policy = policies.get(i);
+      PolicyInterval interval = intervalReporter.interval(policy.stats());
+      results.add(executor.submit(() -> consume(ring, consumer, policy, interval)));
+    }
+
+    // A batch may be held by the ring and by every consumer that is recording it
+    var pool = new AccessEventBatch.Pool(batchSize, ringSize + policies.size() + 1);
+    var batch = new MutableObject<>(pool.acquire());
+    var abandoned = new MutableBoolean();
+    var count = new MutableLong();
+    try {
+      // Stop reading the trace once every policy has failed, as no consumer remains
+      events.takeWhile(event -> abandoned.isFalse()).forEach(event -> {
+        batch.getValue().add(event);
+        if (batch.getValue().isFull()) {
+          count.add(batch.getValue().size());
+          abandoned.setValue(!publish(ring, batch.getValue(), policies.size()));
+          batch.setValue(pool.acquire());
+        }
+      });
+      if (abandoned.isFalse() && (batch.getValue().size() > 0)) {
+        count.add(batch.getValue().size());
+        publish(ring, batch.getValue(), policies.size());
+      }
+    } finally {
+      ring.close();
+    }
+
+    try {
+      for (var result : results) {
+        result.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+    return count.longValue();
+  }
+
+  /** Publishes the batch to all of the policies, returning false if every policy failed. */
+  private static boolean publish(BroadcastRing<AccessEventBatch> ring,
+      AccessEventBatch batch, int consumers) {
+    batch.retain(consumers);
+    return ring.publish(batch);
+  }
+
+  /** Records every batch in the ring until it is closed and returns the policy's statistics. */
+  private static PolicyStats consume(BroadcastRing<AccessEventBatch> ring,
+      int consumer, Policy policy, PolicyInterval interval) {
+    try {
+      for (;;) {
+        var batch = ring.take(consumer);
+        if (batch == null) {
+          break;
+        }
+        try {
+          PolicyActor.record(policy, batch);
+          interval.advance(batch.size());
+        } finally {
+          batch.release();
+        }
+      }
+      policy.finished();
+      interval.finish();
+      return policy.stats();
+    } catch (Throwable t) {
+      ring.abandon(consumer);
+      throw t;
+    }
+  }
+}
@@ -16,10 +16,15 @@
 package com.github.benmanes.caffeine.cache.simulator;
 
 import static java.util.Objects.requireNonNull;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
@@ -29,13 +34,19 @@ import org.apache.commons.lang3.mutable.MutableObject;
 import com.github.benmanes.caffeine.cache.simulator.parser.TraceFormat;
 import com.github.benmanes.caffeine.cache.simulator.parser.TraceReader;
 import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEventBatch;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
 import com.github.benmanes.caffeine.cache.simulator.policy.PolicyActor;
 import com.github.benmanes.caffeine.cache.simulator.policy.PolicyActor.AccessEvents;
 import com.github.benmanes.caffeine.cache.simulator.policy.PolicyActor.Finished;
 import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
 import com.github.benmanes.caffeine.cache.simulator.policy.Registry;
+import com.github.benmanes.caffeine.cache.simulator.policy.SpatialSampler;
+import com.github.benmanes.caffeine.cache.simulator.policy.SpatiallySampledPolicy;
+import com.github.benmanes.caffeine.cache.simulator.report.IntervalReporter;
 import com.github.benmanes.caffeine.cache.simulator.report.Reporter;
 import com.google.common.base.Stopwatch;
+import com.typesafe.config.ConfigValueFactory;
 
 import akka.actor.typed.ActorRef;
 import akka.actor.typed.ActorSystem;
@@ -64,17 +75,24 @@ import akka.actor.typed.javadsl.Receive;
  * It is recommended that multiple access traces are used during evaluation to see how the policies
  * handle different workload patterns. When choosing a policy some metrics that are not reported
  * may be relevant, such as the cost of maintaining the policy's internal structures.
+ * <p>
+ * The trace is broadcast by actors with bounded mailboxes. The experimental {@link RingSimulator}
+ * instead broadcasts through a lock-free ring buffer with a thread per policy.
  *
  * @author ben.manes@gmail.com (Ben Manes)
  */
 public final class Simulator extends AbstractBehavior<Simulator.Command> {
+  /** The maximum number of idle batches to retain, which exceeds the bounded mailbox's capacity. */
+  private static final int BATCH_POOL_SIZE = 32;
+
   private final List<ActorRef<PolicyActor.Command>> policies;
+  private final IntervalReporter intervalReporter;
   private final TraceReader traceReader;
   private final BasicSettings settings;
   private final Stopwatch stopwatch;
   private final Reporter reporter;
 
-  public Simulator(ActorContext<Command> context, BasicSettings settings) {
+  public Simulator(ActorContext<Command> context, BasicSettings settings) throws IOException {
     super(context);
     this.settings = settings;
     this.policies = new ArrayList<>();
@@ -82,6 +100,8 @@ public final class Simulator extends AbstractBehavior<Simulator.Command> {
     this.traceReader = makeTraceReader(settings);
     this.reporter = settings.report().format()
         .create(settings.config(), traceReader.characteristics());
+    this.intervalReporter = new IntervalReporter(
+        settings.config(), traceReader.characteristics());
   }
 
   public static Behavior<Command> create() {
@@ -110,24 +130,29 @@ public final class Simulator extends AbstractBehavior<Simulator.Command> {
     }
 
     stopwatch.start();
-    long skip = settings.trace().skip();
-    long limit = settings.trace().limit();
     int batchSize = settings.batchSize();
-    try (Stream<AccessEvent> events = traceReader.events().skip(skip).limit(limit)) {
-      var batch = new MutableObject<>(new ArrayList<AccessEvent>(batchSize));
+    try (Stream<AccessEvent> events = events(settings, traceReader)) {
+      var pool = new AccessEventBatch.Pool(batchSize, BATCH_POOL_SIZE);
+      var batch = new MutableObject<>(pool.acquire());
       events.forEach(event -> {
         batch.getValue().add(event);
-        if (batch.getValue().size() == batchSize) {
-          route(new AccessEvents(batch.getValue()));
-          batch.setValue(new ArrayList<>(batchSize));
+        if (batch.getValue().isFull()) {
+          route(batch.getValue());
+          batch.setValue(pool.acquire());
         }
       });
-      route(new AccessEvents(batch.getValue()));
+      route(batch.getValue());
       route(new Finished());
       return this;
     }
   }
 
+  /** Publishes the batch of events to all of the policy actors. */
+  private void route(AccessEventBatch batch) {
+    batch.retain(policies.size());
+    route(new AccessEvents(batch));
+  }
+
   /** Publishes the message to all of the policy actors. */
   private void route(PolicyActor.Command message) {
     for (var policy : policies) {
@@ -135,8 +160,15 @@ public final class Simulator extends AbstractBehavior<Simulator.Command> {
     }
   }
 
+  /** Returns the access events to replay. */
+  static Stream<AccessEvent> events(BasicSettings settings, TraceReader traceReader) {
+    long skip = settings.trace().skip();
+    long limit = settings.trace().limit();
+    return traceReader.events().skip(skip).limit(limit);
+  }
+
   /** Returns a trace reader for the access events. */
-  private static TraceReader makeTraceReader(BasicSettings settings) {
+  static TraceReader makeTraceReader(BasicSettings settings) {
     if (settings.trace().isSynthetic()) {
       return Synthetic.generate(settings.trace());
     }
@@ -147,22 +179,56 @@ public final class Simulator extends AbstractBehavior<Simulator.Command> {
 
   /** Spawns the policy actors to broadcast trace events to. */
   private void spawnPolicyActors() {
-    var registry = new Registry(settings, traceReader.characteristics());
     var mailbox = MailboxSelector.fromConfig("caffeine.simulator.mailbox");
-    for (var policy : registry.policies()) {
+    for (var policy : makePolicies(settings, traceReader)) {
       var name = policy.getClass().getSimpleName() + "@" + System.identityHashCode(policy);
-      var actor = PolicyActor.create(getContext().getSelf(), policy);
+      var actor = PolicyActor.create(getContext().getSelf(),
+          policy, intervalReporter.interval(policy.stats()));
       var actorRef = getContext().spawn(actor, name, mailbox);
       getContext().watch(actorRef);
       policies.add(actorRef);
     }
   }
 
+  /** Returns the policies to simulate, which are scaled down if the trace is spatially sampled. */
+  static Set<Policy> makePolicies(BasicSettings settings, TraceReader traceReader) {
+    var registry = new Registry(settings, traceReader.characteristics());
+    var sampling = settings.trace().sampling();
+    if (!sampling.isEnabled()) {
+      return registry.policies();
+    }
+
+    SpatialSampler sampler;
+    if (sampling.isFixedRate()) {
+      sampler = SpatialSampler.fixedRate(sampling.rate());
+    } else if (sampling.isFixedSize()) {
+      try (Stream<AccessEvent> events = events(settings, traceReader)) {
+        sampler = SpatialSampler.fixedSize(
+            events.mapToLong(AccessEvent::key), sampling.maximumKeys());
+      }
+    } else {
+      throw new IllegalArgumentException("Unknown sampling mode");
+    }
+
+    var scaledConfig = settings.config().withValue("maximum-size",
+        ConfigValueFactory.fromAnyRef(sampler.scale(settings.maximumSize())));
+    var scaledRegistry = new Registry(
+        new BasicSettings(scaledConfig), traceReader.characteristics());
+    Map<String, Policy> fullPolicies = sampling.validate()
+        ? registry.policies().stream().collect(toMap(policy -> policy.stats().name(), identity()))
+        : Map.of();
+    return scaledRegistry.policies().stream()
+        .map(policy -> new SpatiallySampledPolicy(policy,
+            fullPolicies.get(policy.stats().name()), sampler))
+        .collect(toSet());
+  }
+
   /** Add the stats to the reporter, print if completed, and stop the simulator. */
   private Behavior<Command> reportStats(PolicyStats stats) throws IOException {
     reporter.add(stats);
 
     if (reporter.stats().size() == policies.size()) {
+      intervalReporter.close();
       reporter.print();
       System.out.println("Executed in " + stopwatch);
       return Behaviors.stopped();
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import com.github.benmanes.caffeine.cache.simulator.parser.TraceReader;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEventBatch;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.Characteristic;
+import com.github.benmanes.caffeine.cache.simulator.policy.PolicyActor;
+import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
+import com.github.benmanes.caffeine.cache.simulator.policy.Registry;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValue;
+import com.typesafe.config.ConfigValueFactory;
+
+/**
+ * A parameter sweep that simulates the configured policies for many combinations of configuration
+ * values, such as the step sizes of a hill climber or the percentages of a sketch. The trace is
+ * decoded once into shared, immutable columnar batches that are replayed to every policy and
+ * combination in parallel, rather than launching a simulation per combination that decodes the
+ * trace again. The results are aggregated into a single report that is ranked by the hit rate.
+ * <p>
+ * The combinations are either every one in the grid of the parameter values or a random sample of
+ * them. The number of concurrent simulations is bounded by the number of processors and by an
+ * estimate of how many caches of the largest maximum size fit into the free memory. See the
+ * <tt>sweep</tt> section of <tt>reference.conf</tt> for details on the configuration, such as
+ * <pre>{@code
+ *   caffeine.simulator.sweep.parameters = [
+ *     { path = maximum-size, values = [ 512, 1024, 2048 ] },
+ *     { path = window-tiny-lfu.percent-main, values = [ [0.99], [0.90], [0.80] ] },
+ *   ]
+ * }</pre>
+ * which is run by {@code ./gradlew :simulator:sweep}.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class Sweep {
+  private final SweepSettings settings;
+
+  public Sweep(SweepSettings settings) {
+    this.settings = settings;
+  }
+
+  /** Simulates every combination and prints the ranked report. */
+  public void run() throws IOException {
+    var stopwatch = Stopwatch.createStarted();
+    TraceReader traceReader = Simulator.makeTraceReader(settings);
+    Set<Characteristic> characteristics = traceReader.characteristics();
+    List<AccessEventBatch> trace = decode(traceReader);
+    List<Combination> combinations = combinations();
+
+    int parallelism = parallelism(combinations);
+    var executor = Executors.newFixedThreadPool(parallelism);
+    try {
+      var results = new ArrayList<Future<List<PolicyStats>>>();
+      for (var combination : combinations) {
+        for (String name : settings.policies()) {
+          results.add(executor.submit(() -> simulate(trace, combination, name, characteristics)));
+        }
+      }
+
+      var reportConfig = settings.config()
+          .withValue("report.sort-by", ConfigValueFactory.fromAnyRef("hit rate"))
+          .withValue("report.ascending", ConfigValueFactory.fromAnyRef(false));
+      var reporter = settings.report().format().create(reportConfig, characteristics);
+      for (var result : results) {
+        result.get().forEach(reporter::add);
+      }
+      reporter.print();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      MoreExecutors.shutdownAndAwaitTermination(executor, Duration.ofMinutes(1));
+    }
+    System.out.printf("Swept %,d combinations using %,d threads in %s%n",
+        combinations.size(), parallelism, stopwatch);
+  }
+
+  /** Returns the trace as batches that are published so that they cannot be modified. */
+  private List<AccessEventBatch> decode(TraceReader traceReader) {
+    long skip = settings.trace().skip();
+    long limit = settings.trace().limit();
+    var pool = new AccessEventBatch.Pool(settings.batchSize(), /* maximumIdle */ 1);
+    var batches = new ArrayList<AccessEventBatch>();
+    try (Stream<AccessEvent> events = traceReader.events().skip(skip).limit(limit)) {
+      var batch = new AccessEventBatch[] { pool.acquire() };
+      events.forEach(event -> {
+        batch[0].add(event);
+        if (batch[0].isFull()) {
+          batch[0].retain(1);
+          batches.add(batch[0]);
+          batch[0] = pool.acquire();
+        }
+      });
+      if (batch[0].size() > 0) {
+        batch[0].retain(1);
+        batches.add(batch[0]);
+      }
+    }
+    return batches;
+  }
+
+  /** Replays the trace to the policy's variations that are configured by the combination. */
+  private static List<PolicyStats> simulate(List<AccessEventBatch> trace,
+      Combination combination, String name, Set<Characteristic> characteristics) {
+    var config = combination.config.withValue("policies",
+        ConfigValueFactory.fromIterable(List.of(name)));
+    var policies = new Registry(new BasicSettings(config), characteristics).policies();
+    for (Policy policy : policies) {
+      for (var batch : trace) {
+        PolicyActor.record(policy, batch);
+      }
+      policy.finished();
+      policy.stats().addMetric("Parameters", () -> combination.label);
+    }
+    return policies.stream().map(Policy::stats).collect(toList());
+  }
+
+  /** Returns the grid of parameter combinations, or a random sample of it. */
+  private List<Combination> combinations() {
+    var paths = new ArrayList<String>();
+    var values = new ArrayList<List<ConfigValue>>();
+    for (var parameter : settings.sweep().parameters()) {
+      paths.add(parameter.getString("path"));
+      values.add(parameter.getList("values"));
+    }
+    List<List<ConfigValue>> grid = Lists.cartesianProduct(values);
+
+    Stream<List<ConfigValue>> selected;
+    if (settings.sweep().isGrid() || (settings.sweep().samples() >= grid.size())) {
+      selected = grid.stream();
+    } else {
+      selected = new Random(settings.randomSeed())
+          .ints(0, grid.size()).distinct()
+          .limit(settings.sweep().samples())
+          .mapToObj(grid::get);
+    }
+    return selected.map(combination -> {
+      Config config = settings.config();
+      for (int i = 0; i < paths.size(); i++) {
+        config = config.withValue(paths.get(i), combination.get(i));
+      }
+      String label = IntStream.range(0, paths.size())
+          .mapToObj(i -> paths.get(i) + "=" + combination.get(i).unwrapped())
+          .collect(joining(", "));
+      return new Combination(config, label);
+    }).collect(toList());
+  }
+
+  /** Returns the number of concurrent simulations that are expected to fit into the free memory. */
+  private int parallelism(List<Combination> combinations) {
+    long maximumSize = combinations.stream()
+        .mapToLong(combination -> combination.config.getLong("maximum-size"))
+        .max().orElse(settings.maximumSize());
+    var runtime = Runtime.getRuntime();
+    long used = runtime.totalMemory() - runtime.freeMemory();
+    long footprint = Math.max(1, maximumSize * settings.sweep().bytesPerEntry());
+    long fits = (runtime.maxMemory() - used) / footprint;
+    return (int) Math.max(1, Math.min(settings.sweep().parallelism(), fits));
+  }
+
+  public static void main(String[] args) throws IOException {
+    Logger.getLogger("").setLevel(Level.WARNING);
+    var config = ConfigFactory.load().getConfig("caffeine.simulator");
+    new Sweep(new SweepSettings(config)).run();
+  }
+
+  private static final class Combination {
+    final Config config;
+    final String label;
+
+    Combination(Config config, String label) {
+      this.config = config;
+      this.label = label;
+    }
+  }
+
+  public static final class SweepSettings extends BasicSettings {
+    public SweepSettings(Config config) {
+      super(config);
+    }
+    public SweepParameters sweep() {
+      return new SweepParameters();
+    }
+
+    public final class SweepParameters {
+      public boolean isGrid() {
+        return config().getString("sweep.search").equals("grid");
+      }
+      public int samples() {
+        int samples = config().getInt("sweep.samples");
+        checkArgument(samples > 0, "sweep.samples must be positive");
+        return samples;
+      }
+      public int parallelism() {
+        return config().getIsNull("sweep.parallelism")
+            ? Runtime.getRuntime().availableProcessors()
+            : config().getInt("sweep.parallelism");
+      }
+      public long bytesPerEntry() {
+        return config().getBytes("sweep.bytes-per-entry");
+      }
+      public List<? extends Config> parameters() {
+        return config().getConfigList("sweep.parameters");
+      }
+    }
+  }
+}
@@ -49,7 +49,7 @@ public final class ClimberResetCountMin4 extends CountMin4 {
   @Override
   protected void ensureCapacity(long maximumSize) {
     super.ensureCapacity(maximumSize);
-    period = (maximumSize == 0) ? 10 : (10 * table.length);
+    period = (maximumSize == 0) ? 10 : (10 * sampleLength);
     if (period <= 0) {
       period = Integer.MAX_VALUE;
     }
@@ -25,7 +25,8 @@ import com.typesafe.config.Config;
 /**
  * A probabilistic multiset for estimating the popularity of an element within a time window. The
  * maximum frequency of an element is limited to 15 (4-bits) and extensions provide the aging
- * process.
+ * process. The counters of an element are either spread across the table or, if blocked, confined
+ * to a single 64-byte block so that an operation incurs at most one cache miss.
  *
  * @author ben.manes@gmail.com (Ben Manes)
  */
@@ -33,9 +34,16 @@ public abstract class CountMin4 implements Frequency {
   static final long[] SEED = { // A mixture of seeds from FNV-1a, CityHash, and Murmur3
       0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
   static final long RESET_MASK = 0x7777777777777777L;
+  static final int BLOCK_LENGTH = 8;
 
   protected final boolean conservative;
+  protected final boolean blocked;
 
+  final int[] indexes;
+  final int[] offsets;
+
+  protected int sampleLength;
+  protected int blockMask;
   protected int tableMask;
   protected long[] table;
   protected int step = 1;
@@ -47,6 +55,9 @@ public abstract class CountMin4 implements Frequency {
   protected CountMin4(Config config) {
     BasicSettings settings = new BasicSettings(config);
     conservative = settings.tinyLfu().conservative();
+    blocked = settings.tinyLfu().countMin4().blocked();
+    indexes = new int[4];
+    offsets = new int[4];
 
     double countersMultiplier = settings.tinyLfu().countMin4().countersMultiplier();
     long counters = (long) (countersMultiplier * settings.maximumSize());
@@ -56,19 +67,29 @@ public abstract class CountMin4 implements Frequency {
   /**
    * Increases the capacity of this <tt>FrequencySketch</tt> instance, if necessary, to ensure that
    * it can accurately estimate the popularity of elements given the maximum size of the cache. This
-   * operation forgets all previous counts when resizing.
+   * operation forgets all previous counts when resizing. The {@link #sampleLength} excludes the
+   * headroom that is given to a blocked table, so that both layouts age over the same period.
    *
    * @param maximumSize the maximum size of the cache
    */
   protected void ensureCapacity(long maximumSize) {
     checkArgument(maximumSize >= 0);
     int maximum = (int) Math.min(maximumSize, Integer.MAX_VALUE >>> 1);
-    if ((table != null) && (table.length >= maximum)) {
+    int length = (maximum == 0) ? 1 : IntMath.ceilingPowerOfTwo(maximum);
+    int tableLength = length;
+    if (blocked) {
+      // Elements that share a block collide more often, so it is given a quarter more counters
+      int counters = Math.min(maximum + (maximum >>> 2), Integer.MAX_VALUE >>> 1);
+      tableLength = Math.max(BLOCK_LENGTH, IntMath.ceilingPowerOfTwo(Math.max(1, counters)));
+    }
+    if ((table != null) && (table.length >= tableLength)) {
       return;
     }
 
-    table = new long[(maximum == 0) ? 1 : IntMath.ceilingPowerOfTwo(maximum)];
+    sampleLength = length;
+    table = new long[tableLength];
     tableMask = Math.max(0, table.length - 1);
+    blockMask = Math.max(0, (table.length >>> 3) - 1);
   }
 
   /**
@@ -79,12 +100,10 @@ public abstract class CountMin4 implements Frequency {
    */
   @Override
   public int frequency(long e) {
-    int hash = spread(Long.hashCode(e));
-    int start = (hash & 3) << 2;
+    locate(e);
     int frequency = Integer.MAX_VALUE;
     for (int i = 0; i < 4; i++) {
-      int index = indexOf(hash, i);
-      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      int count = (int) ((table[indexes[i]] >>> (offsets[i] << 2)) & 0xfL);
       frequency = Math.min(frequency, count);
     }
     return frequency;
@@ -108,34 +127,22 @@ public abstract class CountMin4 implements Frequency {
 
   /** Increments all of the associated counters. */
   void regularIncrement(long e) {
-    int hash = spread(Long.hashCode(e));
-    int start = (hash & 3) << 2;
-
-    // Loop unrolling improves throughput by 5m ops/s
-    int index0 = indexOf(hash, 0);
-    int index1 = indexOf(hash, 1);
-    int index2 = indexOf(hash, 2);
-    int index3 = indexOf(hash, 3);
-
-    boolean added = incrementAt(index0, start, step);
-    added |= incrementAt(index1, start + 1, step);
-    added |= incrementAt(index2, start + 2, step);
-    added |= incrementAt(index3, start + 3, step);
-
+    locate(e);
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexes[i], offsets[i], step);
+    }
     tryReset(added);
   }
 
   /** Increments the associated counters that are at the observed minimum. */
   void conservativeIncrement(long e) {
-    int hash = spread(Long.hashCode(e));
-    int start = (hash & 3) << 2;
+    locate(e);
 
-    int[] index = new int[4];
     int[] count = new int[4];
     int min = Integer.MAX_VALUE;
     for (int i = 0; i < 4; i++) {
-      index[i] = indexOf(hash, i);
-      count[i] = (int) ((table[index[i]] >>> ((start + i) << 2)) & 0xfL);
+      count[i] = (int) ((table[indexes[i]] >>> (offsets[i] << 2)) & 0xfL);
       min = Math.min(min, count[i]);
     }
 
@@ -146,12 +153,32 @@ public abstract class CountMin4 implements Frequency {
 
     for (int i = 0; i < 4; i++) {
       if (count[i] == min) {
-        incrementAt(index[i], start + i, step);
+        incrementAt(indexes[i], offsets[i], step);
       }
     }
     tryReset(true);
   }
 
+  /** Populates the table indexes and counter offsets of the element's four counters. */
+  void locate(long e) {
+    int hash = spread(Long.hashCode(e));
+    if (blocked) {
+      int counterHash = rehash(hash);
+      int block = (hash & blockMask) << 3;
+      for (int i = 0; i < 4; i++) {
+        int h = counterHash >>> (i << 3);
+        indexes[i] = block + (i << 1) + (h & 1);
+        offsets[i] = (h >>> 1) & 15;
+      }
+    } else {
+      int start = (hash & 3) << 2;
+      for (int i = 0; i < 4; i++) {
+        indexes[i] = indexOf(hash, i);
+        offsets[i] = start + i;
+      }
+    }
+  }
+
   /** Performs the aging process after an addition to allow old entries to fade away. */
   protected abstract void tryReset(boolean added);
 
@@ -197,4 +224,14 @@ public abstract class CountMin4 implements Frequency {
     x = ((x >>> 16) ^ x) * 0x45d9f3b;
     return (x >>> 16) ^ x;
   }
+
+  /** Applies Murmur3's finalizer to select the counters within a block independently of it. */
+  static int rehash(int x) {
+    x ^= (x >>> 16);
+    x *= 0x85ebca6b;
+    x ^= (x >>> 13);
+    x *= 0xc2b2ae35;
+    x ^= (x >>> 16);
+    return x;
+  }
 }
@@ -21,6 +21,7 @@ import java.util.function.Function;
 
 import com.github.benmanes.caffeine.cache.simulator.parser.adapt_size.AdaptSizeTraceWriter;
 import com.github.benmanes.caffeine.cache.simulator.parser.cloud_physics.CloudPhysicsTraceWriter;
+import com.github.benmanes.caffeine.cache.simulator.parser.indexed.IndexedTraceWriter;
 import com.github.benmanes.caffeine.cache.simulator.parser.lirs.LirsTraceWriter;
 
 /**
@@ -32,6 +33,7 @@ import com.github.benmanes.caffeine.cache.simulator.parser.lirs.LirsTraceWriter;
 public enum OutputFormat {
   ADAPT_SIZE(AdaptSizeTraceWriter::new),
   CLOUD_PHYSICS(CloudPhysicsTraceWriter::new),
+  INDEXED(IndexedTraceWriter::new),
   LIRS(LirsTraceWriter::new);
 
   private final Function<OutputStream, TraceWriter> factory;
@@ -28,10 +28,12 @@ import com.github.benmanes.caffeine.cache.simulator.parser.address.AddressTraceR
 import com.github.benmanes.caffeine.cache.simulator.parser.address.penalties.AddressPenaltiesTraceReader;
 import com.github.benmanes.caffeine.cache.simulator.parser.arc.ArcTraceReader;
 import com.github.benmanes.caffeine.cache.simulator.parser.cache2k.Cache2kTraceReader;
+import com.github.benmanes.caffeine.cache.simulator.parser.caffeine.CaffeineTraceReader;
 import com.github.benmanes.caffeine.cache.simulator.parser.camelab.CamelabTraceReader;
 import com.github.benmanes.caffeine.cache.simulator.parser.cloud_physics.CloudPhysicsTraceReader;
 import com.github.benmanes.caffeine.cache.simulator.parser.corda.CordaTraceReader;
 import com.github.benmanes.caffeine.cache.simulator.parser.gradle.GradleTraceReader;
+import com.github.benmanes.caffeine.cache.simulator.parser.indexed.IndexedTraceReader;
 import com.github.benmanes.caffeine.cache.simulator.parser.kaggle.OutbrainTraceReader;
 import com.github.benmanes.caffeine.cache.simulator.parser.lirs.LirsTraceReader;
 import com.github.benmanes.caffeine.cache.simulator.parser.lrb.LrbTraceReader;
@@ -65,10 +67,12 @@ public enum TraceFormat {
   ADAPT_SIZE(AdaptSizeTraceReader::new),
   ARC(ArcTraceReader::new),
   CACHE2K(Cache2kTraceReader::new),
+  CAFFEINE(CaffeineTraceReader::new),
   CAMELAB(CamelabTraceReader::new),
   CLOUD_PHYSICS(CloudPhysicsTraceReader::new),
   CORDA(CordaTraceReader::new),
   GRADLE(GradleTraceReader::new),
+  INDEXED(IndexedTraceReader::new),
   LIRS(LirsTraceReader::new),
   LRB(LrbTraceReader::new),
   OUTBRAIN(OutbrainTraceReader::new),
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator.parser.caffeine;
+
+import static com.github.benmanes.caffeine.cache.simulator.policy.Policy.Characteristic.WEIGHTED;
+import static com.github.benmanes.caffeine.cache.tracing.AccessTraceWriter.HIT;
+import static com.github.benmanes.caffeine.cache.tracing.AccessTraceWriter.MAGIC;
+import static com.github.benmanes.caffeine.cache.tracing.AccessTraceWriter.VERSION;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.github.benmanes.caffeine.cache.simulator.parser.BinaryTraceReader;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.Characteristic;
+import com.github.benmanes.caffeine.cache.tracing.AccessTraceWriter;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+/**
+ * A reader for the access traces that are recorded from a live cache by an
+ * {@link AccessTraceWriter}.
+ * <p>
+ * A production hit may be a miss for the simulated policy, so an access is replayed with the entry's
+ * most recently observed load penalty (in nanoseconds) as its miss penalty. If the trace is weighted
+ * then the access is instead replayed with the entry's most recently observed weight, as a miss
+ * that was not loaded does not record one.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class CaffeineTraceReader extends BinaryTraceReader {
+  private final Long2DoubleMap penalties;
+  private final Long2IntMap weights;
+
+  private @Nullable DataInputStream input;
+  private boolean weighted;
+
+  public CaffeineTraceReader(String filePath) {
+    super(filePath);
+    penalties = new Long2DoubleOpenHashMap();
+    weights = new Long2IntOpenHashMap();
+    weights.defaultReturnValue(1);
+  }
+
+  @Override
+  public Set<Characteristic> characteristics() {
+    try (var input = new DataInputStream(readFile())) {
+      return isWeighted(input) ? Set.of(WEIGHTED) : Set.of();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  protected AccessEvent readEvent(DataInputStream input) throws IOException {
+    if (input != this.input) {
+      weighted = isWeighted(input);
+      this.input = input;
+      penalties.clear();
+      weights.clear();
+    }
+
+    long key = input.readLong();
+    int weight = input.readInt();
+    boolean hit = (input.readByte() == HIT);
+    long loadPenalty = input.readLong();
+    if (weighted) {
+      if (weight > 0) {
+        weights.put(key, weight);
+      }
+      return AccessEvent.forKeyAndWeight(key, weights.get(key));
+    }
+    if (!hit && (loadPenalty > 0)) {
+      penalties.put(key, loadPenalty);
+    }
+    return AccessEvent.forKeyAndPenalties(key, /* hitPenalty */ 0, penalties.get(key));
+  }
+
+  /** Reads the header and returns if the trace's weights are significant. */
+  private static boolean isWeighted(DataInputStream input) throws IOException {
+    int magic = input.readInt();
+    if (magic != MAGIC) {
+      throw new IOException(String.format("Invalid magic number: %08x", magic));
+    }
+    int version = input.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported version: " + version);
+    }
+    return (input.readInt() & AccessTraceWriter.WEIGHTED) != 0;
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator.parser.indexed;
+
+import static com.github.benmanes.caffeine.cache.simulator.parser.indexed.IndexedTraceWriter.HEADER_BYTES;
+import static com.github.benmanes.caffeine.cache.simulator.parser.indexed.IndexedTraceWriter.INDEX_ENTRY_BYTES;
+import static com.github.benmanes.caffeine.cache.simulator.parser.indexed.IndexedTraceWriter.MAGIC;
+import static com.github.benmanes.caffeine.cache.simulator.parser.indexed.IndexedTraceWriter.PENALTY_AWARE_FLAG;
+import static com.github.benmanes.caffeine.cache.simulator.parser.indexed.IndexedTraceWriter.RECORD_BYTES;
+import static com.github.benmanes.caffeine.cache.simulator.parser.indexed.IndexedTraceWriter.TRAILER_BYTES;
+import static com.github.benmanes.caffeine.cache.simulator.parser.indexed.IndexedTraceWriter.VERSION;
+import static com.github.benmanes.caffeine.cache.simulator.parser.indexed.IndexedTraceWriter.WEIGHTED_CHARACTERISTIC;
+import static com.github.benmanes.caffeine.cache.simulator.policy.Policy.Characteristic.WEIGHTED;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.util.Objects.requireNonNull;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import com.github.benmanes.caffeine.cache.simulator.parser.TraceReader;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.Characteristic;
+
+/**
+ * A reader for the indexed trace format written by {@link IndexedTraceWriter}. The file is memory
+ * mapped, rather than streamed, and its chunks are decompressed and decoded in parallel on a
+ * {@link ForkJoinPool}. The decoded chunks are delivered in the trace's order, with a bounded
+ * number of chunks being decoded ahead of the consumer.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class IndexedTraceReader implements TraceReader {
+  private final ForkJoinPool pool;
+  private final Path path;
+
+  public IndexedTraceReader(String filePath) {
+    this(filePath, ForkJoinPool.commonPool());
+  }
+
+  public IndexedTraceReader(String filePath, ForkJoinPool pool) {
+    this.path = Paths.get(filePath);
+    this.pool = requireNonNull(pool);
+  }
+
+  @Override
+  public Set<Characteristic> characteristics() {
+    try (var channel = FileChannel.open(path)) {
+      boolean weighted = (readTrailer(channel).characteristics & WEIGHTED_CHARACTERISTIC) != 0;
+      return weighted ? Set.of(WEIGHTED) : Set.of();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("PMD.CloseResource")
+  public Stream<AccessEvent> events() {
+    try {
+      var channel = FileChannel.open(path);
+      try {
+        var chunks = new ChunkIterator(channel, readTrailer(channel));
+        var stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+            chunks, ORDERED | NONNULL), /* parallel */ false);
+        return stream.flatMap(Chunk::events).onClose(chunks::close);
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Returns the trailer after validating the file's header. */
+  private static Trailer readTrailer(FileChannel channel) throws IOException {
+    long size = channel.size();
+    if (size < HEADER_BYTES + TRAILER_BYTES) {
+      throw new IOException("Not an indexed trace file: too small");
+    }
+    var header = channel.map(READ_ONLY, 0, HEADER_BYTES);
+    if ((header.getInt() != MAGIC) || (header.getInt() != VERSION)) {
+      throw new IOException("Not an indexed trace file: unknown header");
+    }
+    var buffer = channel.map(READ_ONLY, size - TRAILER_BYTES, TRAILER_BYTES);
+    var trailer = new Trailer(buffer.getLong(), buffer.getInt(), buffer.getInt());
+    if ((buffer.getInt() != MAGIC) || (trailer.indexOffset < HEADER_BYTES)
+        || (trailer.indexOffset + ((long) trailer.chunks * INDEX_ENTRY_BYTES)
+            != (size - TRAILER_BYTES))) {
+      throw new IOException("Not an indexed trace file: corrupted trailer");
+    }
+    return trailer;
+  }
+
+  /** Decompresses and decodes the records in the chunk. */
+  private static Chunk decode(ByteBuffer compressed, int count) {
+    var inflater = new Inflater();
+    try {
+      var records = ByteBuffer.allocate(count * RECORD_BYTES);
+      inflater.setInput(compressed);
+      while (records.hasRemaining()) {
+        if ((inflater.inflate(records) == 0) && (inflater.finished() || inflater.needsInput())) {
+          throw new ZipException("Truncated chunk");
+        }
+      }
+      records.flip();
+
+      var chunk = new Chunk(count);
+      for (int i = 0; i < count; i++) {
+        chunk.keys[i] = records.getLong();
+        chunk.weights[i] = records.getInt();
+        chunk.hitPenalties[i] = records.getDouble();
+        chunk.missPenalties[i] = records.getDouble();
+        chunk.penaltyAware[i] = (records.get() == PENALTY_AWARE_FLAG);
+      }
+      return chunk;
+    } catch (DataFormatException e) {
+      throw new UncheckedIOException(new ZipException(e.getMessage()));
+    } catch (ZipException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /** An iterator that decodes the chunks in parallel, but returns them in the trace's order. */
+  private final class ChunkIterator implements Iterator<Chunk> {
+    final ArrayDeque<ForkJoinTask<Chunk>> decoding;
+    final FileChannel channel;
+    final ByteBuffer index;
+    final int chunks;
+    final int window;
+
+    int submitted;
+
+    ChunkIterator(FileChannel channel, Trailer trailer) throws IOException {
+      this.index = channel.map(READ_ONLY, trailer.indexOffset,
+          (long) trailer.chunks * INDEX_ENTRY_BYTES);
+      this.window = 2 * pool.getParallelism();
+      this.decoding = new ArrayDeque<>(window);
+      this.channel = channel;
+      this.chunks = trailer.chunks;
+      fill();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !decoding.isEmpty();
+    }
+
+    @Override
+    public Chunk next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      var chunk = decoding.poll().join();
+      fill();
+      return chunk;
+    }
+
+    /** Schedules the next chunks to be decoded until the read-ahead window is full. */
+    void fill() {
+      try {
+        while ((submitted < chunks) && (decoding.size() < window)) {
+          long offset = index.getLong();
+          int length = index.getInt();
+          int count = index.getInt();
+          var compressed = channel.map(READ_ONLY, offset, length);
+          decoding.add(pool.submit(() -> decode(compressed, count)));
+          submitted++;
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /** Waits for the in-flight chunks so that the mappings are not read after closing. */
+    void close() {
+      decoding.forEach(ForkJoinTask::quietlyJoin);
+      decoding.clear();
+      try {
+        channel.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /** The decoded records of a chunk, stored as parallel arrays. */
+  private static final class Chunk {
+    final double[] missPenalties;
+    final double[] hitPenalties;
+    final boolean[] penaltyAware;
+    final int[] weights;
+    final long[] keys;
+
+    Chunk(int count) {
+      this.missPenalties = new double[count];
+      this.hitPenalties = new double[count];
+      this.penaltyAware = new boolean[count];
+      this.weights = new int[count];
+      this.keys = new long[count];
+    }
+
+    Stream<AccessEvent> events() {
+      return IntStream.range(0, keys.length).mapToObj(this::event);
+    }
+
+    AccessEvent event(int index) {
+      if (penaltyAware[index]) {
+        return AccessEvent.forKeyAndPenalties(keys[index],
+            hitPenalties[index], missPenalties[index]);
+      } else if (weights[index] != 1) {
+        return AccessEvent.forKeyAndWeight(keys[index], weights[index]);
+      }
+      return AccessEvent.forKey(keys[index]);
+    }
+  }
+
+  private static final class Trailer {
+    final long indexOffset;
+    final int characteristics;
+    final int chunks;
+
+    Trailer(long indexOffset, int chunks, int characteristics) {
+      this.characteristics = characteristics;
+      this.indexOffset = indexOffset;
+      this.chunks = chunks;
+    }
+  }
+}
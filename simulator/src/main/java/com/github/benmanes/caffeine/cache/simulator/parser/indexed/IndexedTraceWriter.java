@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator.parser.indexed;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+
+import com.github.benmanes.caffeine.cache.simulator.parser.BinaryTraceWriter;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
+
+/**
+ * A writer for an indexed trace format that is optimized for being replayed many times. The events
+ * are stored as fixed-width records that are grouped into independently compressed chunks, and a
+ * block index of the chunks is appended to the end of the file. This allows a reader to memory map
+ * the file and decode the chunks in parallel.
+ * <p>
+ * The layout of the file is
+ * <pre>{@code
+ *   header:  magic (int), version (int)
+ *   chunks:  deflate(record*), where a record is
+ *            key (long), weight (int), hit penalty (double), miss penalty (double), flags (byte)
+ *   index:   [offset (long), compressed length (int), record count (int)] per chunk
+ *   trailer: index offset (long), chunk count (int), characteristics (int), magic (int)
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class IndexedTraceWriter extends BinaryTraceWriter {
+  static final int MAGIC = 0xCAFE7ACE;
+  static final int VERSION = 1;
+
+  static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES;
+  static final int RECORD_BYTES = Long.BYTES + Integer.BYTES + Double.BYTES + Double.BYTES + 1;
+  static final int INDEX_ENTRY_BYTES = Long.BYTES + Integer.BYTES + Integer.BYTES;
+  static final int TRAILER_BYTES = Long.BYTES + Integer.BYTES + Integer.BYTES + Integer.BYTES;
+  static final int RECORDS_PER_CHUNK = 1 << 16;
+
+  static final int WEIGHTED_CHARACTERISTIC = 1;
+  static final byte PENALTY_AWARE_FLAG = 1;
+
+  private final ByteBuffer records;
+  private final Deflater deflater;
+  private final byte[] compressed;
+
+  private ByteBuffer index;
+  private boolean weighted;
+  private long position;
+  private int chunks;
+
+  public IndexedTraceWriter(OutputStream output) {
+    super(output);
+    compressed = new byte[8 * 1024];
+    deflater = new Deflater(Deflater.BEST_SPEED);
+    index = ByteBuffer.allocate(1024 * INDEX_ENTRY_BYTES);
+    records = ByteBuffer.allocate(RECORDS_PER_CHUNK * RECORD_BYTES);
+  }
+
+  @Override
+  public void writeHeader() throws IOException {
+    writer().writeInt(MAGIC);
+    writer().writeInt(VERSION);
+    position += HEADER_BYTES;
+  }
+
+  @Override
+  public void writeEvent(int tick, AccessEvent event) throws IOException {
+    records.putLong(event.key());
+    records.putInt(event.weight());
+    records.putDouble(event.hitPenalty());
+    records.putDouble(event.missPenalty());
+    records.put(event.isPenaltyAware() ? PENALTY_AWARE_FLAG : 0);
+    weighted |= (event.weight() != 1);
+    if (!records.hasRemaining()) {
+      writeChunk();
+    }
+  }
+
+  @Override
+  public void writeFooter() throws IOException {
+    writeChunk();
+    long indexOffset = position;
+    writer().write(index.array(), 0, index.position());
+    writer().writeLong(indexOffset);
+    writer().writeInt(chunks);
+    writer().writeInt(weighted ? WEIGHTED_CHARACTERISTIC : 0);
+    writer().writeInt(MAGIC);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      super.close();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /** Compresses the buffered records as the next chunk and adds it to the block index. */
+  private void writeChunk() throws IOException {
+    int count = records.position() / RECORD_BYTES;
+    if (count == 0) {
+      return;
+    }
+
+    long offset = position;
+    deflater.reset();
+    deflater.setInput(records.array(), 0, records.position());
+    deflater.finish();
+    while (!deflater.finished()) {
+      int length = deflater.deflate(compressed);
+      writer().write(compressed, 0, length);
+      position += length;
+    }
+    records.clear();
+
+    ensureIndexCapacity();
+    index.putLong(offset);
+    index.putInt(Math.toIntExact(position - offset));
+    index.putInt(count);
+    chunks++;
+  }
+
+  /** Grows the block index if it cannot hold another entry. */
+  private void ensureIndexCapacity() {
+    if (index.remaining() < INDEX_ENTRY_BYTES) {
+      var resized = ByteBuffer.allocate(2 * index.capacity());
+      index.flip();
+      resized.put(index);
+      index = resized;
+    }
+  }
+}
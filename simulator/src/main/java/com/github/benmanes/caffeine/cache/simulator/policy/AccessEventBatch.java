@@ -0,0 +1,166 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator.policy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.KeyOnlyPolicy;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.KeyWeightPolicy;
+
+/**
+ * A batch of access events that are stored in parallel primitive arrays, rather than as an
+ * {@link AccessEvent} object per access. A batch is broadcast to every policy and is returned to
+ * its {@link Pool} for reuse once all of them have {@linkplain #release() released} it, so that
+ * replaying a trace does not allocate per event when the policies are {@link KeyOnlyPolicy} or
+ * {@link KeyWeightPolicy} implementations.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class AccessEventBatch {
+  private final AtomicInteger references;
+  private final double[] missPenalties;
+  private final boolean[] penaltyAware;
+  private final double[] hitPenalties;
+  private final int[] weights;
+  private final long[] keys;
+  private final Pool pool;
+
+  private int size;
+
+  private AccessEventBatch(Pool pool, int capacity) {
+    this.penaltyAware = new boolean[capacity];
+    this.missPenalties = new double[capacity];
+    this.hitPenalties = new double[capacity];
+    this.references = new AtomicInteger();
+    this.weights = new int[capacity];
+    this.keys = new long[capacity];
+    this.pool = pool;
+  }
+
+  /** Returns the number of events in the batch. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns if the batch cannot hold any more events. */
+  public boolean isFull() {
+    return (size == keys.length);
+  }
+
+  /** Appends the event's key and metadata to the batch. */
+  public void add(AccessEvent event) {
+    add(event.key(), event.weight(), event.hitPenalty(),
+        event.missPenalty(), event.isPenaltyAware());
+  }
+
+  /** Appends the event's key and metadata to the batch. */
+  public void add(long key, int weight, double hitPenalty,
+      double missPenalty, boolean isPenaltyAware) {
+    checkState(references.get() == 0, "The batch was already published");
+    keys[size] = key;
+    weights[size] = weight;
+    hitPenalties[size] = hitPenalty;
+    missPenalties[size] = missPenalty;
+    penaltyAware[size] = isPenaltyAware;
+    size++;
+  }
+
+  /** Returns the key of the event at the index. */
+  public long key(int index) {
+    return keys[index];
+  }
+
+  /** Returns the weight of the event at the index. */
+  public int weight(int index) {
+    return weights[index];
+  }
+
+  /** Returns the hit penalty of the event at the index. */
+  public double hitPenalty(int index) {
+    return hitPenalties[index];
+  }
+
+  /** Returns the miss penalty of the event at the index. */
+  public double missPenalty(int index) {
+    return missPenalties[index];
+  }
+
+  /** Returns if the event at the index has penalties that should be recorded. */
+  public boolean isPenaltyAware(int index) {
+    return penaltyAware[index];
+  }
+
+  /** Returns a new event object for the entry at the index, for policies that require one. */
+  public AccessEvent event(int index) {
+    if (penaltyAware[index]) {
+      return AccessEvent.forKeyAndPenalties(keys[index],
+          hitPenalties[index], missPenalties[index]);
+    } else if (weights[index] != 1) {
+      return AccessEvent.forKeyAndWeight(keys[index], weights[index]);
+    }
+    return AccessEvent.forKey(keys[index]);
+  }
+
+  /** Publishes the batch to the number of consumers that must release it before it is reused. */
+  public void retain(int consumers) {
+    checkArgument(consumers > 0);
+    checkState(references.compareAndSet(0, consumers), "The batch was already published");
+  }
+
+  /** Releases the consumer's reference, returning the batch to its pool if it was the last. */
+  public void release() {
+    int remaining = references.decrementAndGet();
+    checkState(remaining >= 0, "The batch was released too many times");
+    if (remaining == 0) {
+      size = 0;
+      pool.recycle(this);
+    }
+  }
+
+  /** A bounded pool of batches of a fixed capacity. */
+  public static final class Pool {
+    private final ArrayBlockingQueue<AccessEventBatch> free;
+    private final int batchSize;
+
+    /**
+     * Creates a pool of batches.
+     *
+     * @param batchSize the number of events that a batch holds
+     * @param maximumIdle the maximum number of batches to retain for reuse
+     */
+    public Pool(int batchSize, int maximumIdle) {
+      checkArgument(batchSize > 0);
+      this.free = new ArrayBlockingQueue<>(maximumIdle);
+      this.batchSize = batchSize;
+    }
+
+    /** Returns an empty batch, reusing a released one if available. */
+    public AccessEventBatch acquire() {
+      var batch = free.poll();
+      return (batch == null) ? new AccessEventBatch(this, batchSize) : batch;
+    }
+
+    private void recycle(AccessEventBatch batch) {
+      // Discards the batch if the pool is full
+      free.offer(requireNonNull(batch));
+    }
+  }
+}
@@ -74,4 +74,12 @@ public interface Policy {
     }
     void record(long key);
   }
+
+  /** A policy that does not exploit external event metadata other than the entry's weight. */
+  interface KeyWeightPolicy extends Policy {
+    @Override default void record(AccessEvent event) {
+      record(event.key(), event.weight());
+    }
+    void record(long key, int weight);
+  }
 }
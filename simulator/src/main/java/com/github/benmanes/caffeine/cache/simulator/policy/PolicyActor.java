@@ -17,10 +17,11 @@ package com.github.benmanes.caffeine.cache.simulator.policy;
 
 import static java.util.Objects.requireNonNull;
 
-import java.util.List;
-
 import com.github.benmanes.caffeine.cache.simulator.Simulator;
 import com.github.benmanes.caffeine.cache.simulator.Simulator.Stats;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.KeyOnlyPolicy;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.KeyWeightPolicy;
+import com.github.benmanes.caffeine.cache.simulator.report.IntervalReporter.PolicyInterval;
 
 import akka.actor.typed.ActorRef;
 import akka.actor.typed.Behavior;
@@ -36,17 +37,20 @@ import akka.actor.typed.javadsl.Receive;
  */
 public final class PolicyActor extends AbstractBehavior<PolicyActor.Command> {
   private final ActorRef<Simulator.Command> simulator;
+  private final PolicyInterval interval;
   private final Policy policy;
 
   public PolicyActor(ActorContext<Command> context,
-      ActorRef<Simulator.Command> simulator, Policy policy) {
+      ActorRef<Simulator.Command> simulator, Policy policy, PolicyInterval interval) {
     super(context);
     this.policy = requireNonNull(policy);
+    this.interval = requireNonNull(interval);
     this.simulator = requireNonNull(simulator);
   }
 
-  public static Behavior<Command> create(ActorRef<Simulator.Command> simulator, Policy policy) {
-    return Behaviors.setup(context -> new PolicyActor(context, simulator, policy));
+  public static Behavior<Command> create(ActorRef<Simulator.Command> simulator,
+      Policy policy, PolicyInterval interval) {
+    return Behaviors.setup(context -> new PolicyActor(context, simulator, policy, interval));
   }
 
   @Override
@@ -57,25 +61,56 @@ public final class PolicyActor extends AbstractBehavior<PolicyActor.Command> {
         .build();
   }
 
-  private Behavior<Command> process(List<AccessEvent> events) {
+  private Behavior<Command> process(AccessEventBatch events) {
+    try {
+      record(policy, events);
+      interval.advance(events.size());
+    } finally {
+      events.release();
+    }
+    return this;
+  }
+
+  /**
+   * Records the batch of events into the policy, without allocating if it uses only the key and
+   * weight.
+   */
+  public static void record(Policy policy, AccessEventBatch events) {
     policy.stats().stopwatch().start();
-    for (AccessEvent event : events) {
+    var keyOnlyPolicy = (policy instanceof KeyOnlyPolicy) ? (KeyOnlyPolicy) policy : null;
+    var keyWeightPolicy = (policy instanceof KeyWeightPolicy) ? (KeyWeightPolicy) policy : null;
+    for (int i = 0; i < events.size(); i++) {
       long priorMisses = policy.stats().missCount();
       long priorHits = policy.stats().hitCount();
-      policy.record(event);
+      if (keyOnlyPolicy != null) {
+        keyOnlyPolicy.record(events.key(i));
+      } else if (keyWeightPolicy != null) {
+        keyWeightPolicy.record(events.key(i), events.weight(i));
+      } else {
+        policy.record(events.event(i));
+      }
 
-      if (policy.stats().hitCount() > priorHits) {
-        policy.stats().recordHitPenalty(event.hitPenalty());
-      } else if (policy.stats().missCount() > priorMisses) {
-        policy.stats().recordMissPenalty(event.missPenalty());
+      if (events.isPenaltyAware(i)) {
+        recordPenalty(policy.stats(), events, i, priorHits, priorMisses);
       }
     }
     policy.stats().stopwatch().stop();
-    return this;
+  }
+
+  /** Records the penalty of the event if the policy counted it as a hit or a miss. */
+  private static void recordPenalty(PolicyStats stats, AccessEventBatch events,
+      int index, long priorHits, long priorMisses) {
+    if (stats.hitCount() > priorHits) {
+      stats.recordHitPenalty(events.hitPenalty(index));
+      stats.recordSavedPenalty(events.missPenalty(index) - events.hitPenalty(index));
+    } else if (stats.missCount() > priorMisses) {
+      stats.recordMissPenalty(events.missPenalty(index));
+    }
   }
 
   private Behavior<Command> finish() {
     policy.finished();
+    interval.finish();
     simulator.tell(new Stats(policy.stats()));
     return Behaviors.stopped();
   }
@@ -86,8 +121,8 @@ public final class PolicyActor extends AbstractBehavior<PolicyActor.Command> {
     private Command() {}
   }
   public static final class AccessEvents extends Command {
-    public final List<AccessEvent> events;
-    public AccessEvents(List<AccessEvent> events) {
+    public final AccessEventBatch events;
+    public AccessEvents(AccessEventBatch events) {
       this.events = requireNonNull(events);
     }
   }
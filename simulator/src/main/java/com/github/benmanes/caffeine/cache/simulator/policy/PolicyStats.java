@@ -45,6 +45,7 @@ import net.autobuilder.AutoBuilder;
  */
 public class PolicyStats {
   private final Map<String, Metric> metrics;
+  private final PenaltyHistogram penalties;
   private final Stopwatch stopwatch;
   private final String name;
 
@@ -54,7 +55,9 @@ public class PolicyStats {
   private long missesWeight;
   private double hitPenalty;
   private double missPenalty;
+  private double savedPenalty;
   private long evictionCount;
+  private long evictionsWeight;
   private long admittedCount;
   private long rejectedCount;
   private long operationCount;
@@ -65,6 +68,7 @@ public class PolicyStats {
     this.stopwatch = Stopwatch.createUnstarted();
     this.name = String.format(format, args);
     this.metrics = new LinkedHashMap<>();
+    this.penalties = new PenaltyHistogram();
 
     addMetric(Metric.of("Policy", (Supplier<String>) this::name, OBJECT, true));
     addMetric(Metric.of("Hit Rate", (DoubleSupplier) this::hitRate, PERCENT, true));
@@ -86,9 +90,19 @@ public class PolicyStats {
         .name("Weighted Hit Rate")
         .type(PERCENT)
         .build());
+    addMetric(Metric.builder()
+        .value((LongSupplier) this::evictionsWeight)
+        .addToCharacteristics(WEIGHTED)
+        .name("Evictions Weight")
+        .type(NUMBER)
+        .build());
     addPercentMetric("Adaption", this::percentAdaption);
     addMetric("Average Miss Penalty", this::averageMissPenalty);
     addMetric("Average Penalty", this::avergePenalty);
+    addMetric("Saved Penalty", this::savedPenalty);
+    addMetric("P50 Penalty", () -> penaltyPercentile(50.0));
+    addMetric("P99 Penalty", () -> penaltyPercentile(99.0));
+    addMetric("P99.9 Penalty", () -> penaltyPercentile(99.9));
     addMetric("Steps", this::operationCount);
     addMetric("Time", this::stopwatch);
   }
@@ -159,6 +173,7 @@ public class PolicyStats {
   }
 
   public void recordHitPenalty(double penalty) {
+    penalties.record(penalty);
     hitPenalty += penalty;
   }
 
@@ -188,6 +203,7 @@ public class PolicyStats {
   }
 
   public void recordMissPenalty(double penalty) {
+    penalties.record(penalty);
     missPenalty += penalty;
   }
 
@@ -195,6 +211,16 @@ public class PolicyStats {
     return missPenalty;
   }
 
+  /** Records the latency that a hit saved compared to if it had been a miss. */
+  public void recordSavedPenalty(double penalty) {
+    savedPenalty += penalty;
+  }
+
+  /** Returns the total latency that the hits saved, which estimates the wall time saved. */
+  public double savedPenalty() {
+    return savedPenalty;
+  }
+
   public long evictionCount() {
     return evictionCount;
   }
@@ -207,6 +233,15 @@ public class PolicyStats {
     evictionCount += evictions;
   }
 
+  public void recordWeightedEviction(int weight) {
+    evictionsWeight += weight;
+    recordEviction();
+  }
+
+  public long evictionsWeight() {
+    return evictionsWeight;
+  }
+
   public long requestCount() {
     return hitCount + missCount;
   }
@@ -286,6 +321,11 @@ public class PolicyStats {
     return (missCount == 0) ? 0.0 : missPenalty / missCount;
   }
 
+  /** Returns the estimated penalty that the percentage of the requests are at or below. */
+  public double penaltyPercentile(double percentile) {
+    return penalties.percentile(percentile);
+  }
+
   @Override
   public String toString() {
     return ToStringBuilder.reflectionToString(this, MULTI_LINE_STYLE);
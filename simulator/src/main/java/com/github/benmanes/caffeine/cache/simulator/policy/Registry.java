@@ -51,6 +51,7 @@ import com.github.benmanes.caffeine.cache.simulator.policy.linked.MultiQueuePoli
 import com.github.benmanes.caffeine.cache.simulator.policy.linked.S4LruPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.linked.SegmentedLruPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.opt.ClairvoyantPolicy;
+import com.github.benmanes.caffeine.cache.simulator.policy.opt.MissRatioCurvePolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.opt.UnboundedPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.product.Cache2kPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.product.CaffeinePolicy;
@@ -60,6 +61,7 @@ import com.github.benmanes.caffeine.cache.simulator.policy.product.GuavaPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.product.OhcPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.product.TCachePolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.sampled.SampledPolicy;
+import com.github.benmanes.caffeine.cache.simulator.policy.sketch.CostAwareWindowTinyLfuPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.sketch.WindowTinyLfuPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.sketch.climbing.HillClimberWindowTinyLfuPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.sketch.feedback.FeedbackTinyLfuPolicy;
@@ -153,6 +155,8 @@ public final class Registry {
   private void registerOptimal() {
     register(ClairvoyantPolicy.class, ClairvoyantPolicy::new);
     register(UnboundedPolicy.class, config -> new UnboundedPolicy(config, characteristics));
+    registerMany(MissRatioCurvePolicy.class,
+        config -> MissRatioCurvePolicy.policies(config, characteristics));
   }
 
   private void registerLinked() {
@@ -172,7 +176,7 @@ public final class Registry {
   private void registerSampled() {
     Stream.of(SampledPolicy.EvictionPolicy.values()).forEach(priority -> {
       registerMany(priority.label(), SampledPolicy.class,
-          config -> SampledPolicy.policies(config, priority));
+          config -> SampledPolicy.policies(config, characteristics, priority));
     });
   }
 
@@ -182,7 +186,9 @@ public final class Registry {
   }
 
   private void registerSketch() {
-    registerMany(WindowTinyLfuPolicy.class, WindowTinyLfuPolicy::policies);
+    registerMany(WindowTinyLfuPolicy.class,
+        config -> WindowTinyLfuPolicy.policies(config, characteristics));
+    registerMany(CostAwareWindowTinyLfuPolicy.class, CostAwareWindowTinyLfuPolicy::policies);
     registerMany(S4WindowTinyLfuPolicy.class, S4WindowTinyLfuPolicy::policies);
     registerMany(LruWindowTinyLfuPolicy.class, LruWindowTinyLfuPolicy::policies);
     registerMany(RandomWindowTinyLfuPolicy.class, RandomWindowTinyLfuPolicy::policies);
@@ -209,7 +215,7 @@ public final class Registry {
     register(ClockProPlusPolicy.class, ClockProPlusPolicy::new);
     register(ClockProSimplePolicy.class, ClockProSimplePolicy::new);
 
-    registerMany(DClockPolicy.class, DClockPolicy::policies);
+    registerMany(DClockPolicy.class, config -> DClockPolicy.policies(config, characteristics));
   }
 
   private void registerAdaptive() {
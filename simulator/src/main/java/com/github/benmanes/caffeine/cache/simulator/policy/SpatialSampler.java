@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator.policy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.function.LongPredicate;
+import java.util.stream.LongStream;
+
+import it.unimi.dsi.fastutil.longs.LongComparators;
+import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+/**
+ * A filter that selects the keys whose uniform hash falls below a threshold, as described by
+ * <a href="https://www.usenix.org/system/files/conference/fast15/fast15-paper-waldspurger.pdf">
+ * Efficient MRC Construction with SHARDS</a>. As every access to a sampled key is kept, a cache
+ * whose size is scaled by the sampling rate observes a miniature of the trace's reuse pattern.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class SpatialSampler implements LongPredicate {
+  private static final double MODULUS = 0x1p63;
+
+  private final long threshold;
+
+  private SpatialSampler(long threshold) {
+    this.threshold = threshold;
+  }
+
+  /** Returns a sampler that selects the given fraction of the keys. */
+  public static SpatialSampler fixedRate(double rate) {
+    checkArgument((rate > 0.0) && (rate <= 1.0), "The sampling rate must be in (0, 1]: %s", rate);
+    return new SpatialSampler((long) (rate * MODULUS));
+  }
+
+  /**
+   * Returns a sampler whose rate is lowered until at most the given number of distinct keys are
+   * selected. This retains the keys with the smallest hashes, so the threshold is the largest hash
+   * that was discarded.
+   */
+  public static SpatialSampler fixedSize(LongStream keys, int maximumKeys) {
+    checkArgument(maximumKeys > 0, "The maximum number of sampled keys must be positive");
+    var largest = new LongHeapPriorityQueue(LongComparators.OPPOSITE_COMPARATOR);
+    var sampled = new LongOpenHashSet();
+    long[] threshold = { Long.MAX_VALUE };
+    keys.forEach(key -> {
+      long hash = hash(key);
+      if ((hash < threshold[0]) && sampled.add(hash)) {
+        largest.enqueue(hash);
+        if (largest.size() > maximumKeys) {
+          threshold[0] = largest.dequeueLong();
+          sampled.remove(threshold[0]);
+        }
+      }
+    });
+    return new SpatialSampler(threshold[0]);
+  }
+
+  /** Returns the fraction of the keys that are selected. */
+  public double rate() {
+    return (threshold == Long.MAX_VALUE) ? 1.0 : (threshold / MODULUS);
+  }
+
+  /** Returns the maximum size scaled down by the sampling rate. */
+  public long scale(long maximumSize) {
+    return Math.max(1, Math.round(rate() * maximumSize));
+  }
+
+  /** Returns if the key is in the sample. */
+  @Override
+  public boolean test(long key) {
+    return (threshold == Long.MAX_VALUE) || (hash(key) < threshold);
+  }
+
+  /** Returns a uniform, non-negative hash of the key. */
+  static long hash(long key) {
+    long hash = key;
+    hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+    hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return (hash ^ (hash >>> 33)) >>> 1;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator.policy;
+
+import static java.util.Objects.requireNonNull;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A policy that only records the accesses to the keys selected by a {@link SpatialSampler}, where
+ * the underlying policy's maximum size was scaled down by the sampling rate. The statistics are
+ * those of the sample and, if a full-sized policy is provided for validation, the difference from
+ * its hit rate is reported as the sampling error.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class SpatiallySampledPolicy implements Policy {
+  private final @Nullable Policy fullPolicy;
+  private final SpatialSampler sampler;
+  private final Policy policy;
+
+  /**
+   * Creates a sampled policy.
+   *
+   * @param policy the policy with a maximum size scaled by the sampling rate
+   * @param fullPolicy the policy with the full maximum size that observes every access, or null if
+   *        the sampling error should not be measured
+   * @param sampler the filter that selects the keys in the sample
+   */
+  public SpatiallySampledPolicy(Policy policy,
+      @Nullable Policy fullPolicy, SpatialSampler sampler) {
+    this.sampler = requireNonNull(sampler);
+    this.policy = requireNonNull(policy);
+    this.fullPolicy = fullPolicy;
+
+    policy.stats().addPercentMetric("Sample Rate", sampler::rate);
+    if (fullPolicy != null) {
+      policy.stats().addPercentMetric("Full Hit Rate", fullPolicy.stats()::hitRate);
+      policy.stats().addPercentMetric("Sampling Error", () ->
+          Math.abs(policy.stats().hitRate() - fullPolicy.stats().hitRate()));
+    }
+  }
+
+  @Override
+  public void record(AccessEvent event) {
+    if (fullPolicy != null) {
+      fullPolicy.record(event);
+    }
+    if (sampler.test(event.key())) {
+      policy.record(event);
+    }
+  }
+
+  @Override
+  public void finished() {
+    policy.finished();
+    if (fullPolicy != null) {
+      fullPolicy.finished();
+    }
+  }
+
+  @Override
+  public PolicyStats stats() {
+    return policy.stats();
+  }
+
+  @Override
+  public String name() {
+    return policy.name();
+  }
+}
@@ -15,14 +15,17 @@
  */
 package com.github.benmanes.caffeine.cache.simulator.policy.adaptive;
 
+import static com.github.benmanes.caffeine.cache.simulator.policy.Policy.Characteristic.WEIGHTED;
 import static com.google.common.base.Preconditions.checkState;
 
+import java.util.Set;
+
 import com.github.benmanes.caffeine.cache.simulator.BasicSettings;
-import com.github.benmanes.caffeine.cache.simulator.policy.Policy.KeyOnlyPolicy;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.KeyWeightPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.Policy.PolicySpec;
 import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
 import com.google.common.base.MoreObjects;
-import com.google.common.primitives.Ints;
 import com.typesafe.config.Config;
 
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
@@ -40,13 +43,18 @@ import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
  * <a href="https://www.usenix.org/event/fast03/tech/full_papers/megiddo/megiddo.pdf">ARC: A
  * Self-Tuning, Low Overhead Replacement Cache</a>.
  * <p>
+ * If the trace is weighted then the sizes of the queues and the target size of T1 are the total
+ * weight of their entries, similar to the byte-based variant used by ZFS. The target is adapted in
+ * proportion to the weight of the ghost entry that was hit and REPLACE is repeated until the entry
+ * fits, which reduces to the original algorithm when every entry has a unit weight.
+ * <p>
  * This algorithm is patented by IBM (6996676, 7096321, 7058766, 8612689) and Sun (7469320), making
  * its use in applications ambiguous due to Sun's ZFS providing an implementation under the CDDL.
  *
  * @author ben.manes@gmail.com (Ben Manes)
  */
-@PolicySpec(name = "adaptive.Arc")
-public final class ArcPolicy implements KeyOnlyPolicy {
+@PolicySpec(name = "adaptive.Arc", characteristics = WEIGHTED)
+public final class ArcPolicy implements KeyWeightPolicy {
   // In Cache:
   // - T1: Pages that have been accessed at least once
   // - T2: Pages that have been accessed at least twice
@@ -59,24 +67,26 @@ public final class ArcPolicy implements KeyOnlyPolicy {
 
   private final Long2ObjectMap<Node> data;
   private final PolicyStats policyStats;
-  private final int maximumSize;
+  private final long maximumSize;
+  private final boolean weighted;
 
   private final Node headT1;
   private final Node headT2;
   private final Node headB1;
   private final Node headB2;
 
-  private int sizeT1;
-  private int sizeT2;
-  private int sizeB1;
-  private int sizeB2;
-  private int p;
+  private long sizeT1;
+  private long sizeT2;
+  private long sizeB1;
+  private long sizeB2;
+  private long p;
 
-  public ArcPolicy(Config config) {
+  public ArcPolicy(Config config, Set<Characteristic> characteristics) {
     BasicSettings settings = new BasicSettings(config);
-    this.maximumSize = Ints.checkedCast(settings.maximumSize());
+    this.weighted = characteristics.contains(WEIGHTED);
     this.policyStats = new PolicyStats(name());
     this.data = new Long2ObjectOpenHashMap<>();
+    this.maximumSize = settings.maximumSize();
     this.headT1 = new Node();
     this.headT2 = new Node();
     this.headB1 = new Node();
@@ -84,66 +94,77 @@ public final class ArcPolicy implements KeyOnlyPolicy {
   }
 
   @Override
-  public void record(long key) {
+  public void record(long key, int eventWeight) {
+    int weight = weighted ? eventWeight : 1;
     policyStats.recordOperation();
     Node node = data.get(key);
     if (node == null) {
-      onMiss(key);
+      onMiss(key, weight);
+    } else if (weight > maximumSize) {
+      onOversized(node, weight);
     } else if (node.type == QueueType.B1) {
-      onHitB1(node);
+      onHitB1(node, weight);
     } else if (node.type == QueueType.B2) {
-      onHitB2(node);
+      onHitB2(node, weight);
     } else {
-      onHit(node);
+      onHit(node, weight);
     }
   }
 
-  private void onHit(Node node) {
+  private void onHit(Node node, int weight) {
     // x ∈ T1 ∪ T2 (a hit in ARC(c) and DBL(2c)): Move x to the top of T2
 
     if (node.type == QueueType.T1) {
-      sizeT1--;
-      sizeT2++;
+      sizeT1 -= node.weight;
+    } else {
+      sizeT2 -= node.weight;
     }
+    sizeT2 += weight;
+    node.weight = weight;
     node.remove();
     node.type = QueueType.T2;
     node.appendToTail(headT2);
-    policyStats.recordHit();
+    while ((sizeT1 + sizeT2) > maximumSize) {
+      replace(node);
+    }
+    policyStats.recordWeightedHit(weight);
   }
 
-  private void onHitB1(Node node) {
+  private void onHitB1(Node node, int weight) {
     // x ∈ B1 (a miss in ARC(c), a hit in DBL(2c)):
     // Adapt p = min{ c, p + max{ |B2| / |B1|, 1} }. REPLACE(p).
     // Move x to the top of T2 and place it in the cache.
 
-    p = Math.min(maximumSize, p + Math.max(sizeB2 / sizeB1, 1));
-    evict(node);
+    p = Math.min(maximumSize, p + weight * Math.max(sizeB2 / sizeB1, 1));
+    evict(node, weight);
 
-    sizeT2++;
-    sizeB1--;
+    sizeT2 += weight;
+    sizeB1 -= node.weight;
+    node.weight = weight;
     node.remove();
     node.type = QueueType.T2;
     node.appendToTail(headT2);
-    policyStats.recordMiss();
+    policyStats.recordWeightedMiss(weight);
   }
 
-  private void onHitB2(Node node) {
+  private void onHitB2(Node node, int weight) {
     // x ∈ B2 (a miss in ARC(c), a hit in DBL(2c)):
     // Adapt p = max{ 0, p – max{ |B1| / |B2|, 1} } . REPLACE(p).
     // Move x to the top of T2 and place it in the cache.
 
-    p = Math.max(0, p - Math.max(sizeB1 / sizeB2, 1));
-    evict(node);
+    p = Math.max(0, p - weight * Math.max(sizeB1 / sizeB2, 1));
+    evict(node, weight);
 
-    sizeT2++;
-    sizeB2--;
+    sizeT2 += weight;
+    sizeB2 -= node.weight;
+    node.weight = weight;
     node.remove();
     node.type = QueueType.T2;
     node.appendToTail(headT2);
-    policyStats.recordMiss();
+    policyStats.recordWeightedMiss(weight);
   }
 
-  private void onMiss(long key) {
+  private void onMiss(long key, int weight) {
     // x ∈ L1 ∪ L2 (a miss in DBL(2c) and ARC(c)):
     // case (i) |L1| = c:
     //   If |T1| < c then delete the LRU page of B1 and REPLACE(p).
@@ -153,64 +174,100 @@ public final class ArcPolicy implements KeyOnlyPolicy {
     //   REPLACE(p) .
     // Put x at the top of T1 and place it in the cache.
 
-    Node node = new Node(key);
-    node.type = QueueType.T1;
+    policyStats.recordWeightedMiss(weight);
+    if (weight > maximumSize) {
+      return;
+    }
 
-    int sizeL1 = (sizeT1 + sizeB1);
-    int sizeL2 = (sizeT2 + sizeB2);
-    if (sizeL1 == maximumSize) {
-      if (sizeT1 < maximumSize) {
-        Node victim = headB1.next;
-        data.remove(victim.key);
-        victim.remove();
-        sizeB1--;
+    Node node = new Node(key, weight);
+    node.type = QueueType.T1;
 
-        evict(node);
+    if ((sizeT1 + sizeB1 + weight) > maximumSize) {
+      if (headB1.next != headB1) {
+        while (((sizeT1 + sizeB1 + weight) > maximumSize) && (headB1.next != headB1)) {
+          Node victim = headB1.next;
+          data.remove(victim.key);
+          victim.remove();
+          sizeB1 -= victim.weight;
+        }
+        evict(node, weight);
       } else {
-        Node victim = headT1.next;
-        data.remove(victim.key);
-        victim.remove();
-        sizeT1--;
+        while ((sizeT1 + weight) > maximumSize) {
+          Node victim = headT1.next;
+          data.remove(victim.key);
+          victim.remove();
+          sizeT1 -= victim.weight;
+        }
+        while ((sizeT1 + sizeT2 + weight) > maximumSize) {
+          replace(node);
+        }
       }
-    } else if ((sizeL1 < maximumSize) && ((sizeL1 + sizeL2) >= maximumSize)) {
-      if ((sizeL1 + sizeL2) >= (2 * maximumSize)) {
+    } else if ((sizeT1 + sizeB1 + sizeT2 + sizeB2 + weight) > maximumSize) {
+      while (((sizeT1 + sizeB1 + sizeT2 + sizeB2 + weight) > (2 * maximumSize))
+          && (headB2.next != headB2)) {
         Node victim = headB2.next;
         data.remove(victim.key);
         victim.remove();
-        sizeB2--;
+        sizeB2 -= victim.weight;
       }
-      evict(node);
+      evict(node, weight);
     }
 
-    sizeT1++;
+    sizeT1 += weight;
     data.put(key, node);
     node.appendToTail(headT1);
+  }
 
-    policyStats.recordMiss();
+  /** Removes the entry as it is too large to be retained. */
+  private void onOversized(Node node, int weight) {
+    if (node.type == QueueType.T1) {
+      sizeT1 -= node.weight;
+      policyStats.recordWeightedEviction(node.weight);
+    } else if (node.type == QueueType.T2) {
+      sizeT2 -= node.weight;
+      policyStats.recordWeightedEviction(node.weight);
+    } else if (node.type == QueueType.B1) {
+      sizeB1 -= node.weight;
+    } else {
+      sizeB2 -= node.weight;
+    }
+    policyStats.recordWeightedMiss(weight);
+    data.remove(node.key);
+    node.remove();
   }
 
-  /** Evicts while the map exceeds the maximum capacity. */
-  private void evict(Node candidate) {
+  /** Performs REPLACE(p) until the cache has room for the entry's weight. */
+  private void evict(Node candidate, int weight) {
+    do {
+      replace(candidate);
+    } while ((sizeT1 + sizeT2 + weight) > maximumSize);
+  }
+
+  /** Moves an entry from the cache into a ghost queue, if any are resident. */
+  private void replace(Node candidate) {
     // if (|T1| ≥ 1) and ((x ∈ B2 and |T1| = p) or (|T1| > p))
     //   then move the LRU page of T1 to the top of B1 and remove it from the cache.
     // else move the LRU page in T2 to the top of B2 and remove it from the cache.
 
-    if ((sizeT1 >= 1) && (((candidate.type == QueueType.B2) && (sizeT1 == p)) || (sizeT1 > p))) {
+    boolean emptyT2 = (headT2.next == headT2) || (headT2.next == candidate);
+    if ((headT1.next != headT1) && (emptyT2
+        || ((candidate.type == QueueType.B2) && (sizeT1 == p)) || (sizeT1 > p))) {
       Node victim = headT1.next;
       victim.remove();
       victim.type = QueueType.B1;
       victim.appendToTail(headB1);
-      sizeT1--;
-      sizeB1++;
-    } else {
+      sizeT1 -= victim.weight;
+      sizeB1 += victim.weight;
+      policyStats.recordWeightedEviction(victim.weight);
+    } else if (!emptyT2) {
       Node victim = headT2.next;
       victim.remove();
       victim.type = QueueType.B2;
       victim.appendToTail(headB2);
-      sizeT2--;
-      sizeB2++;
+      sizeT2 -= victim.weight;
+      sizeB2 += victim.weight;
+      policyStats.recordWeightedEviction(victim.weight);
     }
-    policyStats.recordEviction();
   }
 
   @Override
@@ -222,12 +279,19 @@ public final class ArcPolicy implements KeyOnlyPolicy {
   public void finished() {
     policyStats.setPercentAdaption((sizeT1 / (double) maximumSize) - 0.5);
 
-    checkState(sizeT1 == data.values().stream().filter(node -> node.type == QueueType.T1).count());
-    checkState(sizeT2 == data.values().stream().filter(node -> node.type == QueueType.T2).count());
-    checkState(sizeB1 == data.values().stream().filter(node -> node.type == QueueType.B1).count());
-    checkState(sizeB2 == data.values().stream().filter(node -> node.type == QueueType.B2).count());
+    checkState(sizeT1 == sizeOf(QueueType.T1));
+    checkState(sizeT2 == sizeOf(QueueType.T2));
+    checkState(sizeB1 == sizeOf(QueueType.B1));
+    checkState(sizeB2 == sizeOf(QueueType.B2));
     checkState((sizeT1 + sizeT2) <= maximumSize);
-    checkState((sizeB1 + sizeB2) <= maximumSize);
+    if (!weighted) {
+      checkState((sizeB1 + sizeB2) <= maximumSize);
+    }
+  }
+
+  private long sizeOf(QueueType type) {
+    return data.values().stream().filter(node -> node.type == type)
+        .mapToLong(node -> node.weight).sum();
   }
 
   private enum QueueType {
@@ -241,6 +305,7 @@ public final class ArcPolicy implements KeyOnlyPolicy {
     Node prev;
     Node next;
     QueueType type;
+    int weight;
 
     Node() {
       this.key = Long.MIN_VALUE;
@@ -248,7 +313,8 @@ public final class ArcPolicy implements KeyOnlyPolicy {
       this.next = this;
     }
 
-    Node(long key) {
+    Node(long key, int weight) {
+      this.weight = weight;
       this.key = key;
     }
 
@@ -274,6 +340,7 @@ public final class ArcPolicy implements KeyOnlyPolicy {
     public String toString() {
       return MoreObjects.toStringHelper(this)
           .add("key", key)
+          .add("weight", weight)
           .add("type", type)
           .toString();
     }
@@ -123,7 +123,7 @@ public final class CampPolicy implements Policy {
 
   private void onMiss(AccessEvent event) {
     if (event.weight() > maximumSize) {
-      policyStats.recordEviction();
+      policyStats.recordWeightedEviction(event.weight());
       return;
     }
 
@@ -164,7 +164,7 @@ public final class CampPolicy implements Policy {
       sentinelMapping.remove(sentinel.cost);
       priorityQueue.remove(sentinel);
     }
-    policyStats.recordEviction();
+    policyStats.recordWeightedEviction(victim.weight);
   }
 
   @Override
@@ -96,7 +96,7 @@ public final class GDWheelPolicy implements Policy {
       if (hand >= 0) {
         // Evict q at the tail of the C[1]th queue in level 1 Cost Wheel
         var victim = wheel[0][hand].prev;
-        policyStats.recordEviction();
+        policyStats.recordWeightedEviction(victim.weight);
         remove(victim);
       } else {
         // if C[1] has advanced a whole round back to 1, call migration(2)
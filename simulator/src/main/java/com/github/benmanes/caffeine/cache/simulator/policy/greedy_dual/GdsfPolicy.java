@@ -165,7 +165,7 @@ public final class GdsfPolicy implements Policy {
   }
 
   private void remove(Node node) {
-    policyStats.recordEviction();
+    policyStats.recordWeightedEviction(node.weight);
     priorityQueue.remove(node);
     data.remove(node.key);
     size -= node.weight;
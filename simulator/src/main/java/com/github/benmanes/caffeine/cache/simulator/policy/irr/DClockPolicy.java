@@ -15,6 +15,7 @@
  */
 package com.github.benmanes.caffeine.cache.simulator.policy.irr;
 
+import static com.github.benmanes.caffeine.cache.simulator.policy.Policy.Characteristic.WEIGHTED;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.stream.Collectors.toSet;
@@ -24,11 +25,10 @@ import java.util.Set;
 
 import com.github.benmanes.caffeine.cache.simulator.BasicSettings;
 import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
-import com.github.benmanes.caffeine.cache.simulator.policy.Policy.KeyOnlyPolicy;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.KeyWeightPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.Policy.PolicySpec;
 import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
 import com.google.common.base.MoreObjects;
-import com.google.common.primitives.Ints;
 import com.typesafe.config.Config;
 
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
@@ -48,29 +48,36 @@ import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
  * linux/mm/workingset.c</a>. The target size of the active and inactive list is calculated in
  * <a href="https://github.com/torvalds/linux/blob/1590a2e1c681b0991bd42c992cabfd380e0338f2/mm/vmscan.c#L2176-L2204">
  * linux/mm/vmscan.c</a>.
+ * <p>
+ * If the trace is weighted then the list sizes, the refault distance, and the limit on the shadow
+ * entries are measured by the total weight of the entries rather than by their count.
  *
  * @author ben.manes@gmail.com (Ben Manes)
  */
-@PolicySpec(name = "irr.DClock")
-public final class DClockPolicy implements KeyOnlyPolicy {
+@PolicySpec(name = "irr.DClock", characteristics = WEIGHTED)
+public final class DClockPolicy implements KeyWeightPolicy {
   final Long2ObjectMap<Node> data;
   final PolicyStats policyStats;
   final Node headNonResident;
   final Node headInactive;
   final Node headActive;
-  final int maximumSize;
-  final int maxActive;
+  final long maximumSize;
+  final boolean weighted;
+  final long maxActive;
 
-  int inactiveSize;
-  int activeSize;
+  long nonResidentSize;
+  long inactiveSize;
+  long activeSize;
 
   long activations;
   long evictions;
 
-  public DClockPolicy(DClockSettings settings, double percentActive) {
+  public DClockPolicy(DClockSettings settings,
+      Set<Characteristic> characteristics, double percentActive) {
     this.policyStats = new PolicyStats(name() + " (active: %d%%)", (int) (100 * percentActive));
-    this.maximumSize = Ints.checkedCast(settings.maximumSize());
-    this.maxActive = (int) (percentActive * maximumSize);
+    this.weighted = characteristics.contains(WEIGHTED);
+    this.maxActive = (long) (percentActive * settings.maximumSize());
+    this.maximumSize = settings.maximumSize();
     this.data = new Long2ObjectOpenHashMap<>();
     this.headNonResident = new Node();
     this.headInactive = new Node();
@@ -80,110 +87,134 @@ public final class DClockPolicy implements KeyOnlyPolicy {
   }
 
   /** Returns all variations of this policy based on the configuration parameters. */
-  public static Set<Policy> policies(Config config) {
+  public static Set<Policy> policies(Config config, Set<Characteristic> characteristics) {
     DClockSettings settings = new DClockSettings(config);
     return settings.percentActive().stream()
-        .map(percentActive -> new DClockPolicy(settings, percentActive))
+        .map(percentActive -> new DClockPolicy(settings, characteristics, percentActive))
         .collect(toSet());
   }
 
   @Override
-  public void record(long key) {
+  public void record(long key, int eventWeight) {
+    int weight = weighted ? eventWeight : 1;
     policyStats.recordOperation();
     Node node = data.get(key);
     if (node == null) {
-      onMiss(key);
+      onMiss(key, weight);
     } else if (node.status == Status.NON_RESIDENT) {
-      onNonResidentHit(node);
+      onNonResidentHit(node, weight);
     } else if (node.status == Status.INACTIVE) {
-      onInactiveHit(node);
+      onInactiveHit(node, weight);
     } else if (node.status == Status.ACTIVE) {
-      onActiveHit(node);
+      onActiveHit(node, weight);
     } else {
       throw new IllegalStateException();
     }
   }
 
-  private void onMiss(long key) {
+  private void onMiss(long key, int weight) {
     // When a page is accessed for the first time, it is added to the head of the inactive list,
     // slides every existing inactive page towards the tail by one slot, and pushes the current
     // tail page out of memory.
-    Node node = new Node(key, Status.INACTIVE);
+    policyStats.recordWeightedMiss(weight);
+    if (weight > maximumSize) {
+      return;
+    }
+    Node node = new Node(key, weight, Status.INACTIVE);
     node.appendToHead(headInactive);
-    policyStats.recordMiss();
     data.put(key, node);
-    inactiveSize++;
+    inactiveSize += weight;
     evict();
   }
 
-  private void onInactiveHit(Node node) {
+  private void onInactiveHit(Node node, int weight) {
     // When a page is accessed for the second time, it is promoted to the active list, shrinking the
     // inactive list by one slot.  This also slides all inactive pages that were faulted into the
     // cache more recently than the activated page towards the tail of the inactive list.
-    policyStats.recordHit();
-    activate(node);
+    policyStats.recordWeightedHit(weight);
+    activate(node, weight);
+    evict();
   }
 
-  private void activate(Node node) {
-    activeSize++;
-    if (activeSize > maxActive) {
+  private void activate(Node node, int weight) {
+    activeSize += weight;
+    while ((activeSize > maxActive) && (headActive.next != headActive)) {
       Node demote = headActive.next;
-      inactiveSize++;
+      inactiveSize += demote.weight;
       demote.remove();
       demote.status = Status.INACTIVE;
       demote.appendToHead(headInactive);
-      activeSize--;
+      activeSize -= demote.weight;
     }
 
     if (node.status == Status.INACTIVE) {
-      inactiveSize--;
+      inactiveSize -= node.weight;
     } else {
       checkState(node.status == Status.NON_RESIDENT);
+      nonResidentSize -= node.weight;
     }
     node.remove();
+    node.weight = weight;
     node.status = Status.ACTIVE;
     node.appendToHead(headActive);
 
-    activations++;
+    activations += weight;
   }
 
-  private void onActiveHit(Node node) {
+  private void onActiveHit(Node node, int weight) {
+    activeSize += (weight - node.weight);
+    node.weight = weight;
+
     node.moveToHead(headActive);
-    policyStats.recordHit();
+    policyStats.recordWeightedHit(weight);
+    evict();
   }
 
-  private void onNonResidentHit(Node node) {
+  private void onNonResidentHit(Node node, int weight) {
     // So when a refault distance of (R - E) is observed and there are at least (R - E) active
     // pages, the refaulting page is activated optimistically in the hope that (R - E) active pages
     // are actually used less frequently than the refaulting page - or even not used at all anymore.
+    policyStats.recordWeightedMiss(weight);
+    if (weight > maximumSize) {
+      nonResidentSize -= node.weight;
+      data.remove(node.key);
+      node.remove();
+      return;
+    }
+
     if (refaultDistance(node) <= activeSize) {
-      activate(node);
+      activate(node, weight);
     } else {
       node.remove();
-      inactiveSize++;
+      inactiveSize += weight;
+      nonResidentSize -= node.weight;
+      node.weight = weight;
       node.status = Status.INACTIVE;
       node.moveToHead(headInactive);
     }
-
-    policyStats.recordMiss();
     evict();
   }
 
   private void evict() {
     // When a page is finally evicted from memory, the number of inactive pages accessed while the
     // page was in cache is at least the number of page slots on the inactive list.
-    int residentSize = (inactiveSize + activeSize);
-
-    if (residentSize > maximumSize) {
-      Node victim = headInactive.prev;
-      policyStats.recordEviction();
+    while ((inactiveSize + activeSize) > maximumSize) {
+      Node victim;
+      if (headInactive.prev == headInactive) {
+        victim = headActive.prev;
+        activeSize -= victim.weight;
+      } else {
+        victim = headInactive.prev;
+        inactiveSize -= victim.weight;
+      }
+      policyStats.recordWeightedEviction(victim.weight);
 
-      evictions++;
-      inactiveSize--;
+      evictions += victim.weight;
       victim.remove();
       victim.status = Status.NON_RESIDENT;
       victim.appendToHead(headNonResident);
       victim.nonResidentAge = currentNonResidentAge();
+      nonResidentSize += victim.weight;
     }
     prune();
   }
@@ -192,9 +223,9 @@ public final class DClockPolicy implements KeyOnlyPolicy {
     // Approximate a reasonable limit for the nodes containing shadow entries. We don't need to keep
     // more shadow entries than possible pages on the active list, since refault distances bigger
     // than that are dismissed.
-    int nonResidentSize = data.size() - maximumSize;
-    if (nonResidentSize > maxActive) {
+    while (nonResidentSize > maxActive) {
       Node node = headNonResident.prev;
+      nonResidentSize -= node.weight;
       data.remove(node.key);
       node.remove();
     }
@@ -221,26 +252,29 @@ public final class DClockPolicy implements KeyOnlyPolicy {
 
   @Override
   public void finished() {
-    int active = (int) data.values().stream()
-        .filter(node -> node.status == Status.ACTIVE)
-        .count();
-    int inactive = (int) data.values().stream()
-        .filter(node -> node.status == Status.INACTIVE)
-        .count();
-    int nonResident = (int) data.values().stream()
-        .filter(node -> node.status == Status.NON_RESIDENT)
-        .count();
+    long active = sizeOf(Status.ACTIVE);
+    long inactive = sizeOf(Status.INACTIVE);
+    long nonResident = sizeOf(Status.NON_RESIDENT);
 
     checkState(active == activeSize,
         "Active: expected %s but was %s", activeSize, active);
     checkState(inactive == inactiveSize,
         "Inactive: expected %s but was %s", inactiveSize, inactive);
+    checkState(nonResident == nonResidentSize,
+        "NonResident: expected %s but was %s", nonResidentSize, nonResident);
     checkState(nonResident <= maxActive,
         "NonResident: expected %s less than %s", nonResident, maxActive);
     checkState(data.size() <= (maximumSize + maxActive));
     checkState((inactive + active) <= maximumSize);
   }
 
+  private long sizeOf(Status status) {
+    return data.values().stream()
+        .filter(node -> node.status == status)
+        .mapToLong(node -> node.weight)
+        .sum();
+  }
+
   enum Status {
     ACTIVE,
     INACTIVE,
@@ -254,14 +288,16 @@ public final class DClockPolicy implements KeyOnlyPolicy {
     Status status;
     Node prev;
     Node next;
+    int weight;
 
     public Node() {
       this.key = Integer.MIN_VALUE;
       prev = next = this;
     }
 
-    public Node(long key, Status status) {
+    public Node(long key, int weight, Status status) {
       this.status = status;
+      this.weight = weight;
       this.key = key;
     }
 
@@ -302,6 +338,7 @@ public final class DClockPolicy implements KeyOnlyPolicy {
     public String toString() {
       return MoreObjects.toStringHelper(this)
           .add("key", key)
+          .add("weight", weight)
           .add("status", status)
           .toString();
     }
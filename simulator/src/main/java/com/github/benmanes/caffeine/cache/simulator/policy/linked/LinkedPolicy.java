@@ -131,7 +131,7 @@ public final class LinkedPolicy implements Policy {
   }
 
   private void evictEntry(Node node) {
-    policyStats.recordEviction();
+    policyStats.recordWeightedEviction(node.weight);
     currentSize -= node.weight;
     data.remove(node.key);
     node.remove();
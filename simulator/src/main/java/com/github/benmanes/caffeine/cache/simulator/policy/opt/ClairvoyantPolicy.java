@@ -92,7 +92,7 @@ public final class ClairvoyantPolicy implements Policy {
   }
 
   /** Performs the cache operations for the given key. */
-  private void process(long key, double hitPenalty, double missPenalty) {
+  private void process(long key, boolean penaltyAware, double hitPenalty, double missPenalty) {
     IntPriorityQueue times = accessTimes.get(key);
 
     int lastAccess = times.dequeueInt();
@@ -106,10 +106,15 @@ public final class ClairvoyantPolicy implements Policy {
     }
     if (found) {
       policyStats.recordHit();
-      policyStats.recordHitPenalty(hitPenalty);
+      if (penaltyAware) {
+        policyStats.recordHitPenalty(hitPenalty);
+        policyStats.recordSavedPenalty(missPenalty - hitPenalty);
+      }
     } else {
       policyStats.recordMiss();
-      policyStats.recordMissPenalty(missPenalty);
+      if (penaltyAware) {
+        policyStats.recordMissPenalty(missPenalty);
+      }
       if (data.size() > maximumSize) {
         evict();
       }
@@ -139,7 +144,7 @@ public final class ClairvoyantPolicy implements Policy {
     }
     @Override public void process() {
       while (!future.isEmpty()) {
-        ClairvoyantPolicy.this.process(future.dequeueLong(), 0.0, 0.0);
+        ClairvoyantPolicy.this.process(future.dequeueLong(), /* penaltyAware */ false, 0.0, 0.0);
       }
     }
   }
@@ -156,7 +161,8 @@ public final class ClairvoyantPolicy implements Policy {
     @Override public void process() {
       while (!future.isEmpty()) {
         AccessEvent event = future.poll();
-        ClairvoyantPolicy.this.process(event.key(), event.hitPenalty(), event.missPenalty());
+        ClairvoyantPolicy.this.process(event.key(), event.isPenaltyAware(),
+            event.hitPenalty(), event.missPenalty());
       }
     }
   }
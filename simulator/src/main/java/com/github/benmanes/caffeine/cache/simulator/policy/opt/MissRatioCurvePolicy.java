@@ -0,0 +1,324 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator.policy.opt;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Locale.US;
+
+import java.text.NumberFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import com.github.benmanes.caffeine.cache.simulator.BasicSettings;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.PolicySpec;
+import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
+import com.github.benmanes.caffeine.cache.simulator.policy.Registry;
+import com.github.benmanes.caffeine.cache.simulator.policy.SpatialSampler;
+import com.google.common.collect.ImmutableSet;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigValueFactory;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+/**
+ * An analysis that computes the hit rate curve of a policy across many cache sizes in a single pass
+ * over the trace, rather than simulating it once per maximum size. The hit rate at each size is
+ * reported as a column named by that size, so that the csv report can be charted by
+ * {@code PlotCsv}, and the policy's total hit rate is for the configured maximum size.
+ * <p>
+ * The LRU curve is exact and uses Mattson's stack algorithm, where an access hits in every cache
+ * whose size is at least the number of distinct keys referenced since the key's previous access.
+ * That stack distance is computed in logarithmic time by a Fenwick tree over the access times.
+ * <p>
+ * The curves of other policies, such as W-TinyLFU, are approximated by miniature simulations as
+ * described in
+ * <a href="https://www.usenix.org/system/files/conference/atc17/atc17-waldspurger.pdf">Cache
+ * Modeling and Optimization using Miniature Simulations</a>. Each size is simulated by a
+ * scaled-down cache that only observes the keys that were chosen by spatial hash sampling (SHARDS).
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@PolicySpec(name = "opt.MissRatioCurve")
+public final class MissRatioCurvePolicy implements Policy {
+  private final PolicyStats policyStats;
+  private final Curve curve;
+
+  private MissRatioCurvePolicy(String label, long[] sizes, Curve curve) {
+    this.policyStats = new PolicyStats(name() + " (%s)", label);
+    this.curve = curve;
+
+    var formatter = NumberFormat.getInstance(US);
+    for (int i = 0; i < sizes.length; i++) {
+      int index = i;
+      policyStats.addPercentMetric(formatter.format(sizes[i]), () -> curve.hitRate(index));
+    }
+  }
+
+  /** Returns the exact LRU curve and the approximate curves of the configured policies. */
+  public static Set<Policy> policies(Config config, Set<Characteristic> characteristics) {
+    var settings = new MissRatioCurveSettings(config);
+    long[] sizes = settings.sizes();
+
+    var policies = ImmutableSet.<Policy>builder();
+    policies.add(new MissRatioCurvePolicy("Lru", sizes, new StackDistanceCurve(sizes)));
+    for (String name : settings.approximatedPolicies()) {
+      checkArgument(!name.equalsIgnoreCase(MissRatioCurvePolicy.class
+          .getAnnotation(PolicySpec.class).name()), "A curve cannot be approximated for itself");
+      var variations = new LinkedHashMap<String, Policy[]>();
+      var sampler = SpatialSampler.fixedRate(settings.samplingRate());
+      for (int i = 0; i < sizes.length; i++) {
+        var sampledConfig = config.withValue("maximum-size",
+            ConfigValueFactory.fromAnyRef(sampler.scale(sizes[i])));
+        var registry = new Registry(new BasicSettings(sampledConfig), characteristics);
+        for (Policy policy : registry.policy(name)) {
+          variations.computeIfAbsent(policy.stats().name(),
+              key -> new Policy[sizes.length])[i] = policy;
+        }
+      }
+      for (Map.Entry<String, Policy[]> variation : variations.entrySet()) {
+        var curve = new SampledCurve(variation.getValue(), sampler);
+        policies.add(new MissRatioCurvePolicy(variation.getKey(), sizes, curve));
+      }
+    }
+    return policies.build();
+  }
+
+  @Override
+  public PolicyStats stats() {
+    return policyStats;
+  }
+
+  @Override
+  public void record(AccessEvent event) {
+    curve.record(event, policyStats);
+  }
+
+  @Override
+  public void finished() {
+    curve.finished();
+  }
+
+  /** A hit rate curve that is computed from a single pass over the trace. */
+  interface Curve {
+
+    /** Records the access, and its hit or miss at the largest size in the policy's statistics. */
+    void record(AccessEvent event, PolicyStats policyStats);
+
+    /** Returns the hit rate for the size at the index. */
+    double hitRate(int index);
+
+    /** Indicates that the recording has completed. */
+    default void finished() {}
+  }
+
+  /**
+   * An exact LRU curve that is computed from the stack distances of the accesses. Each key's most
+   * recent access time is marked in a Fenwick tree, so the number of distinct keys referenced since
+   * that time is a prefix sum. The access times are compacted when the tree is full, which retains
+   * only the marks of the distinct keys.
+   */
+  static final class StackDistanceCurve implements Curve {
+    final Long2IntOpenHashMap times;
+    final long[] sizes;
+    final long[] hits;
+
+    long requests;
+    long[] keys;
+    int[] tree;
+    int time;
+    int live;
+
+    StackDistanceCurve(long[] sizes) {
+      this.hits = new long[sizes.length];
+      this.times = new Long2IntOpenHashMap();
+      this.times.defaultReturnValue(-1);
+      this.keys = new long[1024];
+      this.tree = new int[keys.length + 1];
+      this.sizes = sizes;
+    }
+
+    @Override
+    public void record(AccessEvent event, PolicyStats policyStats) {
+      policyStats.recordOperation();
+      long distance = stackDistance(event.key());
+      if ((distance > 0) && (distance <= sizes[sizes.length - 1])) {
+        int index = indexOf(distance);
+        policyStats.recordHit();
+        hits[index]++;
+      } else {
+        policyStats.recordMiss();
+      }
+      requests++;
+    }
+
+    @Override
+    public double hitRate(int index) {
+      long cumulativeHits = 0;
+      for (int i = 0; i <= index; i++) {
+        cumulativeHits += hits[i];
+      }
+      return (requests == 0) ? 0.0 : (double) cumulativeHits / requests;
+    }
+
+    /** Returns the index of the smallest size that the distance hits in. */
+    int indexOf(long distance) {
+      int low = 0;
+      int high = sizes.length - 1;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (sizes[middle] < distance) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * Returns the key's position in the LRU stack, where the most recently used key is at one, or
+     * zero if the key was not referenced before. The key is then moved to the top of the stack.
+     */
+    long stackDistance(long key) {
+      if (time == keys.length) {
+        compact();
+      }
+      long distance = 0;
+      int previous = times.get(key);
+      if (previous >= 0) {
+        distance = live - sum(previous) + 1;
+        add(previous, -1);
+        live--;
+      }
+      keys[time] = key;
+      times.put(key, time);
+      add(time, 1);
+      time++;
+      live++;
+      return distance;
+    }
+
+    /** Renumbers the access times of the distinct keys, growing the tree if mostly live. */
+    void compact() {
+      int capacity = (live > (keys.length / 2)) ? (2 * keys.length) : keys.length;
+      long[] compacted = new long[capacity];
+      int next = 0;
+      for (int i = 0; i < time; i++) {
+        if (times.get(keys[i]) == i) {
+          times.put(keys[i], next);
+          compacted[next++] = keys[i];
+        }
+      }
+      keys = compacted;
+      time = next;
+
+      // Builds the tree in linear time from the marks of the live keys
+      tree = new int[capacity + 1];
+      for (int i = 1; i <= capacity; i++) {
+        tree[i] += (i <= live) ? 1 : 0;
+        int parent = i + (i & -i);
+        if (parent <= capacity) {
+          tree[parent] += tree[i];
+        }
+      }
+    }
+
+    /** Adds the delta to the mark at the access time. */
+    void add(int index, int delta) {
+      for (int i = index + 1; i < tree.length; i += (i & -i)) {
+        tree[i] += delta;
+      }
+    }
+
+    /** Returns the number of marks at or before the access time. */
+    int sum(int index) {
+      int sum = 0;
+      for (int i = index + 1; i > 0; i -= (i & -i)) {
+        sum += tree[i];
+      }
+      return sum;
+    }
+  }
+
+  /**
+   * An approximate curve that simulates a scaled-down cache per size, where each only observes
+   * the accesses to the keys whose hash falls below the sampling threshold.
+   */
+  static final class SampledCurve implements Curve {
+    final SpatialSampler sampler;
+    final Policy[] policies;
+
+    SampledCurve(Policy[] policies, SpatialSampler sampler) {
+      this.policies = policies;
+      this.sampler = sampler;
+    }
+
+    @Override
+    public void record(AccessEvent event, PolicyStats policyStats) {
+      if (!sampler.test(event.key())) {
+        return;
+      }
+      var largest = policies[policies.length - 1].stats();
+      long priorHits = largest.hitCount();
+      for (Policy policy : policies) {
+        policy.record(event);
+      }
+      policyStats.recordOperation();
+      if (largest.hitCount() > priorHits) {
+        policyStats.recordHit();
+      } else {
+        policyStats.recordMiss();
+      }
+    }
+
+    @Override
+    public double hitRate(int index) {
+      return policies[index].stats().hitRate();
+    }
+
+    @Override
+    public void finished() {
+      for (Policy policy : policies) {
+        policy.finished();
+      }
+    }
+  }
+
+  static final class MissRatioCurveSettings extends BasicSettings {
+    public MissRatioCurveSettings(Config config) {
+      super(config);
+    }
+    public long[] sizes() {
+      int points = config().getInt("miss-ratio-curve.points");
+      checkArgument(points > 0, "miss-ratio-curve.points must be positive");
+      return LongStream.rangeClosed(1, points)
+          .map(point -> Math.max(1, (point * maximumSize()) / points))
+          .distinct()
+          .toArray();
+    }
+    public List<String> approximatedPolicies() {
+      return config().getStringList("miss-ratio-curve.policies");
+    }
+    public double samplingRate() {
+      return config().getDouble("miss-ratio-curve.sampling-rate");
+    }
+  }
+}
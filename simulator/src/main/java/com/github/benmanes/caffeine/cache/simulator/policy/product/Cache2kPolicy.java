@@ -49,7 +49,7 @@ public final class Cache2kPolicy implements Policy {
 
     policyStats = new PolicyStats(name());
     CacheEntryEvictedListener<Long, AccessEvent> listener =
-        (cache, entry) -> policyStats.recordEviction();
+        (cache, entry) -> policyStats.recordWeightedEviction(entry.getValue().weight());
     BasicSettings settings = new BasicSettings(config);
     Cache2kBuilder<Long, AccessEvent> builder = Cache2kBuilder.of(Long.class, AccessEvent.class)
         .addListener(listener)
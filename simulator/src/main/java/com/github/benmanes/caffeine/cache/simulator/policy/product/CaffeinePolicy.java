@@ -45,7 +45,7 @@ public final class CaffeinePolicy implements Policy {
     BasicSettings settings = new BasicSettings(config);
     Caffeine<Long, AccessEvent> builder = Caffeine.newBuilder()
         .removalListener((Long key, AccessEvent value, RemovalCause cause) ->
-            policyStats.recordEviction())
+            policyStats.recordWeightedEviction(value.weight()))
         .executor(Runnable::run);
     if (characteristics.contains(WEIGHTED)) {
       builder.maximumWeight(settings.maximumSize());
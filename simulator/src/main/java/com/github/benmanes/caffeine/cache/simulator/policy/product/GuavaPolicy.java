@@ -42,7 +42,8 @@ public final class GuavaPolicy implements Policy {
     policyStats = new PolicyStats(name());
     BasicSettings settings = new BasicSettings(config);
     CacheBuilder<Long, AccessEvent> builder = CacheBuilder.newBuilder()
-        .removalListener(notification -> policyStats.recordEviction());
+        .removalListener(notification ->
+            policyStats.recordWeightedEviction(notification.getValue().weight()));
     if (characteristics.contains(WEIGHTED)) {
       builder.maximumWeight(settings.maximumSize());
       builder.weigher((key, value) -> value.weight());
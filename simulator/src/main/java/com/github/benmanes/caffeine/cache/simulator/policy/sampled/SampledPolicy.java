@@ -15,6 +15,7 @@
  */
 package com.github.benmanes.caffeine.cache.simulator.policy.sampled;
 
+import static com.github.benmanes.caffeine.cache.simulator.policy.Policy.Characteristic.WEIGHTED;
 import static java.util.Locale.US;
 import static java.util.stream.Collectors.toSet;
 
@@ -32,7 +33,8 @@ import com.github.benmanes.caffeine.cache.simulator.BasicSettings;
 import com.github.benmanes.caffeine.cache.simulator.admission.Admission;
 import com.github.benmanes.caffeine.cache.simulator.admission.Admittor;
 import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
-import com.github.benmanes.caffeine.cache.simulator.policy.Policy.KeyOnlyPolicy;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.KeyWeightPolicy;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.PolicySpec;
 import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
 import com.google.common.base.MoreObjects;
 import com.google.common.primitives.Ints;
@@ -50,41 +52,57 @@ import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
  * a newer addition to this family and is described in
  * <a href="https://www.usenix.org/system/files/conference/atc17/atc17-blankstein.pdf">Hyperbolic
  * Caching: Flexible Caching for Web Applications</a>.
+ * <p>
+ * If the trace is weighted then the capacity is the total weight of the entries, and the number of
+ * entries is unbounded. The table of entries is then grown on demand and a sample is chosen from
+ * its occupied slots.
  *
  * @author ben.manes@gmail.com (Ben Manes)
  */
-public final class SampledPolicy implements KeyOnlyPolicy {
+@PolicySpec(characteristics = WEIGHTED)
+public final class SampledPolicy implements KeyWeightPolicy {
+  static final int INITIAL_WEIGHTED_CAPACITY = 1024;
+
   final Long2ObjectMap<Node> data;
   final PolicyStats policyStats;
   final EvictionPolicy policy;
   final Sample sampleStrategy;
   final Admittor admittor;
-  final int maximumSize;
+  final long maximumSize;
+  final boolean weighted;
   final int sampleSize;
   final Random random;
-  final Node[] table;
 
+  long weightedSize;
+  Node[] table;
   long tick;
 
-  public SampledPolicy(Admission admission, EvictionPolicy policy, Config config) {
+  public SampledPolicy(Admission admission, EvictionPolicy policy,
+      Config config, Set<Characteristic> characteristics) {
     this.policyStats = new PolicyStats(admission.format("sampled." + policy.label()));
     this.admittor = admission.from(config, policyStats);
+    this.weighted = characteristics.contains(WEIGHTED);
 
     SampledSettings settings = new SampledSettings(config);
-    this.maximumSize = Ints.checkedCast(settings.maximumSize());
+    this.maximumSize = weighted
+        ? settings.maximumSize()
+        : Ints.checkedCast(settings.maximumSize());
+    this.table = new Node[weighted
+        ? (int) Math.min(maximumSize + 1, INITIAL_WEIGHTED_CAPACITY)
+        : (int) maximumSize + 1];
     this.sampleStrategy = settings.sampleStrategy();
     this.random = new Random(settings.randomSeed());
     this.data = new Long2ObjectOpenHashMap<>();
     this.sampleSize = settings.sampleSize();
-    this.table = new Node[maximumSize + 1];
     this.policy = policy;
   }
 
   /** Returns all variations of this policy based on the configuration parameters. */
-  public static Set<Policy> policies(Config config, EvictionPolicy policy) {
+  public static Set<Policy> policies(Config config,
+      Set<Characteristic> characteristics, EvictionPolicy policy) {
     BasicSettings settings = new BasicSettings(config);
     return settings.admission().stream().map(admission ->
-      new SampledPolicy(admission, policy, config)
+      new SampledPolicy(admission, policy, config, characteristics)
     ).collect(toSet());
   }
 
@@ -94,44 +112,68 @@ public final class SampledPolicy implements KeyOnlyPolicy {
   }
 
   @Override
-  public void record(long key) {
+  public void record(long key, int eventWeight) {
+    int weight = weighted ? eventWeight : 1;
+
     Node node = data.get(key);
     admittor.record(key);
     long now = ++tick;
     if (node == null) {
-      node = new Node(key, data.size(), now);
       policyStats.recordOperation();
-      policyStats.recordMiss();
+      policyStats.recordWeightedMiss(weight);
+      if (weight > maximumSize) {
+        return;
+      }
+      if (data.size() == table.length) {
+        table = Arrays.copyOf(table, 2 * table.length);
+      }
+      node = new Node(key, weight, data.size(), now);
       table[node.index] = node;
       data.put(key, node);
+      weightedSize += weight;
       evict(node);
     } else {
       policyStats.recordOperation();
-      policyStats.recordHit();
+      policyStats.recordWeightedHit(weight);
+      weightedSize += (weight - node.weight);
+      node.weight = weight;
       node.accessTime = now;
       node.frequency++;
+      evict(node);
     }
   }
 
-  /** Evicts if the map exceeds the maximum capacity. */
+  /** Evicts while the map exceeds the maximum capacity. */
   private void evict(Node candidate) {
-    if (data.size() > maximumSize) {
+    while (weightedSize > maximumSize) {
+      if (candidate.weight > maximumSize) {
+        evictEntry(candidate);
+        return;
+      }
+
+      int size = data.size();
       List<Node> sample = (policy == EvictionPolicy.RANDOM)
-          ? Arrays.asList(table)
-          : sampleStrategy.sample(table, candidate, sampleSize, random, policyStats);
+          ? Arrays.asList(table).subList(0, size)
+          : sampleStrategy.sample(table, size, candidate, sampleSize, random, policyStats);
       Node victim = policy.select(sample, random, tick);
-      policyStats.recordEviction();
 
       if (admittor.admit(candidate.key, victim.key)) {
-        removeFromTable(victim);
-        data.remove(victim.key);
+        evictEntry(victim);
       } else {
-        removeFromTable(candidate);
-        data.remove(candidate.key);
+        evictEntry(candidate);
+        return;
       }
     }
   }
 
+  /** Removes the entry from the cache. */
+  private void evictEntry(Node node) {
+    policyStats.recordWeightedEviction(node.weight);
+    weightedSize -= node.weight;
+    removeFromTable(node);
+    data.remove(node.key);
+  }
+
   /** Removes the node from the table and adds the index to the free list. */
   private void removeFromTable(Node node) {
     int last = data.size() - 1;
@@ -144,12 +186,12 @@ public final class SampledPolicy implements KeyOnlyPolicy {
   public enum Sample {
     GUESS {
       @SuppressWarnings("PMD.AvoidReassigningLoopVariables")
-      @Override public <E> List<E> sample(E[] elements, E candidate,
+      @Override public <E> List<E> sample(E[] elements, int size, E candidate,
           int sampleSize, Random random, PolicyStats policyStats) {
         var sample = new ArrayList<E>(sampleSize);
         policyStats.addOperations(sampleSize);
         while (sample.size() < sampleSize) {
-          int index = random.nextInt(elements.length);
+          int index = random.nextInt(size);
           if (elements[index] != candidate) {
             sample.add(elements[index]);
           }
@@ -158,12 +200,13 @@ public final class SampledPolicy implements KeyOnlyPolicy {
       }
     },
     RESERVOIR {
-      @Override public <E> List<E> sample(E[] elements, E candidate,
+      @Override public <E> List<E> sample(E[] elements, int size, E candidate,
           int sampleSize, Random random, PolicyStats policyStats) {
         List<E> sample = new ArrayList<>(sampleSize);
-        policyStats.addOperations(elements.length);
+        policyStats.addOperations(size);
         int count = 0;
-        for (E e : elements) {
+        for (int i = 0; i < size; i++) {
+          E e = elements[i];
           if (e == candidate) {
             continue;
           }
@@ -181,17 +224,18 @@ public final class SampledPolicy implements KeyOnlyPolicy {
       }
     },
     SHUFFLE {
-      @Override public <E> List<E> sample(E[] elements, E candidate,
+      @Override public <E> List<E> sample(E[] elements, int size, E candidate,
           int sampleSize, Random random, PolicyStats policyStats) {
-        List<E> sample = new ArrayList<>(Arrays.asList(elements));
-        policyStats.addOperations(elements.length);
+        List<E> sample = new ArrayList<>(Arrays.asList(elements).subList(0, size));
+        policyStats.addOperations(size);
         Collections.shuffle(sample, random);
         sample.remove(candidate);
         return sample.subList(0, sampleSize);
       }
     };
 
-    abstract <E> List<E> sample(E[] elements, E candidate,
+    /** Returns a sample of the first {@code size} elements, excluding the candidate. */
+    abstract <E> List<E> sample(E[] elements, int size, E candidate,
         int sampleSize, Random random, PolicyStats policyStats);
   }
 
@@ -271,11 +315,13 @@ public final class SampledPolicy implements KeyOnlyPolicy {
 
     long accessTime;
     int frequency;
+    int weight;
     int index;
 
-    public Node(long key, int index, long tick) {
+    public Node(long key, int weight, int index, long tick) {
       this.insertionTime = tick;
       this.accessTime = tick;
+      this.weight = weight;
       this.index = index;
       this.key = key;
     }
@@ -284,6 +330,7 @@ public final class SampledPolicy implements KeyOnlyPolicy {
     public String toString() {
       return MoreObjects.toStringHelper(this)
           .add("key", key)
+          .add("weight", weight)
           .add("index", index)
           .toString();
     }
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator.policy.sketch;
+
+import static com.github.benmanes.caffeine.cache.simulator.policy.Policy.Characteristic.WEIGHTED;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.stream.Collectors.toSet;
+
+import java.util.List;
+import java.util.Set;
+
+import com.github.benmanes.caffeine.cache.simulator.BasicSettings;
+import com.github.benmanes.caffeine.cache.simulator.admission.TinyLfu;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.PolicySpec;
+import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
+import com.google.common.base.MoreObjects;
+import com.typesafe.config.Config;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * A cost-aware adaption of the Window TinyLfu policy that retains the entries that save the most
+ * latency per unit of capacity, rather than the entries that are the most frequently used. This is
+ * also a weighted policy, meaning it supports non-uniform entry sizes.
+ * <p>
+ * An entry's value is estimated as its historic frequency multiplied by the latency saved when it
+ * is a hit (the miss penalty less the hit penalty), divided by its weight. When the main space
+ * exceeds its capacity, the candidate that slipped from the admission window is compared to the
+ * probation space's victim and the one with the lower value is evicted. A large candidate may
+ * evict several victims, each of which must be worth less per unit of weight. If the trace does not
+ * supply the penalties then every entry has the same latency and the policy degrades into a
+ * weighted Window TinyLfu that prefers the smaller entries.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@PolicySpec(name = "sketch.CostAwareWindowTinyLfu", characteristics = WEIGHTED)
+public final class CostAwareWindowTinyLfuPolicy implements Policy {
+  private final Long2ObjectMap<Node> data;
+  private final PolicyStats policyStats;
+  private final TinyLfu admittor;
+  private final long maximumSize;
+
+  private final Node headWindow;
+  private final Node headProbation;
+  private final Node headProtected;
+
+  private final long maxWindow;
+  private final long maxProtected;
+
+  private long weightedSize;
+  private long windowSize;
+  private long protectedSize;
+
+  public CostAwareWindowTinyLfuPolicy(double percentMain, CostAwareSettings settings) {
+    this.policyStats = new PolicyStats(name() + " (%.0f%%)", 100 * (1.0d - percentMain));
+    this.admittor = new TinyLfu(settings.config(), policyStats);
+    this.maximumSize = settings.maximumSize();
+
+    long maxMain = (long) (maximumSize * percentMain);
+    this.maxProtected = (long) (maxMain * settings.percentMainProtected());
+    this.data = new Long2ObjectOpenHashMap<>();
+    this.maxWindow = maximumSize - maxMain;
+    this.headProtected = new Node();
+    this.headProbation = new Node();
+    this.headWindow = new Node();
+  }
+
+  /** Returns all variations of this policy based on the configuration parameters. */
+  public static Set<Policy> policies(Config config) {
+    var settings = new CostAwareSettings(config);
+    return settings.percentMain().stream()
+        .map(percentMain -> new CostAwareWindowTinyLfuPolicy(percentMain, settings))
+        .collect(toSet());
+  }
+
+  @Override
+  public PolicyStats stats() {
+    return policyStats;
+  }
+
+  @Override
+  public void record(AccessEvent event) {
+    policyStats.recordOperation();
+    admittor.record(event.key());
+
+    Node node = data.get(event.key());
+    if (node == null) {
+      policyStats.recordWeightedMiss(event.weight());
+      onMiss(event);
+    } else {
+      policyStats.recordWeightedHit(event.weight());
+      node.updatePenalty(event);
+      updateWeight(node, event.weight());
+      if (node.status == Status.WINDOW) {
+        node.moveToTail(headWindow);
+      } else if (node.status == Status.PROBATION) {
+        onProbationHit(node);
+      } else if (node.status == Status.PROTECTED) {
+        node.moveToTail(headProtected);
+      } else {
+        throw new IllegalStateException();
+      }
+      evict();
+    }
+  }
+
+  /** Adds the entry to the admission window, evicting if necessary. */
+  private void onMiss(AccessEvent event) {
+    if (event.weight() > maximumSize) {
+      policyStats.recordWeightedEviction(event.weight());
+      return;
+    }
+    var node = new Node(event.key(), event.weight(), Status.WINDOW);
+    node.updatePenalty(event);
+    node.appendToTail(headWindow);
+    data.put(node.key, node);
+    weightedSize += node.weight;
+    windowSize += node.weight;
+    evict();
+  }
+
+  /** Promotes the entry to the protected region's MRU position, demoting entries if necessary. */
+  private void onProbationHit(Node node) {
+    node.remove();
+    node.status = Status.PROTECTED;
+    node.appendToTail(headProtected);
+    protectedSize += node.weight;
+
+    while ((protectedSize > maxProtected) && (headProtected.next != node)) {
+      Node demote = headProtected.next;
+      demote.remove();
+      demote.status = Status.PROBATION;
+      demote.appendToTail(headProbation);
+      protectedSize -= demote.weight;
+    }
+  }
+
+  /** Adjusts the sizes of the entry's region if its weight changed. */
+  private void updateWeight(Node node, int weight) {
+    int weightDifference = weight - node.weight;
+    if (node.status == Status.WINDOW) {
+      windowSize += weightDifference;
+    } else if (node.status == Status.PROTECTED) {
+      protectedSize += weightDifference;
+    }
+    weightedSize += weightDifference;
+    node.weight = weight;
+  }
+
+  /**
+   * Evicts from the admission window into the probation space. While the size exceeds the maximum,
+   * the admission candidate and probation's victim are evaluated and the less valuable is evicted.
+   */
+  private void evict() {
+    while (windowSize > maxWindow) {
+      Node candidate = headWindow.next;
+      candidate.remove();
+      windowSize -= candidate.weight;
+      candidate.status = Status.PROBATION;
+      candidate.appendToTail(headProbation);
+
+      while (weightedSize > maximumSize) {
+        Node victim = nextVictim(candidate);
+        if ((victim == candidate) || !admit(candidate, victim)) {
+          evictEntry(candidate);
+          break;
+        }
+        evictEntry(victim);
+      }
+    }
+    while (weightedSize > maximumSize) {
+      evictEntry(nextVictim(/* candidate */ null));
+    }
+  }
+
+  /** Returns the least recently used entry of the main space, else of the admission window. */
+  private Node nextVictim(Node candidate) {
+    if ((headProbation.next != headProbation) && (headProbation.next != candidate)) {
+      return headProbation.next;
+    } else if (headProtected.next != headProtected) {
+      return headProtected.next;
+    } else if (headProbation.next != headProbation) {
+      return headProbation.next;
+    }
+    return headWindow.next;
+  }
+
+  /** Returns if the candidate saves more latency per unit of weight than the victim. */
+  private boolean admit(Node candidate, Node victim) {
+    if (value(candidate) > value(victim)) {
+      policyStats.recordAdmission();
+      return true;
+    }
+    policyStats.recordRejection();
+    return false;
+  }
+
+  /** Returns the estimated latency saved by retaining the entry, per unit of weight. */
+  private double value(Node node) {
+    return admittor.frequency(node.key) * node.savedPenalty / Math.max(1, node.weight);
+  }
+
+  /** Removes the entry from the cache. */
+  private void evictEntry(Node node) {
+    if (node.status == Status.WINDOW) {
+      windowSize -= node.weight;
+    } else if (node.status == Status.PROTECTED) {
+      protectedSize -= node.weight;
+    }
+    weightedSize -= node.weight;
+    data.remove(node.key);
+    node.remove();
+    policyStats.recordWeightedEviction(node.weight);
+  }
+
+  @Override
+  public void finished() {
+    long actualWindowSize = data.values().stream()
+        .filter(node -> node.status == Status.WINDOW)
+        .mapToLong(node -> node.weight).sum();
+    long actualProtectedSize = data.values().stream()
+        .filter(node -> node.status == Status.PROTECTED)
+        .mapToLong(node -> node.weight).sum();
+    long actualWeightedSize = data.values().stream().mapToLong(node -> node.weight).sum();
+
+    checkState(actualWindowSize == windowSize, "%s != %s", actualWindowSize, windowSize);
+    checkState(actualProtectedSize == protectedSize, "%s != %s", actualProtectedSize, protectedSize);
+    checkState(actualWeightedSize == weightedSize, "%s != %s", actualWeightedSize, weightedSize);
+    checkState(weightedSize <= maximumSize, "%s > %s", weightedSize, maximumSize);
+  }
+
+  enum Status {
+    WINDOW, PROBATION, PROTECTED
+  }
+
+  /** A node on the double-linked list. */
+  static final class Node {
+    final long key;
+
+    double savedPenalty;
+    Status status;
+    Node prev;
+    Node next;
+    int weight;
+
+    /** Creates a new sentinel node. */
+    public Node() {
+      this.key = Long.MIN_VALUE;
+      this.prev = this;
+      this.next = this;
+    }
+
+    /** Creates a new, unlinked node. */
+    public Node(long key, int weight, Status status) {
+      this.status = status;
+      this.weight = weight;
+      this.key = key;
+    }
+
+    /** Sets the latency that is saved by a hit, or a unit cost if the trace lacks penalties. */
+    public void updatePenalty(AccessEvent event) {
+      savedPenalty = event.isPenaltyAware()
+          ? (event.missPenalty() - event.hitPenalty())
+          : 1.0;
+    }
+
+    public void moveToTail(Node head) {
+      remove();
+      appendToTail(head);
+    }
+
+    /** Appends the node to the tail of the list. */
+    public void appendToTail(Node head) {
+      Node tail = head.prev;
+      head.prev = this;
+      tail.next = this;
+      next = head;
+      prev = tail;
+    }
+
+    /** Removes the node from the list. */
+    public void remove() {
+      prev.next = next;
+      next.prev = prev;
+      next = prev = null;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("key", key)
+          .add("weight", weight)
+          .add("savedPenalty", savedPenalty)
+          .add("status", status)
+          .toString();
+    }
+  }
+
+  public static final class CostAwareSettings extends BasicSettings {
+    public CostAwareSettings(Config config) {
+      super(config);
+    }
+    public List<Double> percentMain() {
+      return config().getDoubleList("cost-aware-window-tiny-lfu.percent-main");
+    }
+    public double percentMainProtected() {
+      return config().getDouble("cost-aware-window-tiny-lfu.percent-main-protected");
+    }
+  }
+}
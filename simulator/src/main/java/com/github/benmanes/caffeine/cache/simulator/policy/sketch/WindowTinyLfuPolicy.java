@@ -15,6 +15,7 @@
  */
 package com.github.benmanes.caffeine.cache.simulator.policy.sketch;
 
+import static com.github.benmanes.caffeine.cache.simulator.policy.Policy.Characteristic.WEIGHTED;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.stream.Collectors.toSet;
 
@@ -25,11 +26,10 @@ import com.github.benmanes.caffeine.cache.simulator.BasicSettings;
 import com.github.benmanes.caffeine.cache.simulator.admission.Admittor;
 import com.github.benmanes.caffeine.cache.simulator.admission.TinyLfu;
 import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
-import com.github.benmanes.caffeine.cache.simulator.policy.Policy.KeyOnlyPolicy;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.KeyWeightPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.Policy.PolicySpec;
 import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
 import com.google.common.base.MoreObjects;
-import com.google.common.primitives.Ints;
 import com.typesafe.config.Config;
 
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
@@ -49,33 +49,41 @@ import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
  * Scan resistance is achieved by means of the window. Transient data will pass through from the
  * window and not be accepted into the main queue. Responsiveness is maintained by the main queue's
  * LRU and the TinyLfu's reset operation so that expired long term entries fade away.
+ * <p>
+ * If the trace is weighted then the regions are sized by the total weight of their entries. A large
+ * candidate may require evicting multiple victims from the probation space, each of which must lose
+ * the frequency comparison, else the candidate is evicted instead.
  *
  * @author ben.manes@gmail.com (Ben Manes)
  */
-@PolicySpec(name = "sketch.WindowTinyLfu")
-public final class WindowTinyLfuPolicy implements KeyOnlyPolicy {
+@PolicySpec(name = "sketch.WindowTinyLfu", characteristics = WEIGHTED)
+public final class WindowTinyLfuPolicy implements KeyWeightPolicy {
   private final Long2ObjectMap<Node> data;
   private final PolicyStats policyStats;
   private final Admittor admittor;
-  private final int maximumSize;
+  private final long maximumSize;
+  private final boolean weighted;
 
   private final Node headWindow;
   private final Node headProbation;
   private final Node headProtected;
 
-  private final int maxWindow;
-  private final int maxProtected;
+  private final long maxWindow;
+  private final long maxProtected;
 
-  private int sizeWindow;
-  private int sizeProtected;
+  private long weightedSize;
+  private long sizeWindow;
+  private long sizeProtected;
 
-  public WindowTinyLfuPolicy(double percentMain, WindowTinyLfuSettings settings) {
+  public WindowTinyLfuPolicy(double percentMain,
+      WindowTinyLfuSettings settings, Set<Characteristic> characteristics) {
     this.policyStats = new PolicyStats(name() + " (%.0f%%)", 100 * (1.0d - percentMain));
     this.admittor = new TinyLfu(settings.config(), policyStats);
-    this.maximumSize = Ints.checkedCast(settings.maximumSize());
+    this.weighted = characteristics.contains(WEIGHTED);
+    this.maximumSize = settings.maximumSize();
 
-    int maxMain = (int) (maximumSize * percentMain);
-    this.maxProtected = (int) (maxMain * settings.percentMainProtected());
+    long maxMain = (long) (maximumSize * percentMain);
+    this.maxProtected = (long) (maxMain * settings.percentMainProtected());
     this.data = new Long2ObjectOpenHashMap<>();
     this.maxWindow = maximumSize - maxMain;
     this.headProtected = new Node();
@@ -84,10 +92,10 @@ public final class WindowTinyLfuPolicy implements KeyOnlyPolicy {
   }
 
   /** Returns all variations of this policy based on the configuration parameters. */
-  public static Set<Policy> policies(Config config) {
+  public static Set<Policy> policies(Config config, Set<Characteristic> characteristics) {
     WindowTinyLfuSettings settings = new WindowTinyLfuSettings(config);
     return settings.percentMain().stream()
-        .map(percentMain -> new WindowTinyLfuPolicy(percentMain, settings))
+        .map(percentMain -> new WindowTinyLfuPolicy(percentMain, settings, characteristics))
         .collect(toSet());
   }
 
@@ -97,104 +105,140 @@ public final class WindowTinyLfuPolicy implements KeyOnlyPolicy {
   }
 
   @Override
-  public void record(long key) {
+  public void record(long key, int eventWeight) {
+    int weight = weighted ? eventWeight : 1;
+
     policyStats.recordOperation();
+    admittor.record(key);
     Node node = data.get(key);
     if (node == null) {
-      onMiss(key);
-      policyStats.recordMiss();
-    } else if (node.status == Status.WINDOW) {
-      onWindowHit(node);
-      policyStats.recordHit();
-    } else if (node.status == Status.PROBATION) {
-      onProbationHit(node);
-      policyStats.recordHit();
-    } else if (node.status == Status.PROTECTED) {
-      onProtectedHit(node);
-      policyStats.recordHit();
+      onMiss(key, weight);
+      policyStats.recordWeightedMiss(weight);
     } else {
-      throw new IllegalStateException();
+      updateWeight(node, weight);
+      if (node.status == Status.WINDOW) {
+        onWindowHit(node);
+      } else if (node.status == Status.PROBATION) {
+        onProbationHit(node);
+      } else if (node.status == Status.PROTECTED) {
+        onProtectedHit(node);
+      } else {
+        throw new IllegalStateException();
+      }
+      policyStats.recordWeightedHit(weight);
+      evict();
     }
   }
 
   /** Adds the entry to the admission window, evicting if necessary. */
-  private void onMiss(long key) {
-    admittor.record(key);
-
-    Node node = new Node(key, Status.WINDOW);
+  private void onMiss(long key, int weight) {
+    if (weight > maximumSize) {
+      return;
+    }
+    Node node = new Node(key, weight, Status.WINDOW);
     node.appendToTail(headWindow);
     data.put(key, node);
-    sizeWindow++;
+    weightedSize += weight;
+    sizeWindow += weight;
     evict();
   }
 
   /** Moves the entry to the MRU position in the admission window. */
   private void onWindowHit(Node node) {
-    admittor.record(node.key);
     node.moveToTail(headWindow);
   }
 
-  /** Promotes the entry to the protected region's MRU position, demoting an entry if necessary. */
+  /** Promotes the entry to the protected region's MRU position, demoting entries if necessary. */
   private void onProbationHit(Node node) {
-    admittor.record(node.key);
-
     node.remove();
     node.status = Status.PROTECTED;
     node.appendToTail(headProtected);
 
-    sizeProtected++;
-    if (sizeProtected > maxProtected) {
+    sizeProtected += node.weight;
+    while (sizeProtected > maxProtected) {
       Node demote = headProtected.next;
       demote.remove();
       demote.status = Status.PROBATION;
       demote.appendToTail(headProbation);
-      sizeProtected--;
+      sizeProtected -= demote.weight;
     }
   }
 
   /** Moves the entry to the MRU position if it falls outside of the fast-path threshold. */
   private void onProtectedHit(Node node) {
-    admittor.record(node.key);
     node.moveToTail(headProtected);
   }
 
+  /** Adjusts the sizes of the entry's region if its weight changed. */
+  private void updateWeight(Node node, int weight) {
+    int weightDifference = weight - node.weight;
+    if (node.status == Status.WINDOW) {
+      sizeWindow += weightDifference;
+    } else if (node.status == Status.PROTECTED) {
+      sizeProtected += weightDifference;
+    }
+    weightedSize += weightDifference;
+    node.weight = weight;
+  }
+
   /**
-   * Evicts from the admission window into the probation space. If the size exceeds the maximum,
-   * then the admission candidate and probation's victim are evaluated and one is evicted.
+   * Evicts from the admission window into the probation space. While the size exceeds the maximum,
+   * the admission candidate and probation's victim are evaluated and one is evicted.
    */
   private void evict() {
-    if (sizeWindow <= maxWindow) {
-      return;
+    while (sizeWindow > maxWindow) {
+      Node candidate = headWindow.next;
+      sizeWindow -= candidate.weight;
+
+      candidate.remove();
+      candidate.status = Status.PROBATION;
+      candidate.appendToTail(headProbation);
+
+      while (weightedSize > maximumSize) {
+        Node victim = headProbation.next;
+        Node evict = admittor.admit(candidate.key, victim.key) ? victim : candidate;
+        evictEntry(evict);
+        if (evict == candidate) {
+          break;
+        }
+      }
     }
+    while (weightedSize > maximumSize) {
+      Node victim = (headProbation.next != headProbation) ? headProbation.next
+          : (headProtected.next != headProtected) ? headProtected.next : headWindow.next;
+      evictEntry(victim);
+    }
+  }
 
-    Node candidate = headWindow.next;
-    sizeWindow--;
-
-    candidate.remove();
-    candidate.status = Status.PROBATION;
-    candidate.appendToTail(headProbation);
-
-    if (data.size() > maximumSize) {
-      Node victim = headProbation.next;
-      Node evict = admittor.admit(candidate.key, victim.key) ? victim : candidate;
-      data.remove(evict.key);
-      evict.remove();
-
-      policyStats.recordEviction();
+  /** Removes the entry from the cache. */
+  private void evictEntry(Node node) {
+    if (node.status == Status.WINDOW) {
+      sizeWindow -= node.weight;
+    } else if (node.status == Status.PROTECTED) {
+      sizeProtected -= node.weight;
     }
+    weightedSize -= node.weight;
+    data.remove(node.key);
+    node.remove();
+
+    policyStats.recordWeightedEviction(node.weight);
   }
 
   @Override
   public void finished() {
-    long windowSize = data.values().stream().filter(n -> n.status == Status.WINDOW).count();
-    long probationSize = data.values().stream().filter(n -> n.status == Status.PROBATION).count();
-    long protectedSize = data.values().stream().filter(n -> n.status == Status.PROTECTED).count();
+    long windowSize = sizeOf(Status.WINDOW);
+    long probationSize = sizeOf(Status.PROBATION);
+    long protectedSize = sizeOf(Status.PROTECTED);
 
     checkState(windowSize == sizeWindow);
     checkState(protectedSize == sizeProtected);
-    checkState(probationSize == data.size() - windowSize - protectedSize);
+    checkState(probationSize == weightedSize - windowSize - protectedSize);
+
+    checkState(weightedSize <= maximumSize);
+  }
 
-    checkState(data.size() <= maximumSize);
+  private long sizeOf(Status status) {
+    return data.values().stream().filter(n -> n.status == status).mapToLong(n -> n.weight).sum();
   }
 
   enum Status {
@@ -208,6 +252,7 @@ public final class WindowTinyLfuPolicy implements KeyOnlyPolicy {
     Status status;
     Node prev;
     Node next;
+    int weight;
 
     /** Creates a new sentinel node. */
     public Node() {
@@ -217,8 +262,9 @@ public final class WindowTinyLfuPolicy implements KeyOnlyPolicy {
     }
 
     /** Creates a new, unlinked node. */
-    public Node(long key, Status status) {
+    public Node(long key, int weight, Status status) {
       this.status = status;
+      this.weight = weight;
       this.key = key;
     }
 
@@ -247,6 +293,7 @@ public final class WindowTinyLfuPolicy implements KeyOnlyPolicy {
     public String toString() {
       return MoreObjects.toStringHelper(this)
           .add("key", key)
+          .add("weight", weight)
           .add("status", status)
           .toString();
     }
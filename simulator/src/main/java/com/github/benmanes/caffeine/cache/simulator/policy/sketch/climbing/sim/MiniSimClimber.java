@@ -16,6 +16,7 @@
 package com.github.benmanes.caffeine.cache.simulator.policy.sketch.climbing.sim;
 
 import java.util.List;
+import java.util.Set;
 
 import com.github.benmanes.caffeine.cache.simulator.BasicSettings;
 import com.github.benmanes.caffeine.cache.simulator.policy.sketch.WindowTinyLfuPolicy;
@@ -63,7 +64,7 @@ public final class MiniSimClimber implements HillClimber {
 
     for (int i = 0; i < minis.length; i++) {
       double percentMain = 1.0 - (i / 100.0);
-      minis[i] = new WindowTinyLfuPolicy(percentMain, simulationSettings);
+      minis[i] = new WindowTinyLfuPolicy(percentMain, simulationSettings, Set.of());
     }
   }
 
@@ -82,7 +83,7 @@ public final class MiniSimClimber implements HillClimber {
 
     if (Math.floorMod(hasher.hashLong(key).asInt(), R) < 1) {
       for (WindowTinyLfuPolicy policy : minis) {
-        policy.record(key);
+        policy.record(key, /* weight */ 1);
       }
     }
   }
@@ -15,14 +15,19 @@
  */
 package com.github.benmanes.caffeine.cache.simulator.policy.two_queue;
 
+import static com.github.benmanes.caffeine.cache.simulator.policy.Policy.Characteristic.WEIGHTED;
 import static com.google.common.base.Preconditions.checkState;
 
+import java.util.Set;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import com.github.benmanes.caffeine.cache.simulator.BasicSettings;
-import com.github.benmanes.caffeine.cache.simulator.policy.Policy.KeyOnlyPolicy;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.KeyWeightPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.Policy.PolicySpec;
 import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
 import com.google.common.base.MoreObjects;
-import com.google.common.primitives.Ints;
 import com.typesafe.config.Config;
 
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
@@ -38,29 +43,33 @@ import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
  * <a href="http://www.vldb.org/conf/1994/P439.PDF">2Q: A Low Overhead High Performance Buffer
  * Management Replacement Algorithm</a>. For consistency with other policies, this version places
  * the next item to be removed at the head and most recently added at the tail of the queue.
+ * <p>
+ * If the trace is weighted then the sizes of the queues are the total weight of their entries, and
+ * as many pages are reclaimed as needed to fit the accessed entry.
  *
  * @author ben.manes@gmail.com (Ben Manes)
  */
-@PolicySpec(name = "two-queue.TwoQueue")
-public final class TwoQueuePolicy implements KeyOnlyPolicy {
+@PolicySpec(name = "two-queue.TwoQueue", characteristics = WEIGHTED)
+public final class TwoQueuePolicy implements KeyWeightPolicy {
   static final Node UNLINKED = new Node();
 
   final Long2ObjectMap<Node> data;
   final PolicyStats policyStats;
-  final int maximumSize;
+  final long maximumSize;
+  final boolean weighted;
 
-  int sizeIn;
-  final int maxIn;
+  long sizeIn;
+  final long maxIn;
   final Node headIn;
 
-  int sizeOut;
-  final int maxOut;
+  long sizeOut;
+  final long maxOut;
   final Node headOut;
 
-  int sizeMain;
+  long sizeMain;
   final Node headMain;
 
-  public TwoQueuePolicy(Config config) {
+  public TwoQueuePolicy(Config config, Set<Characteristic> characteristics) {
     TwoQueueSettings settings = new TwoQueueSettings(config);
 
     this.headIn = new Node();
@@ -68,14 +77,15 @@ public final class TwoQueuePolicy implements KeyOnlyPolicy {
     this.headMain = new Node();
     this.data = new Long2ObjectOpenHashMap<>();
     this.policyStats = new PolicyStats(name());
-    this.maximumSize = Ints.checkedCast(settings.maximumSize());
-    this.maxIn = (int) (maximumSize * settings.percentIn());
-    this.maxOut = (int) (maximumSize * settings.percentOut());
+    this.maximumSize = settings.maximumSize();
+    this.weighted = characteristics.contains(WEIGHTED);
+    this.maxIn = (long) (maximumSize * settings.percentIn());
+    this.maxOut = (long) (maximumSize * settings.percentOut());
   }
 
   @Override
   @SuppressWarnings({"PMD.ConfusingTernary", "PMD.SwitchStmtsShouldHaveDefault"})
-  public void record(long key) {
+  public void record(long key, int eventWeight) {
     // On accessing a page X :
     //   if X is in Am then
     //     move X to the head of Am
@@ -89,40 +99,54 @@ public final class TwoQueuePolicy implements KeyOnlyPolicy {
     //     add X to the head of Alin
     //   end if
 
+    int weight = weighted ? eventWeight : 1;
+
     policyStats.recordOperation();
     Node node = data.get(key);
     if (node != null) {
       switch (node.type) {
         case MAIN:
           node.moveToTail(headMain);
-          policyStats.recordHit();
+          sizeMain += (weight - node.weight);
+          node.weight = weight;
+          reclaim(/* additional */ 0, node);
+          policyStats.recordWeightedHit(weight);
           return;
         case OUT:
           node.remove();
-          sizeOut--;
+          sizeOut -= node.weight;
+          node.weight = weight;
+          policyStats.recordWeightedMiss(weight);
+          if (weight > maximumSize) {
+            data.remove(key);
+            return;
+          }
 
           reclaimfor(node);
 
           node.appendToTail(headMain);
           node.type = QueueType.MAIN;
-          sizeMain++;
-
-          policyStats.recordMiss();
+          sizeMain += weight;
           return;
         case IN:
           // do nothing
-          policyStats.recordHit();
+          sizeIn += (weight - node.weight);
+          node.weight = weight;
+          reclaim(/* additional */ 0, node);
+          policyStats.recordWeightedHit(weight);
           return;
       }
     } else {
-      node = new Node(key);
+      policyStats.recordWeightedMiss(weight);
+      if (weight > maximumSize) {
+        return;
+      }
+      node = new Node(key, weight);
       node.type = QueueType.IN;
 
       reclaimfor(node);
       node.appendToTail(headIn);
-      sizeIn++;
-
-      policyStats.recordMiss();
+      sizeIn += weight;
     }
   }
 
@@ -142,34 +166,43 @@ public final class TwoQueuePolicy implements KeyOnlyPolicy {
     //   put X into the reclaimed page slot
     // end if
 
-    if ((sizeMain + sizeIn) < maximumSize) {
-      data.put(node.key, node);
-    } else if (sizeIn > maxIn) {
-      // IN is full, move to OUT
-      Node n = headIn.next;
-      n.remove();
-      sizeIn--;
-      n.appendToTail(headOut);
-      n.type = QueueType.OUT;
-      sizeOut++;
-
-      if (sizeOut > maxOut) {
-        // OUT is full, drop oldest
-        policyStats.recordEviction();
-        Node victim = headOut.next;
-        data.remove(victim.key);
-        victim.remove();
-        sizeOut--;
+    reclaim(node.weight, /* pinned */ null);
+    data.put(node.key, node);
+  }
+
+  /**
+   * Pages out entries until the additional weight fits within the free page slots, without paging
+   * out the pinned entry.
+   */
+  private void reclaim(int additional, @Nullable Node pinned) {
+    while ((sizeMain + sizeIn + additional) > maximumSize) {
+      Node in = (headIn.next == pinned) ? headIn.next.next : headIn.next;
+      Node main = (headMain.next == pinned) ? headMain.next.next : headMain.next;
+      if ((in != headIn) && ((sizeIn > maxIn) || (main == headMain))) {
+        // IN is full, move to OUT
+        in.remove();
+        sizeIn -= in.weight;
+        in.appendToTail(headOut);
+        in.type = QueueType.OUT;
+        sizeOut += in.weight;
+
+        while (sizeOut > maxOut) {
+          // OUT is full, drop oldest
+          Node victim = headOut.next;
+          policyStats.recordWeightedEviction(victim.weight);
+          data.remove(victim.key);
+          victim.remove();
+          sizeOut -= victim.weight;
+        }
+      } else if (main != headMain) {
+        // OUT has room, evict from MAIN
+        policyStats.recordWeightedEviction(main.weight);
+        data.remove(main.key);
+        main.remove();
+        sizeMain -= main.weight;
+      } else {
+        return;
       }
-      data.put(node.key, node);
-    } else {
-      // OUT has room, evict from MAIN
-      policyStats.recordEviction();
-      Node victim = headMain.next;
-      data.remove(victim.key);
-      victim.remove();
-      sizeMain--;
-      data.put(node.key, node);
     }
   }
 
@@ -190,6 +223,7 @@ public final class TwoQueuePolicy implements KeyOnlyPolicy {
     Node prev;
     Node next;
     QueueType type;
+    int weight;
 
     Node() {
       this.key = Long.MIN_VALUE;
@@ -197,7 +231,8 @@ public final class TwoQueuePolicy implements KeyOnlyPolicy {
       this.next = this;
     }
 
-    Node(long key) {
+    Node(long key, int weight) {
+      this.weight = weight;
       this.key = key;
       this.prev = UNLINKED;
       this.next = UNLINKED;
@@ -238,6 +273,7 @@ public final class TwoQueuePolicy implements KeyOnlyPolicy {
     public String toString() {
       return MoreObjects.toStringHelper(this)
           .add("key", key)
+          .add("weight", weight)
           .add("type", type)
           .toString();
     }
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator.report;
+
+import static com.github.benmanes.caffeine.cache.simulator.policy.Policy.Characteristic.WEIGHTED;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.US;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.github.benmanes.caffeine.cache.simulator.BasicSettings;
+import com.github.benmanes.caffeine.cache.simulator.BasicSettings.ReportSettings.IntervalSettings;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy.Characteristic;
+import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
+import com.typesafe.config.Config;
+import com.univocity.parsers.csv.CsvWriter;
+import com.univocity.parsers.csv.CsvWriterSettings;
+
+/**
+ * A reporter that periodically writes each policy's statistics while the simulation is running.
+ * A row is written after the configured number of events or the elapsed time, whichever comes
+ * first, and holds the counts since the policy's prior row. The hit rate of these windows shows how
+ * a policy responds to the workload's phase changes, such as how quickly an adaptive policy
+ * converges to its new configuration. The rows are flushed as they are written so that the partial
+ * results of a long simulation are retained if it fails.
+ * <p>
+ * The rows are written as comma-separated values or as JSON lines, and the rows of different
+ * policies are interleaved in the order that they were reported.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class IntervalReporter implements Closeable {
+  private final @Nullable Writer writer;
+  private final IntervalFormat format;
+  private final List<Column> columns;
+  private final long intervalNanos;
+  private final long intervalEvents;
+  private final boolean closeable;
+  private final long startNanos;
+
+  private IntervalReporter() {
+    this.intervalEvents = Long.MAX_VALUE;
+    this.intervalNanos = Long.MAX_VALUE;
+    this.format = IntervalFormat.CSV;
+    this.startNanos = System.nanoTime();
+    this.columns = List.of();
+    this.closeable = false;
+    this.writer = null;
+  }
+
+  public IntervalReporter(Config config, Set<Characteristic> characteristics) throws IOException {
+    IntervalSettings settings = new BasicSettings(config).report().interval();
+    this.intervalEvents = (settings.events() > 0) ? settings.events() : Long.MAX_VALUE;
+    this.intervalNanos = settings.duration().isZero()
+        ? Long.MAX_VALUE
+        : settings.duration().toNanos();
+    this.columns = columns(characteristics);
+    this.startNanos = System.nanoTime();
+    this.format = settings.format();
+
+    if (!settings.isEnabled()) {
+      this.closeable = false;
+      this.writer = null;
+    } else if (settings.output().equalsIgnoreCase("console")) {
+      this.writer = new OutputStreamWriter(System.out, UTF_8);
+      this.closeable = false;
+    } else {
+      Path output = Path.of(settings.output()).toAbsolutePath();
+      Files.createDirectories(output.getParent());
+      this.writer = Files.newBufferedWriter(output, UTF_8);
+      this.closeable = true;
+    }
+    String header = format.header(columns);
+    if ((writer != null) && (header != null)) {
+      write(header);
+    }
+  }
+
+  /** Returns a reporter that does not write any rows. */
+  public static IntervalReporter disabled() {
+    return new IntervalReporter();
+  }
+
+  /** Returns the interval that tracks the policy's statistics since its prior report. */
+  public PolicyInterval interval(PolicyStats policyStats) {
+    return new PolicyInterval(policyStats);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (writer == null) {
+      return;
+    } else if (closeable) {
+      writer.close();
+    } else {
+      writer.flush();
+    }
+  }
+
+  /** Writes the line to the output destination and flushes it so that it is not lost. */
+  private synchronized void write(String line) {
+    try {
+      requireNonNull(writer).write(line);
+      writer.write(System.lineSeparator());
+      writer.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Returns the columns to report, omitting the weighted metrics if the trace is unweighted. */
+  private static List<Column> columns(Set<Characteristic> characteristics) {
+    var columns = new ArrayList<Column>(List.of(Column.values()));
+    if (!characteristics.contains(WEIGHTED)) {
+      columns.remove(Column.WEIGHTED_HIT_RATE);
+      columns.remove(Column.EVICTIONS_WEIGHT);
+    }
+    return columns;
+  }
+
+  /** The statistics of a policy since its prior report. */
+  public final class PolicyInterval {
+    final PolicyStats policyStats;
+
+    long reportedEvictionsWeight;
+    long reportedMissesWeight;
+    long reportedHitsWeight;
+    long reportedEvictions;
+    long reportedEvents;
+    long reportedMisses;
+    long reportedNanos;
+    long reportedHits;
+    long events;
+
+    PolicyInterval(PolicyStats policyStats) {
+      this.policyStats = requireNonNull(policyStats);
+      this.reportedNanos = startNanos;
+    }
+
+    /** Records that the policy processed the events, writing a row if the interval elapsed. */
+    public void advance(int count) {
+      if (writer == null) {
+        return;
+      }
+      events += count;
+      if (((events - reportedEvents) >= intervalEvents)
+          || ((System.nanoTime() - reportedNanos) >= intervalNanos)) {
+        report();
+      }
+    }
+
+    /** Writes a row for any events that were processed since the prior report. */
+    public void finish() {
+      if ((writer != null) && (events > reportedEvents)) {
+        report();
+      }
+    }
+
+    private void report() {
+      long now = System.nanoTime();
+      write(format.row(columns, this, now));
+
+      reportedEvictionsWeight = policyStats.evictionsWeight();
+      reportedMissesWeight = policyStats.missesWeight();
+      reportedHitsWeight = policyStats.hitsWeight();
+      reportedEvictions = policyStats.evictionCount();
+      reportedMisses = policyStats.missCount();
+      reportedHits = policyStats.hitCount();
+      reportedEvents = events;
+      reportedNanos = now;
+    }
+
+    long hits() {
+      return policyStats.hitCount() - reportedHits;
+    }
+
+    long misses() {
+      return policyStats.missCount() - reportedMisses;
+    }
+
+    long startNanos() {
+      return startNanos;
+    }
+
+    @Nullable Double hitRate() {
+      long requests = hits() + misses();
+      return (requests == 0) ? null : (double) hits() / requests;
+    }
+
+    @Nullable Double weightedHitRate() {
+      long hitsWeight = policyStats.hitsWeight() - reportedHitsWeight;
+      long requestsWeight = hitsWeight + (policyStats.missesWeight() - reportedMissesWeight);
+      return (requestsWeight == 0) ? null : (double) hitsWeight / requestsWeight;
+    }
+
+    @Nullable Double cumulativeHitRate() {
+      return (policyStats.requestCount() == 0) ? null : policyStats.hitRate();
+    }
+  }
+
+  /** A value that is reported for each interval. */
+  private enum Column {
+    POLICY("Policy", "policy") {
+      @Override Object value(PolicyInterval interval, long now) {
+        return interval.policyStats.name();
+      }
+    },
+    EVENTS("Events", "events") {
+      @Override Object value(PolicyInterval interval, long now) {
+        return interval.events;
+      }
+    },
+    ELAPSED("Elapsed (ms)", "elapsedMillis") {
+      @Override Object value(PolicyInterval interval, long now) {
+        return TimeUnit.NANOSECONDS.toMillis(now - interval.startNanos());
+      }
+    },
+    REQUESTS("Requests", "requests") {
+      @Override Object value(PolicyInterval interval, long now) {
+        return interval.hits() + interval.misses();
+      }
+    },
+    HITS("Hits", "hits") {
+      @Override Object value(PolicyInterval interval, long now) {
+        return interval.hits();
+      }
+    },
+    MISSES("Misses", "misses") {
+      @Override Object value(PolicyInterval interval, long now) {
+        return interval.misses();
+      }
+    },
+    EVICTIONS("Evictions", "evictions") {
+      @Override Object value(PolicyInterval interval, long now) {
+        return interval.policyStats.evictionCount() - interval.reportedEvictions;
+      }
+    },
+    EVICTIONS_WEIGHT("Evictions Weight", "evictionsWeight") {
+      @Override Object value(PolicyInterval interval, long now) {
+        return interval.policyStats.evictionsWeight() - interval.reportedEvictionsWeight;
+      }
+    },
+    HIT_RATE("Hit Rate", "hitRate") {
+      @Override @Nullable Object value(PolicyInterval interval, long now) {
+        return interval.hitRate();
+      }
+    },
+    WEIGHTED_HIT_RATE("Weighted Hit Rate", "weightedHitRate") {
+      @Override @Nullable Object value(PolicyInterval interval, long now) {
+        return interval.weightedHitRate();
+      }
+    },
+    CUMULATIVE_HIT_RATE("Cumulative Hit Rate", "cumulativeHitRate") {
+      @Override @Nullable Object value(PolicyInterval interval, long now) {
+        return interval.cumulativeHitRate();
+      }
+    };
+
+    final String header;
+    final String key;
+
+    Column(String header, String key) {
+      this.header = header;
+      this.key = key;
+    }
+
+    /** Returns the value of the interval, which is a percentage if a double, or null if none. */
+    abstract @Nullable Object value(PolicyInterval interval, long now);
+  }
+
+  /** The interval report's data formats. */
+  public enum IntervalFormat {
+    CSV {
+      @Override String header(List<Column> columns) {
+        return newWriter().writeRowToString(columns.stream()
+            .map(column -> column.header)
+            .toArray());
+      }
+      @Override String row(List<Column> columns, PolicyInterval interval, long now) {
+        return newWriter().writeRowToString(columns.stream()
+            .map(column -> format(column.value(interval, now)))
+            .toArray());
+      }
+      private CsvWriter newWriter() {
+        return new CsvWriter(new CsvWriterSettings());
+      }
+    },
+    JSONL {
+      @Override @Nullable String header(List<Column> columns) {
+        return null;
+      }
+      @Override String row(List<Column> columns, PolicyInterval interval, long now) {
+        var json = new StringBuilder().append('{');
+        for (Column column : columns) {
+          if (json.length() > 1) {
+            json.append(',');
+          }
+          Object value = column.value(interval, now);
+          json.append('"').append(column.key).append("\":");
+          if (value instanceof String) {
+            json.append('"').append(escape((String) value)).append('"');
+          } else {
+            json.append((value == null) ? "null" : format(value));
+          }
+        }
+        return json.append('}').toString();
+      }
+      private String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+      }
+    };
+
+    /** Returns the header line, or null if the format does not have one. */
+    abstract @Nullable String header(List<Column> columns);
+
+    /** Returns the line for the interval's values. */
+    abstract String row(List<Column> columns, PolicyInterval interval, long now);
+
+    /** Returns the value as a string, formatting a ratio as a percentage like the final report. */
+    static @Nullable String format(@Nullable Object value) {
+      if (value instanceof Double) {
+        return String.format(US, "%.2f", 100 * (Double) value);
+      }
+      return (value == null) ? null : value.toString();
+    }
+  }
+}
@@ -30,6 +30,8 @@ import java.awt.Font;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.text.NumberFormat;
+import java.text.ParsePosition;
 import java.util.List;
 
 import org.jfree.chart.ChartFactory;
@@ -58,6 +60,8 @@ import picocli.CommandLine.TypeConversionException;
 
 /**
  * A utility that generates a line chart from the csv format produced by {@link CombinedCsvReport}.
+ * The columns of a csv report that are named by a cache size, such as the hit rates reported by the
+ * {@code opt.MissRatioCurve} analysis, may be charted directly and its other columns are ignored.
  * <p>
  * Based on <a href="https://github.com/eobermuhlner/csv2chart">csv2chart</a>.
  *
@@ -106,12 +110,21 @@ public final class PlotCsv implements Runnable {
     for (var record : records) {
       for (int i = 1; i < headers.length; i++) {
         var value = record.getDouble(i);
-        dataset.addValue(value, record.getString(0), headers[i]);
+        if (isMaximumSize(headers[i]) && (value != null)) {
+          dataset.addValue(value, record.getString(0), headers[i]);
+        }
       }
     }
     return dataset;
   }
 
+  /** Returns if the column is for a cache size, rather than a different metric in a report. */
+  private static boolean isMaximumSize(String header) {
+    var position = new ParsePosition(0);
+    NumberFormat.getInstance(US).parse(header, position);
+    return (position.getIndex() == header.length());
+  }
+
   private void configurePlot(JFreeChart chart) {
     var plot = (CategoryPlot) chart.getPlot();
     configureAxis(plot.getDomainAxis());